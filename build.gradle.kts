@@ -4,6 +4,7 @@ import org.gradle.api.tasks.testing.logging.TestLogEvent
 plugins {
     alias(libs.plugins.hivemq.extension)
     alias(libs.plugins.defaults)
+    alias(libs.plugins.jmh)
     alias(libs.plugins.oci)
     alias(libs.plugins.spotless)
 }
@@ -39,6 +40,7 @@ dependencies {
     compileOnly(libs.jetbrains.annotations)
     hivemqProvided(libs.logback.classic)
     implementation(libs.azure.storage.blob)
+    implementation(libs.azure.storage.blob.batch)
     implementation(libs.owner.java8)
 
     implementation(platform(libs.netty.bom)) {
@@ -149,6 +151,9 @@ testing {
                 implementation(libs.testcontainers.toxiproxy)
                 implementation(libs.gradleOci.junitJupiter)
                 implementation(libs.azure.storage.blob)
+                implementation(libs.hivemq.extensionSdk)
+                implementation(libs.mockito)
+                implementation(project())
                 runtimeOnly(libs.logback.classic)
 
                 implementation(platform(libs.netty.bom)) {
@@ -158,6 +163,12 @@ testing {
                     because("pin fixed jackson-core version for vulnerability described in INT-261")
                 }
             }
+            targets.configureEach {
+                testTask {
+                    // the reload benchmark only runs with -Pbenchmark=true
+                    systemProperty("benchmark", providers.gradleProperty("benchmark").getOrElse("false"))
+                }
+            }
             oci.of(this) {
                 imageDependencies {
                     runtime(project()).tag("latest")
@@ -169,6 +180,19 @@ testing {
     }
 }
 
+jmh {
+    jmhVersion = libs.versions.jmh
+    // report the allocation rate per operation next to the throughput
+    profilers.add("gc")
+}
+
+dependencies {
+    jmhCompileOnly(libs.jetbrains.annotations)
+    jmhImplementation(libs.hivemq.extensionSdk)
+    jmhImplementation(libs.mockito)
+    jmhRuntimeOnly(libs.logback.classic)
+}
+
 spotless {
     java {
         licenseHeaderFile(rootDir.resolve("HEADER"))
@@ -17,6 +17,7 @@
 package com.hivemq.extensions.cluster.discovery.azure;
 
 import com.azure.storage.blob.BlobContainerClientBuilder;
+import com.hivemq.extensions.cluster.discovery.azure.config.ClusterNodeFile;
 import eu.rekawek.toxiproxy.ToxiproxyClient;
 import eu.rekawek.toxiproxy.model.ToxicDirection;
 import io.github.sgtsilvio.gradle.oci.junit.jupiter.OciImages;
@@ -26,6 +27,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.testcontainers.containers.GenericContainer;
 import org.testcontainers.containers.Network;
+import org.testcontainers.containers.output.ToStringConsumer;
 import org.testcontainers.containers.output.WaitingConsumer;
 import org.testcontainers.hivemq.HiveMQContainer;
 import org.testcontainers.images.builder.Transferable;
@@ -33,6 +35,7 @@ import org.testcontainers.toxiproxy.ToxiproxyContainer;
 import org.testcontainers.utility.MountableFile;
 
 import java.io.ByteArrayInputStream;
+import java.time.Duration;
 
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -96,6 +99,64 @@ class AzureDiscoveryExtensionIT {
         }
     }
 
+    @Test
+    void threeNodesFormCluster_manifestEnabled_manifestWritten() throws Exception {
+        final var consumer1 = new WaitingConsumer();
+        final var consumer2 = new WaitingConsumer();
+        final var consumer3 = new WaitingConsumer();
+
+        final var manifestConfig = "manifest-enabled=true\n";
+        final var node1 = createHiveMQNode(createDockerAzuriteConnectionString(), manifestConfig).withLogConsumer(
+                consumer1);
+        final var node2 = createHiveMQNode(createDockerAzuriteConnectionString(), manifestConfig).withLogConsumer(
+                consumer2);
+        final var node3 = createHiveMQNode(createDockerAzuriteConnectionString(), manifestConfig).withLogConsumer(
+                consumer3);
+        try (node1; node2; node3) {
+            node1.start();
+            node2.start();
+            node3.start();
+
+            consumer1.waitUntil(frame -> frame.getUtf8String().contains("Cluster size = 3"), 60, SECONDS);
+            consumer2.waitUntil(frame -> frame.getUtf8String().contains("Cluster size = 3"), 60, SECONDS);
+            consumer3.waitUntil(frame -> frame.getUtf8String().contains("Cluster size = 3"), 60, SECONDS);
+
+            final var manifestBlobClient =
+                    new BlobContainerClientBuilder().connectionString(createHostAzuriteConnectionString())
+                            .containerName(BLOB_CONTAINER_NAME)
+                            .buildClient()
+                            .getBlobClient("hivemq-node-manifest");
+            await().pollInterval(1, SECONDS)
+                    .atMost(60, SECONDS)
+                    .until(() -> manifestBlobClient.exists() &&
+                            ClusterNodeFile.parseManifest(manifestBlobClient.downloadContent().toString()).size() == 3);
+        }
+    }
+
+    @Test
+    void threeNodesFormCluster_mixedContentVersions() throws Exception {
+        final var consumer1 = new WaitingConsumer();
+        final var consumer2 = new WaitingConsumer();
+        final var consumer3 = new WaitingConsumer();
+
+        // a rolling upgrade: one node still writes the text record, the others already write the binary record
+        final var binaryConfig = "content-version=5\n";
+        final var node1 = createHiveMQNode().withLogConsumer(consumer1);
+        final var node2 = createHiveMQNode(createDockerAzuriteConnectionString(), binaryConfig).withLogConsumer(
+                consumer2);
+        final var node3 = createHiveMQNode(createDockerAzuriteConnectionString(), binaryConfig).withLogConsumer(
+                consumer3);
+        try (node1; node2; node3) {
+            node1.start();
+            node2.start();
+            node3.start();
+
+            consumer1.waitUntil(frame -> frame.getUtf8String().contains("Cluster size = 3"), 60, SECONDS);
+            consumer2.waitUntil(frame -> frame.getUtf8String().contains("Cluster size = 3"), 60, SECONDS);
+            consumer3.waitUntil(frame -> frame.getUtf8String().contains("Cluster size = 3"), 60, SECONDS);
+        }
+    }
+
     @Test
     void twoNodesInCluster_oneNodeStarted_threeNodesInCluster() throws Exception {
         final var consumer1 = new WaitingConsumer();
@@ -154,6 +215,101 @@ class AzureDiscoveryExtensionIT {
         }
     }
 
+    @Test
+    void twoNodesInCluster_slowAzure_reloadDeadlineKeepsCluster() throws Exception {
+        final var toxiproxy = new ToxiproxyContainer(OciImages.getImageName("shopify/toxiproxy")).withNetwork(network)
+                .withNetworkAliases(TOXIPROXY_NETWORK_ALIAS);
+        try (toxiproxy) {
+            toxiproxy.start();
+
+            final var toxiproxyClient = new ToxiproxyClient(toxiproxy.getHost(), toxiproxy.getControlPort());
+            final var proxy =
+                    toxiproxyClient.createProxy("proxy", "0.0.0.0:8666", AZURITE_NETWORK_ALIAS + ":" + AZURITE_PORT);
+            final var toxiproxyConnectionString = createAzuriteConnectionString(TOXIPROXY_NETWORK_ALIAS, 8666);
+
+            final var toxicConsumer = new WaitingConsumer();
+            final var toxicLogs = new ToStringConsumer();
+            final var normalConsumer = new WaitingConsumer();
+
+            // every request succeeds before the request timeout, but a discovery cycle takes longer than the deadline
+            final var deadlineConfig = """
+                    request-timeout=10
+                    reload-deadline=2
+                    """;
+            final var toxicNode = createHiveMQNode(toxiproxyConnectionString, deadlineConfig).withLogConsumer(
+                    toxicConsumer.andThen(toxicLogs));
+            final var normalNode = createHiveMQNode().withLogConsumer(normalConsumer);
+            try (toxicNode; normalNode) {
+                toxicNode.start();
+                normalNode.start();
+                toxicConsumer.waitUntil(frame -> frame.getUtf8String().contains("Cluster size = 2"), 30, SECONDS);
+                normalConsumer.waitUntil(frame -> frame.getUtf8String().contains("Cluster size = 2"), 30, SECONDS);
+
+                proxy.toxics().latency("latency-down", ToxicDirection.DOWNSTREAM, 3_000);
+
+                // one reload interval, the deadline and the request that was running at the deadline
+                final var startNanos = System.nanoTime();
+                toxicConsumer.waitUntil(frame -> frame.getUtf8String().contains("exceeded the reload deadline"),
+                        30,
+                        SECONDS);
+                assertThat(Duration.ofNanos(System.nanoTime() - startNanos)).isLessThan(Duration.ofSeconds(15));
+
+                // the last complete node view is provided instead of the incomplete one
+                toxicConsumer.waitUntil(frame -> frame.getUtf8String().contains("exceeded the reload deadline"),
+                        30,
+                        SECONDS,
+                        2);
+                assertThat(toxicLogs.toUtf8String()).doesNotContain("Cluster size = 1");
+            }
+        }
+    }
+
+    @Test
+    void twoNodesInCluster_azureTimesOut_reloadBoundedByRequestTimeout() throws Exception {
+        final var toxiproxy = new ToxiproxyContainer(OciImages.getImageName("shopify/toxiproxy")).withNetwork(network)
+                .withNetworkAliases(TOXIPROXY_NETWORK_ALIAS);
+        try (toxiproxy) {
+            toxiproxy.start();
+
+            final var toxiproxyClient = new ToxiproxyClient(toxiproxy.getHost(), toxiproxy.getControlPort());
+            final var proxy =
+                    toxiproxyClient.createProxy("proxy", "0.0.0.0:8666", AZURITE_NETWORK_ALIAS + ":" + AZURITE_PORT);
+            final var toxiproxyConnectionString = createAzuriteConnectionString(TOXIPROXY_NETWORK_ALIAS, 8666);
+
+            final var toxicConsumer = new WaitingConsumer();
+            final var toxicLogs = new ToStringConsumer();
+            final var normalConsumer = new WaitingConsumer();
+
+            final var timeoutConfig = """
+                    request-timeout=2
+                    request-max-tries=2
+                    request-retry-delay=100
+                    request-max-retry-delay=100
+                    """;
+            final var toxicNode = createHiveMQNode(toxiproxyConnectionString, timeoutConfig).withLogConsumer(
+                    toxicConsumer.andThen(toxicLogs));
+            final var normalNode = createHiveMQNode().withLogConsumer(normalConsumer);
+            try (toxicNode; normalNode) {
+                toxicNode.start();
+                normalNode.start();
+                toxicConsumer.waitUntil(frame -> frame.getUtf8String().contains("Cluster size = 2"), 30, SECONDS);
+                normalConsumer.waitUntil(frame -> frame.getUtf8String().contains("Cluster size = 2"), 30, SECONDS);
+
+                // no request of toxicNode gets a response anymore
+                proxy.toxics().timeout("timeout-down", ToxicDirection.DOWNSTREAM, 0);
+                proxy.toxics().timeout("timeout-up", ToxicDirection.UPSTREAM, 0);
+
+                // one reload interval and two tries of the request timeout, instead of the minutes of the SDK defaults
+                final var startNanos = System.nanoTime();
+                toxicConsumer.waitUntil(frame -> frame.getUtf8String()
+                        .contains("Reload of the Azure Cluster Discovery Callback failed") ||
+                        frame.getUtf8String().contains("Could not get Azure Blobs"), 30, SECONDS);
+                assertThat(Duration.ofNanos(System.nanoTime() - startNanos)).isLessThan(Duration.ofSeconds(15));
+                assertThat(toxicLogs.toUtf8String()).doesNotContain("Cluster size = 1");
+            }
+        }
+    }
+
     @Test
     void threeNodesInCluster_oneNodeStopped_twoNodesInCluster() throws Exception {
         final var consumer1 = new WaitingConsumer();
@@ -246,6 +402,34 @@ class AzureDiscoveryExtensionIT {
         }
     }
 
+    @Test
+    void twoNodesInCluster_containerDeleted_containerRecreated() throws Exception {
+        final var consumer1 = new WaitingConsumer();
+        final var consumer2 = new WaitingConsumer();
+
+        final var node1 = createHiveMQNode().withLogConsumer(consumer1);
+        final var node2 = createHiveMQNode().withLogConsumer(consumer2);
+        try (node1; node2) {
+            node1.start();
+            node2.start();
+            consumer1.waitUntil(frame -> frame.getUtf8String().contains("Cluster size = 2"), 30, SECONDS);
+            consumer2.waitUntil(frame -> frame.getUtf8String().contains("Cluster size = 2"), 30, SECONDS);
+
+            final var blobContainerClient =
+                    new BlobContainerClientBuilder().connectionString(createHostAzuriteConnectionString())
+                            .containerName(BLOB_CONTAINER_NAME)
+                            .buildClient();
+            blobContainerClient.delete();
+
+            // the nodes notice the missing container on their next reload, recreate it and save their node files again
+            await().pollInterval(1, SECONDS)
+                    .atMost(60, SECONDS)
+                    .until(() -> blobContainerClient.exists() && blobContainerClient.listBlobs().stream().count() == 2);
+            assertThat(node1.isRunning()).isTrue();
+            assertThat(node2.isRunning()).isTrue();
+        }
+    }
+
     @Test
     void configAtLegacyLocation_nodeStartsSuccessfully() throws Exception {
         final var consumer = new WaitingConsumer();
@@ -280,10 +464,16 @@ class AzureDiscoveryExtensionIT {
     }
 
     private @NotNull HiveMQContainer createHiveMQNode(final @NotNull String connectionString) {
+        return createHiveMQNode(connectionString, "");
+    }
+
+    private @NotNull HiveMQContainer createHiveMQNode(
+            final @NotNull String connectionString,
+            final @NotNull String additionalConfig) {
         return new HiveMQContainer(OciImages.getImageName("hivemq/extensions/hivemq-azure-cluster-discovery-extension")
                 .asCompatibleSubstituteFor("hivemq/hivemq4"))
                 .withHiveMQConfig(MountableFile.forClasspathResource("config.xml"))
-                .withCopyToContainer(Transferable.of(createConfig(connectionString)),
+                .withCopyToContainer(Transferable.of(createConfig(connectionString) + additionalConfig),
                         "/opt/hivemq/extensions/hivemq-azure-cluster-discovery-extension/conf/config.properties")
                 .withEnv("HIVEMQ_DISABLE_STATISTICS", "true")
                 .withNetwork(network);
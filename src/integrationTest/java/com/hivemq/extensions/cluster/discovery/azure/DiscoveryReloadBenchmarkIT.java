@@ -0,0 +1,213 @@
+/*
+ * Copyright 2021-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.cluster.discovery.azure;
+
+import com.azure.storage.blob.BlobContainerClient;
+import com.azure.storage.blob.BlobContainerClientBuilder;
+import com.azure.storage.blob.models.ListBlobsOptions;
+import com.hivemq.extension.sdk.api.parameter.ExtensionInformation;
+import com.hivemq.extension.sdk.api.services.cluster.parameter.ClusterDiscoveryInput;
+import com.hivemq.extension.sdk.api.services.cluster.parameter.ClusterDiscoveryOutput;
+import com.hivemq.extension.sdk.api.services.cluster.parameter.ClusterNodeAddress;
+import com.hivemq.extensions.cluster.discovery.azure.callback.AzureClusterDiscoveryCallback;
+import com.hivemq.extensions.cluster.discovery.azure.config.ClusterNodeFile;
+import com.hivemq.extensions.cluster.discovery.azure.config.ConfigReader;
+import io.github.sgtsilvio.gradle.oci.junit.jupiter.OciImages;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testcontainers.containers.GenericContainer;
+
+import java.io.ByteArrayInputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Measures how the latency of a discovery reload scales with the number of node files in the container, the configured
+ * download parallelism and the discovery engine. The results are logged as a table, the assertions only check the
+ * discovered nodes. The node files are uploaded again before every reload, so every reload downloads all of them
+ * instead of serving them from the node file cache. Only the reloads are timed, not the uploads.
+ * <p>
+ * The measurement takes several minutes, so it only runs on request:
+ * {@code ./gradlew integrationTest -Pbenchmark=true --tests '*DiscoveryReloadBenchmarkIT'}
+ */
+@SuppressWarnings("resource")
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class DiscoveryReloadBenchmarkIT {
+
+    private static final @NotNull Logger log = LoggerFactory.getLogger(DiscoveryReloadBenchmarkIT.class);
+
+    private static final int AZURITE_PORT = 10000;
+    private static final @NotNull String BLOB_CONTAINER_NAME = "hivemq-discovery";
+    private static final @NotNull String FILE_PREFIX = "hivemq-node-";
+    private static final int @NotNull [] NODE_COUNTS = {10, 30, 60};
+    private static final int @NotNull [] DOWNLOAD_PARALLELISMS = {1, 4, 16};
+    private static final @NotNull String @NotNull [] DISCOVERY_ENGINES = {"blocking", "async"};
+    private static final int WARMUP_RELOADS = 3;
+    private static final int MEASURED_RELOADS = 10;
+
+    private final @NotNull GenericContainer<?> azuriteContainer =
+            new GenericContainer<>(OciImages.getImageName("azure-storage/azurite")).withExposedPorts(AZURITE_PORT)
+                    .withCommand("azurite", "--blobHost", "0.0.0.0", "--skipApiVersionCheck");
+
+    @TempDir
+    private @NotNull Path tempDir;
+
+    private @NotNull BlobContainerClient blobContainerClient;
+
+    @BeforeEach
+    void setUp() {
+        azuriteContainer.start();
+        blobContainerClient = new BlobContainerClientBuilder().connectionString(createConnectionString())
+                .containerName(BLOB_CONTAINER_NAME)
+                .buildClient();
+        blobContainerClient.create();
+    }
+
+    @AfterEach
+    void tearDown() {
+        azuriteContainer.stop();
+    }
+
+    @Test
+    void reloadLatency_scalesWithNodeCountAndDownloadParallelism() throws Exception {
+        final var results = new StringBuilder(String.format("%n%8s %12s %10s %16s %10s%n",
+                "nodes",
+                "parallelism",
+                "engine",
+                "reload (ms)",
+                "threads"));
+        var uploadedNodes = 0;
+        for (final var nodeCount : NODE_COUNTS) {
+            for (; uploadedNodes < nodeCount; uploadedNodes++) {
+                uploadNodeFile(uploadedNodes);
+            }
+            for (final var discoveryEngine : DISCOVERY_ENGINES) {
+                for (final var downloadParallelism : DOWNLOAD_PARALLELISMS) {
+                    final var averageReloadMillis = measureReload(discoveryEngine, downloadParallelism, nodeCount);
+                    results.append(String.format("%8d %12d %10s %16.1f %10d%n",
+                            nodeCount,
+                            downloadParallelism,
+                            discoveryEngine,
+                            averageReloadMillis,
+                            ManagementFactory.getThreadMXBean().getThreadCount()));
+                }
+            }
+        }
+        log.info("Reload latency:{}", results);
+    }
+
+    private double measureReload(
+            final @NotNull String discoveryEngine,
+            final int downloadParallelism,
+            final int nodeCount) throws Exception {
+        final var configPath = tempDir.resolve(ConfigReader.CONFIG_PATH);
+        Files.createDirectories(configPath.getParent());
+        Files.writeString(configPath, """
+                connection-string=%s
+                container-name=%s
+                file-prefix=%s
+                file-expiration=360
+                update-interval=180
+                download-parallelism=%d
+                discovery-engine=%s
+                """.formatted(createConnectionString(),
+                BLOB_CONTAINER_NAME,
+                FILE_PREFIX,
+                downloadParallelism,
+                discoveryEngine));
+        final var extensionInformation = mock(ExtensionInformation.class);
+        when(extensionInformation.getExtensionHomeFolder()).thenReturn(tempDir.toFile());
+
+        final var clusterDiscoveryInput = mock(ClusterDiscoveryInput.class);
+        when(clusterDiscoveryInput.getOwnClusterId()).thenReturn("OWN");
+        when(clusterDiscoveryInput.getOwnAddress()).thenReturn(new ClusterNodeAddress("127.0.0.1", 7800));
+        final var providedNodes = new ArrayList<List<ClusterNodeAddress>>();
+        final var clusterDiscoveryOutput = mock(ClusterDiscoveryOutput.class);
+        doAnswer(invocation -> providedNodes.add(invocation.getArgument(0))).when(clusterDiscoveryOutput)
+                .provideCurrentNodes(anyList());
+
+        final var callback = new AzureClusterDiscoveryCallback(new ConfigReader(extensionInformation));
+        callback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+        try {
+            for (var i = 0; i < WARMUP_RELOADS; i++) {
+                uploadNodeFiles(nodeCount);
+                callback.reload(clusterDiscoveryInput, clusterDiscoveryOutput);
+            }
+            var elapsedNanos = 0L;
+            for (var i = 0; i < MEASURED_RELOADS; i++) {
+                // new ETags, so the reload can't serve the node files from the cache
+                uploadNodeFiles(nodeCount);
+                final var start = System.nanoTime();
+                callback.reload(clusterDiscoveryInput, clusterDiscoveryOutput);
+                elapsedNanos += System.nanoTime() - start;
+            }
+
+            // own node file + uploaded node files
+            assertThat(providedNodes).hasSize(1 + WARMUP_RELOADS + MEASURED_RELOADS)
+                    .allSatisfy(nodes -> assertThat(nodes).hasSize(nodeCount + 1));
+            return (double) TimeUnit.NANOSECONDS.toMicros(elapsedNanos) / MEASURED_RELOADS / 1_000;
+        } finally {
+            callback.destroy(clusterDiscoveryInput);
+            assertThat(blobContainerClient.listBlobs(new ListBlobsOptions().setPrefix(FILE_PREFIX + "OWN"), null)
+                    .stream()
+                    .count()).isZero();
+        }
+    }
+
+    private void uploadNodeFiles(final int nodeCount) {
+        for (var node = 0; node < nodeCount; node++) {
+            uploadNodeFile(node);
+        }
+    }
+
+    private void uploadNodeFile(final int node) {
+        final var clusterId = "NODE" + node;
+        final var content =
+                new ClusterNodeFile(clusterId, new ClusterNodeAddress("127.0.0.1", 8000 + node)).toString()
+                        .getBytes(UTF_8);
+        blobContainerClient.getBlobClient(FILE_PREFIX + clusterId)
+                .upload(new ByteArrayInputStream(content), content.length, true);
+    }
+
+    @SuppressWarnings("HttpUrlsUsage")
+    private @NotNull String createConnectionString() {
+        return String.format("DefaultEndpointsProtocol=http;" + "AccountName=devstoreaccount1;" +
+                "AccountKey=Eby8vdM02xNOcqFlqUwJPLlmEtlCDXJ1OUzFT50uSRZ6IFsuFq2UVErCz4I6tq/K1SZFPTOtr/KBHBeksoGMGw==;" +
+                "BlobEndpoint=http://%s:%s/devstoreaccount1", azuriteContainer.getHost(), getAzuritePort());
+    }
+
+    private int getAzuritePort() {
+        return azuriteContainer.getMappedPort(AZURITE_PORT);
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright 2021-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.cluster.discovery.azure.callback;
+
+import com.azure.storage.blob.models.BlobItem;
+import com.azure.storage.blob.models.BlobItemProperties;
+import com.hivemq.extension.sdk.api.parameter.ExtensionInformation;
+import com.hivemq.extension.sdk.api.services.cluster.parameter.ClusterDiscoveryInput;
+import com.hivemq.extension.sdk.api.services.cluster.parameter.ClusterDiscoveryOutput;
+import com.hivemq.extension.sdk.api.services.cluster.parameter.ClusterNodeAddress;
+import com.hivemq.extensions.cluster.discovery.azure.client.AzureStorageClient;
+import com.hivemq.extensions.cluster.discovery.azure.config.AzureDiscoveryConfig;
+import com.hivemq.extensions.cluster.discovery.azure.config.ClusterNodeFile;
+import com.hivemq.extensions.cluster.discovery.azure.config.ConfigReader;
+import org.aeonbits.owner.ConfigFactory;
+import org.jetbrains.annotations.NotNull;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * A complete discovery reload: list the node files, download and parse them, check their expiry and provide the
+ * membership to HiveMQ. The Azure Storage requests are stubbed, so only the processing in the extension is measured.
+ * <p>
+ * The benchmark drives the callback through {@code init}, {@code reload} and {@code destroy} as HiveMQ does, so no
+ * part of the discovery has to be opened up for it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DiscoveryReloadBenchmark {
+
+    private static final @NotNull String FILE_PREFIX = "hivemq-node-";
+
+    @Param({"10", "100", "1000"})
+    private int blobCount;
+
+    // with ETags the node files are served from the node file cache after the first cycle
+    @Param({"false", "true"})
+    private boolean blobETags;
+
+    // the text record (4) or the binary record (5) of the node files
+    @Param({"4", "5"})
+    private @NotNull String contentVersion;
+
+    private @NotNull AzureClusterDiscoveryCallback callback;
+    private @NotNull ClusterDiscoveryInput input;
+    private @NotNull ClusterDiscoveryOutput output;
+    private @NotNull List<ClusterNodeAddress> providedNodes = List.of();
+
+    @Setup
+    public void setUp() {
+        final var properties = new Properties();
+        properties.setProperty("connection-string", "UseDevelopmentStorage=true");
+        properties.setProperty("file-prefix", FILE_PREFIX);
+        // node files must not expire during a long benchmark run
+        properties.setProperty("file-expiration", "0");
+        // downloads are not run in parallel, as the stubbed downloads don't block
+        properties.setProperty("download-parallelism", "1");
+        // the janitor lease would need an Azure Storage Account
+        properties.setProperty("janitor-enabled", "false");
+        final var config = ConfigFactory.create(AzureDiscoveryConfig.class, properties);
+
+        final var blobs = new ArrayList<BlobItem>(blobCount);
+        final var blobContents = new HashMap<String, byte[]>();
+        for (var i = 0; i < blobCount; i++) {
+            final var clusterId = "NODE" + i;
+            final var blob = new BlobItem().setName(FILE_PREFIX + clusterId);
+            if (blobETags) {
+                blob.setProperties(new BlobItemProperties().setETag("0x8DC" + i));
+            }
+            blobs.add(blob);
+            final var nodeFile =
+                    new ClusterNodeFile(clusterId, new ClusterNodeAddress("10.0." + i / 256 + "." + i % 256, 7800));
+            blobContents.put(blob.getName(),
+                    AzureDiscoveryConfig.CONTENT_VERSION_BINARY.equals(contentVersion) ?
+                            nodeFile.toBinary() :
+                            nodeFile.toString().getBytes(UTF_8));
+        }
+
+        final var extensionInformation = mock(ExtensionInformation.class);
+        when(extensionInformation.getExtensionHomeFolder()).thenReturn(new File("."));
+        callback = new AzureClusterDiscoveryCallback(new StubAzureStorageClient(new ConfigReader(extensionInformation),
+                config,
+                blobs,
+                blobContents));
+
+        // stub only mocks don't record the invocations of a long benchmark run
+        input = mock(ClusterDiscoveryInput.class, withSettings().stubOnly());
+        when(input.getOwnClusterId()).thenReturn("OWN");
+        when(input.getOwnAddress()).thenReturn(new ClusterNodeAddress("127.0.0.1", 7800));
+        output = mock(ClusterDiscoveryOutput.class, withSettings().stubOnly());
+        doAnswer(invocation -> {
+            providedNodes = invocation.getArgument(0);
+            return null;
+        }).when(output).provideCurrentNodes(anyList());
+        callback.init(input, output);
+    }
+
+    @TearDown
+    public void tearDown() {
+        callback.destroy(input);
+    }
+
+    @Benchmark
+    public @NotNull List<ClusterNodeAddress> reload() {
+        callback.reload(input, output);
+        return providedNodes;
+    }
+
+    private static class StubAzureStorageClient extends AzureStorageClient {
+
+        private final @NotNull AzureDiscoveryConfig config;
+        private final @NotNull List<BlobItem> blobs;
+        private final @NotNull Map<String, byte[]> blobContents;
+
+        private StubAzureStorageClient(
+                final @NotNull ConfigReader configReader,
+                final @NotNull AzureDiscoveryConfig config,
+                final @NotNull List<BlobItem> blobs,
+                final @NotNull Map<String, byte[]> blobContents) {
+            super(configReader);
+            this.config = config;
+            this.blobs = blobs;
+            this.blobContents = blobContents;
+        }
+
+        @Override
+        public void updateConfiguration() {
+        }
+
+        @Override
+        public void createOrUpdate() {
+        }
+
+        @Override
+        public @NotNull AzureDiscoveryConfig getStorageConfig() {
+            return config;
+        }
+
+        @Override
+        public boolean existsContainer() {
+            return true;
+        }
+
+        @Override
+        public void saveBlob(final @NotNull String blobName, final byte @NotNull [] content) {
+        }
+
+        @Override
+        public void saveBlob(
+                final @NotNull String blobName,
+                final byte @NotNull [] content,
+                final @NotNull Map<String, String> metadata) {
+        }
+
+        @Override
+        public @NotNull Iterator<BlobItem> getBlobs(final @NotNull String filePrefix) {
+            return blobs.iterator();
+        }
+
+        @Override
+        public byte @NotNull [] getBlobContent(final @NotNull String blobName) {
+            return blobContents.get(blobName);
+        }
+
+        @Override
+        public void deleteBlob(final @NotNull String blobName) {
+        }
+    }
+}
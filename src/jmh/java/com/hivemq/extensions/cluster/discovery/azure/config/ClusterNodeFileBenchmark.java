@@ -0,0 +1,101 @@
+/*
+ * Copyright 2021-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.cluster.discovery.azure.config;
+
+import com.hivemq.extension.sdk.api.services.cluster.parameter.ClusterNodeAddress;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Encoding and parsing of a single node file, which is done for every node file on every discovery cycle.
+ * <p>
+ * {@link #parseWithPatternSplit()} is the previous parser that split the decoded content with a regex, it is kept as
+ * the baseline for the allocation rate of {@link #parse()} ({@code gc.alloc.rate.norm}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ClusterNodeFileBenchmark {
+
+    private static final @NotNull Pattern CONTENT_SEPARATOR_PATTERN =
+            Pattern.compile(Pattern.quote(ClusterNodeFile.CONTENT_SEPARATOR));
+
+    private @NotNull ClusterNodeFile nodeFile;
+    private @NotNull String nodeFileContent;
+    private byte @NotNull [] binaryNodeFileContent;
+
+    @Setup
+    public void setUp() {
+        nodeFile = new ClusterNodeFile("Hj3kQ", new ClusterNodeAddress("10.0.42.17", 7800));
+        nodeFileContent = nodeFile.toString();
+        binaryNodeFileContent = nodeFile.toBinary();
+    }
+
+    @Benchmark
+    public @NotNull String encode() {
+        return nodeFile.toString();
+    }
+
+    @Benchmark
+    public @Nullable ClusterNodeFile parse() {
+        return ClusterNodeFile.parseClusterNodeFile(nodeFileContent);
+    }
+
+    @Benchmark
+    public byte @NotNull [] encodeBinary() {
+        return nodeFile.toBinary();
+    }
+
+    @Benchmark
+    public @Nullable ClusterNodeFile parseBinary() {
+        return ClusterNodeFile.parseClusterNodeFile(binaryNodeFileContent);
+    }
+
+    @Benchmark
+    public @Nullable ClusterNodeFile parseWithPatternSplit() {
+        final var content = new String(Base64.getDecoder().decode(nodeFileContent), StandardCharsets.UTF_8);
+        final var splitContent = CONTENT_SEPARATOR_PATTERN.split(content);
+        if (splitContent.length != 5 || !splitContent[0].contentEquals(ClusterNodeFile.CONTENT_VERSION)) {
+            return null;
+        }
+        try {
+            Long.parseLong(splitContent[1]);
+            return new ClusterNodeFile(splitContent[2],
+                    new ClusterNodeAddress(splitContent[3], Integer.parseInt(splitContent[4])));
+        } catch (final NumberFormatException ignored) {
+            return null;
+        }
+    }
+}
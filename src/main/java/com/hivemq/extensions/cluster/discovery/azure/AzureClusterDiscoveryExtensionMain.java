@@ -16,6 +16,7 @@
 
 package com.hivemq.extensions.cluster.discovery.azure;
 
+import com.codahale.metrics.MetricFilter;
 import com.hivemq.extension.sdk.api.ExtensionMain;
 import com.hivemq.extension.sdk.api.parameter.ExtensionStartInput;
 import com.hivemq.extension.sdk.api.parameter.ExtensionStartOutput;
@@ -24,6 +25,7 @@ import com.hivemq.extension.sdk.api.parameter.ExtensionStopOutput;
 import com.hivemq.extension.sdk.api.services.Services;
 import com.hivemq.extensions.cluster.discovery.azure.callback.AzureClusterDiscoveryCallback;
 import com.hivemq.extensions.cluster.discovery.azure.config.ConfigReader;
+import com.hivemq.extensions.cluster.discovery.azure.metrics.DiscoveryMetrics;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
@@ -37,15 +39,18 @@ public class AzureClusterDiscoveryExtensionMain implements ExtensionMain {
     private static final @NotNull Logger log = LoggerFactory.getLogger(AzureClusterDiscoveryExtensionMain.class);
 
     @Nullable AzureClusterDiscoveryCallback azureClusterDiscoveryCallback;
+    private @Nullable ConfigReader configReader;
 
     @Override
     public void extensionStart(
             final @NotNull ExtensionStartInput extensionStartInput,
             final @NotNull ExtensionStartOutput extensionStartOutput) {
         try {
-            final var configReader = new ConfigReader(extensionStartInput.getExtensionInformation());
-            azureClusterDiscoveryCallback = new AzureClusterDiscoveryCallback(configReader);
+            configReader = new ConfigReader(extensionStartInput.getExtensionInformation());
+            final var discoveryMetrics = new DiscoveryMetrics();
+            azureClusterDiscoveryCallback = new AzureClusterDiscoveryCallback(configReader, discoveryMetrics);
             Services.clusterService().addDiscoveryCallback(azureClusterDiscoveryCallback);
+            discoveryMetrics.registerIn(Services.metricRegistry());
             log.debug("Registered Azure Cluster Discovery Callback successfully.");
         } catch (final UnsupportedOperationException e) {
             extensionStartOutput.preventExtensionStartup(e.getMessage());
@@ -59,8 +64,12 @@ public class AzureClusterDiscoveryExtensionMain implements ExtensionMain {
     public void extensionStop(
             final @NotNull ExtensionStopInput extensionStopInput,
             final @NotNull ExtensionStopOutput extensionStopOutput) {
+        if (configReader != null) {
+            configReader.close();
+        }
         if (azureClusterDiscoveryCallback != null) {
             Services.clusterService().removeDiscoveryCallback(azureClusterDiscoveryCallback);
+            Services.metricRegistry().removeMatching(MetricFilter.startsWith(DiscoveryMetrics.METRIC_PREFIX));
         }
     }
 }
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2021-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hivemq.extensions.cluster.discovery.azure.callback;
+
+import com.azure.storage.blob.models.BlobItem;
+import com.hivemq.extension.sdk.api.services.cluster.parameter.ClusterDiscoveryInput;
+import com.hivemq.extension.sdk.api.services.cluster.parameter.ClusterNodeAddress;
+import com.hivemq.extensions.cluster.discovery.azure.client.AzureStorageAsyncClient;
+import com.hivemq.extensions.cluster.discovery.azure.client.AzureStorageClient;
+import com.hivemq.extensions.cluster.discovery.azure.client.ContainerNotFoundException;
+import com.hivemq.extensions.cluster.discovery.azure.config.ClusterNodeFile;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.hivemq.extensions.cluster.discovery.azure.util.ExceptionUtil.getRootCause;
+
+/**
+ * Runs a complete discovery cycle as one non-blocking pipeline on the {@link AzureStorageAsyncClient}: ensure the
+ * container, update the own node file, list the node files, download them in parallel, drop the expired ones. Only the
+ * final result is awaited. The node files that were not read until the reload deadline are skipped. If the container
+ * was deleted in the meantime, it is recreated and the cycle is retried once. The expired node files are deleted by
+ * the callback after the result was provided.
+ */
+class AsyncDiscoveryEngine {
+
+    private static final @NotNull Logger log = LoggerFactory.getLogger(AsyncDiscoveryEngine.class);
+    private static final @NotNull Duration ASYNC_TIMEOUT_GRACE = Duration.ofSeconds(5);
+
+    // the layout, the parsing and the cache of the node files are shared with the blocking engine of the callback
+    private final @NotNull AzureClusterDiscoveryCallback callback;
+    private final @NotNull AzureStorageClient azureStorageClient;
+    private final @NotNull OwnNodeFile ownNodeFile;
+    private final @NotNull DiscoveryCycle cycle;
+    private final @NotNull Clock clock;
+
+    AsyncDiscoveryEngine(
+            final @NotNull AzureClusterDiscoveryCallback callback,
+            final @NotNull AzureStorageClient azureStorageClient,
+            final @NotNull OwnNodeFile ownNodeFile,
+            final @NotNull DiscoveryCycle cycle,
+            final @NotNull Clock clock) {
+        this.callback = callback;
+        this.azureStorageClient = azureStorageClient;
+        this.ownNodeFile = ownNodeFile;
+        this.cycle = cycle;
+        this.clock = clock;
+    }
+
+    /**
+     * Runs the discovery cycle, it must already be started. If the pipeline doesn't complete in time, the node files
+     * that were read until then are returned and the cycle counts as a failed read, like in the blocking engine.
+     */
+    @NotNull List<ClusterNodeFile> discover(
+            final @NotNull ClusterDiscoveryInput clusterDiscoveryInput,
+            final boolean forceSaveOwnFile) {
+        final var asyncClient = azureStorageClient.getAsyncClient();
+        final Queue<ClusterNodeFile> nodeFiles = new ConcurrentLinkedQueue<>();
+        discoverOnce(asyncClient, clusterDiscoveryInput, forceSaveOwnFile, nodeFiles)
+                .onErrorResume(ContainerNotFoundException.class, ex -> {
+                    // the own node file was deleted together with the container, so it is saved again
+                    log.info("Azure Blob Storage Container {} doesn't exist anymore. Recreating it.",
+                            azureStorageClient.getStorageConfig().getContainerName());
+                    ownNodeFile.containerLost();
+                    return discoverOnce(asyncClient, clusterDiscoveryInput, true, nodeFiles);
+                })
+                .timeout(getTimeout())
+                .onErrorResume(TimeoutException.class, ex -> {
+                    cycle.stopAtReloadDeadline();
+                    return Mono.empty();
+                })
+                .block();
+        return new ArrayList<>(nodeFiles);
+    }
+
+    private @NotNull Mono<Void> discoverOnce(
+            final @NotNull AzureStorageAsyncClient asyncClient,
+            final @NotNull ClusterDiscoveryInput clusterDiscoveryInput,
+            final boolean forceSaveOwnFile,
+            final @NotNull Queue<ClusterNodeFile> nodeFiles) {
+        return Mono.defer(() -> {
+            cycle.restart();
+            nodeFiles.clear();
+            final var saveOwnFile = callback.isOwnFileDue(forceSaveOwnFile) ?
+                    saveOwnFile(asyncClient,
+                            clusterDiscoveryInput.getOwnClusterId(),
+                            clusterDiscoveryInput.getOwnAddress()) :
+                    Mono.<Void>empty();
+            return ensureContainer(asyncClient).then(saveOwnFile)
+                    .thenMany(getNodeFiles(asyncClient))
+                    .takeUntilOther(Mono.delay(cycle.getRemainingReloadTime())
+                            .doOnNext(ignored -> cycle.stopAtReloadDeadline()))
+                    .doOnNext(nodeFiles::add)
+                    .then();
+        });
+    }
+
+    private @NotNull Mono<Void> ensureContainer(final @NotNull AzureStorageAsyncClient asyncClient) {
+        final var containerClient = azureStorageClient.getContainerClient();
+        if (ownNodeFile.isContainerChecked(azureStorageClient, containerClient)) {
+            return Mono.empty();
+        }
+        return asyncClient.existsContainer().flatMap(exists -> {
+            if (exists) {
+                return Mono.<Void>empty();
+            }
+            log.info("Azure Blob Storage Container {} doesn't exist. Creating it.",
+                    azureStorageClient.getStorageConfig().getContainerName());
+            return asyncClient.createContainer();
+        }).then(Mono.fromRunnable(() -> ownNodeFile.setContainerChecked(azureStorageClient, containerClient)));
+    }
+
+    private @NotNull Mono<Void> saveOwnFile(
+            final @NotNull AzureStorageAsyncClient asyncClient,
+            final @NotNull String ownClusterId,
+            final @NotNull ClusterNodeAddress ownAddress) {
+        final var blobKey = callback.getNodeFileLayout().getBlobName(ownClusterId);
+        final var newNodeFile = new ClusterNodeFile(ownClusterId, ownAddress, clock.millis());
+        final var metadata =
+                azureStorageClient.getStorageConfig().isBlobMetadataEnabled() ? newNodeFile.toMetadata() : null;
+        return asyncClient.saveBlob(blobKey, callback.encodeNodeFile(newNodeFile), metadata).doOnSuccess(ignored -> {
+            ownNodeFile.setSaved(newNodeFile);
+            log.debug("Updated own Azure Blob file '{}'.", blobKey);
+        });
+    }
+
+    private @NotNull Flux<ClusterNodeFile> getNodeFiles(final @NotNull AzureStorageAsyncClient asyncClient) {
+        final var config = azureStorageClient.getStorageConfig();
+        final Set<String> blobNames = ConcurrentHashMap.newKeySet();
+        final var listingFailed = new AtomicBoolean();
+        // in the sharded layout the shards are listed in parallel, a failed listing doesn't stop the other shards
+        return Flux.fromIterable(callback.getListingPrefixes())
+                .flatMap(listingPrefix -> asyncClient.getBlobs(listingPrefix, config.isBlobMetadataEnabled())
+                        .onErrorResume(ex -> !(ex instanceof ContainerNotFoundException), ex -> {
+                            log.warn("Could not get Azure Blobs. {}", getRootCause(ex).getMessage());
+                            listingFailed.set(true);
+                            cycle.setReadFailed();
+                            return Flux.empty();
+                        }), config.getDownloadParallelism())
+                .filter(callback::isNodeFileBlob)
+                .doOnNext(blob -> blobNames.add(blob.getName()))
+                .flatMap(blob -> getNodeFile(asyncClient, blob).filter(nodeFile -> !isExpired(blob, nodeFile)),
+                        config.getDownloadParallelism())
+                .doOnComplete(() -> {
+                    if (!listingFailed.get()) {
+                        azureStorageClient.retainCachedNodeFiles(blobNames);
+                    }
+                })
+                .onErrorResume(ex -> !(ex instanceof ContainerNotFoundException), ex -> {
+                    log.warn("Could not get Azure Blobs. {}", getRootCause(ex).getMessage());
+                    cycle.setReadFailed();
+                    return Flux.empty();
+                });
+    }
+
+    private @NotNull Mono<ClusterNodeFile> getNodeFile(
+            final @NotNull AzureStorageAsyncClient asyncClient,
+            final @NotNull BlobItem blob) {
+        var nodeFile = callback.getNodeFileFromMetadata(blob);
+        if (nodeFile == null) {
+            nodeFile = azureStorageClient.getCachedNodeFile(blob);
+        }
+        if (nodeFile != null) {
+            return Mono.just(nodeFile);
+        }
+        return asyncClient.getBlobContent(blob.getName())
+                .flatMap(fileContent -> Mono.justOrEmpty(callback.parseNodeFile(blob, fileContent, true)))
+                .onErrorResume(ex -> {
+                    log.warn("An error occurred while downloading the Azure Blob. {}", getRootCause(ex).getMessage());
+                    cycle.setReadFailed();
+                    return Mono.empty();
+                });
+    }
+
+    private boolean isExpired(final @NotNull BlobItem blob, final @NotNull ClusterNodeFile nodeFile) {
+        if (!nodeFile.isExpired(azureStorageClient.getStorageConfig().getFileExpirationInSeconds(), clock.millis())) {
+            return false;
+        }
+        log.debug("Azure Blob of node with clusterId {} is expired. Blob will be deleted.", nodeFile.getClusterId());
+        cycle.addExpiredBlobName(blob.getName());
+        return true;
+    }
+
+    private @NotNull Duration getTimeout() {
+        // the pipeline completes at the reload deadline, the grace only covers cancelling the running requests
+        return cycle.getRemainingReloadTime().plus(ASYNC_TIMEOUT_GRACE);
+    }
+}
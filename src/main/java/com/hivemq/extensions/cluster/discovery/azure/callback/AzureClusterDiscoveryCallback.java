@@ -18,23 +18,45 @@ package com.hivemq.extensions.cluster.discovery.azure.callback;
 
 import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.LoggerContext;
+import com.azure.storage.blob.BlobContainerClient;
 import com.azure.storage.blob.models.BlobItem;
 import com.hivemq.extension.sdk.api.services.cluster.ClusterDiscoveryCallback;
 import com.hivemq.extension.sdk.api.services.cluster.parameter.ClusterDiscoveryInput;
 import com.hivemq.extension.sdk.api.services.cluster.parameter.ClusterDiscoveryOutput;
 import com.hivemq.extension.sdk.api.services.cluster.parameter.ClusterNodeAddress;
 import com.hivemq.extensions.cluster.discovery.azure.client.AzureStorageClient;
+import com.hivemq.extensions.cluster.discovery.azure.client.ContainerNotFoundException;
+import com.hivemq.extensions.cluster.discovery.azure.config.AzureDiscoveryConfig;
 import com.hivemq.extensions.cluster.discovery.azure.config.ClusterNodeFile;
 import com.hivemq.extensions.cluster.discovery.azure.config.ConfigReader;
+import com.hivemq.extensions.cluster.discovery.azure.config.NodeFileLayout;
+import com.hivemq.extensions.cluster.discovery.azure.metrics.DiscoveryMetrics;
+import com.hivemq.extensions.cluster.discovery.azure.store.DiscoveryStore;
+import com.hivemq.extensions.cluster.discovery.azure.store.ReplicatedDiscoveryStore;
+import com.hivemq.extensions.cluster.discovery.azure.util.NamedThreadFactory;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.Clock;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.LongSupplier;
 
-import static com.hivemq.extensions.cluster.discovery.azure.util.StringUtil.isNullOrBlank;
+import static com.hivemq.extensions.cluster.discovery.azure.util.ExceptionUtil.getRootCause;
+import static java.nio.charset.StandardCharsets.UTF_8;
 
 /**
  * @author Till Seeberger
@@ -42,17 +64,103 @@ import static com.hivemq.extensions.cluster.discovery.azure.util.StringUtil.isNu
 public class AzureClusterDiscoveryCallback implements ClusterDiscoveryCallback {
 
     private static final @NotNull Logger log = LoggerFactory.getLogger(AzureClusterDiscoveryCallback.class);
+    // discovery cycles that publish the last complete node view or are skipped by the open circuit breaker are
+    // retried at least this often
+    private static final int STALE_RETRY_INTERVAL_IN_SECONDS = 10;
 
+    // reads the configuration and caches the node files, also if the Blobs are kept in another store
     private final @NotNull AzureStorageClient azureStorageClient;
+    private final @NotNull DiscoveryStore store;
+    private final @NotNull DiscoveryMetrics metrics;
+    // the clients of the replica connection strings, the Blobs are replicated to them and the Azure Storage Client
+    private final @NotNull List<AzureStorageClient> replicaClients = new ArrayList<>();
+    private @Nullable List<BlobContainerClient> replicatedContainerClients;
+    private volatile @Nullable ReplicatedDiscoveryStore replicatedStore;
+    // the wall clock of the node file timestamps and the monotonic clock of all durations, virtual in simulations
+    private final @NotNull Clock clock;
+    private final @NotNull LongSupplier nanoClock;
 
-    private @Nullable ClusterNodeFile ownNodeFile;
+    // saved by the discovery cycles and the heartbeat
+    private final @NotNull OwnNodeFile ownNodeFile = new OwnNodeFile();
+    private final @NotNull Heartbeat heartbeat = new Heartbeat();
+    private final @NotNull LeaseRenewal leaseRenewal;
+    private final @NotNull Manifest manifest;
+    private final @NotNull Janitor janitor;
+    private final @NotNull DiscoveryCycle cycle;
+    private final @NotNull AsyncDiscoveryEngine asyncEngine;
+    private @Nullable ThreadPoolExecutor downloadExecutor;
+    // the reload interval of the fast join after the start, 0 once the fast join ended
+    private int fastJoinIntervalInSeconds;
+    private int fastJoinStableCycles;
+    private @Nullable Set<ClusterNodeAddress> fastJoinNodeAddresses;
+    // the hash of the own cluster ID, it spreads the reloads and heartbeats of the nodes across the interval
+    private int phaseHash;
+    private boolean phaseOffsetPending;
+    // the layout of the own node file, and the layout before the file prefix or the shard count was changed, which is
+    // still listed until the node files that were written with it expired
+    private volatile @Nullable NodeFileLayout nodeFileLayout;
+    private volatile @Nullable NodeFileLayout previousNodeFileLayout;
+    private long previousNodeFileLayoutExpiryInMillis;
+    // the nodes by cluster ID of the last discovery cycle that read all node files
+    private @Nullable Map<String, ClusterNodeAddress> lastCompleteMembership;
+    private long lastCompleteNanos;
+    // the nodes by cluster ID that were provided to HiveMQ last, null until the first nodes were provided
+    private @Nullable Map<String, ClusterNodeAddress> publishedMembership;
 
     public AzureClusterDiscoveryCallback(final @NotNull ConfigReader configReader) {
-        this(new AzureStorageClient(configReader));
+        this(configReader, new DiscoveryMetrics());
+    }
+
+    public AzureClusterDiscoveryCallback(
+            final @NotNull ConfigReader configReader,
+            final @NotNull DiscoveryMetrics metrics) {
+        this(new AzureStorageClient(configReader, metrics), metrics);
+    }
+
+    /**
+     * Creates a callback that keeps the Blobs of the discovery in the given store instead of the configured Azure
+     * Storage Account, e.g. to simulate or benchmark the discovery of large clusters.
+     */
+    public AzureClusterDiscoveryCallback(
+            final @NotNull ConfigReader configReader,
+            final @NotNull DiscoveryStore store,
+            final @NotNull DiscoveryMetrics metrics) {
+        this(new AzureStorageClient(configReader, metrics), store, metrics);
     }
 
     AzureClusterDiscoveryCallback(final @NotNull AzureStorageClient azureStorageClient) {
+        this(azureStorageClient, new DiscoveryMetrics());
+    }
+
+    AzureClusterDiscoveryCallback(
+            final @NotNull AzureStorageClient azureStorageClient,
+            final @NotNull DiscoveryMetrics metrics) {
+        this(azureStorageClient, azureStorageClient, metrics);
+    }
+
+    AzureClusterDiscoveryCallback(
+            final @NotNull AzureStorageClient azureStorageClient,
+            final @NotNull DiscoveryStore store,
+            final @NotNull DiscoveryMetrics metrics) {
+        this(azureStorageClient, store, metrics, Clock.systemUTC(), System::nanoTime);
+    }
+
+    AzureClusterDiscoveryCallback(
+            final @NotNull AzureStorageClient azureStorageClient,
+            final @NotNull DiscoveryStore store,
+            final @NotNull DiscoveryMetrics metrics,
+            final @NotNull Clock clock,
+            final @NotNull LongSupplier nanoClock) {
         this.azureStorageClient = azureStorageClient;
+        this.store = store;
+        this.metrics = metrics;
+        this.clock = clock;
+        this.nanoClock = nanoClock;
+        leaseRenewal = new LeaseRenewal(azureStorageClient);
+        cycle = new DiscoveryCycle(nanoClock);
+        manifest = new Manifest(azureStorageClient, cycle, clock);
+        janitor = new Janitor(azureStorageClient);
+        asyncEngine = new AsyncDiscoveryEngine(this, azureStorageClient, ownNodeFile, cycle, clock);
     }
 
     @Override
@@ -62,136 +170,794 @@ public class AzureClusterDiscoveryCallback implements ClusterDiscoveryCallback {
         final var loggerContext = (LoggerContext) LoggerFactory.getILoggerFactory();
         loggerContext.getLogger("com.azure").setLevel(Level.OFF);
         loggerContext.getLogger("reactor").setLevel(Level.OFF);
+        final var startNanos = nanoClock.getAsLong();
         try {
-            azureStorageClient.createOrUpdate();
+            createOrUpdateStore();
         } catch (final IllegalStateException | IllegalArgumentException ex) {
             log.warn("Initialization of the Azure Cluster Discovery Callback failed. {}",
                     getRootCause(ex).getMessage());
             return;
         }
-        clusterDiscoveryOutput
-                .setReloadInterval(azureStorageClient.getStorageConfig().getFileUpdateIntervalInSeconds());
+        publishedMembership = null;
+        startFastJoin();
+        startPhaseOffset(clusterDiscoveryInput.getOwnClusterId());
+        scheduleHeartbeat(clusterDiscoveryInput);
+        scheduleLeaseRenewal();
+        if (skipWhileCircuitOpen(clusterDiscoveryOutput)) {
+            return;
+        }
+        final List<ClusterNodeFile> nodeFiles;
         try {
-            if (!azureStorageClient.existsContainer()) {
-                log.info("Azure Blob Storage Container {} doesn't exist. Creating it.",
-                        azureStorageClient.getStorageConfig().getContainerName());
-                azureStorageClient.createContainer();
-            }
-            saveOwnFile(clusterDiscoveryInput.getOwnClusterId(), clusterDiscoveryInput.getOwnAddress());
-            clusterDiscoveryOutput.provideCurrentNodes(getNodeAddresses());
+            cycle.start(azureStorageClient.getStorageConfig().getReloadDeadlineInSeconds());
+            nodeFiles = isAsyncEngine() ?
+                    asyncEngine.discover(clusterDiscoveryInput, true) :
+                    discover(clusterDiscoveryInput, true);
         } catch (final Exception ex) {
             log.warn("Initialization of the Azure Cluster Discovery Callback failed. {}",
                     getRootCause(ex).getMessage());
+            setReloadInterval(clusterDiscoveryOutput, getNextReloadIntervalInSeconds(null));
+            return;
         }
+        provideCurrentNodes(clusterDiscoveryOutput, nodeFiles);
+        updateMetrics(nodeFiles, startNanos);
+        janitor.deleteExpiredNodeFiles(cycle, getStore(), isJanitorEnabled());
     }
 
     @Override
     public void reload(
             final @NotNull ClusterDiscoveryInput clusterDiscoveryInput,
             final @NotNull ClusterDiscoveryOutput clusterDiscoveryOutput) {
+        final var startNanos = nanoClock.getAsLong();
         try {
-            azureStorageClient.createOrUpdate();
+            createOrUpdateStore();
         } catch (final IllegalStateException | IllegalArgumentException ex) {
             log.warn("Reload of the Azure Cluster Discovery Callback failed. {}", getRootCause(ex).getMessage());
             return;
         }
-        clusterDiscoveryOutput
-                .setReloadInterval(azureStorageClient.getStorageConfig().getFileUpdateIntervalInSeconds());
+        scheduleHeartbeat(clusterDiscoveryInput);
+        scheduleLeaseRenewal();
+        if (skipWhileCircuitOpen(clusterDiscoveryOutput)) {
+            return;
+        }
+        final List<ClusterNodeFile> nodeFiles;
         try {
-            if (!azureStorageClient.existsContainer()) {
-                log.info("Azure Blob Storage Container {} doesn't exist. Creating it.",
-                        azureStorageClient.getStorageConfig().getContainerName());
-                azureStorageClient.createContainer();
-            }
-            if (ownNodeFile == null ||
-                    ownNodeFile.isExpired(azureStorageClient.getStorageConfig().getFileUpdateIntervalInSeconds())) {
-                saveOwnFile(clusterDiscoveryInput.getOwnClusterId(), clusterDiscoveryInput.getOwnAddress());
-            }
-            clusterDiscoveryOutput.provideCurrentNodes(getNodeAddresses());
+            cycle.start(azureStorageClient.getStorageConfig().getReloadDeadlineInSeconds());
+            nodeFiles = isAsyncEngine() ?
+                    asyncEngine.discover(clusterDiscoveryInput, false) :
+                    discover(clusterDiscoveryInput, false);
         } catch (final Exception ex) {
             log.warn("Reload of the Azure Cluster Discovery Callback failed. {}", getRootCause(ex).getMessage());
+            setReloadInterval(clusterDiscoveryOutput, getNextReloadIntervalInSeconds(null));
+            return;
         }
+        provideCurrentNodes(clusterDiscoveryOutput, nodeFiles);
+        updateMetrics(nodeFiles, startNanos);
+        janitor.deleteExpiredNodeFiles(cycle, getStore(), isJanitorEnabled());
     }
 
     @Override
     public void destroy(final @NotNull ClusterDiscoveryInput clusterDiscoveryInput) {
+        // the heartbeat must not save the own node file again after it was deleted
+        heartbeat.stop();
+        leaseRenewal.stop();
+        if (downloadExecutor != null) {
+            downloadExecutor.shutdownNow();
+            downloadExecutor = null;
+        }
         try {
-            if (ownNodeFile != null) {
+            azureStorageClient.releaseBlobLeases();
+            if (ownNodeFile.getSavedNodeFile() != null) {
                 deleteOwnFile(clusterDiscoveryInput.getOwnClusterId());
             }
         } catch (final RuntimeException ex) {
             log.warn("Destroy of the Azure Cluster Discovery Callback failed. {}", getRootCause(ex).getMessage());
         }
+        // the own node file was deleted from all replicas before
+        stopReplicas();
+    }
+
+    private @NotNull List<ClusterNodeFile> discover(
+            final @NotNull ClusterDiscoveryInput clusterDiscoveryInput,
+            final boolean forceSaveOwnFile) {
+        ensureContainer();
+        try {
+            if (isOwnFileDue(forceSaveOwnFile)) {
+                saveOwnFile(clusterDiscoveryInput.getOwnClusterId(), clusterDiscoveryInput.getOwnAddress());
+            }
+            return getCurrentNodeFiles(clusterDiscoveryInput);
+        } catch (final ContainerNotFoundException ex) {
+            // the own node file was deleted together with the container, so it is saved again
+            log.info("Azure Blob Storage Container {} doesn't exist anymore. Recreating it.",
+                    azureStorageClient.getStorageConfig().getContainerName());
+            ownNodeFile.containerLost();
+            cycle.restart();
+            ensureContainer();
+            saveOwnFile(clusterDiscoveryInput.getOwnClusterId(), clusterDiscoveryInput.getOwnAddress());
+            return getCurrentNodeFiles(clusterDiscoveryInput);
+        }
+    }
+
+    /**
+     * Skips the discovery cycle while the circuit breaker of the Azure Storage Account is open, so a throttling account
+     * doesn't get the requests of every cycle. The nodes of the last complete discovery cycle are provided instead. The
+     * cycle is retried soon, so the probe request is sent shortly after the breaker lets it through.
+     */
+    private boolean skipWhileCircuitOpen(final @NotNull ClusterDiscoveryOutput clusterDiscoveryOutput) {
+        if (!isCircuitOpen()) {
+            return false;
+        }
+        final var currentLastCompleteMembership = lastCompleteMembership;
+        if (currentLastCompleteMembership != null) {
+            log.debug("Circuit breaker for the Azure Storage Account is open. Providing the last complete node view.");
+            publishMembership(clusterDiscoveryOutput, currentLastCompleteMembership);
+        } else {
+            log.debug("Circuit breaker for the Azure Storage Account is open. Skipping the discovery cycle.");
+        }
+        setReloadInterval(clusterDiscoveryOutput, getStaleRetryIntervalInSeconds());
+        return true;
+    }
+
+    private boolean isCircuitOpen() {
+        // the discovery continues on the replicas while only some of the Azure Storage Accounts are throttling
+        if (!azureStorageClient.isCircuitOpen()) {
+            return false;
+        }
+        return replicatedStore == null || replicaClients.stream().allMatch(AzureStorageClient::isCircuitOpen);
+    }
+
+    /**
+     * Provides the discovered nodes to HiveMQ. If the listing or a download of node files failed, the discovered nodes
+     * may miss healthy nodes. In this case the nodes of the last complete discovery cycle are provided together with
+     * the discovered nodes, as long as the last complete discovery cycle is not older than the configured maximum
+     * staleness, and the discovery cycle is retried soon.
+     */
+    private void provideCurrentNodes(
+            final @NotNull ClusterDiscoveryOutput clusterDiscoveryOutput,
+            final @NotNull List<ClusterNodeFile> nodeFiles) {
+        final var membership = toMembership(nodeFiles);
+        log.debug("Found following node addresses with the Azure Cluster Discovery Extension: {}",
+                membership.values());
+        if (!cycle.isReadFailed()) {
+            lastCompleteMembership = membership;
+            lastCompleteNanos = nanoClock.getAsLong();
+            publishMembership(clusterDiscoveryOutput, membership);
+            setReloadInterval(clusterDiscoveryOutput,
+                    getNextReloadIntervalInSeconds(new ArrayList<>(membership.values())));
+            return;
+        }
+        final var maxStalenessInSeconds = azureStorageClient.getStorageConfig().getMaxStalenessInSeconds();
+        final var currentLastCompleteMembership = lastCompleteMembership;
+        if (currentLastCompleteMembership == null ||
+                maxStalenessInSeconds == 0 ||
+                nanoClock.getAsLong() - lastCompleteNanos > TimeUnit.SECONDS.toNanos(maxStalenessInSeconds)) {
+            log.warn("Not all Azure Blob files could be read and no recent complete node view is available. " +
+                    "Providing the {} nodes found.", membership.size());
+            publishMembership(clusterDiscoveryOutput, membership);
+            setReloadInterval(clusterDiscoveryOutput, getNextReloadIntervalInSeconds(null));
+            return;
+        }
+        final var staleMembership = new LinkedHashMap<>(currentLastCompleteMembership);
+        staleMembership.putAll(membership);
+        log.warn("Not all Azure Blob files could be read. Providing the last complete node view of {} seconds ago.",
+                TimeUnit.NANOSECONDS.toSeconds(nanoClock.getAsLong() - lastCompleteNanos));
+        publishMembership(clusterDiscoveryOutput, staleMembership);
+        setReloadInterval(clusterDiscoveryOutput, getStaleRetryIntervalInSeconds());
+    }
+
+    /**
+     * Compares the nodes with the nodes that were provided to HiveMQ last and logs every node that joined or left the
+     * cluster. A node whose address changed left with the old address and joined with the new one. If only changes are
+     * published, an unchanged node view is not provided again and HiveMQ keeps the nodes that were provided last.
+     */
+    private void publishMembership(
+            final @NotNull ClusterDiscoveryOutput clusterDiscoveryOutput,
+            final @NotNull Map<String, ClusterNodeAddress> membership) {
+        final var previousMembership = publishedMembership;
+        if (previousMembership != null) {
+            var leftNodes = 0;
+            for (final var entry : previousMembership.entrySet()) {
+                if (!entry.getValue().equals(membership.get(entry.getKey()))) {
+                    leftNodes++;
+                    log.info("Cluster node left: clusterId={}, address={}:{}",
+                            entry.getKey(),
+                            entry.getValue().getHost(),
+                            entry.getValue().getPort());
+                }
+            }
+            var joinedNodes = 0;
+            for (final var entry : membership.entrySet()) {
+                if (!entry.getValue().equals(previousMembership.get(entry.getKey()))) {
+                    joinedNodes++;
+                    log.info("Cluster node joined: clusterId={}, address={}:{}",
+                            entry.getKey(),
+                            entry.getValue().getHost(),
+                            entry.getValue().getPort());
+                }
+            }
+            metrics.addMembershipChanges(joinedNodes, leftNodes);
+            if (joinedNodes == 0 && leftNodes == 0 && azureStorageClient.getStorageConfig().isPublishChangesOnly()) {
+                log.debug("The discovered nodes did not change. Not providing them to HiveMQ again.");
+                metrics.addSkippedPublish();
+                return;
+            }
+        }
+        clusterDiscoveryOutput.provideCurrentNodes(new ArrayList<>(membership.values()));
+        publishedMembership = membership;
+    }
+
+    static @NotNull Map<String, ClusterNodeAddress> toMembership(
+            final @NotNull List<ClusterNodeFile> nodeFiles) {
+        final var membership = new LinkedHashMap<String, ClusterNodeAddress>();
+        for (final var nodeFile : nodeFiles) {
+            membership.put(nodeFile.getClusterId(), nodeFile.getClusterNodeAddress());
+        }
+        return membership;
+    }
+
+    private int getStaleRetryIntervalInSeconds() {
+        final var reloadIntervalInSeconds = getNextReloadIntervalInSeconds(null);
+        return reloadIntervalInSeconds > 0 ?
+                Math.min(reloadIntervalInSeconds, STALE_RETRY_INTERVAL_IN_SECONDS) :
+                STALE_RETRY_INTERVAL_IN_SECONDS;
+    }
+
+    private void updateMetrics(final @NotNull List<ClusterNodeFile> nodeFiles, final long startNanos) {
+        metrics.setDiscoveredNodes(nodeFiles.size());
+        metrics.setExpiredNodes(cycle.getExpiredBlobCount());
+        metrics.setLastReloadDuration(nanoClock.getAsLong() - startNanos);
+    }
+
+    private void startFastJoin() {
+        fastJoinIntervalInSeconds = azureStorageClient.getStorageConfig().isFastJoinEnabled() ? 1 : 0;
+        fastJoinStableCycles = 0;
+        fastJoinNodeAddresses = null;
+    }
+
+    private void startPhaseOffset(final @NotNull String ownClusterId) {
+        phaseHash = ownClusterId.hashCode();
+        phaseOffsetPending = azureStorageClient.getStorageConfig().isPhaseOffsetEnabled();
+    }
+
+    /**
+     * Sets the interval until the next reload. Nodes that start together would otherwise read the container at the same
+     * moments, so the first regular interval after the start is shortened to the phase offset of this node, and every
+     * interval is varied by the configured jitter.
+     */
+    private void setReloadInterval(
+            final @NotNull ClusterDiscoveryOutput clusterDiscoveryOutput,
+            final int reloadIntervalInSeconds) {
+        clusterDiscoveryOutput.setReloadInterval(spreadReloadInterval(reloadIntervalInSeconds));
+    }
+
+    private int spreadReloadInterval(final int reloadIntervalInSeconds) {
+        if (reloadIntervalInSeconds <= 0) {
+            return reloadIntervalInSeconds;
+        }
+        // the phase offset is applied once the fast join reached the read interval
+        if (phaseOffsetPending &&
+                fastJoinIntervalInSeconds == 0 &&
+                reloadIntervalInSeconds == getReadIntervalInSeconds()) {
+            phaseOffsetPending = false;
+            final var phaseOffsetInSeconds = Math.floorMod(phaseHash, reloadIntervalInSeconds);
+            if (phaseOffsetInSeconds > 0) {
+                log.debug("Shifting the reloads by a phase offset of {} seconds.", phaseOffsetInSeconds);
+                return phaseOffsetInSeconds;
+            }
+        }
+        final var maxJitterInSeconds =
+                Math.round(reloadIntervalInSeconds * azureStorageClient.getStorageConfig().getReloadJitter() / 100.0);
+        if (maxJitterInSeconds == 0) {
+            return reloadIntervalInSeconds;
+        }
+        final var jitterInSeconds = ThreadLocalRandom.current().nextLong(-maxJitterInSeconds, maxJitterInSeconds + 1);
+        return (int) Math.max(1, reloadIntervalInSeconds + jitterInSeconds);
+    }
+
+    /**
+     * During the fast join after the start, the reload interval starts at one second and is doubled after every
+     * discovery cycle until it reaches the read interval. The fast join ends early once the discovered nodes stayed the
+     * same for the configured number of cycles. A failed discovery cycle is retried with the current interval.
+     */
+    private int getNextReloadIntervalInSeconds(final @Nullable List<ClusterNodeAddress> nodeAddresses) {
+        final var config = azureStorageClient.getStorageConfig();
+        final var readIntervalInSeconds = getReadIntervalInSeconds();
+        if (fastJoinIntervalInSeconds == 0) {
+            return readIntervalInSeconds;
+        }
+        if (!config.isFastJoinEnabled() || fastJoinIntervalInSeconds >= readIntervalInSeconds) {
+            fastJoinIntervalInSeconds = 0;
+            return readIntervalInSeconds;
+        }
+        if (nodeAddresses == null) {
+            return fastJoinIntervalInSeconds;
+        }
+        final var currentNodeAddresses = new HashSet<>(nodeAddresses);
+        if (currentNodeAddresses.equals(fastJoinNodeAddresses)) {
+            fastJoinStableCycles++;
+        } else {
+            fastJoinStableCycles = 0;
+            fastJoinNodeAddresses = currentNodeAddresses;
+        }
+        if (fastJoinStableCycles >= config.getFastJoinStableCycles()) {
+            log.debug("Fast join ended after the discovered nodes stayed the same for {} discovery cycles.",
+                    fastJoinStableCycles);
+            fastJoinIntervalInSeconds = 0;
+            fastJoinNodeAddresses = null;
+            return readIntervalInSeconds;
+        }
+        final var reloadIntervalInSeconds = fastJoinIntervalInSeconds;
+        fastJoinIntervalInSeconds = Math.min(reloadIntervalInSeconds * 2, readIntervalInSeconds);
+        return reloadIntervalInSeconds;
+    }
+
+    boolean isOwnFileDue(final boolean forceSaveOwnFile) {
+        final var currentOwnNodeFile = ownNodeFile.getSavedNodeFile();
+        if (forceSaveOwnFile || currentOwnNodeFile == null) {
+            return true;
+        }
+        // a separate heartbeat saves the own node file on its own schedule
+        return !isHeartbeatSeparate() && currentOwnNodeFile.isExpired(getHeartbeatIntervalInSeconds(), clock.millis());
+    }
+
+    private int getReadIntervalInSeconds() {
+        final var config = azureStorageClient.getStorageConfig();
+        final var readIntervalInSeconds = config.getReadIntervalInSeconds();
+        return readIntervalInSeconds != null ? readIntervalInSeconds : config.getFileUpdateIntervalInSeconds();
+    }
+
+    private int getHeartbeatIntervalInSeconds() {
+        final var config = azureStorageClient.getStorageConfig();
+        final var heartbeatIntervalInSeconds = config.getHeartbeatIntervalInSeconds();
+        return heartbeatIntervalInSeconds != null ?
+                heartbeatIntervalInSeconds :
+                config.getFileUpdateIntervalInSeconds();
+    }
+
+    private boolean isHeartbeatSeparate() {
+        final var heartbeatIntervalInSeconds = getHeartbeatIntervalInSeconds();
+        return heartbeatIntervalInSeconds > 0 && heartbeatIntervalInSeconds != getReadIntervalInSeconds();
+    }
+
+    /**
+     * Starts, reschedules or stops the heartbeat that saves the own node file independently of the discovery cycles.
+     */
+    private void scheduleHeartbeat(final @NotNull ClusterDiscoveryInput clusterDiscoveryInput) {
+        if (!isHeartbeatSeparate()) {
+            heartbeat.stop();
+            return;
+        }
+        final var heartbeatIntervalInSeconds = getHeartbeatIntervalInSeconds();
+        final var ownClusterId = clusterDiscoveryInput.getOwnClusterId();
+        final var ownAddress = clusterDiscoveryInput.getOwnAddress();
+        final var phaseOffsetInSeconds = azureStorageClient.getStorageConfig().isPhaseOffsetEnabled() ?
+                Math.floorMod(ownClusterId.hashCode(), heartbeatIntervalInSeconds) :
+                0;
+        heartbeat.schedule(() -> heartbeat(ownClusterId, ownAddress),
+                heartbeatIntervalInSeconds,
+                phaseOffsetInSeconds);
+    }
+
+    private void scheduleLeaseRenewal() {
+        if (isManifestEnabled() || isJanitorEnabled()) {
+            leaseRenewal.start();
+        } else {
+            leaseRenewal.stop();
+        }
+    }
+
+    private void heartbeat(final @NotNull String ownClusterId, final @NotNull ClusterNodeAddress ownAddress) {
+        try {
+            saveOwnFile(ownClusterId, ownAddress);
+        } catch (final ContainerNotFoundException ex) {
+            // the next discovery cycle recreates the container and saves the own node file again
+            log.info("Azure Blob Storage Container {} doesn't exist anymore. It is recreated on the next reload.",
+                    azureStorageClient.getStorageConfig().getContainerName());
+            ownNodeFile.containerLost();
+        } catch (final RuntimeException ex) {
+            log.warn("Heartbeat of the Azure Cluster Discovery Callback failed. {}", getRootCause(ex).getMessage());
+        }
+    }
+
+    private void ensureContainer() {
+        // the container client is replaced if the Azure Storage Client is rebuilt, other stores keep their container
+        ownNodeFile.ensureContainer(getStore(),
+                isAzureStore() ? azureStorageClient.getContainerClient() : null,
+                azureStorageClient.getStorageConfig().getContainerName());
+    }
+
+    private @NotNull DiscoveryStore getStore() {
+        final var replicatedStore = this.replicatedStore;
+        return replicatedStore != null ? replicatedStore : store;
+    }
+
+    private boolean isAzureStore() {
+        // only the Azure Storage Account of the connection string without replicas
+        return getStore() == azureStorageClient;
+    }
+
+    private boolean isAzureStorageAccount() {
+        // the Azure Storage Account of the connection string, also if the Blobs are replicated to further accounts
+        return store == azureStorageClient;
+    }
+
+    private void createOrUpdateStore() {
+        if (store == azureStorageClient) {
+            azureStorageClient.createOrUpdate();
+            updateReplicas();
+        } else {
+            azureStorageClient.updateConfiguration();
+        }
+        updateNodeFileLayout();
+    }
+
+    /**
+     * Keeps the previous layout of the node files if the file prefix or the shard count was changed in the
+     * configuration. The nodes that didn't read the changed configuration yet still write their node files with the
+     * previous layout, and the node files of this node and of stopped nodes are left there. So the previous layout is
+     * also listed until all node files that were written with it expired, its expired node files are deleted like all
+     * others.
+     */
+    private void updateNodeFileLayout() {
+        final var config = azureStorageClient.getStorageConfig();
+        final var currentLayout = new NodeFileLayout(config.getFilePrefix(), config.getShardCount());
+        final var lastLayout = nodeFileLayout;
+        final var nowInMillis = clock.millis();
+        if (lastLayout != null && !lastLayout.equals(currentLayout)) {
+            final var fileExpirationInSeconds = config.getFileExpirationInSeconds();
+            // without a file expiration the node files of the previous layout are listed until the next restart
+            previousNodeFileLayout = lastLayout;
+            previousNodeFileLayoutExpiryInMillis = fileExpirationInSeconds > 0 ?
+                    nowInMillis + TimeUnit.SECONDS.toMillis(fileExpirationInSeconds) :
+                    Long.MAX_VALUE;
+            log.info("The node file layout changed from '{}' to '{}'. The previous layout is still listed until its " +
+                    "node files expired.", lastLayout, currentLayout);
+        } else if (previousNodeFileLayout != null && nowInMillis >= previousNodeFileLayoutExpiryInMillis) {
+            log.debug("The node files of the previous layout '{}' expired, it is not listed anymore.",
+                    previousNodeFileLayout);
+            previousNodeFileLayout = null;
+        }
+        nodeFileLayout = currentLayout;
+    }
+
+    /**
+     * Creates or updates the clients of the configured replica connection strings with the configuration that was read
+     * for this reload. The replicated store is only rebuilt if a client of an Azure Storage Account was rebuilt, so the
+     * latencies of the replicas are kept.
+     */
+    private void updateReplicas() {
+        final var config = azureStorageClient.getStorageConfig();
+        final var replicaCount = AzureStorageClient.getReplicaConnectionStrings(config).size();
+        while (replicaClients.size() > replicaCount) {
+            replicaClients.remove(replicaClients.size() - 1);
+        }
+        while (replicaClients.size() < replicaCount) {
+            replicaClients.add(new AzureStorageClient(azureStorageClient.getConfigReader(),
+                    metrics,
+                    replicaClients.size() + 1));
+        }
+        if (replicaClients.isEmpty()) {
+            stopReplicas();
+            return;
+        }
+        final var containerClients = new ArrayList<BlobContainerClient>(replicaClients.size() + 1);
+        containerClients.add(azureStorageClient.getContainerClient());
+        for (final var replicaClient : replicaClients) {
+            replicaClient.createOrUpdate(config);
+            containerClients.add(replicaClient.getContainerClient());
+        }
+        var replicatedStore = this.replicatedStore;
+        if (replicatedStore == null || !containerClients.equals(replicatedContainerClients)) {
+            if (replicatedStore != null) {
+                replicatedStore.shutdown();
+            }
+            final var replicas = new ArrayList<DiscoveryStore>(replicaClients.size() + 1);
+            replicas.add(azureStorageClient);
+            replicas.addAll(replicaClients);
+            replicatedStore = new ReplicatedDiscoveryStore(replicas, metrics);
+            replicatedContainerClients = containerClients;
+            log.debug("Replicating the Azure Blob files to {} further Azure Storage Accounts.", replicaCount);
+        }
+        replicatedStore.configure(AzureDiscoveryConfig.REPLICA_READ_MODE_MERGE.equals(config.getReplicaReadMode()),
+                config.getReplicaHedgeDelayInMillis(),
+                config.getDownloadParallelism());
+        this.replicatedStore = replicatedStore;
+    }
+
+    private void stopReplicas() {
+        final var replicatedStore = this.replicatedStore;
+        if (replicatedStore != null) {
+            replicatedStore.shutdown();
+        }
+        this.replicatedStore = null;
+        replicatedContainerClients = null;
     }
 
     private void saveOwnFile(final @NotNull String ownClusterId, final @NotNull ClusterNodeAddress ownAddress)
             throws RuntimeException {
-        final var blobKey = azureStorageClient.getStorageConfig().getFilePrefix() + ownClusterId;
-        final var newNodeFile = new ClusterNodeFile(ownClusterId, ownAddress);
-        azureStorageClient.saveBlob(blobKey, newNodeFile.toString());
-        ownNodeFile = newNodeFile;
+        final var blobKey = getNodeFileLayout().getBlobName(ownClusterId);
+        final var newNodeFile = new ClusterNodeFile(ownClusterId, ownAddress, clock.millis());
+        final var metadata = azureStorageClient.getStorageConfig().isBlobMetadataEnabled() ?
+                newNodeFile.toMetadata() :
+                null;
+        ownNodeFile.save(getStore(), blobKey, newNodeFile, encodeNodeFile(newNodeFile), metadata);
         log.debug("Updated own Azure Blob file '{}'.", blobKey);
     }
 
+    byte @NotNull [] encodeNodeFile(final @NotNull ClusterNodeFile nodeFile) {
+        // readers understand both content versions, the configured version only selects what this node writes
+        if (AzureDiscoveryConfig.CONTENT_VERSION_BINARY.equals(azureStorageClient.getStorageConfig()
+                .getContentVersion())) {
+            return nodeFile.toBinary();
+        }
+        return nodeFile.toString().getBytes(UTF_8);
+    }
+
     private void deleteOwnFile(final @NotNull String ownClusterId) throws RuntimeException {
-        final var blobKey = azureStorageClient.getStorageConfig().getFilePrefix() + ownClusterId;
-        azureStorageClient.deleteBlob(blobKey);
-        ownNodeFile = null;
+        final var blobKey = getNodeFileLayout().getBlobName(ownClusterId);
+        ownNodeFile.delete(getStore(), blobKey);
         log.debug("Removed own Azure Blob file '{}'.", blobKey);
     }
 
-    private @NotNull List<ClusterNodeAddress> getNodeAddresses() {
-        final var nodeAddresses = new ArrayList<ClusterNodeAddress>();
-        final List<ClusterNodeFile> nodeFiles;
+    private @NotNull List<ClusterNodeFile> getCurrentNodeFiles(
+            final @NotNull ClusterDiscoveryInput clusterDiscoveryInput) {
+        if (isManifestEnabled()) {
+            return manifest.getNodeFiles(clusterDiscoveryInput.getOwnClusterId(),
+                    clusterDiscoveryInput.getOwnAddress(),
+                    this::getActiveNodeFiles);
+        }
+        return getActiveNodeFiles();
+    }
+
+    private boolean isManifestEnabled() {
+        // the manifest and the janitor need the Blob leases of an Azure Storage Account, with replicas the leases and
+        // the manifest are kept on the Azure Storage Account of the connection string
+        return isAzureStorageAccount() && azureStorageClient.getStorageConfig().isManifestEnabled();
+    }
+
+    private boolean isJanitorEnabled() {
+        return isAzureStorageAccount() && azureStorageClient.getStorageConfig().isJanitorEnabled();
+    }
+
+    private @NotNull List<ClusterNodeFile> getActiveNodeFiles() {
+        final var activeNodeFiles = new ArrayList<ClusterNodeFile>();
+        final Map<String, ClusterNodeFile> nodeFiles;
         try {
             nodeFiles = getNodeFiles();
+        } catch (final ContainerNotFoundException e) {
+            throw e;
         } catch (final Exception e) {
             log.debug("Unknown error while reading all node files.", e);
-            return nodeAddresses;
+            cycle.setReadFailed();
+            return activeNodeFiles;
         }
-        for (final var nodeFile : nodeFiles) {
-            if (nodeFile.isExpired(azureStorageClient.getStorageConfig().getFileExpirationInSeconds())) {
+        final var fileExpirationInSeconds = azureStorageClient.getStorageConfig().getFileExpirationInSeconds();
+        final var nowInMillis = clock.millis();
+        // the Blob of the expired node file is deleted by its listed name, it may be in the previous layout
+        for (final var entry : nodeFiles.entrySet()) {
+            final var nodeFile = entry.getValue();
+            if (nodeFile.isExpired(fileExpirationInSeconds, nowInMillis)) {
                 log.debug("Azure Blob of node with clusterId {} is expired. Blob will be deleted.",
                         nodeFile.getClusterId());
-                final var blobKey = azureStorageClient.getStorageConfig().getFilePrefix() + nodeFile.getClusterId();
-                try {
-                    azureStorageClient.deleteBlob(blobKey);
-                } catch (final Exception ex) {
-                    log.warn("Could not delete expired Azure Blob file '{}'. {}", blobKey, getRootCause(ex));
-                }
+                cycle.addExpiredBlobName(entry.getKey());
             } else {
-                nodeAddresses.add(nodeFile.getClusterNodeAddress());
+                activeNodeFiles.add(nodeFile);
             }
         }
-        log.debug("Found following node addresses with the Azure Cluster Discovery Extension: {}", nodeAddresses);
-        return nodeAddresses;
+        return activeNodeFiles;
     }
 
-    private @NotNull List<ClusterNodeFile> getNodeFiles() {
-        final var clusterNodeFiles = new ArrayList<ClusterNodeFile>();
-        try {
-            final var blobs = azureStorageClient.getBlobs(azureStorageClient.getStorageConfig().getFilePrefix());
-            blobs.forEachRemaining((final var blob) -> {
+    private @NotNull Map<String, ClusterNodeFile> getNodeFiles() {
+        final var clusterNodeFiles = new LinkedHashMap<String, ClusterNodeFile>();
+        final var blobs = getNodeFileBlobs();
+        // the cached node files of Blobs that could not be listed are kept
+        final var listingFailed = cycle.isReadFailed();
+        // node files that were listed with their metadata or didn't change since the last download are not downloaded
+        final var blobNames = new HashSet<String>();
+        final var blobsToDownload = new ArrayList<BlobItem>(blobs.size());
+        for (final var blob : blobs) {
+            if (!isNodeFileBlob(blob)) {
+                continue;
+            }
+            blobNames.add(blob.getName());
+            var nodeFile = getNodeFileFromMetadata(blob);
+            if (nodeFile == null) {
+                nodeFile = azureStorageClient.getCachedNodeFile(blob);
+            }
+            if (nodeFile != null) {
+                clusterNodeFiles.put(blob.getName(), nodeFile);
+            } else {
+                blobsToDownload.add(blob);
+            }
+        }
+        if (!listingFailed) {
+            azureStorageClient.retainCachedNodeFiles(blobNames);
+        }
+        log.debug("Downloading {} of {} Azure Blobs (node file cache hits: {}, misses: {}).",
+                blobsToDownload.size(),
+                blobs.size(),
+                azureStorageClient.getNodeFileCacheHits(),
+                azureStorageClient.getNodeFileCacheMisses());
+        final int downloadParallelism = azureStorageClient.getStorageConfig().getDownloadParallelism();
+        if (downloadParallelism <= 1 || blobsToDownload.size() <= 1) {
+            for (final var blob : blobsToDownload) {
+                if (cycle.isReloadDeadlineExceeded()) {
+                    cycle.stopAtReloadDeadline();
+                    break;
+                }
                 final var nodeFile = getNodeFile(blob);
                 if (nodeFile != null) {
-                    clusterNodeFiles.add(nodeFile);
+                    clusterNodeFiles.put(blob.getName(), nodeFile);
                 }
-            });
-        } catch (final Exception ex) {
-            log.warn("Could not get Azure Blobs. {}", getRootCause(ex).getMessage());
+            }
+            return clusterNodeFiles;
+        }
+        final var executor = getDownloadExecutor(downloadParallelism);
+        final var downloads = new LinkedHashMap<String, Future<ClusterNodeFile>>();
+        for (final var blob : blobsToDownload) {
+            downloads.put(blob.getName(), executor.submit(() -> getNodeFile(blob)));
+        }
+        for (final var download : downloads.entrySet()) {
+            try {
+                final var nodeFile =
+                        download.getValue().get(cycle.getRemainingReloadTime().toNanos(), TimeUnit.NANOSECONDS);
+                if (nodeFile != null) {
+                    clusterNodeFiles.put(download.getKey(), nodeFile);
+                }
+            } catch (final TimeoutException ex) {
+                downloads.values().forEach(future -> future.cancel(true));
+                cycle.stopAtReloadDeadline();
+                break;
+            } catch (final ExecutionException ex) {
+                log.warn("An error occurred while downloading the Azure Blob. {}", getRootCause(ex).getMessage());
+                cycle.setReadFailed();
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                cycle.setReadFailed();
+                downloads.values().forEach(future -> future.cancel(true));
+                log.warn("Downloading the Azure Blobs was interrupted.");
+                break;
+            }
         }
         return clusterNodeFiles;
     }
 
+    /**
+     * Lists the Blobs of all node files. In the sharded layout every shard is listed with its own request, in parallel
+     * if the downloads are parallel. If a listing fails, the node files of the other shards are still read and the
+     * discovery cycle is marked as failed.
+     */
+    private @NotNull List<BlobItem> getNodeFileBlobs() {
+        final var listingPrefixes = getListingPrefixes();
+        final var downloadParallelism = azureStorageClient.getStorageConfig().getDownloadParallelism();
+        final var blobs = new ArrayList<BlobItem>();
+        if (downloadParallelism <= 1 || listingPrefixes.size() <= 1) {
+            for (final var listingPrefix : listingPrefixes) {
+                try {
+                    getStore().getBlobs(listingPrefix).forEachRemaining(blobs::add);
+                } catch (final ContainerNotFoundException ex) {
+                    throw ex;
+                } catch (final Exception ex) {
+                    log.warn("Could not get Azure Blobs. {}", getRootCause(ex).getMessage());
+                    cycle.setReadFailed();
+                }
+            }
+            return blobs;
+        }
+        final var executor = getDownloadExecutor(downloadParallelism);
+        final var listings = new ArrayList<Future<List<BlobItem>>>(listingPrefixes.size());
+        for (final var listingPrefix : listingPrefixes) {
+            listings.add(executor.submit(() -> {
+                final var shardBlobs = new ArrayList<BlobItem>();
+                getStore().getBlobs(listingPrefix).forEachRemaining(shardBlobs::add);
+                return shardBlobs;
+            }));
+        }
+        for (final var listing : listings) {
+            try {
+                blobs.addAll(listing.get(cycle.getRemainingReloadTime().toNanos(), TimeUnit.NANOSECONDS));
+            } catch (final TimeoutException ex) {
+                listings.forEach(future -> future.cancel(true));
+                cycle.stopAtReloadDeadline();
+                break;
+            } catch (final ExecutionException ex) {
+                if (ex.getCause() instanceof ContainerNotFoundException) {
+                    listings.forEach(future -> future.cancel(true));
+                    throw (ContainerNotFoundException) ex.getCause();
+                }
+                log.warn("Could not get Azure Blobs. {}", getRootCause(ex).getMessage());
+                cycle.setReadFailed();
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                cycle.setReadFailed();
+                listings.forEach(future -> future.cancel(true));
+                log.warn("Listing the Azure Blobs was interrupted.");
+                break;
+            }
+        }
+        return blobs;
+    }
+
+    @NotNull NodeFileLayout getNodeFileLayout() {
+        final var currentLayout = nodeFileLayout;
+        if (currentLayout != null) {
+            return currentLayout;
+        }
+        final var config = azureStorageClient.getStorageConfig();
+        return new NodeFileLayout(config.getFilePrefix(), config.getShardCount());
+    }
+
+    @NotNull List<String> getListingPrefixes() {
+        final var previousLayout = previousNodeFileLayout;
+        return previousLayout != null ?
+                getNodeFileLayout().getListingPrefixes(previousLayout) :
+                getNodeFileLayout().getListingPrefixes();
+    }
+
+    boolean isNodeFileBlob(final @NotNull BlobItem blob) {
+        // the manifest and the janitor lock Blob share the file prefix, but don't contain a node file
+        final var filePrefix = azureStorageClient.getStorageConfig().getFilePrefix();
+        return !blob.getName().equals(filePrefix + Manifest.MANIFEST_BLOB_SUFFIX) &&
+                !blob.getName().equals(filePrefix + Janitor.JANITOR_BLOB_SUFFIX);
+    }
+
+    private @NotNull ThreadPoolExecutor getDownloadExecutor(final int downloadParallelism) {
+        if (downloadExecutor != null && downloadExecutor.getMaximumPoolSize() == downloadParallelism) {
+            return downloadExecutor;
+        }
+        if (downloadExecutor != null) {
+            downloadExecutor.shutdown();
+        }
+        // idle threads are released between reloads, the update interval is usually much longer than the keep alive
+        final var executor = new ThreadPoolExecutor(downloadParallelism,
+                downloadParallelism,
+                30,
+                TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                new NamedThreadFactory("azure-discovery-download"));
+        executor.allowCoreThreadTimeOut(true);
+        downloadExecutor = executor;
+        return executor;
+    }
+
+    @Nullable ClusterNodeFile getNodeFileFromMetadata(final @NotNull BlobItem blob) {
+        final var metadata = blob.getMetadata();
+        if (metadata == null || metadata.isEmpty()) {
+            return null;
+        }
+        final var nodeFile = ClusterNodeFile.parseClusterNodeFile(metadata);
+        if (nodeFile == null) {
+            log.debug("Metadata of the Azure Blob '{}' could not be parsed. Downloading Blob.", blob.getName());
+        }
+        return nodeFile;
+    }
+
     private @Nullable ClusterNodeFile getNodeFile(final @NotNull BlobItem blob) {
-        final String fileContent;
+        final byte[] fileContent;
+        final boolean cacheable;
         try {
-            fileContent = azureStorageClient.getBlobContent(blob.getName());
+            final var replicatedStore = this.replicatedStore;
+            if (replicatedStore != null) {
+                final var listedBlobContent = replicatedStore.getListedBlobContent(blob.getName());
+                fileContent = listedBlobContent.getContent();
+                // another replica could serve an older version than the listed ETag, which must not be cached for it
+                cacheable = listedBlobContent.isFromListingReplica();
+            } else {
+                fileContent = getStore().getBlobContent(blob.getName());
+                cacheable = true;
+            }
         } catch (final RuntimeException e) {
             log.warn("An error occurred while downloading the Azure Blob. {}", getRootCause(e).getMessage());
+            cycle.setReadFailed();
             return null;
         }
-        if (isNullOrBlank(fileContent)) {
+        return parseNodeFile(blob, fileContent, cacheable);
+    }
+
+    @Nullable ClusterNodeFile parseNodeFile(
+            final @NotNull BlobItem blob,
+            final byte @Nullable [] fileContent,
+            final boolean cacheable) {
+        if (fileContent == null || fileContent.length == 0) {
             log.debug("Azure Blob '{}' has no content. Skipping file.", blob.getName());
             return null;
         }
@@ -200,15 +966,18 @@ public class AzureClusterDiscoveryCallback implements ClusterDiscoveryCallback {
             log.debug("Content of the Azure Blob '{}' could not be parsed. Skipping Blob.", blob.getName());
             return null;
         }
+        if (cacheable) {
+            azureStorageClient.cacheNodeFile(blob, nodeFile);
+        }
         return nodeFile;
     }
 
-    private @NotNull Throwable getRootCause(final @NotNull Throwable e) {
-        var result = e;
-        Throwable cause;
-        while ((cause = result.getCause()) != null && result != cause) {
-            result = cause;
-        }
-        return result;
+    private boolean isAsyncEngine() {
+        final var config = azureStorageClient.getStorageConfig();
+        // the manifest mode, the replicas and other stores than the Azure Storage Account always run on the blocking
+        // engine
+        return isAzureStore() &&
+                !config.isManifestEnabled() &&
+                AzureDiscoveryConfig.DISCOVERY_ENGINE_ASYNC.equals(config.getDiscoveryEngine());
     }
 }
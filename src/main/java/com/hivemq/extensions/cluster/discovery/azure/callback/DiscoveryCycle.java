@@ -0,0 +1,110 @@
+/*
+ * Copyright 2021-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hivemq.extensions.cluster.discovery.azure.callback;
+
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+
+/**
+ * The state of the current discovery cycle, which is shared by the blocking downloads, the non-blocking pipeline of
+ * the async engine and the deletion of the expired node files after the nodes were provided.
+ */
+class DiscoveryCycle {
+
+    private static final @NotNull Logger log = LoggerFactory.getLogger(DiscoveryCycle.class);
+
+    private final @NotNull LongSupplier nanoClock;
+    // the Blobs of expired node files found in the current discovery cycle, deleted after the nodes were provided
+    private final @NotNull Set<String> expiredBlobNames = ConcurrentHashMap.newKeySet();
+    // set if the listing or a download of node files failed in the current discovery cycle
+    private final @NotNull AtomicBoolean readFailed = new AtomicBoolean();
+    // the nano time after which the current discovery cycle stops reading node files
+    private volatile long reloadDeadlineNanos;
+    private volatile int reloadDeadlineInSeconds;
+
+    DiscoveryCycle(final @NotNull LongSupplier nanoClock) {
+        this.nanoClock = nanoClock;
+    }
+
+    void start(final int reloadDeadlineInSeconds) {
+        this.reloadDeadlineInSeconds = reloadDeadlineInSeconds;
+        reloadDeadlineNanos = nanoClock.getAsLong() + Duration.ofSeconds(reloadDeadlineInSeconds).toNanos();
+        restart();
+    }
+
+    /**
+     * Forgets the results of the current discovery cycle, e.g. before it is retried after the container was recreated.
+     * The reload deadline is kept.
+     */
+    void restart() {
+        expiredBlobNames.clear();
+        readFailed.set(false);
+    }
+
+    void addExpiredBlobName(final @NotNull String blobName) {
+        expiredBlobNames.add(blobName);
+    }
+
+    int getExpiredBlobCount() {
+        return expiredBlobNames.size();
+    }
+
+    /**
+     * @return the Blobs of the expired node files found in the current discovery cycle, they are only returned once
+     */
+    @NotNull List<String> takeExpiredBlobNames() {
+        final var blobNames = new ArrayList<>(expiredBlobNames);
+        expiredBlobNames.removeAll(blobNames);
+        return blobNames;
+    }
+
+    void setReadFailed() {
+        readFailed.set(true);
+    }
+
+    boolean isReadFailed() {
+        return readFailed.get();
+    }
+
+    boolean isReloadDeadlineExceeded() {
+        return nanoClock.getAsLong() - reloadDeadlineNanos >= 0;
+    }
+
+    @NotNull Duration getRemainingReloadTime() {
+        return Duration.ofNanos(Math.max(0, reloadDeadlineNanos - nanoClock.getAsLong()));
+    }
+
+    /**
+     * Stops reading node files in the current discovery cycle. The cycle counts as a failed read, so the last complete
+     * node view is provided together with the node files that were read until now.
+     */
+    void stopAtReloadDeadline() {
+        log.warn("The discovery cycle exceeded the reload deadline of {} seconds. Skipping the remaining Azure Blobs.",
+                reloadDeadlineInSeconds);
+        readFailed.set(true);
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2021-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hivemq.extensions.cluster.discovery.azure.callback;
+
+import com.hivemq.extensions.cluster.discovery.azure.util.NamedThreadFactory;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Saves the own node file on its own schedule, if the heartbeat interval differs from the read interval. Otherwise the
+ * own node file is saved by the discovery cycle when it is due.
+ */
+class Heartbeat {
+
+    private static final @NotNull Logger log = LoggerFactory.getLogger(Heartbeat.class);
+
+    private @Nullable ScheduledThreadPoolExecutor executor;
+    private int intervalInSeconds;
+
+    /**
+     * Starts or reschedules the heartbeat. The discovery cycle saves the own node file first, so the first heartbeat is
+     * due after one interval, or after the phase offset of this node to spread the heartbeats of the nodes across the
+     * interval.
+     *
+     * @param beat saves the own node file, it must handle its own failures
+     */
+    void schedule(final @NotNull Runnable beat, final int intervalInSeconds, final int phaseOffsetInSeconds) {
+        if (executor != null && this.intervalInSeconds == intervalInSeconds) {
+            return;
+        }
+        stop();
+        final var executor = new ScheduledThreadPoolExecutor(1, new NamedThreadFactory("azure-discovery-heartbeat"));
+        executor.scheduleWithFixedDelay(beat,
+                phaseOffsetInSeconds > 0 ? phaseOffsetInSeconds : intervalInSeconds,
+                intervalInSeconds,
+                TimeUnit.SECONDS);
+        this.executor = executor;
+        this.intervalInSeconds = intervalInSeconds;
+        log.debug("Scheduled the heartbeat of the own Azure Blob file every {} seconds.", intervalInSeconds);
+    }
+
+    void stop() {
+        final var executor = this.executor;
+        if (executor == null) {
+            return;
+        }
+        this.executor = null;
+        executor.shutdownNow();
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                log.debug("The heartbeat of the own Azure Blob file did not stop in time.");
+            }
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2021-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hivemq.extensions.cluster.discovery.azure.callback;
+
+import com.hivemq.extensions.cluster.discovery.azure.client.AzureStorageClient;
+import com.hivemq.extensions.cluster.discovery.azure.client.BlobLease;
+import com.hivemq.extensions.cluster.discovery.azure.store.DiscoveryStore;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+
+import static com.hivemq.extensions.cluster.discovery.azure.util.ExceptionUtil.getRootCause;
+
+/**
+ * Deletes the Blobs of the expired node files that were found in a discovery cycle. This is done after the current
+ * nodes were provided to HiveMQ, so many expired node files (e.g. after a scale-in) don't delay the discovery. The
+ * Blobs are deleted with as few Blob Batch requests as possible.
+ * <p>
+ * If the janitor is enabled, only the node that holds the lease of the janitor Blob deletes expired node files, all
+ * other nodes only leave them out of their view. The lease is kept alive by the lease renewal in between the discovery
+ * cycles, all other nodes only try to acquire it when they found expired node files. If the lease can't be acquired,
+ * no node deletes the expired node files.
+ */
+class Janitor {
+
+    static final @NotNull String JANITOR_BLOB_SUFFIX = "janitor";
+
+    private static final @NotNull Logger log = LoggerFactory.getLogger(Janitor.class);
+
+    private final @NotNull AzureStorageClient azureStorageClient;
+
+    Janitor(final @NotNull AzureStorageClient azureStorageClient) {
+        this.azureStorageClient = azureStorageClient;
+    }
+
+    /**
+     * @param janitorEnabled if only the holder of the janitor lease deletes expired node files
+     */
+    void deleteExpiredNodeFiles(
+            final @NotNull DiscoveryCycle cycle,
+            final @NotNull DiscoveryStore store,
+            final boolean janitorEnabled) {
+        if (janitorEnabled && !isJanitor(cycle.getExpiredBlobCount())) {
+            cycle.takeExpiredBlobNames();
+            return;
+        }
+        final var blobNames = cycle.takeExpiredBlobNames();
+        if (blobNames.isEmpty()) {
+            return;
+        }
+        final Map<String, String> failures;
+        try {
+            failures = store.deleteBlobs(blobNames);
+        } catch (final Exception ex) {
+            log.warn("Could not delete {} expired Azure Blob files. {}",
+                    blobNames.size(),
+                    getRootCause(ex).getMessage());
+            return;
+        }
+        if (!failures.isEmpty()) {
+            // the expired Blobs are still listed by the next cycle, which deletes them again
+            log.warn("Could not delete {} of {} expired Azure Blob files, retrying in the next cycle. {}",
+                    failures.size(),
+                    blobNames.size(),
+                    failures.values().iterator().next());
+            failures.forEach((blobName, reason) -> log.debug("Could not delete expired Azure Blob file '{}'. {}",
+                    blobName,
+                    reason));
+        }
+        log.debug("Deleted {} of {} expired Azure Blob files.", blobNames.size() - failures.size(), blobNames.size());
+    }
+
+    private boolean isJanitor(final int expiredBlobCount) {
+        final var config = azureStorageClient.getStorageConfig();
+        final var janitorBlobName = config.getFilePrefix() + JANITOR_BLOB_SUFFIX;
+        final var janitorLease = azureStorageClient.getBlobLease(janitorBlobName);
+        if (expiredBlobCount == 0 && !janitorLease.isHeld()) {
+            return false;
+        }
+        try {
+            final var janitor = janitorLease.acquireOrRenew(BlobLease.MAX_DURATION_IN_SECONDS);
+            if (!janitor && expiredBlobCount > 0) {
+                log.debug("Leaving {} expired Azure Blob files to the janitor holding the lease of the Blob '{}'.",
+                        expiredBlobCount,
+                        janitorBlobName);
+            }
+            return janitor;
+        } catch (final RuntimeException ex) {
+            // if the lease failed on all nodes, every node would delete the expired Blobs again, so none does and the
+            // expired nodes are only left out of the view until the lease works
+            log.warn("Could not acquire the lease of the janitor Azure Blob '{}'. Not deleting {} expired Azure Blob " +
+                    "files. {}", janitorBlobName, expiredBlobCount, getRootCause(ex).getMessage());
+            return false;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2021-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hivemq.extensions.cluster.discovery.azure.callback;
+
+import com.hivemq.extensions.cluster.discovery.azure.client.AzureStorageClient;
+import com.hivemq.extensions.cluster.discovery.azure.client.BlobLease;
+import com.hivemq.extensions.cluster.discovery.azure.util.NamedThreadFactory;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static com.hivemq.extensions.cluster.discovery.azure.util.ExceptionUtil.getRootCause;
+
+/**
+ * Renews the held Blob leases independently of the discovery cycles. Azure limits a lease to 60 seconds, which is
+ * usually shorter than the read interval, so without the renewal the lease would lapse between the discovery cycles
+ * and could be taken by any other node.
+ */
+class LeaseRenewal {
+
+    private static final @NotNull Logger log = LoggerFactory.getLogger(LeaseRenewal.class);
+
+    private final @NotNull AzureStorageClient azureStorageClient;
+
+    private @Nullable ScheduledThreadPoolExecutor executor;
+
+    LeaseRenewal(final @NotNull AzureStorageClient azureStorageClient) {
+        this.azureStorageClient = azureStorageClient;
+    }
+
+    void start() {
+        if (executor != null) {
+            return;
+        }
+        final var executor = new ScheduledThreadPoolExecutor(1, new NamedThreadFactory("azure-discovery-lease"));
+        executor.scheduleWithFixedDelay(this::renewLeases,
+                BlobLease.RENEWAL_INTERVAL_IN_SECONDS,
+                BlobLease.RENEWAL_INTERVAL_IN_SECONDS,
+                TimeUnit.SECONDS);
+        this.executor = executor;
+    }
+
+    void stop() {
+        final var executor = this.executor;
+        if (executor == null) {
+            return;
+        }
+        this.executor = null;
+        executor.shutdownNow();
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                log.debug("The renewal of the Azure Blob leases did not stop in time.");
+            }
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void renewLeases() {
+        try {
+            azureStorageClient.renewBlobLeases();
+        } catch (final RuntimeException ex) {
+            // the lease is kept for one more renewal interval, the next renewal or discovery cycle tries again
+            log.debug("Renewal of the Azure Blob leases failed. {}", getRootCause(ex).getMessage());
+        }
+    }
+}
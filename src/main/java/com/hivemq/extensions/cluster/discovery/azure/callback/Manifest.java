@@ -0,0 +1,202 @@
+/*
+ * Copyright 2021-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hivemq.extensions.cluster.discovery.azure.callback;
+
+import com.hivemq.extension.sdk.api.services.cluster.parameter.ClusterNodeAddress;
+import com.hivemq.extensions.cluster.discovery.azure.client.AzureStorageClient;
+import com.hivemq.extensions.cluster.discovery.azure.client.BlobLease;
+import com.hivemq.extensions.cluster.discovery.azure.client.ContainerNotFoundException;
+import com.hivemq.extensions.cluster.discovery.azure.client.VersionedBlobContent;
+import com.hivemq.extensions.cluster.discovery.azure.config.ClusterNodeFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static com.hivemq.extensions.cluster.discovery.azure.util.ExceptionUtil.getRootCause;
+
+/**
+ * In the manifest mode only the holder of the manifest lease lists the node files of all nodes and merges them into
+ * the manifest Blob. The manifest is only written again if the merged nodes changed, or to refresh its merge time
+ * after half the file expiration, so the ETag stays the same for most cycles. All other nodes only read the manifest,
+ * which is downloaded again only if its ETag changed. If no valid manifest is available, the node files are listed as
+ * usual. The leader doesn't write the manifest if not all node files could be read, as the followers take its
+ * nodes as the complete view of the cluster.
+ * <p>
+ * The manifest is only used by the discovery cycles, which HiveMQ runs one after another.
+ */
+class Manifest {
+
+    static final @NotNull String MANIFEST_BLOB_SUFFIX = "manifest";
+
+    private static final @NotNull Logger log = LoggerFactory.getLogger(Manifest.class);
+
+    private final @NotNull AzureStorageClient azureStorageClient;
+    private final @NotNull DiscoveryCycle cycle;
+    private final @NotNull Clock clock;
+
+    // the last read manifest, it is only downloaded again if its ETag changed
+    private @Nullable String manifestETag;
+    private long manifestMergeTimeInMillis;
+    private @NotNull List<ClusterNodeFile> manifestNodeFiles = List.of();
+    // the nodes of the manifest this node wrote last as leader, an unchanged manifest is not written again
+    private @Nullable Map<String, ClusterNodeAddress> mergedManifestMembership;
+    private long mergedManifestTimeInMillis;
+
+    Manifest(
+            final @NotNull AzureStorageClient azureStorageClient,
+            final @NotNull DiscoveryCycle cycle,
+            final @NotNull Clock clock) {
+        this.azureStorageClient = azureStorageClient;
+        this.cycle = cycle;
+        this.clock = clock;
+    }
+
+    /**
+     * @param activeNodeFiles lists the active node files of all nodes, if this node is the leader or no valid manifest
+     *                        is available
+     */
+    @NotNull List<ClusterNodeFile> getNodeFiles(
+            final @NotNull String ownClusterId,
+            final @NotNull ClusterNodeAddress ownAddress,
+            final @NotNull Supplier<List<ClusterNodeFile>> activeNodeFiles) {
+        final var config = azureStorageClient.getStorageConfig();
+        final var manifestBlobName = config.getFilePrefix() + MANIFEST_BLOB_SUFFIX;
+        final var manifestLease = azureStorageClient.getBlobLease(manifestBlobName);
+        boolean leader;
+        try {
+            leader = manifestLease.acquireOrRenew(BlobLease.MAX_DURATION_IN_SECONDS);
+        } catch (final ContainerNotFoundException ex) {
+            throw ex;
+        } catch (final RuntimeException ex) {
+            log.warn("Could not acquire the lease of the manifest Azure Blob '{}'. {}",
+                    manifestBlobName,
+                    getRootCause(ex).getMessage());
+            leader = false;
+        }
+        if (leader) {
+            final var nodeFiles = activeNodeFiles.get();
+            if (cycle.isReadFailed()) {
+                // the followers would drop the nodes that could not be read, so they keep the previous manifest
+                log.warn("Not all node files could be read. Not updating the manifest Azure Blob '{}'.",
+                        manifestBlobName);
+                return nodeFiles;
+            }
+            merge(manifestBlobName, manifestLease, nodeFiles);
+            return nodeFiles;
+        }
+        // a new leader writes the manifest again, even if this node wrote the same nodes before
+        mergedManifestMembership = null;
+        final var manifestNodeFiles = read(manifestBlobName);
+        if (manifestNodeFiles == null) {
+            log.debug("No valid manifest Azure Blob '{}' available. Reading all node files.", manifestBlobName);
+            return activeNodeFiles.get();
+        }
+        // the leader leaves expired node files out of the manifest, the creation times of an unchanged manifest are
+        // older than the file expiration allows
+        final var nodeFiles = new ArrayList<ClusterNodeFile>(manifestNodeFiles.size() + 1);
+        var ownNodeFileFound = false;
+        for (final var nodeFile : manifestNodeFiles) {
+            nodeFiles.add(nodeFile);
+            ownNodeFileFound |= ownClusterId.equals(nodeFile.getClusterId());
+        }
+        // the own node file may not be merged into the manifest yet
+        if (!ownNodeFileFound) {
+            nodeFiles.add(new ClusterNodeFile(ownClusterId, ownAddress, clock.millis()));
+        }
+        log.debug("Found {} node files in the manifest Azure Blob '{}'.", nodeFiles.size(), manifestBlobName);
+        return nodeFiles;
+    }
+
+    private void merge(
+            final @NotNull String manifestBlobName,
+            final @NotNull BlobLease manifestLease,
+            final @NotNull List<ClusterNodeFile> nodeFiles) {
+        final var membership = AzureClusterDiscoveryCallback.toMembership(nodeFiles);
+        final var nowInMillis = clock.millis();
+        final var fileExpirationInSeconds = azureStorageClient.getStorageConfig().getFileExpirationInSeconds();
+        // the followers take a manifest whose merge time is older than the file expiration as orphaned
+        final var refreshDue = fileExpirationInSeconds > 0 &&
+                nowInMillis - mergedManifestTimeInMillis >= TimeUnit.SECONDS.toMillis(fileExpirationInSeconds) / 2;
+        if (membership.equals(mergedManifestMembership) && !refreshDue) {
+            log.trace("The nodes of the manifest Azure Blob '{}' did not change. Not writing it again.",
+                    manifestBlobName);
+            return;
+        }
+        try {
+            azureStorageClient.saveLeasedBlob(manifestBlobName,
+                    ClusterNodeFile.toManifest(nodeFiles, nowInMillis),
+                    manifestLease);
+            mergedManifestMembership = membership;
+            mergedManifestTimeInMillis = nowInMillis;
+            log.debug("Merged {} node files into the manifest Azure Blob '{}'.", nodeFiles.size(), manifestBlobName);
+        } catch (final ContainerNotFoundException ex) {
+            mergedManifestMembership = null;
+            throw ex;
+        } catch (final RuntimeException ex) {
+            mergedManifestMembership = null;
+            log.warn("Could not update the manifest Azure Blob '{}'. {}",
+                    manifestBlobName,
+                    getRootCause(ex).getMessage());
+        }
+    }
+
+    private @Nullable List<ClusterNodeFile> read(final @NotNull String manifestBlobName) {
+        final VersionedBlobContent manifest;
+        try {
+            manifest = azureStorageClient.getBlobContentIfChanged(manifestBlobName, manifestETag);
+        } catch (final ContainerNotFoundException ex) {
+            throw ex;
+        } catch (final RuntimeException ex) {
+            log.debug("Could not read the manifest Azure Blob '{}'. {}",
+                    manifestBlobName,
+                    getRootCause(ex).getMessage());
+            manifestETag = null;
+            manifestMergeTimeInMillis = 0;
+            manifestNodeFiles = List.of();
+            return null;
+        }
+        if (manifest != null) {
+            manifestETag = manifest.getETag();
+            // manifests of older leaders have no merge time, they are written on every cycle
+            final var mergeTimeInMillis = ClusterNodeFile.parseManifestMergeTime(manifest.getContent());
+            final var lastModified = manifest.getLastModified();
+            manifestMergeTimeInMillis = mergeTimeInMillis != null ?
+                    mergeTimeInMillis :
+                    lastModified != null ? lastModified.toInstant().toEpochMilli() : 0;
+            manifestNodeFiles = ClusterNodeFile.parseManifest(manifest.getContent());
+        }
+        // a manifest that was not merged for longer than the file expiration has no active leader anymore
+        final var fileExpirationInSeconds = azureStorageClient.getStorageConfig().getFileExpirationInSeconds();
+        if (manifestNodeFiles.isEmpty() ||
+                (fileExpirationInSeconds > 0 &&
+                        (manifestMergeTimeInMillis == 0 ||
+                                clock.millis() - manifestMergeTimeInMillis >
+                                        TimeUnit.SECONDS.toMillis(fileExpirationInSeconds)))) {
+            return null;
+        }
+        return manifestNodeFiles;
+    }
+}
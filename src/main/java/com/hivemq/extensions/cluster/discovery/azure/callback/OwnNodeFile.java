@@ -0,0 +1,116 @@
+/*
+ * Copyright 2021-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.cluster.discovery.azure.callback;
+
+import com.azure.storage.blob.BlobContainerClient;
+import com.hivemq.extensions.cluster.discovery.azure.config.ClusterNodeFile;
+import com.hivemq.extensions.cluster.discovery.azure.store.DiscoveryStore;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+
+/**
+ * The own node file that was saved last and the container it was saved to. The discovery cycles and the heartbeat
+ * both save the own node file and notice a deleted container, so all state is guarded by the lock of this object and
+ * the blocking saves and deletes are serialized by it.
+ */
+class OwnNodeFile {
+
+    private static final @NotNull Logger log = LoggerFactory.getLogger(OwnNodeFile.class);
+
+    private @Nullable ClusterNodeFile savedNodeFile;
+    // the container of this container client, or of this store if it is not the Azure Storage Account, is known to
+    // exist, it is only checked again if an operation doesn't find it
+    private @Nullable BlobContainerClient checkedContainerClient;
+    private @Nullable DiscoveryStore checkedStore;
+
+    synchronized @Nullable ClusterNodeFile getSavedNodeFile() {
+        return savedNodeFile;
+    }
+
+    synchronized boolean isContainerChecked(
+            final @NotNull DiscoveryStore store,
+            final @Nullable BlobContainerClient containerClient) {
+        // the container client is replaced if the Azure Storage Client is rebuilt, other stores keep their container
+        if (containerClient != null) {
+            return containerClient == checkedContainerClient;
+        }
+        return checkedContainerClient == null && store == checkedStore;
+    }
+
+    synchronized void setContainerChecked(
+            final @NotNull DiscoveryStore store,
+            final @Nullable BlobContainerClient containerClient) {
+        checkedStore = store;
+        checkedContainerClient = containerClient;
+    }
+
+    /**
+     * Checks the existence of the container only once per container client or store. Afterward, a missing container is
+     * noticed by a {@link com.hivemq.extensions.cluster.discovery.azure.client.ContainerNotFoundException} of the
+     * following operations.
+     */
+    synchronized void ensureContainer(
+            final @NotNull DiscoveryStore store,
+            final @Nullable BlobContainerClient containerClient,
+            final @NotNull String containerName) {
+        if (isContainerChecked(store, containerClient)) {
+            return;
+        }
+        if (!store.existsContainer()) {
+            log.info("Azure Blob Storage Container {} doesn't exist. Creating it.", containerName);
+            store.createContainer();
+        }
+        setContainerChecked(store, containerClient);
+    }
+
+    synchronized void save(
+            final @NotNull DiscoveryStore store,
+            final @NotNull String blobName,
+            final @NotNull ClusterNodeFile nodeFile,
+            final byte @NotNull [] content,
+            final @Nullable Map<String, String> metadata) throws RuntimeException {
+        if (metadata != null) {
+            store.saveBlob(blobName, content, metadata);
+        } else {
+            store.saveBlob(blobName, content);
+        }
+        savedNodeFile = nodeFile;
+    }
+
+    synchronized void setSaved(final @NotNull ClusterNodeFile nodeFile) {
+        savedNodeFile = nodeFile;
+    }
+
+    synchronized void delete(final @NotNull DiscoveryStore store, final @NotNull String blobName)
+            throws RuntimeException {
+        store.deleteBlob(blobName);
+        savedNodeFile = null;
+    }
+
+    /**
+     * The container was deleted together with the own node file, both are created again by the next save.
+     */
+    synchronized void containerLost() {
+        checkedContainerClient = null;
+        checkedStore = null;
+        savedNodeFile = null;
+    }
+}
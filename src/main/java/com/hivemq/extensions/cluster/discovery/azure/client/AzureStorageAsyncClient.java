@@ -0,0 +1,159 @@
+/*
+ * Copyright 2021-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.cluster.discovery.azure.client;
+
+import com.azure.core.util.BinaryData;
+import com.azure.storage.blob.BlobContainerAsyncClient;
+import com.azure.storage.blob.models.BlobErrorCode;
+import com.azure.storage.blob.models.BlobItem;
+import com.azure.storage.blob.models.BlobListDetails;
+import com.azure.storage.blob.models.BlobStorageException;
+import com.azure.storage.blob.models.ListBlobsOptions;
+import com.azure.storage.blob.options.BlobParallelUploadOptions;
+import com.hivemq.extensions.cluster.discovery.azure.metrics.DiscoveryMetrics;
+import com.hivemq.extensions.cluster.discovery.azure.metrics.DiscoveryMetrics.Operation;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+
+/**
+ * Non-blocking counterpart of the {@link AzureStorageClient} operations, used by the {@code async} discovery engine.
+ * <p>
+ * All operations are lazy and only access the Azure Storage Account when they are subscribed to. Errors are mapped to
+ * the same {@link RuntimeException}s that the blocking client throws, including the {@link ContainerNotFoundException}.
+ */
+public class AzureStorageAsyncClient {
+
+    private static final @NotNull Logger log = LoggerFactory.getLogger(AzureStorageAsyncClient.class);
+
+    private final @NotNull BlobContainerAsyncClient containerClient;
+    private final @NotNull DiscoveryMetrics metrics;
+    private final @NotNull CircuitBreaker circuitBreaker;
+
+    public AzureStorageAsyncClient(final @NotNull BlobContainerAsyncClient containerClient) {
+        this(containerClient, new DiscoveryMetrics());
+    }
+
+    public AzureStorageAsyncClient(
+            final @NotNull BlobContainerAsyncClient containerClient,
+            final @NotNull DiscoveryMetrics metrics) {
+        this(containerClient, metrics, new CircuitBreaker(metrics));
+    }
+
+    AzureStorageAsyncClient(
+            final @NotNull BlobContainerAsyncClient containerClient,
+            final @NotNull DiscoveryMetrics metrics,
+            final @NotNull CircuitBreaker circuitBreaker) {
+        this.containerClient = containerClient;
+        this.metrics = metrics;
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    public @NotNull Mono<Boolean> existsContainer() {
+        return metrics.timeAsync(Operation.EXISTS_CONTAINER, circuitBreaker.callAsync(containerClient.exists()))
+                .onErrorMap(BlobStorageException.class,
+                        e -> new RuntimeException(
+                                "Azure Storage Container existence check failed with status code " +
+                                        e.getStatusCode() + " and error code " + e.getErrorCode() + "."));
+    }
+
+    public @NotNull Mono<Void> createContainer() {
+        return metrics.timeAsync(Operation.CREATE_CONTAINER, circuitBreaker.callAsync(containerClient.create())
+                        .doOnSuccess(ignored -> log.trace("Created container {} in Azure Storage Account {}.",
+                                containerClient.getBlobContainerName(),
+                                containerClient.getAccountName()))
+                        .onErrorResume(BlobStorageException.class, this::handleCreateContainerError));
+    }
+
+    private @NotNull Mono<Void> handleCreateContainerError(final @NotNull BlobStorageException error) {
+        if (BlobErrorCode.CONTAINER_ALREADY_EXISTS.equals(error.getErrorCode())) {
+            log.debug("Cannot create container {} in Azure Storage Account because the container already exists.",
+                    containerClient.getBlobContainerName());
+            return Mono.empty();
+        }
+        return Mono.error(new RuntimeException("Azure Storage Container creation failed with status code " +
+                error.getStatusCode() + " and error code " + error.getErrorCode() + "."));
+    }
+
+    public @NotNull Mono<Void> saveBlob(
+            final @NotNull String blobName,
+            final byte @NotNull [] content,
+            final @Nullable Map<String, String> metadata) {
+        final var uploadOptions = new BlobParallelUploadOptions(BinaryData.fromBytes(content)).setMetadata(metadata);
+        return metrics.timeAsync(Operation.SAVE_BLOB,
+                        circuitBreaker.callAsync(containerClient.getBlobAsyncClient(blobName)
+                                .uploadWithResponse(uploadOptions)))
+                .then()
+                .doOnSuccess(ignored -> metrics.addBytesUploaded(content.length))
+                .onErrorMap(AzureStorageAsyncClient::isContainerNotFound, this::toContainerNotFound)
+                .onErrorMap(BlobStorageException.class,
+                        e -> new RuntimeException("Azure Storage Blob upload failed with status code " +
+                                e.getStatusCode() + " and error code " + e.getErrorCode() + "."));
+    }
+
+    public @NotNull Mono<Void> deleteBlob(final @NotNull String blobName) {
+        return metrics.timeAsync(Operation.DELETE_BLOB,
+                        circuitBreaker.callAsync(containerClient.getBlobAsyncClient(blobName).delete()))
+                .onErrorMap(AzureStorageAsyncClient::isContainerNotFound, this::toContainerNotFound)
+                .onErrorMap(BlobStorageException.class,
+                        e -> new RuntimeException("Azure Storage Blob delete failed with status code " +
+                                e.getStatusCode() + " and error code " + e.getErrorCode() + "."));
+    }
+
+    public @NotNull Mono<byte[]> getBlobContent(final @NotNull String blobName) {
+        return metrics.timeAsync(Operation.GET_BLOB_CONTENT,
+                        circuitBreaker.callAsync(containerClient.getBlobAsyncClient(blobName).downloadContent()))
+                .map(BinaryData::toBytes)
+                .doOnNext(content -> metrics.addBytesDownloaded(content.length))
+                .onErrorMap(AzureStorageAsyncClient::isContainerNotFound, this::toContainerNotFound)
+                .onErrorMap(BlobStorageException.class,
+                        e -> new RuntimeException("Azure Storage Blob download failed with status code " +
+                                e.getStatusCode() + " and error code " + e.getErrorCode() + "."));
+    }
+
+    public @NotNull Flux<BlobItem> getBlobs(final @NotNull String filePrefix, final boolean retrieveMetadata) {
+        final var listBlobsOptions = new ListBlobsOptions().setPrefix(filePrefix);
+        if (retrieveMetadata) {
+            listBlobsOptions.setDetails(new BlobListDetails().setRetrieveMetadata(true));
+        }
+        return metrics.timeAsync(Operation.GET_BLOBS,
+                        circuitBreaker.callAsync(containerClient.listBlobs(listBlobsOptions)))
+                .onErrorMap(AzureStorageAsyncClient::isContainerNotFound, this::toContainerNotFound)
+                .onErrorMap(BlobStorageException.class,
+                        e -> new RuntimeException("Azure Storage Blobs retrieval failed with status code " +
+                                e.getStatusCode() + " and error code " + e.getErrorCode() + "."));
+    }
+
+    private static boolean isContainerNotFound(final @NotNull Throwable error) {
+        return error instanceof BlobStorageException &&
+                BlobErrorCode.CONTAINER_NOT_FOUND.equals(((BlobStorageException) error).getErrorCode());
+    }
+
+    private @NotNull ContainerNotFoundException toContainerNotFound(final @NotNull Throwable error) {
+        return new ContainerNotFoundException("Azure Storage Container " + containerClient.getBlobContainerName() +
+                " does not exist.");
+    }
+
+    public @NotNull BlobContainerAsyncClient getContainerClient() {
+        return containerClient;
+    }
+}
@@ -16,14 +16,31 @@
 
 package com.hivemq.extensions.cluster.discovery.azure.client;
 
+import com.azure.core.http.policy.ExponentialBackoffOptions;
+import com.azure.core.http.policy.RetryOptions;
+import com.azure.core.http.rest.Response;
+import com.azure.core.util.BinaryData;
+import com.azure.core.util.Context;
+import com.azure.core.util.HttpClientOptions;
 import com.azure.storage.blob.BlobContainerClient;
 import com.azure.storage.blob.BlobServiceClientBuilder;
+import com.azure.storage.blob.batch.BlobBatchClient;
+import com.azure.storage.blob.batch.BlobBatchClientBuilder;
 import com.azure.storage.blob.models.BlobErrorCode;
 import com.azure.storage.blob.models.BlobItem;
+import com.azure.storage.blob.models.BlobListDetails;
+import com.azure.storage.blob.models.BlobRequestConditions;
 import com.azure.storage.blob.models.BlobStorageException;
 import com.azure.storage.blob.models.ListBlobsOptions;
+import com.azure.storage.blob.options.BlobParallelUploadOptions;
+import com.azure.storage.blob.specialized.BlobLeaseClientBuilder;
 import com.hivemq.extensions.cluster.discovery.azure.config.AzureDiscoveryConfig;
+import com.hivemq.extensions.cluster.discovery.azure.config.ClusterNodeFile;
 import com.hivemq.extensions.cluster.discovery.azure.config.ConfigReader;
+import com.hivemq.extensions.cluster.discovery.azure.metrics.DiscoveryMetrics;
+import com.hivemq.extensions.cluster.discovery.azure.metrics.DiscoveryMetrics.Operation;
+import com.hivemq.extensions.cluster.discovery.azure.store.DiscoveryStore;
+import com.hivemq.extensions.cluster.discovery.azure.util.StringUtil;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
@@ -31,126 +48,611 @@ import org.slf4j.LoggerFactory;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @author Till Seeberger
  */
-public class AzureStorageClient {
+public class AzureStorageClient implements DiscoveryStore {
 
     private static final @NotNull Logger log = LoggerFactory.getLogger(AzureStorageClient.class);
+    // the maximum number of subrequests of a Blob Batch request
+    static final int MAX_BATCH_SIZE = 256;
 
     private final @NotNull ConfigReader configReader;
+    private final @NotNull DiscoveryMetrics metrics;
+    // 0 connects to the Azure Storage Account of the connection string, n to the n-th replica connection string
+    private final int replica;
+    private final @NotNull CircuitBreaker circuitBreaker;
+    // node files of other nodes by Blob name, only valid as long as the listed ETag of the Blob stays the same
+    private final @NotNull Map<String, CachedNodeFile> nodeFileCache = new ConcurrentHashMap<>();
+    private final @NotNull Map<String, BlobLease> blobLeases = new ConcurrentHashMap<>();
 
-    private @Nullable BlobContainerClient containerClient;
-    private @Nullable AzureDiscoveryConfig azureDiscoveryConfig;
+    // read by the heartbeat thread of the callback as well
+    private volatile @Nullable BlobContainerClient containerClient;
+    private @Nullable AzureStorageAsyncClient asyncClient;
+    private @Nullable BlobBatchClient batchClient;
+    private volatile @Nullable AzureDiscoveryConfig azureDiscoveryConfig;
+    private @Nullable String clientConnectionString;
+    private @Nullable String clientContainerName;
+    private @Nullable List<Integer> clientRequestOptions;
+    private @Nullable BlobServiceClientBuilder clientBuilder;
 
     public AzureStorageClient(final @NotNull ConfigReader configReader) {
+        this(configReader, new DiscoveryMetrics());
+    }
+
+    public AzureStorageClient(final @NotNull ConfigReader configReader, final @NotNull DiscoveryMetrics metrics) {
+        this(configReader, metrics, 0);
+    }
+
+    public AzureStorageClient(
+            final @NotNull ConfigReader configReader,
+            final @NotNull DiscoveryMetrics metrics,
+            final int replica) {
         this.configReader = configReader;
+        this.metrics = metrics;
+        this.replica = replica;
+        this.circuitBreaker = new CircuitBreaker(metrics, replica);
     }
 
-    public void createOrUpdate() throws IllegalStateException, IllegalArgumentException {
+    /**
+     * Reads the configuration without creating the client for the Azure Storage Account. This is enough if the
+     * discovery runs on another {@link DiscoveryStore}.
+     */
+    public void updateConfiguration() throws IllegalStateException {
         final var newAzureDiscoveryConfig = configReader.readConfiguration();
         if (newAzureDiscoveryConfig == null) {
-            if (azureDiscoveryConfig != null) {
-                log.warn(
-                        "Configuration of the Azure Cluster Discovery Extension couldn't be loaded. Using last valid configuration.");
-            } else {
+            if (azureDiscoveryConfig == null) {
                 throw new IllegalStateException(
                         "Configuration of the Azure Cluster Discovery Extension couldn't be loaded.");
             }
+            log.warn(
+                    "Configuration of the Azure Cluster Discovery Extension couldn't be loaded. Using last valid configuration.");
+            applyConfiguration(azureDiscoveryConfig);
         } else {
-            azureDiscoveryConfig = newAzureDiscoveryConfig;
+            applyConfiguration(newAzureDiscoveryConfig);
         }
+    }
+
+    private void applyConfiguration(final @NotNull AzureDiscoveryConfig config) {
+        azureDiscoveryConfig = config;
+        circuitBreaker.configure(config.isCircuitBreakerEnabled(),
+                config.getCircuitBreakerFailureRate(),
+                config.getCircuitBreakerOpenDurationInSeconds());
+    }
+
+    public void createOrUpdate() throws IllegalStateException, IllegalArgumentException {
+        updateConfiguration();
+        createOrUpdateClient();
+    }
 
-        final var connectionString = azureDiscoveryConfig.getConnectionString();
+    /**
+     * Creates or updates the client with a configuration that was already read, so the replicas of a reload don't read
+     * the configuration file again.
+     */
+    public void createOrUpdate(final @NotNull AzureDiscoveryConfig config)
+            throws IllegalStateException, IllegalArgumentException {
+        applyConfiguration(config);
+        createOrUpdateClient();
+    }
+
+    private void createOrUpdateClient() throws IllegalStateException, IllegalArgumentException {
+        final var azureDiscoveryConfig = Objects.requireNonNull(this.azureDiscoveryConfig);
+        final var connectionString = getConnectionString(azureDiscoveryConfig);
         final var containerName = azureDiscoveryConfig.getContainerName();
+        final var requestOptions = List.of(azureDiscoveryConfig.getRequestTimeoutInSeconds(),
+                azureDiscoveryConfig.getRequestMaxTries(),
+                azureDiscoveryConfig.getRequestRetryDelayInMillis(),
+                azureDiscoveryConfig.getRequestMaxRetryDelayInMillis());
+
+        // the client holds the HTTP pipeline and connection pool, so it is only rebuilt if the target or the request
+        // options changed
+        if (containerClient != null &&
+                connectionString.equals(clientConnectionString) &&
+                containerName.equals(clientContainerName) &&
+                requestOptions.equals(clientRequestOptions)) {
+            return;
+        }
 
         // create a BlobServiceClient object which will be used to retrieve the blob container with the HiveMQ node
         // entries
-        final var blobServiceClient = new BlobServiceClientBuilder().connectionString(connectionString).buildClient();
+        final var serviceClientBuilder = createServiceClientBuilder(connectionString, azureDiscoveryConfig);
+        final var blobServiceClient = serviceClientBuilder.buildClient();
 
         // create a client for the blob container
         containerClient = blobServiceClient.getBlobContainerClient(containerName);
+        asyncClient = null;
+        batchClient = null;
+        nodeFileCache.clear();
+        // leases of the previous container are left to expire
+        blobLeases.clear();
+        clientConnectionString = connectionString;
+        clientContainerName = containerName;
+        clientRequestOptions = requestOptions;
+        clientBuilder = serviceClientBuilder;
+        log.debug("Created Azure Blob Storage client for container {}.", containerName);
     }
 
-    public boolean existsContainer() throws RuntimeException {
-        try {
-            return containerClient.exists();
-        } catch (final BlobStorageException blobStorageException) {
-            throw new RuntimeException("Azure Storage Container existence check failed with status code " +
-                    blobStorageException.getStatusCode() + " and error code " + blobStorageException.getErrorCode() +
-                    ".");
+    private @NotNull String getConnectionString(final @NotNull AzureDiscoveryConfig config)
+            throws IllegalStateException {
+        if (replica == 0) {
+            return config.getConnectionString();
+        }
+        final var replicaConnectionStrings = getReplicaConnectionStrings(config);
+        if (replicaConnectionStrings.size() < replica) {
+            throw new IllegalStateException("No connection string is configured for the replica " + replica + ".");
         }
+        return replicaConnectionStrings.get(replica - 1);
     }
 
-    public void createContainer() throws RuntimeException {
-        try {
-            containerClient.create();
-            log.trace("Created container {} in Azure Storage Account {}.",
-                    containerClient.getBlobContainerName(),
-                    containerClient.getAccountName());
-        } catch (final BlobStorageException error) {
-            if (error.getErrorCode().equals(BlobErrorCode.CONTAINER_ALREADY_EXISTS)) {
-                log.debug("Cannot create container {} in Azure Storage Account because the container already exists.",
-                        containerClient.getBlobContainerName());
-            } else {
-                throw new RuntimeException("Azure Storage Container creation failed with status code " +
-                        error.getStatusCode() + " and error code " + error.getErrorCode() + ".");
+    /**
+     * @return the configured replica connection strings without empty entries
+     */
+    public static @NotNull List<String> getReplicaConnectionStrings(final @NotNull AzureDiscoveryConfig config) {
+        final var replicaConnectionStrings = config.getReplicaConnectionStrings();
+        if (replicaConnectionStrings == null) {
+            return List.of();
+        }
+        final var connectionStrings = new ArrayList<String>(replicaConnectionStrings.size());
+        for (final var replicaConnectionString : replicaConnectionStrings) {
+            if (!StringUtil.isNullOrBlank(replicaConnectionString)) {
+                connectionStrings.add(replicaConnectionString.trim());
             }
         }
+        return connectionStrings;
     }
 
-    public void saveBlob(final @NotNull String blobName, final @NotNull String content) throws RuntimeException {
+    /**
+     * Replaces the default retry options of the SDK, which retry a request for minutes on a degraded connection. Every
+     * try is bounded by the request timeout and retried with an exponential backoff. The exponential backoff of
+     * azure-core adds a jitter to every delay, so the nodes of a cluster don't retry in lockstep.
+     */
+    private static @NotNull BlobServiceClientBuilder createServiceClientBuilder(
+            final @NotNull String connectionString,
+            final @NotNull AzureDiscoveryConfig config) {
+        final var requestTimeout = Duration.ofSeconds(config.getRequestTimeoutInSeconds());
+        final var backoffOptions = new ExponentialBackoffOptions().setMaxRetries(config.getRequestMaxTries() - 1)
+                .setBaseDelay(Duration.ofMillis(config.getRequestRetryDelayInMillis()))
+                .setMaxDelay(Duration.ofMillis(config.getRequestMaxRetryDelayInMillis()));
+        final var httpClientOptions = new HttpClientOptions().setConnectTimeout(requestTimeout)
+                .setWriteTimeout(requestTimeout)
+                .setResponseTimeout(requestTimeout)
+                .setReadTimeout(requestTimeout);
+        return new BlobServiceClientBuilder().connectionString(connectionString)
+                .retryOptions(new RetryOptions(backoffOptions))
+                .clientOptions(httpClientOptions);
+    }
+
+    @Override
+    public boolean existsContainer() throws RuntimeException {
+        return metrics.time(Operation.EXISTS_CONTAINER, () -> {
+            try {
+                return circuitBreaker.call(containerClient::exists);
+            } catch (final BlobStorageException blobStorageException) {
+                throw new RuntimeException("Azure Storage Container existence check failed with status code " +
+                        blobStorageException.getStatusCode() + " and error code " +
+                        blobStorageException.getErrorCode() + ".");
+            }
+        });
+    }
+
+    @Override
+    public void createContainer() throws RuntimeException {
+        metrics.time(Operation.CREATE_CONTAINER, () -> {
+            try {
+                circuitBreaker.run(containerClient::create);
+                log.trace("Created container {} in Azure Storage Account {}.",
+                        containerClient.getBlobContainerName(),
+                        containerClient.getAccountName());
+            } catch (final BlobStorageException error) {
+                if (error.getErrorCode().equals(BlobErrorCode.CONTAINER_ALREADY_EXISTS)) {
+                    log.debug(
+                            "Cannot create container {} in Azure Storage Account because the container already exists.",
+                            containerClient.getBlobContainerName());
+                } else {
+                    throw new RuntimeException("Azure Storage Container creation failed with status code " +
+                            error.getStatusCode() + " and error code " + error.getErrorCode() + ".");
+                }
+            }
+        });
+    }
+
+    @Override
+    public void saveBlob(final @NotNull String blobName, final byte @NotNull [] content) throws RuntimeException {
         final var blobClient = containerClient.getBlobClient(blobName);
-        final var blobData = new ByteArrayInputStream(content.getBytes());
-        try {
-            blobClient.upload(blobData, content.length(), true);
-        } catch (final BlobStorageException blobStorageException) {
-            throw new RuntimeException(
-                    "Azure Storage Blob upload failed with status code " + blobStorageException.getStatusCode() +
-                            " and error code " + blobStorageException.getErrorCode() + ".");
-        }
+        final var blobData = new ByteArrayInputStream(content);
+        metrics.time(Operation.SAVE_BLOB, () -> {
+            try {
+                circuitBreaker.run(() -> blobClient.upload(blobData, content.length, true));
+            } catch (final BlobStorageException blobStorageException) {
+                checkContainerNotFound(blobStorageException);
+                throw new RuntimeException(
+                        "Azure Storage Blob upload failed with status code " + blobStorageException.getStatusCode() +
+                                " and error code " + blobStorageException.getErrorCode() + ".");
+            }
+        });
+        metrics.addBytesUploaded(content.length);
+    }
+
+    @Override
+    public void saveBlob(
+            final @NotNull String blobName,
+            final byte @NotNull [] content,
+            final @NotNull Map<String, String> metadata) throws RuntimeException {
+        final var blobClient = containerClient.getBlobClient(blobName);
+        final var uploadOptions = new BlobParallelUploadOptions(BinaryData.fromBytes(content)).setMetadata(metadata);
+        metrics.time(Operation.SAVE_BLOB, () -> {
+            try {
+                circuitBreaker.call(() -> blobClient.uploadWithResponse(uploadOptions, null, Context.NONE));
+            } catch (final BlobStorageException blobStorageException) {
+                checkContainerNotFound(blobStorageException);
+                throw new RuntimeException(
+                        "Azure Storage Blob upload failed with status code " + blobStorageException.getStatusCode() +
+                                " and error code " + blobStorageException.getErrorCode() + ".");
+            }
+        });
+        metrics.addBytesUploaded(content.length);
     }
 
+    @Override
     public void deleteBlob(final @NotNull String blobName) throws RuntimeException {
         final var blobClient = containerClient.getBlobClient(blobName);
+        metrics.time(Operation.DELETE_BLOB, () -> {
+            try {
+                circuitBreaker.run(blobClient::delete);
+            } catch (final BlobStorageException blobStorageException) {
+                checkContainerNotFound(blobStorageException);
+                final var message =
+                        "Azure Storage Blob delete failed with status code " + blobStorageException.getStatusCode() +
+                                " and error code " + blobStorageException.getErrorCode() + ".";
+                if (BlobErrorCode.BLOB_NOT_FOUND.equals(blobStorageException.getErrorCode())) {
+                    throw new BlobNotFoundException(message);
+                }
+                throw new RuntimeException(message);
+            }
+        });
+    }
+
+    /**
+     * Deletes the given Blobs with one Blob Batch request per {@value #MAX_BATCH_SIZE} Blobs. If the account doesn't
+     * support batch requests, the Blobs of the batch are deleted one by one. If a batch request fails otherwise, e.g.
+     * throttled or without a response, all Blobs of the batch are reported as failed and deleted by a later cycle, so a
+     * struggling account doesn't get the single requests on top.
+     *
+     * @param blobNames the names of the Blobs to delete
+     * @return the reasons why Blobs could not be deleted by the Blob names, empty if all Blobs were deleted
+     */
+    @Override
+    public @NotNull Map<String, String> deleteBlobs(final @NotNull List<String> blobNames) throws RuntimeException {
+        final var failures = new LinkedHashMap<String, String>();
+        for (var fromIndex = 0; fromIndex < blobNames.size(); fromIndex += MAX_BATCH_SIZE) {
+            final var toIndex = Math.min(fromIndex + MAX_BATCH_SIZE, blobNames.size());
+            deleteBlobBatch(blobNames.subList(fromIndex, toIndex), failures);
+        }
+        return failures;
+    }
+
+    private void deleteBlobBatch(final @NotNull List<String> blobNames, final @NotNull Map<String, String> failures)
+            throws RuntimeException {
+        final var batchClient = getBatchClient();
+        final var batch = batchClient.getBlobBatch();
+        final var responses = new LinkedHashMap<String, Response<Void>>();
+        for (final var blobName : blobNames) {
+            responses.put(blobName, batch.deleteBlob(containerClient.getBlobClient(blobName).getBlobUrl()));
+        }
         try {
-            blobClient.delete();
-        } catch (final BlobStorageException blobStorageException) {
-            throw new RuntimeException(
-                    "Azure Storage Blob delete failed with status code " + blobStorageException.getStatusCode() +
-                            " and error code " + blobStorageException.getErrorCode() + ".");
+            circuitBreaker.call(() -> batchClient.submitBatchWithResponse(batch, false, null, Context.NONE));
+        } catch (final CircuitOpenException e) {
+            throw e;
+        } catch (final RuntimeException batchException) {
+            if (batchException instanceof BlobStorageException) {
+                checkContainerNotFound((BlobStorageException) batchException);
+            }
+            if (!isBatchUnsupported(batchException)) {
+                final var reason = batchException instanceof BlobStorageException ?
+                        "Azure Storage Blob batch delete failed with status code " +
+                                ((BlobStorageException) batchException).getStatusCode() + " and error code " +
+                                ((BlobStorageException) batchException).getErrorCode() + "." :
+                        "Azure Storage Blob batch delete failed. " + batchException.getMessage();
+                blobNames.forEach(blobName -> failures.put(blobName, reason));
+                return;
+            }
+            log.debug("Azure Storage Blob batch delete failed. Deleting {} Blobs one by one. {}",
+                    blobNames.size(),
+                    batchException.getMessage());
+            for (final var blobName : blobNames) {
+                try {
+                    deleteBlob(blobName);
+                } catch (final BlobNotFoundException ignored) {
+                    // already deleted by another node
+                } catch (final ContainerNotFoundException e) {
+                    throw e;
+                } catch (final RuntimeException e) {
+                    failures.put(blobName, e.getMessage());
+                }
+            }
+            return;
+        }
+        // a failed subrequest throws its exception when its response is accessed
+        responses.forEach((blobName, response) -> {
+            try {
+                response.getStatusCode();
+            } catch (final BlobStorageException blobStorageException) {
+                if (BlobErrorCode.BLOB_NOT_FOUND.equals(blobStorageException.getErrorCode())) {
+                    // already deleted by another node
+                    return;
+                }
+                failures.put(blobName,
+                        "Azure Storage Blob delete failed with status code " + blobStorageException.getStatusCode() +
+                                " and error code " + blobStorageException.getErrorCode() + ".");
+            }
+        });
+    }
+
+    private static boolean isBatchUnsupported(final @NotNull RuntimeException batchException) {
+        // accounts and emulators without Blob Batch support reject the batch request itself
+        if (!(batchException instanceof BlobStorageException)) {
+            return false;
+        }
+        final var statusCode = ((BlobStorageException) batchException).getStatusCode();
+        return statusCode == 400 || statusCode == 404 || statusCode == 405 || statusCode == 501;
+    }
+
+    private @NotNull BlobBatchClient getBatchClient() {
+        if (batchClient == null) {
+            batchClient = new BlobBatchClientBuilder(containerClient).buildClient();
         }
+        return batchClient;
     }
 
-    public @NotNull String getBlobContent(final @NotNull String blobName) throws RuntimeException {
+    @Override
+    public byte @NotNull [] getBlobContent(final @NotNull String blobName) throws RuntimeException {
         final var blobClient = containerClient.getBlobClient(blobName);
         final var outputStream = new ByteArrayOutputStream();
-        try {
-            blobClient.downloadStream(outputStream);
-        } catch (final BlobStorageException blobStorageException) {
-            throw new RuntimeException(
-                    "Azure Storage Blob download failed with status code " + blobStorageException.getStatusCode() +
-                            " and error code " + blobStorageException.getErrorCode() + ".");
+        metrics.time(Operation.GET_BLOB_CONTENT, () -> {
+            try {
+                circuitBreaker.run(() -> blobClient.downloadStream(outputStream));
+            } catch (final BlobStorageException blobStorageException) {
+                checkContainerNotFound(blobStorageException);
+                throw new RuntimeException(
+                        "Azure Storage Blob download failed with status code " + blobStorageException.getStatusCode() +
+                                " and error code " + blobStorageException.getErrorCode() + ".");
+            }
+        });
+        metrics.addBytesDownloaded(outputStream.size());
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * Downloads the Blob only if it changed since the given version.
+     *
+     * @param blobName the name of the Blob
+     * @param eTag     the ETag of the last downloaded version or {@code null} to always download the Blob
+     * @return the content of the Blob or {@code null} if the Blob still has the given ETag
+     */
+    public @Nullable VersionedBlobContent getBlobContentIfChanged(
+            final @NotNull String blobName,
+            final @Nullable String eTag) throws RuntimeException {
+        final var blobClient = containerClient.getBlobClient(blobName);
+        final var requestConditions = new BlobRequestConditions();
+        if (eTag != null) {
+            requestConditions.setIfNoneMatch(eTag);
         }
-        return outputStream.toString();
+        return metrics.time(Operation.GET_BLOB_CONTENT, () -> {
+            try {
+                final var response = circuitBreaker.call(() -> blobClient.downloadContentWithResponse(null,
+                        requestConditions,
+                        null,
+                        Context.NONE));
+                final var headers = response.getDeserializedHeaders();
+                metrics.addBytesDownloaded(response.getValue().toBytes().length);
+                return new VersionedBlobContent(response.getValue().toString(),
+                        headers.getETag(),
+                        headers.getLastModified());
+            } catch (final BlobStorageException blobStorageException) {
+                if (blobStorageException.getStatusCode() == 304) {
+                    return null;
+                }
+                checkContainerNotFound(blobStorageException);
+                throw new RuntimeException("Azure Storage Blob download failed with status code " +
+                        blobStorageException.getStatusCode() + " and error code " +
+                        blobStorageException.getErrorCode() + ".");
+            }
+        });
+    }
+
+    /**
+     * Overwrites a Blob that this node holds the lease of. The write fails if the lease was lost in the meantime.
+     */
+    public void saveLeasedBlob(
+            final @NotNull String blobName,
+            final @NotNull String content,
+            final @NotNull BlobLease lease) throws RuntimeException {
+        final var blobClient = containerClient.getBlobClient(blobName);
+        final var blobData = BinaryData.fromString(content);
+        final var uploadOptions = new BlobParallelUploadOptions(blobData)
+                .setRequestConditions(new BlobRequestConditions().setLeaseId(lease.getLeaseId()));
+        metrics.time(Operation.SAVE_BLOB, () -> {
+            try {
+                circuitBreaker.call(() -> blobClient.uploadWithResponse(uploadOptions, null, Context.NONE));
+            } catch (final BlobStorageException blobStorageException) {
+                checkContainerNotFound(blobStorageException);
+                throw new RuntimeException(
+                        "Azure Storage Blob upload failed with status code " + blobStorageException.getStatusCode() +
+                                " and error code " + blobStorageException.getErrorCode() + ".");
+            }
+        });
+        metrics.addBytesUploaded(blobData.toBytes().length);
     }
 
+    /**
+     * Returns the lease of the given Blob. The lease object is kept as long as the client is not rebuilt, so a held
+     * lease can be renewed.
+     */
+    public @NotNull BlobLease getBlobLease(final @NotNull String blobName) {
+        return blobLeases.computeIfAbsent(blobName, name -> {
+            final var blobClient = containerClient.getBlobClient(name);
+            final var leaseClient = new BlobLeaseClientBuilder().blobClient(blobClient)
+                    .leaseId(UUID.randomUUID().toString())
+                    .buildClient();
+            return new BlobLease(blobClient, leaseClient, metrics, circuitBreaker);
+        });
+    }
+
+    /**
+     * Renews all leases that are held by this node, so they don't expire between the discovery cycles.
+     *
+     * @throws RuntimeException the first failed renewal, after all other leases were renewed
+     */
+    public void renewBlobLeases() throws RuntimeException {
+        RuntimeException failure = null;
+        for (final var blobLease : blobLeases.values()) {
+            try {
+                blobLease.renew();
+            } catch (final RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Releases all leases that are held by this node.
+     */
+    public void releaseBlobLeases() {
+        blobLeases.values().forEach(BlobLease::release);
+    }
+
+    @Override
     public @NotNull Iterator<BlobItem> getBlobs(final @NotNull String filePrefix) throws RuntimeException {
-        try {
-            return containerClient.listBlobs(new ListBlobsOptions().setPrefix(filePrefix), null).iterator();
-        } catch (final BlobStorageException blobStorageException) {
-            throw new RuntimeException(
-                    "Azure Storage Blobs retrieval failed with status code " + blobStorageException.getStatusCode() +
-                            " and error code " + blobStorageException.getErrorCode() + ".");
+        return metrics.time(Operation.GET_BLOBS, () -> {
+            try {
+                final var listBlobsOptions = new ListBlobsOptions().setPrefix(filePrefix);
+                if (azureDiscoveryConfig.isBlobMetadataEnabled()) {
+                    listBlobsOptions.setDetails(new BlobListDetails().setRetrieveMetadata(true));
+                }
+                // the listing is paged lazily, so it is materialized here to surface its errors to the caller
+                final var blobs = new ArrayList<BlobItem>();
+                circuitBreaker.run(() -> containerClient.listBlobs(listBlobsOptions, null)
+                        .iterator()
+                        .forEachRemaining(blobs::add));
+                return blobs.iterator();
+            } catch (final BlobStorageException blobStorageException) {
+                checkContainerNotFound(blobStorageException);
+                throw new RuntimeException("Azure Storage Blobs retrieval failed with status code " +
+                        blobStorageException.getStatusCode() + " and error code " +
+                        blobStorageException.getErrorCode() + ".");
+            }
+        });
+    }
+
+    private void checkContainerNotFound(final @NotNull BlobStorageException blobStorageException)
+            throws ContainerNotFoundException {
+        if (BlobErrorCode.CONTAINER_NOT_FOUND.equals(blobStorageException.getErrorCode())) {
+            throw new ContainerNotFoundException("Azure Storage Container " + clientContainerName + " does not exist.");
+        }
+    }
+
+    /**
+     * Returns the node file that was cached for the given Blob, if the Blob did not change since it was cached.
+     *
+     * @param blob the listed Blob
+     * @return the cached node file or {@code null} if the Blob has to be downloaded
+     */
+    public @Nullable ClusterNodeFile getCachedNodeFile(final @NotNull BlobItem blob) {
+        final var version = getBlobVersion(blob);
+        final var cachedNodeFile = nodeFileCache.get(blob.getName());
+        if (version != null && cachedNodeFile != null && cachedNodeFile.version.equals(version)) {
+            metrics.addNodeFileCacheHit();
+            return cachedNodeFile.nodeFile;
+        }
+        metrics.addNodeFileCacheMiss();
+        return null;
+    }
+
+    public void cacheNodeFile(final @NotNull BlobItem blob, final @NotNull ClusterNodeFile nodeFile) {
+        final var version = getBlobVersion(blob);
+        if (version != null) {
+            nodeFileCache.put(blob.getName(), new CachedNodeFile(version, nodeFile));
+        }
+    }
+
+    /**
+     * Evicts the cached node files of all Blobs that are not contained in the latest listing.
+     *
+     * @param blobNames the names of the listed Blobs
+     */
+    public void retainCachedNodeFiles(final @NotNull Set<String> blobNames) {
+        nodeFileCache.keySet().retainAll(blobNames);
+    }
+
+    public long getNodeFileCacheHits() {
+        return metrics.getNodeFileCacheHits();
+    }
+
+    public long getNodeFileCacheMisses() {
+        return metrics.getNodeFileCacheMisses();
+    }
+
+    private static @Nullable String getBlobVersion(final @NotNull BlobItem blob) {
+        final var properties = blob.getProperties();
+        if (properties == null) {
+            return null;
         }
+        if (properties.getETag() != null) {
+            return properties.getETag();
+        }
+        return properties.getLastModified() != null ? properties.getLastModified().toString() : null;
+    }
+
+    /**
+     * Returns the non-blocking client for the same container. It is created on first use, so the additional HTTP
+     * pipeline is only built if the {@code async} discovery engine is configured.
+     *
+     * @return the non-blocking client for the configured container
+     */
+    public @NotNull AzureStorageAsyncClient getAsyncClient() {
+        if (asyncClient == null) {
+            if (clientBuilder == null || clientContainerName == null) {
+                throw new IllegalStateException("Azure Storage Client was not created yet.");
+            }
+            // shares the request options of the blocking client
+            final var blobServiceAsyncClient = clientBuilder.buildAsyncClient();
+            asyncClient = new AzureStorageAsyncClient(blobServiceAsyncClient.getBlobContainerAsyncClient(
+                    clientContainerName), metrics, circuitBreaker);
+        }
+        return asyncClient;
     }
 
     public @Nullable AzureDiscoveryConfig getStorageConfig() {
         return azureDiscoveryConfig;
     }
 
+    /**
+     * @return {@code true} while the circuit breaker rejects all requests to the Azure Storage Account
+     */
+    public boolean isCircuitOpen() {
+        return circuitBreaker.isOpen();
+    }
+
+    public @NotNull DiscoveryMetrics getMetrics() {
+        return metrics;
+    }
+
     public @NotNull ConfigReader getConfigReader() {
         return configReader;
     }
@@ -162,4 +664,19 @@ public class AzureStorageClient {
     void setContainerClient(final @NotNull BlobContainerClient containerClient) {
         this.containerClient = containerClient;
     }
+
+    void setBatchClient(final @NotNull BlobBatchClient batchClient) {
+        this.batchClient = batchClient;
+    }
+
+    private static class CachedNodeFile {
+
+        private final @NotNull String version;
+        private final @NotNull ClusterNodeFile nodeFile;
+
+        private CachedNodeFile(final @NotNull String version, final @NotNull ClusterNodeFile nodeFile) {
+            this.version = version;
+            this.nodeFile = nodeFile;
+        }
+    }
 }
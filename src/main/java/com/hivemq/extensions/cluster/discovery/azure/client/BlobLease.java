@@ -0,0 +1,209 @@
+/*
+ * Copyright 2021-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.cluster.discovery.azure.client;
+
+import com.azure.core.util.BinaryData;
+import com.azure.core.util.Context;
+import com.azure.storage.blob.BlobClient;
+import com.azure.storage.blob.models.BlobErrorCode;
+import com.azure.storage.blob.models.BlobRequestConditions;
+import com.azure.storage.blob.models.BlobStorageException;
+import com.azure.storage.blob.options.BlobParallelUploadOptions;
+import com.azure.storage.blob.specialized.BlobLeaseClient;
+import com.hivemq.extensions.cluster.discovery.azure.metrics.DiscoveryMetrics;
+import com.hivemq.extensions.cluster.discovery.azure.metrics.DiscoveryMetrics.Operation;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An exclusive lease on a single Blob, used to elect the single node that is allowed to write the Blob.
+ * <p>
+ * The lease is acquired with a fixed lease ID, so the same node can renew its lease as long as no other node acquired
+ * the Blob in the meantime. Azure only supports finite leases between 15 and 60 seconds, longer durations are clamped.
+ * A lease that must be kept across discovery cycles is therefore renewed every {@link #RENEWAL_INTERVAL_IN_SECONDS}.
+ * <p>
+ * The lease requests are timed as the {@code lease-blob} operation and pass the circuit breaker of the Azure Storage
+ * Client, like all other requests to the Azure Storage Account.
+ */
+public class BlobLease {
+
+    public static final int MIN_DURATION_IN_SECONDS = 15;
+    public static final int MAX_DURATION_IN_SECONDS = 60;
+    // a third of the maximum duration, so the lease survives a failed renewal
+    public static final int RENEWAL_INTERVAL_IN_SECONDS = 20;
+
+    private static final @NotNull Logger log = LoggerFactory.getLogger(BlobLease.class);
+
+    private final @NotNull BlobClient blobClient;
+    private final @NotNull BlobLeaseClient leaseClient;
+    private final @NotNull DiscoveryMetrics metrics;
+    private final @NotNull CircuitBreaker circuitBreaker;
+
+    private volatile boolean held;
+
+    BlobLease(
+            final @NotNull BlobClient blobClient,
+            final @NotNull BlobLeaseClient leaseClient,
+            final @NotNull DiscoveryMetrics metrics,
+            final @NotNull CircuitBreaker circuitBreaker) {
+        this.blobClient = blobClient;
+        this.leaseClient = leaseClient;
+        this.metrics = metrics;
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    /**
+     * Renews the lease if it is held by this node, otherwise tries to acquire it. The Blob is created empty if it
+     * doesn't exist yet.
+     *
+     * @param durationInSeconds the requested lease duration, clamped to the durations that Azure supports
+     * @return {@code true} if this node holds the lease, {@code false} if another node holds it
+     * @throws RuntimeException if the lease could not be acquired for any other reason
+     */
+    public boolean acquireOrRenew(final int durationInSeconds) throws RuntimeException {
+        if (renew()) {
+            return true;
+        }
+        final var clampedDurationInSeconds =
+                Math.max(MIN_DURATION_IN_SECONDS, Math.min(MAX_DURATION_IN_SECONDS, durationInSeconds));
+        try {
+            return acquire(clampedDurationInSeconds);
+        } catch (final BlobStorageException e) {
+            if (!BlobErrorCode.BLOB_NOT_FOUND.equals(e.getErrorCode())) {
+                throw toRuntimeException(e);
+            }
+        }
+        createBlob();
+        try {
+            return acquire(clampedDurationInSeconds);
+        } catch (final BlobStorageException e) {
+            throw toRuntimeException(e);
+        }
+    }
+
+    /**
+     * Renews the lease if it is held by this node.
+     *
+     * @return {@code true} if this node still holds the lease, {@code false} if the lease was lost
+     * @throws RuntimeException if the renewal failed for any other reason, e.g. a throttled request, the lease is then
+     *                          still considered to be held until it is lost
+     */
+    public boolean renew() throws RuntimeException {
+        if (!held) {
+            return false;
+        }
+        return metrics.time(Operation.LEASE_BLOB, () -> {
+            try {
+                circuitBreaker.call(leaseClient::renewLease);
+                return true;
+            } catch (final BlobStorageException e) {
+                if (!isLeaseLost(e)) {
+                    throw toRuntimeException(e);
+                }
+                held = false;
+                log.debug("Lost the lease of the Azure Blob {}, error code {}.",
+                        blobClient.getBlobName(),
+                        e.getErrorCode());
+                return false;
+            }
+        });
+    }
+
+    private boolean acquire(final int durationInSeconds) throws BlobStorageException {
+        // a lease of another node is the expected answer for all but one node, so it is not counted as an error
+        final boolean acquired = metrics.time(Operation.LEASE_BLOB, () -> {
+            try {
+                circuitBreaker.call(() -> leaseClient.acquireLease(durationInSeconds));
+                return true;
+            } catch (final BlobStorageException e) {
+                if (BlobErrorCode.LEASE_ALREADY_PRESENT.equals(e.getErrorCode())) {
+                    return false;
+                }
+                throw e;
+            }
+        });
+        if (!acquired) {
+            return false;
+        }
+        held = true;
+        log.debug("Acquired the lease of the Azure Blob {}.", blobClient.getBlobName());
+        return true;
+    }
+
+    private void createBlob() throws RuntimeException {
+        // another node could create the Blob at the same time, it must not be overwritten then
+        final var uploadOptions = new BlobParallelUploadOptions(BinaryData.fromString(""))
+                .setRequestConditions(new BlobRequestConditions().setIfNoneMatch("*"));
+        metrics.time(Operation.SAVE_BLOB, () -> {
+            try {
+                circuitBreaker.call(() -> blobClient.uploadWithResponse(uploadOptions, null, Context.NONE));
+            } catch (final BlobStorageException e) {
+                if (!BlobErrorCode.BLOB_ALREADY_EXISTS.equals(e.getErrorCode())) {
+                    throw toRuntimeException(e);
+                }
+            }
+        });
+    }
+
+    public boolean isHeld() {
+        return held;
+    }
+
+    public @NotNull String getLeaseId() {
+        return leaseClient.getLeaseId();
+    }
+
+    /**
+     * Releases the lease if it is held by this node, so another node can acquire it without waiting for its expiry.
+     */
+    public void release() {
+        if (!held) {
+            return;
+        }
+        held = false;
+        try {
+            metrics.time(Operation.LEASE_BLOB, () -> circuitBreaker.run(leaseClient::releaseLease));
+            log.debug("Released the lease of the Azure Blob {}.", blobClient.getBlobName());
+        } catch (final BlobStorageException e) {
+            log.debug("Could not release the lease of the Azure Blob {}, error code {}.",
+                    blobClient.getBlobName(),
+                    e.getErrorCode());
+        } catch (final CircuitOpenException e) {
+            // the lease expires on its own
+            log.debug("Could not release the lease of the Azure Blob {}, the circuit breaker is open.",
+                    blobClient.getBlobName());
+        }
+    }
+
+    private static boolean isLeaseLost(final @NotNull BlobStorageException e) {
+        final var errorCode = e.getErrorCode();
+        return BlobErrorCode.LEASE_ID_MISMATCH_WITH_LEASE_OPERATION.equals(errorCode) ||
+                BlobErrorCode.LEASE_NOT_PRESENT_WITH_LEASE_OPERATION.equals(errorCode) ||
+                BlobErrorCode.LEASE_LOST.equals(errorCode) ||
+                // the lease is gone together with the Blob, it is created again on the next acquisition
+                BlobErrorCode.BLOB_NOT_FOUND.equals(errorCode);
+    }
+
+    private static @NotNull RuntimeException toRuntimeException(final @NotNull BlobStorageException e) {
+        if (BlobErrorCode.CONTAINER_NOT_FOUND.equals(e.getErrorCode())) {
+            return new ContainerNotFoundException("Azure Storage Container of the Blob lease does not exist.");
+        }
+        return new RuntimeException("Azure Storage Blob lease failed with status code " + e.getStatusCode() +
+                " and error code " + e.getErrorCode() + ".");
+    }
+}
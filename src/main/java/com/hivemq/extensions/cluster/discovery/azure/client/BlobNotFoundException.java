@@ -0,0 +1,30 @@
+/*
+ * Copyright 2021-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hivemq.extensions.cluster.discovery.azure.client;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Thrown if an Azure Storage operation failed because the Blob does not exist (anymore).
+ */
+public class BlobNotFoundException extends RuntimeException {
+
+    public BlobNotFoundException(final @NotNull String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright 2021-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.cluster.discovery.azure.client;
+
+import com.azure.storage.blob.models.BlobStorageException;
+import com.hivemq.extensions.cluster.discovery.azure.metrics.DiscoveryMetrics;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * A circuit breaker for the requests to the Azure Storage Account, so a throttling account is not hit by the requests
+ * of every discovery cycle of every node.
+ * <p>
+ * The breaker opens if at least {@value #MINIMUM_CALLS} of the last {@value #WINDOW_SIZE} requests are recorded and
+ * their failure rate reaches the configured threshold. Only failures that indicate an overloaded or unreachable account
+ * count: throttling and server errors (status code 429 and 5xx) and requests without any response. Other error
+ * responses, like a missing Blob, are answers of a healthy account.
+ * <p>
+ * While the breaker is open, requests are rejected with a {@link CircuitOpenException}. After the open duration a
+ * single probe request is let through (half-open). The breaker closes if the probe succeeds and opens again otherwise.
+ */
+class CircuitBreaker {
+
+    static final int WINDOW_SIZE = 20;
+    static final int MINIMUM_CALLS = 10;
+
+    private static final @NotNull Logger log = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final @NotNull DiscoveryMetrics metrics;
+    // the index of the replicated Azure Storage Account, its state is reported separately
+    private final int replica;
+    private final @NotNull LongSupplier nanoClock;
+    // the outcomes of the last requests as a ring buffer, true for a failure
+    private final boolean @NotNull [] window = new boolean[WINDOW_SIZE];
+    private int windowIndex;
+    private int windowCalls;
+    private int windowFailures;
+
+    private @NotNull State state = State.CLOSED;
+    private long openedNanos;
+    private boolean probeInFlight;
+
+    private boolean enabled = true;
+    private int failureRateThreshold = 50;
+    private long openDurationNanos = TimeUnit.SECONDS.toNanos(30);
+
+    CircuitBreaker(final @NotNull DiscoveryMetrics metrics) {
+        this(metrics, 0);
+    }
+
+    CircuitBreaker(final @NotNull DiscoveryMetrics metrics, final int replica) {
+        this(metrics, replica, System::nanoTime);
+    }
+
+    CircuitBreaker(final @NotNull DiscoveryMetrics metrics, final @NotNull LongSupplier nanoClock) {
+        this(metrics, 0, nanoClock);
+    }
+
+    CircuitBreaker(final @NotNull DiscoveryMetrics metrics, final int replica, final @NotNull LongSupplier nanoClock) {
+        this.metrics = metrics;
+        this.replica = replica;
+        this.nanoClock = nanoClock;
+    }
+
+    synchronized void configure(
+            final boolean enabled,
+            final int failureRateThreshold,
+            final int openDurationInSeconds) {
+        this.enabled = enabled;
+        this.failureRateThreshold = failureRateThreshold;
+        this.openDurationNanos = TimeUnit.SECONDS.toNanos(openDurationInSeconds);
+        if (!enabled && state != State.CLOSED) {
+            transitionTo(State.CLOSED);
+        }
+    }
+
+    <T> T call(final @NotNull Supplier<T> call) throws CircuitOpenException {
+        final var probe = acquirePermission();
+        final T result;
+        try {
+            result = call.get();
+        } catch (final RuntimeException e) {
+            onResult(probe, isFailure(e));
+            throw e;
+        }
+        onResult(probe, false);
+        return result;
+    }
+
+    void run(final @NotNull Runnable call) throws CircuitOpenException {
+        call(() -> {
+            call.run();
+            return null;
+        });
+    }
+
+    <T> @NotNull Mono<T> callAsync(final @NotNull Mono<T> call) {
+        return Mono.defer(() -> {
+            final var probe = acquirePermission();
+            return call.doOnSuccess(ignored -> onResult(probe, false))
+                    .doOnError(e -> onResult(probe, isFailure(e)))
+                    .doOnCancel(() -> onCancel(probe));
+        });
+    }
+
+    <T> @NotNull Flux<T> callAsync(final @NotNull Flux<T> call) {
+        return Flux.defer(() -> {
+            final var probe = acquirePermission();
+            return call.doOnComplete(() -> onResult(probe, false))
+                    .doOnError(e -> onResult(probe, isFailure(e)))
+                    .doOnCancel(() -> onCancel(probe));
+        });
+    }
+
+    /**
+     * @return {@code true} if requests are rejected right now, {@code false} if requests or a probe are let through
+     */
+    synchronized boolean isOpen() {
+        return state == State.OPEN && nanoClock.getAsLong() - openedNanos < openDurationNanos;
+    }
+
+    synchronized @NotNull State getState() {
+        return state;
+    }
+
+    /**
+     * @return {@code true} if the permitted request is the probe of the half-open breaker
+     */
+    private synchronized boolean acquirePermission() throws CircuitOpenException {
+        if (!enabled || state == State.CLOSED) {
+            return false;
+        }
+        if (state == State.OPEN && nanoClock.getAsLong() - openedNanos >= openDurationNanos) {
+            transitionTo(State.HALF_OPEN);
+        }
+        if (state == State.HALF_OPEN && !probeInFlight) {
+            probeInFlight = true;
+            return true;
+        }
+        metrics.addRejectedCall();
+        throw new CircuitOpenException("Azure Storage request rejected, the circuit breaker is open.");
+    }
+
+    private synchronized void onResult(final boolean probe, final boolean failure) {
+        if (probe) {
+            probeInFlight = false;
+            if (state == State.HALF_OPEN) {
+                transitionTo(failure ? State.OPEN : State.CLOSED);
+            }
+            return;
+        }
+        // requests that were let through before the breaker opened don't change its state anymore
+        if (!enabled || state != State.CLOSED) {
+            return;
+        }
+        if (windowCalls == WINDOW_SIZE) {
+            if (window[windowIndex]) {
+                windowFailures--;
+            }
+        } else {
+            windowCalls++;
+        }
+        window[windowIndex] = failure;
+        if (failure) {
+            windowFailures++;
+        }
+        windowIndex = (windowIndex + 1) % WINDOW_SIZE;
+        if (windowCalls >= MINIMUM_CALLS && windowFailures * 100 >= failureRateThreshold * windowCalls) {
+            transitionTo(State.OPEN);
+        }
+    }
+
+    private synchronized void onCancel(final boolean probe) {
+        // a cancelled probe didn't prove anything, so the next request is the probe
+        if (probe) {
+            probeInFlight = false;
+        }
+    }
+
+    private void transitionTo(final @NotNull State newState) {
+        if (newState == State.OPEN) {
+            openedNanos = nanoClock.getAsLong();
+            log.warn("Opened the circuit breaker for the Azure Storage Account. Requests are paused for {} seconds.",
+                    TimeUnit.NANOSECONDS.toSeconds(openDurationNanos));
+        } else if (newState == State.CLOSED) {
+            windowIndex = 0;
+            windowCalls = 0;
+            windowFailures = 0;
+            if (state != State.CLOSED) {
+                log.info("Closed the circuit breaker for the Azure Storage Account.");
+            }
+        }
+        state = newState;
+        metrics.setCircuitBreakerState(replica, newState.ordinal());
+    }
+
+    private static boolean isFailure(final @NotNull Throwable error) {
+        if (error instanceof BlobStorageException) {
+            final int statusCode = ((BlobStorageException) error).getStatusCode();
+            return statusCode == 429 || statusCode >= 500;
+        }
+        return !(error instanceof CircuitOpenException);
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2021-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.cluster.discovery.azure.client;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.OffsetDateTime;
+
+/**
+ * The content of a Blob together with the version it was downloaded in.
+ */
+public class VersionedBlobContent {
+
+    private final @NotNull String content;
+    private final @Nullable String eTag;
+    private final @Nullable OffsetDateTime lastModified;
+
+    public VersionedBlobContent(
+            final @NotNull String content,
+            final @Nullable String eTag,
+            final @Nullable OffsetDateTime lastModified) {
+        this.content = content;
+        this.eTag = eTag;
+        this.lastModified = lastModified;
+    }
+
+    public @NotNull String getContent() {
+        return content;
+    }
+
+    public @Nullable String getETag() {
+        return eTag;
+    }
+
+    public @Nullable OffsetDateTime getLastModified() {
+        return lastModified;
+    }
+}
@@ -18,15 +18,39 @@ package com.hivemq.extensions.cluster.discovery.azure.config;
 
 import org.aeonbits.owner.Config;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
 
 /**
  * @author Till Seeberger
  */
 public interface AzureDiscoveryConfig extends Config {
 
+    @NotNull String DISCOVERY_ENGINE_BLOCKING = "blocking";
+    @NotNull String DISCOVERY_ENGINE_ASYNC = "async";
+    @NotNull String CONTENT_VERSION_TEXT = "4";
+    @NotNull String CONTENT_VERSION_BINARY = "5";
+    @NotNull String REPLICA_READ_MODE_FASTEST = "fastest";
+    @NotNull String REPLICA_READ_MODE_MERGE = "merge";
+
     @Key("connection-string")
     @NotNull String getConnectionString();
 
+    // the connection strings of further Azure Storage Accounts to which the Blobs are replicated
+    @Key("replica-connection-strings")
+    @Nullable List<String> getReplicaConnectionStrings();
+
+    @Key("replica-read-mode")
+    @DefaultValue(REPLICA_READ_MODE_FASTEST)
+    @NotNull String getReplicaReadMode();
+
+    // the time after which a read is additionally sent to the next Azure Storage Account, and for which a write awaits
+    // the other Azure Storage Accounts after the first one succeeded
+    @Key("replica-hedge-delay")
+    @DefaultValue("200")
+    @NotNull Integer getReplicaHedgeDelayInMillis();
+
     @Key("container-name")
     @DefaultValue("hivemq-discovery")
     @NotNull String getContainerName();
@@ -35,6 +59,11 @@ public interface AzureDiscoveryConfig extends Config {
     @DefaultValue("hivemq-node")
     @NotNull String getFilePrefix();
 
+    // 0 keeps all node files directly under the file prefix
+    @Key("shard-count")
+    @DefaultValue("0")
+    @NotNull Integer getShardCount();
+
     @Key("file-expiration")
     @DefaultValue("360")
     @NotNull Integer getFileExpirationInSeconds();
@@ -42,4 +71,101 @@ public interface AzureDiscoveryConfig extends Config {
     @Key("update-interval")
     @DefaultValue("180")
     @NotNull Integer getFileUpdateIntervalInSeconds();
+
+    // falls back to the update interval if not set
+    @Key("read-interval")
+    @Nullable Integer getReadIntervalInSeconds();
+
+    // falls back to the update interval if not set
+    @Key("heartbeat-interval")
+    @Nullable Integer getHeartbeatIntervalInSeconds();
+
+    @Key("fast-join-enabled")
+    @DefaultValue("false")
+    @NotNull Boolean isFastJoinEnabled();
+
+    @Key("fast-join-stable-cycles")
+    @DefaultValue("3")
+    @NotNull Integer getFastJoinStableCycles();
+
+    // the percentage by which every reload interval is randomly lengthened or shortened
+    @Key("reload-jitter")
+    @DefaultValue("0")
+    @NotNull Integer getReloadJitter();
+
+    @Key("phase-offset-enabled")
+    @DefaultValue("false")
+    @NotNull Boolean isPhaseOffsetEnabled();
+
+    // unchanged nodes are not provided to HiveMQ again, HiveMQ keeps the nodes that were provided last
+    @Key("publish-changes-only")
+    @DefaultValue("false")
+    @NotNull Boolean isPublishChangesOnly();
+
+    @Key("max-staleness")
+    @DefaultValue("360")
+    @NotNull Integer getMaxStalenessInSeconds();
+
+    // the timeout of a single try of a request to the Azure Storage Account
+    @Key("request-timeout")
+    @DefaultValue("10")
+    @NotNull Integer getRequestTimeoutInSeconds();
+
+    @Key("request-max-tries")
+    @DefaultValue("3")
+    @NotNull Integer getRequestMaxTries();
+
+    @Key("request-retry-delay")
+    @DefaultValue("500")
+    @NotNull Integer getRequestRetryDelayInMillis();
+
+    @Key("request-max-retry-delay")
+    @DefaultValue("5000")
+    @NotNull Integer getRequestMaxRetryDelayInMillis();
+
+    // the time after which a discovery cycle stops reading node files
+    @Key("reload-deadline")
+    @DefaultValue("60")
+    @NotNull Integer getReloadDeadlineInSeconds();
+
+    @Key("circuit-breaker-enabled")
+    @DefaultValue("false")
+    @NotNull Boolean isCircuitBreakerEnabled();
+
+    // the percentage of failed requests that opens the circuit breaker
+    @Key("circuit-breaker-failure-rate")
+    @DefaultValue("50")
+    @NotNull Integer getCircuitBreakerFailureRate();
+
+    @Key("circuit-breaker-open-duration")
+    @DefaultValue("30")
+    @NotNull Integer getCircuitBreakerOpenDurationInSeconds();
+
+    @Key("download-parallelism")
+    @DefaultValue("8")
+    @NotNull Integer getDownloadParallelism();
+
+    @Key("blob-metadata-enabled")
+    @DefaultValue("false")
+    @NotNull Boolean isBlobMetadataEnabled();
+
+    @Key("discovery-engine")
+    @DefaultValue(DISCOVERY_ENGINE_BLOCKING)
+    @NotNull String getDiscoveryEngine();
+
+    @Key("content-version")
+    @DefaultValue(CONTENT_VERSION_TEXT)
+    @NotNull String getContentVersion();
+
+    @Key("manifest-enabled")
+    @DefaultValue("false")
+    @NotNull Boolean isManifestEnabled();
+
+    @Key("janitor-enabled")
+    @DefaultValue("false")
+    @NotNull Boolean isJanitorEnabled();
+
+    @Key("config-watch-enabled")
+    @DefaultValue("false")
+    @NotNull Boolean isConfigWatchEnabled();
 }
@@ -20,8 +20,14 @@ import com.hivemq.extension.sdk.api.services.cluster.parameter.ClusterNodeAddres
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Base64;
-import java.util.regex.Pattern;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
 
 import static com.hivemq.extensions.cluster.discovery.azure.util.Preconditions.checkArgument;
 import static com.hivemq.extensions.cluster.discovery.azure.util.Preconditions.checkNotNull;
@@ -32,7 +38,25 @@ public class ClusterNodeFile {
 
     static final @NotNull String CONTENT_VERSION = "4";
     static final @NotNull String CONTENT_SEPARATOR = "||||";
-    private static final @NotNull Pattern CONTENT_SEPARATOR_PATTERN = Pattern.compile("\\|\\|\\|\\|");
+    private static final byte @NotNull [] CONTENT_VERSION_BYTES = CONTENT_VERSION.getBytes(UTF_8);
+    private static final byte CONTENT_SEPARATOR_CHARACTER = '|';
+    private static final int CONTENT_SEPARATOR_LENGTH = CONTENT_SEPARATOR.length();
+
+    // version 5 is a binary record: the version byte, the creation time as varint, the cluster id and the host as
+    // varint length followed by their UTF-8 bytes and the port as varint
+    static final byte BINARY_CONTENT_VERSION = 5;
+
+    // Azure returns metadata names in lower case, so the names are lower case to be found again after listing
+    static final @NotNull String METADATA_VERSION = "hivemq_version";
+    static final @NotNull String METADATA_CREATION_TIME = "hivemq_creation_time";
+    static final @NotNull String METADATA_CLUSTER_ID = "hivemq_cluster_id";
+    static final @NotNull String METADATA_HOST = "hivemq_host";
+    static final @NotNull String METADATA_PORT = "hivemq_port";
+
+    // the Base64 encoded node files of a manifest never contain a line break
+    static final @NotNull String MANIFEST_SEPARATOR = "\n";
+    // the first line of a manifest holds its merge time, readers of node files skip it as it is no valid Base64
+    static final @NotNull String MANIFEST_MERGE_TIME_PREFIX = "merged:";
 
     private final @NotNull String clusterId;
     private final @NotNull ClusterNodeAddress clusterNodeAddress;
@@ -42,7 +66,7 @@ public class ClusterNodeFile {
         this(clusterId, clusterNodeAddress, System.currentTimeMillis());
     }
 
-    private ClusterNodeFile(
+    public ClusterNodeFile(
             final @NotNull String clusterId,
             final @NotNull ClusterNodeAddress clusterNodeAddress,
             final long creationTimeInMillis) {
@@ -54,45 +78,271 @@ public class ClusterNodeFile {
         this.creationTimeInMillis = creationTimeInMillis;
     }
 
+    /**
+     * Parses the content of a node file Blob, which is either a Base64 encoded version 4 text record written by
+     * {@link #toString()} or a version 5 binary record written by {@link #toBinary()}.
+     *
+     * @param fileContent the content of the Blob
+     * @return the parsed node file or {@code null} if the content is not a valid node file
+     */
+    public static @Nullable ClusterNodeFile parseClusterNodeFile(final byte @NotNull [] fileContent) {
+        checkNotNull(fileContent, "fileContent");
+        // a Base64 encoded text record never starts with the binary version byte
+        if (fileContent.length > 0 && fileContent[0] == BINARY_CONTENT_VERSION) {
+            return parseBinaryContent(fileContent);
+        }
+        final var textContent = new String(fileContent, UTF_8);
+        if (textContent.isBlank()) {
+            return null;
+        }
+        return parseClusterNodeFile(textContent);
+    }
+
+    /**
+     * Parses a Base64 encoded version 4 text record written by {@link #toString()}. Version 5 binary records are only
+     * read from the content of a Blob by {@link #parseClusterNodeFile(byte[])}.
+     *
+     * @param fileContent the Base64 encoded text record
+     * @return the parsed node file or {@code null} if the content is not a valid text record
+     */
     public static @Nullable ClusterNodeFile parseClusterNodeFile(final @NotNull String fileContent) {
         checkNotNullOrBlank(fileContent, "fileContent");
-        final String content;
+        final byte[] content;
         try {
-            content = new String(Base64.getDecoder().decode(fileContent), UTF_8);
+            content = Base64.getDecoder().decode(fileContent);
         } catch (final IllegalArgumentException ignored) {
             return null;
         }
-        final var splitContent = CONTENT_SEPARATOR_PATTERN.split(content);
-        if (splitContent.length != 5) {
+        // the separators are found like Pattern.split() does: non-overlapping from left to right, and trailing empty
+        // fields are dropped, so exactly 5 fields with a non-empty port are required
+        final var versionEnd = indexOfSeparator(content, 0);
+        if (versionEnd < 0) {
+            return null;
+        }
+        final var creationTimeStart = versionEnd + CONTENT_SEPARATOR_LENGTH;
+        final var creationTimeEnd = indexOfSeparator(content, creationTimeStart);
+        if (creationTimeEnd < 0) {
+            return null;
+        }
+        final var clusterIdStart = creationTimeEnd + CONTENT_SEPARATOR_LENGTH;
+        final var clusterIdEnd = indexOfSeparator(content, clusterIdStart);
+        if (clusterIdEnd < 0) {
             return null;
         }
-        final var version = splitContent[0];
-        if (!version.contentEquals(CONTENT_VERSION)) {
+        final var hostStart = clusterIdEnd + CONTENT_SEPARATOR_LENGTH;
+        final var hostEnd = indexOfSeparator(content, hostStart);
+        if (hostEnd < 0) {
+            return null;
+        }
+        final var portStart = hostEnd + CONTENT_SEPARATOR_LENGTH;
+        var portEnd = indexOfSeparator(content, portStart);
+        if (portEnd < 0) {
+            portEnd = content.length;
+        }
+        if (portEnd == portStart || !containsOnlySeparators(content, portEnd)) {
+            return null;
+        }
+        if (!Arrays.equals(content, 0, versionEnd, CONTENT_VERSION_BYTES, 0, CONTENT_VERSION_BYTES.length)) {
             return null;
         }
         final long creationTimeInMillis;
         try {
-            creationTimeInMillis = Long.parseLong(splitContent[1]);
+            creationTimeInMillis = parseLong(content, creationTimeStart, creationTimeEnd);
         } catch (final NumberFormatException ignored) {
             return null;
         }
-        final var clusterId = splitContent[2];
-        if (clusterId.isEmpty()) {
+        if (clusterIdEnd == clusterIdStart) {
             return null;
         }
-        final var host = splitContent[3];
-        if (host.isEmpty()) {
+        if (hostEnd == hostStart) {
             return null;
         }
         final int port;
         try {
-            port = Integer.parseInt(splitContent[4]);
+            port = parseInt(content, portStart, portEnd);
         } catch (final NumberFormatException ignored) {
             return null;
         }
+        final var clusterId = new String(content, clusterIdStart, clusterIdEnd - clusterIdStart, UTF_8);
+        final var host = new String(content, hostStart, hostEnd - hostStart, UTF_8);
         return new ClusterNodeFile(clusterId, new ClusterNodeAddress(host, port), creationTimeInMillis);
     }
 
+    private static int indexOfSeparator(final byte @NotNull [] content, final int fromIndex) {
+        // the separator consists of one repeated character, so counting consecutive characters finds the leftmost one
+        var separatorCharacters = 0;
+        for (var i = fromIndex; i < content.length; i++) {
+            if (content[i] != CONTENT_SEPARATOR_CHARACTER) {
+                separatorCharacters = 0;
+            } else if (++separatorCharacters == CONTENT_SEPARATOR_LENGTH) {
+                return i - CONTENT_SEPARATOR_LENGTH + 1;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean containsOnlySeparators(final byte @NotNull [] content, final int fromIndex) {
+        for (var i = fromIndex; i < content.length; i += CONTENT_SEPARATOR_LENGTH) {
+            if (indexOfSeparator(content, i) != i) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parses the plain decimal digits that {@link #toString()} writes without creating a String. Anything else is
+     * parsed by {@link Long#parseLong(String)}, so signs, non-ASCII digits and overflows behave as before.
+     */
+    private static long parseLong(final byte @NotNull [] content, final int start, final int end)
+            throws NumberFormatException {
+        // 18 digits can't overflow a long
+        if (end > start && end - start <= 18) {
+            var value = 0L;
+            for (var i = start; i < end; i++) {
+                final var digit = content[i] - '0';
+                if (digit < 0 || digit > 9) {
+                    return Long.parseLong(new String(content, start, end - start, UTF_8));
+                }
+                value = value * 10 + digit;
+            }
+            return value;
+        }
+        return Long.parseLong(new String(content, start, end - start, UTF_8));
+    }
+
+    private static int parseInt(final byte @NotNull [] content, final int start, final int end)
+            throws NumberFormatException {
+        // 9 digits can't overflow an int
+        if (end > start && end - start <= 9) {
+            var value = 0;
+            for (var i = start; i < end; i++) {
+                final var digit = content[i] - '0';
+                if (digit < 0 || digit > 9) {
+                    return Integer.parseInt(new String(content, start, end - start, UTF_8));
+                }
+                value = value * 10 + digit;
+            }
+            return value;
+        }
+        return Integer.parseInt(new String(content, start, end - start, UTF_8));
+    }
+
+    private static @Nullable ClusterNodeFile parseBinaryContent(final byte @NotNull [] content) {
+        final var reader = new BinaryContentReader(content);
+        final var creationTimeInMillis = reader.readVarLong();
+        if (creationTimeInMillis <= 0) {
+            return null;
+        }
+        final var clusterId = reader.readString();
+        if (clusterId == null || clusterId.isBlank()) {
+            return null;
+        }
+        final var host = reader.readString();
+        if (host == null || host.isEmpty()) {
+            return null;
+        }
+        final var port = reader.readVarLong();
+        if (port < 0 || port > Integer.MAX_VALUE || !reader.isFullyRead()) {
+            return null;
+        }
+        return new ClusterNodeFile(clusterId, new ClusterNodeAddress(host, (int) port), creationTimeInMillis);
+    }
+
+    /**
+     * Parses the node information that was written as Blob metadata by {@link #toMetadata()}.
+     *
+     * @param metadata the metadata of the Blob
+     * @return the parsed node file or {@code null} if the metadata does not contain valid node information
+     */
+    public static @Nullable ClusterNodeFile parseClusterNodeFile(final @NotNull Map<String, String> metadata) {
+        checkNotNull(metadata, "metadata");
+        final var version = metadata.get(METADATA_VERSION);
+        if (version == null || !version.contentEquals(CONTENT_VERSION)) {
+            return null;
+        }
+        final long creationTimeInMillis;
+        final int port;
+        try {
+            creationTimeInMillis = Long.parseLong(metadata.get(METADATA_CREATION_TIME));
+            port = Integer.parseInt(metadata.get(METADATA_PORT));
+        } catch (final NumberFormatException ignored) {
+            return null;
+        }
+        final var clusterId = metadata.get(METADATA_CLUSTER_ID);
+        if (clusterId == null || clusterId.isEmpty()) {
+            return null;
+        }
+        final var host = metadata.get(METADATA_HOST);
+        if (host == null || host.isEmpty()) {
+            return null;
+        }
+        return new ClusterNodeFile(clusterId, new ClusterNodeAddress(host, port), creationTimeInMillis);
+    }
+
+    /**
+     * Parses the node files of a manifest that was written by {@link #toManifest(Collection, long)}. Entries that can't
+     * be parsed are skipped.
+     *
+     * @param manifestContent the content of the manifest Blob
+     * @return the node files of the manifest, empty if the manifest is blank
+     */
+    public static @NotNull List<ClusterNodeFile> parseManifest(final @NotNull String manifestContent) {
+        checkNotNull(manifestContent, "manifestContent");
+        final var nodeFiles = new ArrayList<ClusterNodeFile>();
+        for (final var entry : manifestContent.split(MANIFEST_SEPARATOR)) {
+            if (entry.isBlank() || entry.startsWith(MANIFEST_MERGE_TIME_PREFIX)) {
+                continue;
+            }
+            final var nodeFile = parseClusterNodeFile(entry.strip());
+            if (nodeFile != null) {
+                nodeFiles.add(nodeFile);
+            }
+        }
+        return nodeFiles;
+    }
+
+    /**
+     * Parses the merge time of a manifest that was written by {@link #toManifest(Collection, long)}.
+     *
+     * @param manifestContent the content of the manifest Blob
+     * @return the merge time in milliseconds, {@code null} if the manifest has no valid merge time
+     */
+    public static @Nullable Long parseManifestMergeTime(final @NotNull String manifestContent) {
+        checkNotNull(manifestContent, "manifestContent");
+        if (!manifestContent.startsWith(MANIFEST_MERGE_TIME_PREFIX)) {
+            return null;
+        }
+        final var mergeTimeEnd = manifestContent.indexOf(MANIFEST_SEPARATOR);
+        final var mergeTime = manifestContent.substring(MANIFEST_MERGE_TIME_PREFIX.length(),
+                mergeTimeEnd < 0 ? manifestContent.length() : mergeTimeEnd).strip();
+        try {
+            return Long.parseLong(mergeTime);
+        } catch (final NumberFormatException ignored) {
+            return null;
+        }
+    }
+
+    /**
+     * Encodes multiple node files as the content of one manifest Blob, the merge time in the first line and one
+     * {@link #toString()} entry per following line.
+     *
+     * @param nodeFiles         the node files to merge
+     * @param mergeTimeInMillis the time at which the node files were merged
+     * @return the content of the manifest Blob
+     */
+    public static @NotNull String toManifest(
+            final @NotNull Collection<ClusterNodeFile> nodeFiles,
+            final long mergeTimeInMillis) {
+        checkNotNull(nodeFiles, "nodeFiles");
+        final var manifest = new StringJoiner(MANIFEST_SEPARATOR);
+        manifest.add(MANIFEST_MERGE_TIME_PREFIX + mergeTimeInMillis);
+        for (final var nodeFile : nodeFiles) {
+            manifest.add(nodeFile.toString());
+        }
+        return manifest.toString();
+    }
+
     public @NotNull String getClusterId() {
         return clusterId;
     }
@@ -101,13 +351,89 @@ public class ClusterNodeFile {
         return clusterNodeAddress;
     }
 
+    public long getCreationTimeInMillis() {
+        return creationTimeInMillis;
+    }
+
     public boolean isExpired(final long expirationInSeconds) {
+        return isExpired(expirationInSeconds, System.currentTimeMillis());
+    }
+
+    public boolean isExpired(final long expirationInSeconds, final long nowInMillis) {
         // 0 = deactivated
         if (expirationInSeconds == 0) {
             return false;
         }
         final var creationPlusExpirationInMillis = creationTimeInMillis + (expirationInSeconds * 1_000);
-        return creationPlusExpirationInMillis < System.currentTimeMillis();
+        return creationPlusExpirationInMillis < nowInMillis;
+    }
+
+    /**
+     * Encodes the node information as Blob metadata, so it can be read from a Blob listing without a download.
+     *
+     * @return the metadata or {@code null} if the node information cannot be sent as metadata (non-ASCII values)
+     */
+    public @Nullable Map<String, String> toMetadata() {
+        final var asciiEncoder = StandardCharsets.US_ASCII.newEncoder();
+        if (!asciiEncoder.canEncode(clusterId) || !asciiEncoder.canEncode(clusterNodeAddress.getHost())) {
+            return null;
+        }
+        return Map.of(METADATA_VERSION,
+                CONTENT_VERSION,
+                METADATA_CREATION_TIME,
+                Long.toString(creationTimeInMillis),
+                METADATA_CLUSTER_ID,
+                clusterId,
+                METADATA_HOST,
+                clusterNodeAddress.getHost(),
+                METADATA_PORT,
+                Integer.toString(clusterNodeAddress.getPort()));
+    }
+
+    /**
+     * Encodes the node information as a version 5 binary record, which is uploaded as is. It is about half the size
+     * of the Base64 encoded text record of {@link #toString()}.
+     *
+     * @return the content of the node file Blob
+     */
+    public byte @NotNull [] toBinary() {
+        final var clusterIdBytes = clusterId.getBytes(UTF_8);
+        final var hostBytes = clusterNodeAddress.getHost().getBytes(UTF_8);
+        final var port = clusterNodeAddress.getPort();
+        final var content = new byte[1 +
+                varLongSize(creationTimeInMillis) +
+                varLongSize(clusterIdBytes.length) +
+                clusterIdBytes.length +
+                varLongSize(hostBytes.length) +
+                hostBytes.length +
+                varLongSize(port)];
+        content[0] = BINARY_CONTENT_VERSION;
+        var index = writeVarLong(content, 1, creationTimeInMillis);
+        index = writeVarLong(content, index, clusterIdBytes.length);
+        System.arraycopy(clusterIdBytes, 0, content, index, clusterIdBytes.length);
+        index = writeVarLong(content, index + clusterIdBytes.length, hostBytes.length);
+        System.arraycopy(hostBytes, 0, content, index, hostBytes.length);
+        writeVarLong(content, index + hostBytes.length, port);
+        return content;
+    }
+
+    private static int varLongSize(final long value) {
+        var size = 1;
+        for (var remaining = value >>> 7; remaining != 0; remaining >>>= 7) {
+            size++;
+        }
+        return size;
+    }
+
+    private static int writeVarLong(final byte @NotNull [] content, final int fromIndex, final long value) {
+        var index = fromIndex;
+        var remaining = value;
+        while ((remaining & ~0x7FL) != 0) {
+            content[index++] = (byte) ((remaining & 0x7F) | 0x80);
+            remaining >>>= 7;
+        }
+        content[index++] = (byte) remaining;
+        return index;
     }
 
     @Override
@@ -116,4 +442,52 @@ public class ClusterNodeFile {
                 CONTENT_SEPARATOR + clusterNodeAddress.getHost() + CONTENT_SEPARATOR + clusterNodeAddress.getPort();
         return new String(Base64.getEncoder().encode(content.getBytes(UTF_8)), UTF_8);
     }
+
+    /**
+     * Reads the fields of a version 5 binary record. Truncated or malformed fields are reported as {@code -1} or
+     * {@code null} instead of an exception, so invalid Blobs are skipped like invalid text records.
+     */
+    private static class BinaryContentReader {
+
+        private final byte @NotNull [] content;
+        // the version byte is already checked
+        private int index = 1;
+
+        private BinaryContentReader(final byte @NotNull [] content) {
+            this.content = content;
+        }
+
+        private long readVarLong() {
+            var value = 0L;
+            for (var shift = 0; shift < Long.SIZE; shift += 7) {
+                if (index >= content.length) {
+                    return -1;
+                }
+                final var b = content[index++];
+                // the 10th byte may only hold the last bit, which would make the value negative
+                if (shift == 63 && b != 0) {
+                    return -1;
+                }
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            return -1;
+        }
+
+        private @Nullable String readString() {
+            final var length = readVarLong();
+            if (length < 0 || length > content.length - index) {
+                return null;
+            }
+            final var value = new String(content, index, (int) length, UTF_8);
+            index += (int) length;
+            return value;
+        }
+
+        private boolean isFullyRead() {
+            return index == content.length;
+        }
+    }
 }
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2021-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.cluster.discovery.azure.config;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collection;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+
+/**
+ * Reports whether the file system signaled a change in one of the watched directories since the last check.
+ * <p>
+ * The watch service is only polled, so no additional thread is needed.
+ */
+class ConfigFileWatcher implements Closeable {
+
+    private final @NotNull WatchService watchService;
+
+    ConfigFileWatcher(final @NotNull Collection<Path> directories) throws IOException {
+        watchService = FileSystems.getDefault().newWatchService();
+        try {
+            for (final var directory : directories) {
+                if (directory.toFile().isDirectory()) {
+                    directory.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+                }
+            }
+        } catch (final IOException | RuntimeException e) {
+            watchService.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return {@code true} if any change was signaled since the last call, the pending events are consumed
+     */
+    boolean hasChanged() {
+        var changed = false;
+        WatchKey watchKey;
+        while ((watchKey = watchService.poll()) != null) {
+            changed |= !watchKey.pollEvents().isEmpty();
+            // an invalid key (e.g. the directory was deleted) can't report changes anymore
+            if (!watchKey.reset()) {
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+}
@@ -23,10 +23,16 @@ import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.LinkedHashSet;
 import java.util.Properties;
+import java.util.zip.CRC32;
 
 public class ConfigReader {
 
@@ -35,10 +41,20 @@ public class ConfigReader {
 
     private static final @NotNull Logger logger = LoggerFactory.getLogger(ConfigReader.class);
 
+    private final @NotNull Path extensionHome;
     private final @NotNull ConfigResolver configResolver;
 
+    // the last valid configuration, reused as long as the properties file does not change
+    private @Nullable AzureDiscoveryConfig cachedConfig;
+    private @Nullable Path cachedConfigPath;
+    private long cachedSize;
+    private @Nullable FileTime cachedLastModifiedTime;
+    private long cachedChecksum;
+    private @Nullable ConfigFileWatcher configFileWatcher;
+
     public ConfigReader(final @NotNull ExtensionInformation extensionInformation) {
-        configResolver = new ConfigResolver(extensionInformation.getExtensionHomeFolder().toPath(),
+        extensionHome = extensionInformation.getExtensionHomeFolder().toPath();
+        configResolver = new ConfigResolver(extensionHome,
                 "Azure Cluster Discovery Extension",
                 CONFIG_PATH,
                 LEGACY_CONFIG_PATH);
@@ -95,46 +111,329 @@ public class ConfigReader {
                 return false;
             }
         }
+        final Integer readIntervalInSeconds;
+        try {
+            readIntervalInSeconds = azureDiscoveryConfig.getReadIntervalInSeconds();
+        } catch (final UnsupportedOperationException e) {
+            logger.warn("The Read Interval in the configuration file was not valid. {}.", e.getMessage());
+            return false;
+        }
+        if (readIntervalInSeconds != null && readIntervalInSeconds < 1) {
+            logger.warn("The Read Interval in the configuration file must be at least 1.");
+            return false;
+        }
+        final Integer heartbeatIntervalInSeconds;
+        try {
+            heartbeatIntervalInSeconds = azureDiscoveryConfig.getHeartbeatIntervalInSeconds();
+        } catch (final UnsupportedOperationException e) {
+            logger.warn("The Heartbeat Interval in the configuration file was not valid. {}.", e.getMessage());
+            return false;
+        }
+        if (heartbeatIntervalInSeconds != null) {
+            if (heartbeatIntervalInSeconds < 1) {
+                logger.warn("The Heartbeat Interval in the configuration file must be at least 1.");
+                return false;
+            }
+            if (fileExpirationInSeconds > 0 && !(heartbeatIntervalInSeconds < fileExpirationInSeconds)) {
+                logger.warn("The Heartbeat Interval is not less than the File Expiration Interval.");
+                return false;
+            }
+        }
+        final int fastJoinStableCycles;
+        try {
+            fastJoinStableCycles = azureDiscoveryConfig.getFastJoinStableCycles();
+        } catch (final UnsupportedOperationException e) {
+            logger.warn("The Fast Join Stable Cycles in the configuration file were not valid. {}.", e.getMessage());
+            return false;
+        }
+        if (fastJoinStableCycles < 1) {
+            logger.warn("The Fast Join Stable Cycles in the configuration file must be at least 1.");
+            return false;
+        }
+        final int reloadJitter;
+        try {
+            reloadJitter = azureDiscoveryConfig.getReloadJitter();
+        } catch (final UnsupportedOperationException e) {
+            logger.warn("The Reload Jitter in the configuration file was not valid. {}.", e.getMessage());
+            return false;
+        }
+        if (reloadJitter < 0 || reloadJitter > 100) {
+            logger.warn("The Reload Jitter in the configuration file must be between 0 and 100.");
+            return false;
+        }
+        final int shardCount;
+        try {
+            shardCount = azureDiscoveryConfig.getShardCount();
+        } catch (final UnsupportedOperationException e) {
+            logger.warn("The Shard Count in the configuration file was not valid. {}.", e.getMessage());
+            return false;
+        }
+        if (shardCount < 0 || shardCount > NodeFileLayout.MAX_SHARD_COUNT) {
+            logger.warn("The Shard Count in the configuration file must be between 0 and {}.",
+                    NodeFileLayout.MAX_SHARD_COUNT);
+            return false;
+        }
+        final int maxStalenessInSeconds;
+        try {
+            maxStalenessInSeconds = azureDiscoveryConfig.getMaxStalenessInSeconds();
+        } catch (final UnsupportedOperationException e) {
+            logger.warn("The Max Staleness in the configuration file was not valid. {}.", e.getMessage());
+            return false;
+        }
+        if (maxStalenessInSeconds < 0) {
+            logger.warn("The Max Staleness in the configuration file was negative.");
+            return false;
+        }
+        final int requestTimeoutInSeconds;
+        final int requestMaxTries;
+        final int requestRetryDelayInMillis;
+        final int requestMaxRetryDelayInMillis;
+        final int reloadDeadlineInSeconds;
+        try {
+            requestTimeoutInSeconds = azureDiscoveryConfig.getRequestTimeoutInSeconds();
+            requestMaxTries = azureDiscoveryConfig.getRequestMaxTries();
+            requestRetryDelayInMillis = azureDiscoveryConfig.getRequestRetryDelayInMillis();
+            requestMaxRetryDelayInMillis = azureDiscoveryConfig.getRequestMaxRetryDelayInMillis();
+            reloadDeadlineInSeconds = azureDiscoveryConfig.getReloadDeadlineInSeconds();
+        } catch (final UnsupportedOperationException e) {
+            logger.warn("The Request Retry Options in the configuration file were not valid. {}.", e.getMessage());
+            return false;
+        }
+        if (requestTimeoutInSeconds < 1) {
+            logger.warn("The Request Timeout in the configuration file must be at least 1 second.");
+            return false;
+        }
+        if (requestMaxTries < 1) {
+            logger.warn("The Request Max Tries in the configuration file must be at least 1.");
+            return false;
+        }
+        if (requestRetryDelayInMillis < 1) {
+            logger.warn("The Request Retry Delay in the configuration file must be at least 1 millisecond.");
+            return false;
+        }
+        if (requestMaxRetryDelayInMillis < requestRetryDelayInMillis) {
+            logger.warn(
+                    "The Request Max Retry Delay in the configuration file was less than the Request Retry Delay.");
+            return false;
+        }
+        if (reloadDeadlineInSeconds < 1) {
+            logger.warn("The Reload Deadline in the configuration file must be at least 1 second.");
+            return false;
+        }
+        final int circuitBreakerFailureRate;
+        final int circuitBreakerOpenDurationInSeconds;
+        try {
+            circuitBreakerFailureRate = azureDiscoveryConfig.getCircuitBreakerFailureRate();
+            circuitBreakerOpenDurationInSeconds = azureDiscoveryConfig.getCircuitBreakerOpenDurationInSeconds();
+        } catch (final UnsupportedOperationException e) {
+            logger.warn("The Circuit Breaker Options in the configuration file were not valid. {}.", e.getMessage());
+            return false;
+        }
+        if (circuitBreakerFailureRate < 1 || circuitBreakerFailureRate > 100) {
+            logger.warn("The Circuit Breaker Failure Rate in the configuration file must be between 1 and 100.");
+            return false;
+        }
+        if (circuitBreakerOpenDurationInSeconds < 1) {
+            logger.warn("The Circuit Breaker Open Duration in the configuration file must be at least 1 second.");
+            return false;
+        }
+        final int downloadParallelism;
+        try {
+            downloadParallelism = azureDiscoveryConfig.getDownloadParallelism();
+        } catch (final UnsupportedOperationException e) {
+            logger.warn("The Download Parallelism in the configuration file was not valid. {}.", e.getMessage());
+            return false;
+        }
+        if (downloadParallelism < 1) {
+            logger.warn("The Download Parallelism in the configuration file must be at least 1.");
+            return false;
+        }
+        final var discoveryEngine = azureDiscoveryConfig.getDiscoveryEngine();
+        if (!AzureDiscoveryConfig.DISCOVERY_ENGINE_BLOCKING.equals(discoveryEngine) &&
+                !AzureDiscoveryConfig.DISCOVERY_ENGINE_ASYNC.equals(discoveryEngine)) {
+            logger.warn("The Discovery Engine '{}' in the configuration file is unknown. Supported are '{}' and '{}'.",
+                    discoveryEngine,
+                    AzureDiscoveryConfig.DISCOVERY_ENGINE_BLOCKING,
+                    AzureDiscoveryConfig.DISCOVERY_ENGINE_ASYNC);
+            return false;
+        }
+        final var replicaReadMode = azureDiscoveryConfig.getReplicaReadMode();
+        if (!AzureDiscoveryConfig.REPLICA_READ_MODE_FASTEST.equals(replicaReadMode) &&
+                !AzureDiscoveryConfig.REPLICA_READ_MODE_MERGE.equals(replicaReadMode)) {
+            logger.warn("The Replica Read Mode '{}' in the configuration file is unknown. Supported are '{}' and '{}'.",
+                    replicaReadMode,
+                    AzureDiscoveryConfig.REPLICA_READ_MODE_FASTEST,
+                    AzureDiscoveryConfig.REPLICA_READ_MODE_MERGE);
+            return false;
+        }
+        final int replicaHedgeDelayInMillis;
+        try {
+            replicaHedgeDelayInMillis = azureDiscoveryConfig.getReplicaHedgeDelayInMillis();
+        } catch (final UnsupportedOperationException e) {
+            logger.warn("The Replica Hedge Delay in the configuration file was not valid. {}.", e.getMessage());
+            return false;
+        }
+        if (replicaHedgeDelayInMillis < 0) {
+            logger.warn("The Replica Hedge Delay in the configuration file was negative.");
+            return false;
+        }
+        if (AzureDiscoveryConfig.DISCOVERY_ENGINE_ASYNC.equals(discoveryEngine) &&
+                hasReplicaConnectionStrings(azureDiscoveryConfig)) {
+            logger.warn("The Discovery Engine '{}' does not support the Replica Connection Strings. Using the '{}' " +
+                    "Discovery Engine instead.", discoveryEngine, AzureDiscoveryConfig.DISCOVERY_ENGINE_BLOCKING);
+        }
+        final var contentVersion = azureDiscoveryConfig.getContentVersion();
+        if (!AzureDiscoveryConfig.CONTENT_VERSION_TEXT.equals(contentVersion) &&
+                !AzureDiscoveryConfig.CONTENT_VERSION_BINARY.equals(contentVersion)) {
+            logger.warn("The Content Version '{}' in the configuration file is unknown. Supported are '{}' and '{}'.",
+                    contentVersion,
+                    AzureDiscoveryConfig.CONTENT_VERSION_TEXT,
+                    AzureDiscoveryConfig.CONTENT_VERSION_BINARY);
+            return false;
+        }
         return true;
     }
 
+    private static boolean hasReplicaConnectionStrings(final @NotNull AzureDiscoveryConfig azureDiscoveryConfig) {
+        final var replicaConnectionStrings = azureDiscoveryConfig.getReplicaConnectionStrings();
+        return replicaConnectionStrings != null &&
+                replicaConnectionStrings.stream().anyMatch(connectionString -> !isNullOrBlank(connectionString));
+    }
+
     public static boolean isNullOrBlank(final @Nullable String value) {
         return value == null || value.isBlank();
     }
 
     public @Nullable AzureDiscoveryConfig readConfiguration() {
-        final var propertiesFile = configResolver.get().toFile();
+        // in watch mode the file system reports changes, so an unchanged file is not touched at all
+        if (cachedConfig != null && configFileWatcher != null && !configFileWatcher.hasChanged()) {
+            logger.trace("Properties file '{}' is unchanged. Using cached configuration.", cachedConfigPath);
+            return cachedConfig;
+        }
+        closeConfigFileWatcher();
+        final var propertiesPath = configResolver.get();
+        final var propertiesFile = propertiesPath.toFile();
         if (!propertiesFile.exists()) {
             logger.warn("Could not find '{}'. Please verify that the properties file is located under '{}'.",
                     propertiesFile.getName(),
                     propertiesFile.getParentFile());
+            invalidateCache();
             return null;
         }
         if (!propertiesFile.canRead()) {
             logger.warn(
                     "Could not read '{}'. Please verify that the user running HiveMQ has reading permissions for it.",
                     propertiesFile.getAbsolutePath());
+            invalidateCache();
             return null;
         }
-        try (final var inputStream = new FileInputStream(propertiesFile)) {
+        try {
+            final var attributes = Files.readAttributes(propertiesPath, BasicFileAttributes.class);
+            final var content = Files.readAllBytes(propertiesPath);
+            final var checksum = checksum(content);
+            if (cachedConfig != null &&
+                    propertiesPath.equals(cachedConfigPath) &&
+                    attributes.size() == cachedSize &&
+                    attributes.lastModifiedTime().equals(cachedLastModifiedTime) &&
+                    checksum == cachedChecksum) {
+                logger.trace("Properties file '{}' is unchanged. Using cached configuration.", propertiesPath);
+                startConfigFileWatcher(cachedConfig, propertiesPath);
+                return cachedConfig;
+            }
+            invalidateCache();
             logger.debug("Reading properties file '{}'.", propertiesFile.getAbsolutePath());
             final var properties = new Properties();
-            properties.load(inputStream);
+            properties.load(new ByteArrayInputStream(content));
             final var azureDiscoveryConfig = ConfigFactory.create(AzureDiscoveryConfig.class, properties);
             if (!isValid(azureDiscoveryConfig)) {
                 logger.warn("The Configuration of the Azure Storage Cluster Discovery Extension is not valid.");
                 return null;
             }
             logger.trace("Read properties file '{}' successfully.", propertiesFile.getAbsolutePath());
+            cachedConfig = azureDiscoveryConfig;
+            cachedConfigPath = propertiesPath;
+            cachedSize = attributes.size();
+            cachedLastModifiedTime = attributes.lastModifiedTime();
+            cachedChecksum = checksum;
+            startConfigFileWatcher(azureDiscoveryConfig, propertiesPath);
             return azureDiscoveryConfig;
 
-        } catch (final FileNotFoundException e) {
+        } catch (final NoSuchFileException e) {
             logger.warn("Could not find the properties file '{}'", propertiesFile.getAbsolutePath());
         } catch (final IOException e) {
             logger.warn("An error occurred while reading the properties file {}. {}",
                     propertiesFile.getAbsolutePath(),
                     e.getMessage());
         }
+        invalidateCache();
         return null;
     }
+
+    /**
+     * Releases the file system watch of the {@code config-watch-enabled} mode.
+     */
+    public void close() {
+        closeConfigFileWatcher();
+    }
+
+    private void startConfigFileWatcher(
+            final @NotNull AzureDiscoveryConfig azureDiscoveryConfig,
+            final @NotNull Path propertiesPath) {
+        if (!azureDiscoveryConfig.isConfigWatchEnabled()) {
+            return;
+        }
+        // the legacy location is the extension home, so a config file that is moved there is noticed as well
+        final var directories = new LinkedHashSet<Path>();
+        directories.add(propertiesPath.toAbsolutePath().getParent());
+        directories.add(extensionHome.toAbsolutePath());
+        try {
+            configFileWatcher = new ConfigFileWatcher(directories);
+        } catch (final IOException | RuntimeException e) {
+            logger.warn("Could not watch the properties file '{}' for changes. It is checked on every reload. {}",
+                    propertiesPath,
+                    e.getMessage());
+            return;
+        }
+        // a change between reading the file and registering the watch is not reported by the watch, so the file is
+        // checked once more and read again on the next reload if it changed in between
+        if (!isUnchangedSinceRead(propertiesPath)) {
+            logger.debug("Properties file '{}' changed while it was read. Reading it again on the next reload.",
+                    propertiesPath);
+            closeConfigFileWatcher();
+        }
+    }
+
+    private boolean isUnchangedSinceRead(final @NotNull Path propertiesPath) {
+        try {
+            final var attributes = Files.readAttributes(propertiesPath, BasicFileAttributes.class);
+            return attributes.size() == cachedSize &&
+                    attributes.lastModifiedTime().equals(cachedLastModifiedTime) &&
+                    checksum(Files.readAllBytes(propertiesPath)) == cachedChecksum;
+        } catch (final IOException e) {
+            return false;
+        }
+    }
+
+    private void closeConfigFileWatcher() {
+        if (configFileWatcher != null) {
+            try {
+                configFileWatcher.close();
+            } catch (final IOException e) {
+                logger.debug("Could not close the watch of the properties file.", e);
+            }
+            configFileWatcher = null;
+        }
+    }
+
+    private void invalidateCache() {
+        cachedConfig = null;
+        cachedConfigPath = null;
+        cachedLastModifiedTime = null;
+    }
+
+    private static long checksum(final byte @NotNull [] content) {
+        final var crc32 = new CRC32();
+        crc32.update(content);
+        return crc32.getValue();
+    }
 }
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2021-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.cluster.discovery.azure.config;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The names of the Blobs that hold the node files. In the flat layout all node files are named
+ * {@code <file-prefix><cluster-id>}. In the sharded layout every node file is placed in one of the shards, the virtual
+ * directories {@code <file-prefix>/00/} to {@code <file-prefix>/<shard-count - 1>/}, by the hash of its cluster ID, so
+ * the node files are listed with one request per shard instead of one request for the whole prefix.
+ */
+public class NodeFileLayout {
+
+    public static final int MAX_SHARD_COUNT = 100;
+
+    private final @NotNull String filePrefix;
+    private final int shardCount;
+
+    public NodeFileLayout(final @NotNull String filePrefix, final int shardCount) {
+        this.filePrefix = filePrefix;
+        this.shardCount = shardCount;
+    }
+
+    public boolean isSharded() {
+        return shardCount > 0;
+    }
+
+    public @NotNull String getBlobName(final @NotNull String clusterId) {
+        if (!isSharded()) {
+            return filePrefix + clusterId;
+        }
+        return getShardPrefix(getShard(clusterId, shardCount)) + clusterId;
+    }
+
+    /**
+     * @return the prefixes that list all node files, the file prefix in the flat layout, one prefix per shard in the
+     *         sharded layout
+     */
+    public @NotNull List<String> getListingPrefixes() {
+        if (!isSharded()) {
+            return List.of(filePrefix);
+        }
+        final var listingPrefixes = new ArrayList<String>(shardCount);
+        for (var shard = 0; shard < shardCount; shard++) {
+            listingPrefixes.add(getShardPrefix(shard));
+        }
+        return listingPrefixes;
+    }
+
+    /**
+     * @param previousLayout the layout the node files were written with before the file prefix or the shard count
+     *                       was changed
+     * @return the prefixes that list the node files of both layouts, a prefix that is already covered by another one
+     *         is left out, so no Blob is listed twice
+     */
+    public @NotNull List<String> getListingPrefixes(final @NotNull NodeFileLayout previousLayout) {
+        final var candidates = new ArrayList<>(getListingPrefixes());
+        for (final var listingPrefix : previousLayout.getListingPrefixes()) {
+            if (!candidates.contains(listingPrefix)) {
+                candidates.add(listingPrefix);
+            }
+        }
+        final var listingPrefixes = new ArrayList<String>(candidates.size());
+        for (final var listingPrefix : candidates) {
+            if (candidates.stream()
+                    .noneMatch(other -> !other.equals(listingPrefix) && listingPrefix.startsWith(other))) {
+                listingPrefixes.add(listingPrefix);
+            }
+        }
+        return listingPrefixes;
+    }
+
+    private @NotNull String getShardPrefix(final int shard) {
+        return String.format("%s/%02d/", filePrefix, shard);
+    }
+
+    // the hash code of a String is specified, so all nodes place a cluster ID in the same shard
+    static int getShard(final @NotNull String clusterId, final int shardCount) {
+        return Math.floorMod(clusterId.hashCode(), shardCount);
+    }
+
+    @Override
+    public boolean equals(final @Nullable Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        final var that = (NodeFileLayout) o;
+        return shardCount == that.shardCount && filePrefix.equals(that.filePrefix);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(filePrefix, shardCount);
+    }
+
+    @Override
+    public @NotNull String toString() {
+        return isSharded() ? String.format("%s with %d shards", filePrefix, shardCount) : filePrefix;
+    }
+}
@@ -0,0 +1,261 @@
+/*
+ * Copyright 2021-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.cluster.discovery.azure.metrics;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.MetricRegistryListener;
+import com.codahale.metrics.Timer;
+import org.jetbrains.annotations.NotNull;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Metrics of the Azure Storage operations and the discovery cycles of the extension.
+ * <p>
+ * The metrics are collected in an own {@link MetricRegistry}, so they work without a running HiveMQ. The extension
+ * registers them in the metric registry of HiveMQ on start and removes them by their {@value #METRIC_PREFIX} prefix on
+ * stop.
+ */
+public class DiscoveryMetrics {
+
+    public static final @NotNull String METRIC_PREFIX = "com.hivemq.extensions.cluster.discovery.azure";
+
+    /**
+     * The Azure Storage operations that are timed, with a timer and an error counter each.
+     */
+    public enum Operation {
+        EXISTS_CONTAINER("exists-container"),
+        CREATE_CONTAINER("create-container"),
+        SAVE_BLOB("save-blob"),
+        DELETE_BLOB("delete-blob"),
+        GET_BLOB_CONTENT("get-blob-content"),
+        GET_BLOBS("get-blobs"),
+        LEASE_BLOB("lease-blob");
+
+        private final @NotNull String metricName;
+
+        Operation(final @NotNull String metricName) {
+            this.metricName = metricName;
+        }
+    }
+
+    private final @NotNull MetricRegistry metricRegistry = new MetricRegistry();
+    private final @NotNull Map<Operation, Timer> timers = new EnumMap<>(Operation.class);
+    private final @NotNull Map<Operation, Counter> errorCounters = new EnumMap<>(Operation.class);
+    private final @NotNull Counter bytesUploaded;
+    private final @NotNull Counter bytesDownloaded;
+    private final @NotNull Counter rejectedCalls;
+    private final @NotNull Counter joinedNodes;
+    private final @NotNull Counter leftNodes;
+    private final @NotNull Counter skippedPublishes;
+    private final @NotNull Counter nodeFileCacheHits;
+    private final @NotNull Counter nodeFileCacheMisses;
+    private final @NotNull AtomicInteger discoveredNodes = new AtomicInteger();
+    private final @NotNull AtomicInteger expiredNodes = new AtomicInteger();
+    private final @NotNull AtomicLong lastReloadDurationMillis = new AtomicLong();
+    // 0 closed, 1 open, 2 half-open, of the Azure Storage Account of the connection string
+    private final @NotNull AtomicInteger circuitBreakerState = new AtomicInteger();
+    // the states of the circuit breakers of the replicated Azure Storage Accounts by the index of the replica
+    private final @NotNull Map<Integer, AtomicInteger> replicaCircuitBreakerStates = new ConcurrentHashMap<>();
+
+    public DiscoveryMetrics() {
+        for (final var operation : Operation.values()) {
+            timers.put(operation,
+                    metricRegistry.timer(MetricRegistry.name(METRIC_PREFIX, "storage", operation.metricName, "time")));
+            errorCounters.put(operation,
+                    metricRegistry.counter(MetricRegistry.name(METRIC_PREFIX,
+                            "storage",
+                            operation.metricName,
+                            "errors")));
+        }
+        bytesUploaded = metricRegistry.counter(MetricRegistry.name(METRIC_PREFIX, "storage", "bytes-uploaded"));
+        bytesDownloaded = metricRegistry.counter(MetricRegistry.name(METRIC_PREFIX, "storage", "bytes-downloaded"));
+        rejectedCalls = metricRegistry.counter(MetricRegistry.name(METRIC_PREFIX, "circuit-breaker", "rejected-calls"));
+        joinedNodes = metricRegistry.counter(MetricRegistry.name(METRIC_PREFIX, "membership", "joined-nodes"));
+        leftNodes = metricRegistry.counter(MetricRegistry.name(METRIC_PREFIX, "membership", "left-nodes"));
+        skippedPublishes =
+                metricRegistry.counter(MetricRegistry.name(METRIC_PREFIX, "membership", "skipped-publishes"));
+        nodeFileCacheHits = metricRegistry.counter(MetricRegistry.name(METRIC_PREFIX, "node-file-cache", "hits"));
+        nodeFileCacheMisses = metricRegistry.counter(MetricRegistry.name(METRIC_PREFIX, "node-file-cache", "misses"));
+        metricRegistry.register(MetricRegistry.name(METRIC_PREFIX, "discovered-nodes"),
+                (Gauge<Integer>) discoveredNodes::get);
+        metricRegistry.register(MetricRegistry.name(METRIC_PREFIX, "expired-nodes"),
+                (Gauge<Integer>) expiredNodes::get);
+        metricRegistry.register(MetricRegistry.name(METRIC_PREFIX, "last-reload-duration-millis"),
+                (Gauge<Long>) lastReloadDurationMillis::get);
+        metricRegistry.register(MetricRegistry.name(METRIC_PREFIX, "circuit-breaker", "state"),
+                (Gauge<Integer>) circuitBreakerState::get);
+    }
+
+    public <T> T time(final @NotNull Operation operation, final @NotNull Supplier<T> call) {
+        final var context = timers.get(operation).time();
+        try {
+            return call.get();
+        } catch (final RuntimeException e) {
+            errorCounters.get(operation).inc();
+            throw e;
+        } finally {
+            context.stop();
+        }
+    }
+
+    public void time(final @NotNull Operation operation, final @NotNull Runnable call) {
+        time(operation, () -> {
+            call.run();
+            return null;
+        });
+    }
+
+    /**
+     * Times every subscription of the given {@link Mono} from subscription to termination or cancellation.
+     */
+    public <T> @NotNull Mono<T> timeAsync(final @NotNull Operation operation, final @NotNull Mono<T> call) {
+        return Mono.defer(() -> {
+            final var context = timers.get(operation).time();
+            return call.doOnError(e -> errorCounters.get(operation).inc()).doFinally(signal -> context.stop());
+        });
+    }
+
+    /**
+     * Times every subscription of the given {@link Flux} from subscription to termination or cancellation.
+     */
+    public <T> @NotNull Flux<T> timeAsync(final @NotNull Operation operation, final @NotNull Flux<T> call) {
+        return Flux.defer(() -> {
+            final var context = timers.get(operation).time();
+            return call.doOnError(e -> errorCounters.get(operation).inc()).doFinally(signal -> context.stop());
+        });
+    }
+
+    public void addBytesUploaded(final long bytes) {
+        bytesUploaded.inc(bytes);
+    }
+
+    public void addBytesDownloaded(final long bytes) {
+        bytesDownloaded.inc(bytes);
+    }
+
+    public void setDiscoveredNodes(final int count) {
+        discoveredNodes.set(count);
+    }
+
+    public void setExpiredNodes(final int count) {
+        expiredNodes.set(count);
+    }
+
+    public void setLastReloadDuration(final long durationInNanos) {
+        lastReloadDurationMillis.set(TimeUnit.NANOSECONDS.toMillis(durationInNanos));
+    }
+
+    /**
+     * @param replica the index of the replicated Azure Storage Account, 0 is the account of the connection string
+     * @param state   the ordinal of the state of the circuit breaker of the Azure Storage Account
+     */
+    public void setCircuitBreakerState(final int replica, final int state) {
+        if (replica == 0) {
+            circuitBreakerState.set(state);
+            return;
+        }
+        // every replica has its own circuit breaker, so they must not overwrite each other's state
+        replicaCircuitBreakerStates.computeIfAbsent(replica, index -> {
+            final var replicaState = new AtomicInteger();
+            metricRegistry.register(MetricRegistry.name(METRIC_PREFIX,
+                    "replica",
+                    String.valueOf(index),
+                    "circuit-breaker",
+                    "state"), (Gauge<Integer>) replicaState::get);
+            return replicaState;
+        }).set(state);
+    }
+
+    public void addRejectedCall() {
+        rejectedCalls.inc();
+    }
+
+    public void addMembershipChanges(final int joined, final int left) {
+        joinedNodes.inc(joined);
+        leftNodes.inc(left);
+    }
+
+    public void addSkippedPublish() {
+        skippedPublishes.inc();
+    }
+
+    public void addNodeFileCacheHit() {
+        nodeFileCacheHits.inc();
+    }
+
+    public void addNodeFileCacheMiss() {
+        nodeFileCacheMisses.inc();
+    }
+
+    public long getNodeFileCacheHits() {
+        return nodeFileCacheHits.getCount();
+    }
+
+    public long getNodeFileCacheMisses() {
+        return nodeFileCacheMisses.getCount();
+    }
+
+    /**
+     * @param replica the index of the replicated Azure Storage Account, 0 is the account of the connection string
+     * @return the timer of the requests to the replica, it is created on first use
+     */
+    public @NotNull Timer getReplicaTimer(final int replica) {
+        return metricRegistry.timer(MetricRegistry.name(METRIC_PREFIX, "replica", String.valueOf(replica), "time"));
+    }
+
+    public void addReplicaError(final int replica) {
+        metricRegistry.counter(MetricRegistry.name(METRIC_PREFIX, "replica", String.valueOf(replica), "errors")).inc();
+    }
+
+    /**
+     * Registers all metrics in the given registry, also the ones that are only created later, like the metrics of the
+     * replicated Azure Storage Accounts that are only known once the configuration was read.
+     */
+    public void registerIn(final @NotNull MetricRegistry targetRegistry) {
+        metricRegistry.addListener(new MetricRegistryListener.Base() {
+            @Override
+            public void onGaugeAdded(final @NotNull String name, final @NotNull Gauge<?> gauge) {
+                targetRegistry.register(name, gauge);
+            }
+
+            @Override
+            public void onCounterAdded(final @NotNull String name, final @NotNull Counter counter) {
+                targetRegistry.register(name, counter);
+            }
+
+            @Override
+            public void onTimerAdded(final @NotNull String name, final @NotNull Timer timer) {
+                targetRegistry.register(name, timer);
+            }
+        });
+    }
+
+    public @NotNull MetricRegistry getMetricRegistry() {
+        return metricRegistry;
+    }
+}
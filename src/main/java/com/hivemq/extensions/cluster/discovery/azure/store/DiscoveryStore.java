@@ -0,0 +1,97 @@
+/*
+ * Copyright 2021-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.cluster.discovery.azure.store;
+
+import com.azure.storage.blob.models.BlobItem;
+import com.hivemq.extensions.cluster.discovery.azure.client.BlobNotFoundException;
+import com.hivemq.extensions.cluster.discovery.azure.client.ContainerNotFoundException;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The storage backend of the discovery: one container of named Blobs that all nodes of the cluster share.
+ * <p>
+ * The Azure Storage Account is the backend of a HiveMQ cluster. The tests run the discovery without Azure on
+ * in-memory and file system stores, e.g. to simulate large clusters.
+ * <p>
+ * All operations throw a {@link RuntimeException} if they fail, and a {@link ContainerNotFoundException} if the
+ * container does not exist (anymore).
+ */
+public interface DiscoveryStore {
+
+    boolean existsContainer() throws RuntimeException;
+
+    /**
+     * Creates the container. A container that already exists is not an error.
+     */
+    void createContainer() throws RuntimeException;
+
+    /**
+     * Creates or overwrites the Blob.
+     */
+    void saveBlob(@NotNull String blobName, byte @NotNull [] content) throws RuntimeException;
+
+    /**
+     * Creates or overwrites the Blob together with its metadata. Stores that don't support metadata only save the
+     * content.
+     */
+    void saveBlob(@NotNull String blobName, byte @NotNull [] content, @NotNull Map<String, String> metadata)
+            throws RuntimeException;
+
+    /**
+     * Deletes the Blob. Throws a {@link BlobNotFoundException} if the Blob does not exist (anymore).
+     */
+    void deleteBlob(@NotNull String blobName) throws RuntimeException;
+
+    /**
+     * Deletes the given Blobs with as few requests as the store allows. The default deletes them one by one. Blobs
+     * that don't exist (anymore) count as deleted.
+     *
+     * @param blobNames the names of the Blobs to delete
+     * @return the reasons why Blobs could not be deleted by the Blob names, empty if all Blobs were deleted
+     */
+    default @NotNull Map<String, String> deleteBlobs(final @NotNull List<String> blobNames) throws RuntimeException {
+        final var failures = new LinkedHashMap<String, String>();
+        for (final var blobName : blobNames) {
+            try {
+                deleteBlob(blobName);
+            } catch (final BlobNotFoundException ignored) {
+                // already deleted by another node
+            } catch (final ContainerNotFoundException e) {
+                throw e;
+            } catch (final RuntimeException e) {
+                failures.put(blobName, e.getMessage());
+            }
+        }
+        return failures;
+    }
+
+    byte @NotNull [] getBlobContent(@NotNull String blobName) throws RuntimeException;
+
+    /**
+     * Lists the Blobs with the given prefix together with their properties. The ETag or the last modified time of a
+     * listed Blob changes whenever the Blob is overwritten, so unchanged Blobs don't have to be downloaded again.
+     *
+     * @param filePrefix the prefix of the Blob names
+     * @return the listed Blobs, including their metadata if the store lists it
+     */
+    @NotNull Iterator<BlobItem> getBlobs(@NotNull String filePrefix) throws RuntimeException;
+}
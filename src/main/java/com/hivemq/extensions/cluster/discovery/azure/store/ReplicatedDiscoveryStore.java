@@ -0,0 +1,751 @@
+/*
+ * Copyright 2021-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.cluster.discovery.azure.store;
+
+import com.azure.storage.blob.models.BlobItem;
+import com.hivemq.extensions.cluster.discovery.azure.client.BlobNotFoundException;
+import com.hivemq.extensions.cluster.discovery.azure.client.ContainerNotFoundException;
+import com.hivemq.extensions.cluster.discovery.azure.config.ClusterNodeFile;
+import com.hivemq.extensions.cluster.discovery.azure.metrics.DiscoveryMetrics;
+import com.hivemq.extensions.cluster.discovery.azure.util.NamedThreadFactory;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.Function;
+
+/**
+ * A {@link DiscoveryStore} that replicates the Blobs across several stores, e.g. the Azure Storage Accounts of
+ * different regions, so the discovery survives the outage of a single account.
+ * <p>
+ * Writes are sent to all replicas in parallel and succeed if at least one replica succeeded. After the first replica
+ * succeeded, the other replicas are awaited for at most the hedge delay, so a slow replica doesn't delay the heartbeat.
+ * Their writes are still completed in the background. The container of a replica that was deleted is recreated, a
+ * Blob that is missing on a replica counts as deleted there.
+ * <p>
+ * Reads are hedged: they are sent to the replica with the lowest recent latency first and additionally to the next
+ * replica whenever no response arrived within the hedge delay or a replica failed.
+ * <p>
+ * In the {@code fastest} read mode the first successful listing is used. In the {@code merge} read mode all replicas
+ * are listed in parallel, after the first successful listing the other listings are awaited for at most the hedge
+ * delay. The newest version of every Blob is used, by the creation time of the node file. The creation time is taken
+ * from the listed metadata, otherwise the versions of a Blob that was listed by several replicas are downloaded and
+ * parsed, again waiting at most the hedge delay for the other versions after the first one was downloaded. The
+ * downloaded content of the newest version is kept for the following read of the Blob, the content of the other Blobs
+ * is downloaded from the replica that listed them.
+ * <p>
+ * The replicas assign their own ETags, so the listed ETags are prefixed with the index of the replica and the cached
+ * node files of a Blob are only valid for the replica that listed it. To keep the cache valid, the listing is read
+ * from the replica of the last listing first and a Blob with the same version on several replicas stays with the
+ * replica that listed it last. The replicas are kept per listed prefix, so the listings of several prefixes, e.g. of
+ * the shards of the node files, don't replace each other.
+ * <p>
+ * The replicas are called on a bounded thread pool. If all threads are busy, the calling thread calls the replica
+ * itself, so a read is then not hedged but never rejected. After {@link #shutdown()} all calls are run by the calling
+ * thread.
+ */
+public class ReplicatedDiscoveryStore implements DiscoveryStore {
+
+    private static final @NotNull Logger log = LoggerFactory.getLogger(ReplicatedDiscoveryStore.class);
+
+    private final @NotNull List<DiscoveryStore> replicas;
+    private final @NotNull DiscoveryMetrics metrics;
+    private final @NotNull ThreadPoolExecutor executor;
+    // failed replicas are read last until they succeed again
+    private final @NotNull AtomicIntegerArray consecutiveFailures;
+    // the replica that listed a Blob in the last listing of its prefix by the listed prefix, the content of the Blob is
+    // downloaded from this replica first
+    private final @NotNull Map<String, Map<String, Integer>> blobReplicas = new ConcurrentHashMap<>();
+    // the replica of the last listing by the listed prefix
+    private final @NotNull Map<String, Integer> listingReplicas = new ConcurrentHashMap<>();
+    // the creation times of the node files that were downloaded to merge the listings by the Blob name and the ETag
+    private final @NotNull Map<String, Long> creationTimes = new ConcurrentHashMap<>();
+    // the content of the newest version that was downloaded to merge the listings by the Blob name
+    private final @NotNull Map<String, byte[]> mergedContents = new ConcurrentHashMap<>();
+    private volatile boolean mergeReads;
+    private volatile long hedgeDelayInMillis;
+
+    public ReplicatedDiscoveryStore(
+            final @NotNull List<? extends DiscoveryStore> replicas,
+            final @NotNull DiscoveryMetrics metrics) {
+        if (replicas.isEmpty()) {
+            throw new IllegalArgumentException("At least one replica is required.");
+        }
+        this.replicas = List.copyOf(replicas);
+        this.metrics = metrics;
+        consecutiveFailures = new AtomicIntegerArray(replicas.size());
+        executor = new ThreadPoolExecutor(0,
+                replicas.size(),
+                30,
+                TimeUnit.SECONDS,
+                new SynchronousQueue<>(),
+                new NamedThreadFactory("azure-discovery-replica"),
+                // unlike the CallerRunsPolicy, the call is also run after the shutdown, so no caller waits forever
+                (call, pool) -> call.run());
+    }
+
+    /**
+     * @param mergeReads          {@code true} to list all replicas and merge the listings, {@code false} to use the
+     *                            first successful listing
+     * @param hedgeDelayInMillis  the time after which a read is additionally sent to the next replica, and for which
+     *                            the other replicas are awaited after the first replica succeeded
+     * @param downloadParallelism the number of Blobs the discovery downloads in parallel
+     */
+    public void configure(final boolean mergeReads, final long hedgeDelayInMillis, final int downloadParallelism) {
+        this.mergeReads = mergeReads;
+        this.hedgeDelayInMillis = hedgeDelayInMillis;
+        // every parallel download may call all replicas
+        executor.setMaximumPoolSize(replicas.size() * Math.max(1, downloadParallelism));
+    }
+
+    @Override
+    public boolean existsContainer() throws RuntimeException {
+        final var results = callAll(DiscoveryStore::existsContainer, "check the container of");
+        // the container is created on all replicas if it is missing on one of the reachable replicas
+        return !results.containsValue(false);
+    }
+
+    @Override
+    public void createContainer() throws RuntimeException {
+        callAll(replica -> {
+            replica.createContainer();
+            return null;
+        }, "create the container of");
+    }
+
+    @Override
+    public void saveBlob(final @NotNull String blobName, final byte @NotNull [] content) throws RuntimeException {
+        callAll(replica -> {
+            saveRecreatingContainer(replica, () -> replica.saveBlob(blobName, content));
+            return null;
+        }, "save the Blob '" + blobName + "' to");
+    }
+
+    @Override
+    public void saveBlob(
+            final @NotNull String blobName,
+            final byte @NotNull [] content,
+            final @NotNull Map<String, String> metadata) throws RuntimeException {
+        callAll(replica -> {
+            saveRecreatingContainer(replica, () -> replica.saveBlob(blobName, content, metadata));
+            return null;
+        }, "save the Blob '" + blobName + "' to");
+    }
+
+    @Override
+    public void deleteBlob(final @NotNull String blobName) throws RuntimeException {
+        callAll(replica -> {
+            try {
+                replica.deleteBlob(blobName);
+            } catch (final BlobNotFoundException | ContainerNotFoundException ignored) {
+                // nothing to delete, e.g. the Blob was only saved to the other replicas
+            }
+            return null;
+        }, "delete the Blob '" + blobName + "' from");
+    }
+
+    /**
+     * Deletes the Blobs from all replicas, each with the batch requests of the replica. A Blob that is missing on a
+     * replica counts as deleted there. A Blob that could not be deleted from one of the replicas that responded in time
+     * is reported as failed, it is listed and deleted again by a later cycle.
+     */
+    @Override
+    public @NotNull Map<String, String> deleteBlobs(final @NotNull List<String> blobNames) throws RuntimeException {
+        final var results = callAll(replica -> {
+            try {
+                return replica.deleteBlobs(blobNames);
+            } catch (final ContainerNotFoundException ignored) {
+                // nothing to delete
+                return Map.<String, String>of();
+            }
+        }, "delete " + blobNames.size() + " Blobs from");
+        final var failures = new LinkedHashMap<String, String>();
+        for (final var result : results.entrySet()) {
+            result.getValue()
+                    .forEach((blobName, reason) -> failures.putIfAbsent(blobName,
+                            "Replica " + result.getKey() + ": " + reason));
+        }
+        return failures;
+    }
+
+    @Override
+    public byte @NotNull [] getBlobContent(final @NotNull String blobName) throws RuntimeException {
+        return getListedBlobContent(blobName).content;
+    }
+
+    /**
+     * Downloads the content of a listed Blob like {@link #getBlobContent(String)}. As the read is hedged, the content
+     * can be served by another replica than the one that listed the Blob, maybe in an older version than listed.
+     *
+     * @param blobName the name of the listed Blob
+     * @return the content together with whether it was served by the replica that listed the Blob
+     */
+    public @NotNull ListedBlobContent getListedBlobContent(final @NotNull String blobName) throws RuntimeException {
+        final var mergedContent = mergedContents.remove(blobName);
+        if (mergedContent != null) {
+            return new ListedBlobContent(mergedContent, true);
+        }
+        final var listedReplica = getListedReplica(blobName);
+        final var result = readHedged(listedReplica, replica -> replica.getBlobContent(blobName));
+        return new ListedBlobContent(result.value, listedReplica != null && listedReplica == result.replica);
+    }
+
+    @Override
+    public @NotNull Iterator<BlobItem> getBlobs(final @NotNull String filePrefix) throws RuntimeException {
+        if (!mergeReads) {
+            final var listing = readHedged(listingReplicas.get(filePrefix), replica -> listBlobs(replica, filePrefix));
+            final var listedReplicas = new HashMap<String, Integer>();
+            for (final var blob : listing.value) {
+                listedReplicas.put(blob.getName(), listing.replica);
+            }
+            listingReplicas.put(filePrefix, listing.replica);
+            blobReplicas.put(filePrefix, listedReplicas);
+            return listing.value.iterator();
+        }
+        mergedContents.keySet().removeIf(blobName -> blobName.startsWith(filePrefix));
+        final var listings = listAllHedged(filePrefix);
+        final var blobVersions = new TreeMap<String, List<ListedVersion>>();
+        for (final var listing : listings.entrySet()) {
+            for (final var blob : listing.getValue()) {
+                blobVersions.computeIfAbsent(blob.getName(), blobName -> new ArrayList<>())
+                        .add(new ListedVersion(listing.getKey(), blob));
+            }
+        }
+        resolveCreationTimes(blobVersions.values());
+        retainCreationTimes(filePrefix, blobVersions.values());
+
+        final var previousReplicas = blobReplicas.getOrDefault(filePrefix, Map.of());
+        final var newestBlobs = new ArrayList<BlobItem>(blobVersions.size());
+        final var newestReplicas = new HashMap<String, Integer>();
+        for (final var versions : blobVersions.values()) {
+            ListedVersion newestVersion = null;
+            for (final var version : versions) {
+                if (newestVersion == null ||
+                        version.creationTimeInMillis > newestVersion.creationTimeInMillis ||
+                        // the same version stays with the replica that listed it last
+                        (version.creationTimeInMillis == newestVersion.creationTimeInMillis &&
+                                Integer.valueOf(version.replica).equals(previousReplicas.get(version.getName())))) {
+                    newestVersion = version;
+                }
+            }
+            newestBlobs.add(newestVersion.blob);
+            newestReplicas.put(newestVersion.getName(), newestVersion.replica);
+            if (newestVersion.content != null) {
+                mergedContents.put(newestVersion.getName(), newestVersion.content);
+            }
+        }
+        blobReplicas.put(filePrefix, newestReplicas);
+        return newestBlobs.iterator();
+    }
+
+    /**
+     * Releases the threads of the replica calls. Pending calls are completed, later calls are run by the calling
+     * thread, e.g. of a discovery cycle that still uses this store while it is replaced.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    public int getReplicaCount() {
+        return replicas.size();
+    }
+
+    /**
+     * @return the replica that listed the Blob in the last listing of the longest listed prefix of the Blob or
+     *         {@code null} if the Blob was not listed
+     */
+    @Nullable Integer getListedReplica(final @NotNull String blobName) {
+        Integer listedReplica = null;
+        var listedPrefixLength = -1;
+        for (final var prefixReplicas : blobReplicas.entrySet()) {
+            final var prefix = prefixReplicas.getKey();
+            if (prefix.length() > listedPrefixLength && blobName.startsWith(prefix)) {
+                final var replica = prefixReplicas.getValue().get(blobName);
+                if (replica != null) {
+                    listedReplica = replica;
+                    listedPrefixLength = prefix.length();
+                }
+            }
+        }
+        return listedReplica;
+    }
+
+    /**
+     * @return the indexes of the replicas in the order in which they are read, the replicas without recent failures
+     *         first, ordered by their recent mean latency
+     */
+    @NotNull List<Integer> getReadOrder(final @Nullable Integer preferredReplica) {
+        final var readOrder = new ArrayList<Integer>(replicas.size());
+        for (var replica = 0; replica < replicas.size(); replica++) {
+            readOrder.add(replica);
+        }
+        readOrder.sort(Comparator.<Integer, Boolean>comparing(replica -> consecutiveFailures.get(replica) > 0)
+                .thenComparingDouble(replica -> metrics.getReplicaTimer(replica).getSnapshot().getMean()));
+        if (preferredReplica != null &&
+                preferredReplica < replicas.size() &&
+                consecutiveFailures.get(preferredReplica) == 0) {
+            readOrder.remove(preferredReplica);
+            readOrder.add(0, preferredReplica);
+        }
+        return readOrder;
+    }
+
+    private <T> @NotNull ReplicaResult<T> readHedged(
+            final @Nullable Integer preferredReplica,
+            final @NotNull Function<DiscoveryStore, T> read) throws RuntimeException {
+        final var readOrder = getReadOrder(preferredReplica);
+        final var completionService = new ExecutorCompletionService<ReplicaResult<T>>(executor);
+        final var reads = new ArrayList<Future<ReplicaResult<T>>>(readOrder.size());
+        RuntimeException failure = null;
+        var pendingReads = 0;
+        try {
+            while (true) {
+                if (pendingReads == 0) {
+                    if (reads.size() == readOrder.size()) {
+                        throw failure;
+                    }
+                    reads.add(submitRead(completionService, readOrder.get(reads.size()), read));
+                    pendingReads++;
+                }
+                final var completedRead = reads.size() < readOrder.size() ?
+                        completionService.poll(hedgeDelayInMillis, TimeUnit.MILLISECONDS) :
+                        completionService.take();
+                if (completedRead == null) {
+                    log.trace("No response of the replica within {} ms. Reading from the next replica as well.",
+                            hedgeDelayInMillis);
+                    reads.add(submitRead(completionService, readOrder.get(reads.size()), read));
+                    pendingReads++;
+                    continue;
+                }
+                pendingReads--;
+                try {
+                    return completedRead.get();
+                } catch (final ExecutionException e) {
+                    if (failure == null) {
+                        failure = toRuntimeException(e.getCause());
+                    }
+                }
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Reading from the replicas was interrupted.");
+        } finally {
+            // the slower reads are not interrupted, so their latency is still recorded
+            reads.forEach(pendingRead -> pendingRead.cancel(false));
+        }
+    }
+
+    private <T> @NotNull Future<ReplicaResult<T>> submitRead(
+            final @NotNull ExecutorCompletionService<ReplicaResult<T>> completionService,
+            final int replica,
+            final @NotNull Function<DiscoveryStore, T> read) {
+        return completionService.submit(() -> new ReplicaResult<>(replica, callReplica(replica, read)));
+    }
+
+    /**
+     * Lists the Blobs of all replicas in parallel. After the first successful listing, the other listings are awaited
+     * for at most the hedge delay, so a slow replica doesn't delay the merge.
+     *
+     * @return the listings of the replicas that succeeded in time by the index of the replica
+     * @throws RuntimeException the failure of the first replica if all replicas failed
+     */
+    private @NotNull Map<Integer, List<BlobItem>> listAllHedged(final @NotNull String filePrefix)
+            throws RuntimeException {
+        final var completionService = new ExecutorCompletionService<ReplicaResult<List<BlobItem>>>(executor);
+        final var listings = new HashMap<Future<ReplicaResult<List<BlobItem>>>, Integer>();
+        for (final var replica : getReadOrder(listingReplicas.get(filePrefix))) {
+            listings.put(submitRead(completionService, replica, store -> listBlobs(store, filePrefix)), replica);
+        }
+        final var results = new TreeMap<Integer, List<BlobItem>>();
+        RuntimeException failure = null;
+        var deadlineNanos = 0L;
+        try {
+            for (var pendingListings = listings.size(); pendingListings > 0; pendingListings--) {
+                final var completedListing = results.isEmpty() ?
+                        completionService.take() :
+                        completionService.poll(deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (completedListing == null) {
+                    log.debug("{} replicas did not list the Blobs within {} ms after the first listing. Merging " +
+                            "the listings without them.", pendingListings, hedgeDelayInMillis);
+                    break;
+                }
+                try {
+                    final var listing = completedListing.get();
+                    if (results.isEmpty()) {
+                        deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(hedgeDelayInMillis);
+                    }
+                    results.put(listing.replica, listing.value);
+                } catch (final ExecutionException e) {
+                    final var replicaFailure = toRuntimeException(e.getCause());
+                    log.warn("Could not list the Blobs of the replica {}. {}",
+                            listings.get(completedListing),
+                            replicaFailure.getMessage());
+                    if (failure == null) {
+                        failure = replicaFailure;
+                    }
+                }
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Listing the replicas was interrupted.");
+        } finally {
+            // the slower listings are not interrupted, so their latency is still recorded
+            listings.keySet().forEach(pendingListing -> pendingListing.cancel(false));
+        }
+        if (results.isEmpty()) {
+            throw failure;
+        }
+        return results;
+    }
+
+    /**
+     * Resolves the creation times of the versions of the Blobs that were listed by several replicas. The creation time
+     * is parsed from the listed metadata or taken from an earlier download of the same version, the other versions are
+     * downloaded in parallel. After the first version of a Blob was downloaded, the other versions of the Blob are
+     * awaited for at most the hedge delay. A version whose creation time could not be resolved is never newer.
+     */
+    private void resolveCreationTimes(final @NotNull Collection<List<ListedVersion>> blobVersions) {
+        final var completionService = new ExecutorCompletionService<DownloadedVersion>(executor);
+        final var downloads = new ArrayList<Future<DownloadedVersion>>();
+        final var pendingDownloads = new HashMap<String, Integer>();
+        for (final var versions : blobVersions) {
+            if (versions.size() < 2) {
+                // nothing to compare
+                continue;
+            }
+            for (final var version : versions) {
+                if (!resolveListedCreationTime(version)) {
+                    downloads.add(completionService.submit(() -> download(version)));
+                    pendingDownloads.merge(version.getName(), 1, Integer::sum);
+                }
+            }
+        }
+        final var deadlines = new HashMap<String, Long>();
+        try {
+            while (!pendingDownloads.isEmpty()) {
+                final var nextDeadlineNanos = deadlines.values().stream().min(Comparator.naturalOrder());
+                final var completedDownload = nextDeadlineNanos.isEmpty() ?
+                        completionService.take() :
+                        completionService.poll(nextDeadlineNanos.get() - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (completedDownload == null) {
+                    final var nowNanos = System.nanoTime();
+                    deadlines.entrySet().removeIf(deadline -> {
+                        if (deadline.getValue() - nowNanos > 0) {
+                            return false;
+                        }
+                        log.debug("Not all versions of the Blob '{}' were downloaded within {} ms after the first " +
+                                "version. Merging the versions without them.", deadline.getKey(), hedgeDelayInMillis);
+                        pendingDownloads.remove(deadline.getKey());
+                        return true;
+                    });
+                    continue;
+                }
+                final var downloadedVersion = completedDownload.get();
+                final var blobName = downloadedVersion.version.getName();
+                final var pending = pendingDownloads.get(blobName);
+                if (pending == null) {
+                    // too late, the versions of the Blob are already merged
+                    continue;
+                }
+                downloadedVersion.apply();
+                if (pending == 1) {
+                    pendingDownloads.remove(blobName);
+                    deadlines.remove(blobName);
+                } else {
+                    pendingDownloads.put(blobName, pending - 1);
+                    deadlines.putIfAbsent(blobName,
+                            System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(hedgeDelayInMillis));
+                }
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Downloading the versions of the Blobs was interrupted.");
+        } catch (final ExecutionException e) {
+            throw toRuntimeException(e.getCause());
+        } finally {
+            downloads.forEach(pendingDownload -> pendingDownload.cancel(false));
+        }
+    }
+
+    private boolean resolveListedCreationTime(final @NotNull ListedVersion version) {
+        final var metadata = version.blob.getMetadata();
+        if (metadata != null && !metadata.isEmpty()) {
+            final var nodeFile = ClusterNodeFile.parseClusterNodeFile(metadata);
+            if (nodeFile != null) {
+                version.creationTimeInMillis = nodeFile.getCreationTimeInMillis();
+                return true;
+            }
+        }
+        final var versionKey = version.getVersionKey();
+        final var creationTimeInMillis = versionKey == null ? null : creationTimes.get(versionKey);
+        if (creationTimeInMillis != null) {
+            version.creationTimeInMillis = creationTimeInMillis;
+            return true;
+        }
+        return false;
+    }
+
+    private @NotNull DownloadedVersion download(final @NotNull ListedVersion version) {
+        try {
+            final var content = callReplica(version.replica, replica -> replica.getBlobContent(version.getName()));
+            final var nodeFile = ClusterNodeFile.parseClusterNodeFile(content);
+            if (nodeFile == null) {
+                log.debug("Content of the Blob '{}' of the replica {} could not be parsed to compare its version.",
+                        version.getName(),
+                        version.replica);
+                return new DownloadedVersion(version, null, null);
+            }
+            return new DownloadedVersion(version, nodeFile.getCreationTimeInMillis(), content);
+        } catch (final RuntimeException e) {
+            log.debug("Could not download the Blob '{}' of the replica {} to compare its version. {}",
+                    version.getName(),
+                    version.replica,
+                    e.getMessage());
+            return new DownloadedVersion(version, null, null);
+        }
+    }
+
+    private void retainCreationTimes(
+            final @NotNull String filePrefix,
+            final @NotNull Collection<List<ListedVersion>> blobVersions) {
+        final var listedVersionKeys = new HashSet<String>();
+        for (final var versions : blobVersions) {
+            for (final var version : versions) {
+                listedVersionKeys.add(version.getVersionKey());
+            }
+        }
+        creationTimes.keySet()
+                .removeIf(versionKey -> versionKey.startsWith(filePrefix) && !listedVersionKeys.contains(versionKey));
+    }
+
+    /**
+     * Calls all replicas in parallel. After the first replica succeeded, the other replicas are awaited for at most the
+     * hedge delay, like the listings of the merged reads.
+     *
+     * @return the results of the replicas that succeeded in time by the index of the replica
+     * @throws RuntimeException the failure of the first replica if all replicas failed
+     */
+    private <T> @NotNull Map<Integer, T> callAll(
+            final @NotNull Function<DiscoveryStore, T> call,
+            final @NotNull String action) throws RuntimeException {
+        final var completionService = new ExecutorCompletionService<ReplicaResult<T>>(executor);
+        final var calls = new HashMap<Future<ReplicaResult<T>>, Integer>();
+        for (var replica = 0; replica < replicas.size(); replica++) {
+            final var index = replica;
+            calls.put(completionService.submit(() -> new ReplicaResult<>(index, callReplica(index, call))), index);
+        }
+        final var results = new HashMap<Integer, T>();
+        final var failures = new TreeMap<Integer, RuntimeException>();
+        var deadlineNanos = 0L;
+        try {
+            for (var pendingCalls = calls.size(); pendingCalls > 0; pendingCalls--) {
+                final var completedCall = results.isEmpty() ?
+                        completionService.take() :
+                        completionService.poll(deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+                if (completedCall == null) {
+                    log.debug("{} replicas did not respond within {} ms after the first replica. Not waiting to {} " +
+                            "them.", pendingCalls, hedgeDelayInMillis, action);
+                    break;
+                }
+                try {
+                    final var result = completedCall.get();
+                    if (results.isEmpty()) {
+                        deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(hedgeDelayInMillis);
+                    }
+                    results.put(result.replica, result.value);
+                } catch (final ExecutionException e) {
+                    final var replica = calls.get(completedCall);
+                    final var replicaFailure = toRuntimeException(e.getCause());
+                    log.warn("Could not {} the replica {}. {}", action, replica, replicaFailure.getMessage());
+                    failures.put(replica, replicaFailure);
+                }
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            calls.keySet().forEach(pendingCall -> pendingCall.cancel(true));
+            throw new RuntimeException("Calling the replicas was interrupted.");
+        }
+        if (results.isEmpty()) {
+            throw failures.firstEntry().getValue();
+        }
+        return results;
+    }
+
+    private <T> T callReplica(final int replica, final @NotNull Function<DiscoveryStore, T> call) {
+        final var context = metrics.getReplicaTimer(replica).time();
+        try {
+            final var result = call.apply(replicas.get(replica));
+            consecutiveFailures.set(replica, 0);
+            return result;
+        } catch (final RuntimeException e) {
+            consecutiveFailures.incrementAndGet(replica);
+            metrics.addReplicaError(replica);
+            throw e;
+        } finally {
+            context.stop();
+        }
+    }
+
+    private static void saveRecreatingContainer(final @NotNull DiscoveryStore replica, final @NotNull Runnable save) {
+        try {
+            save.run();
+        } catch (final ContainerNotFoundException e) {
+            // only the container of this replica was deleted, the other replicas are not affected
+            log.info("Container of a replica doesn't exist anymore. Recreating it.");
+            replica.createContainer();
+            save.run();
+        }
+    }
+
+    private @NotNull List<BlobItem> listBlobs(final @NotNull DiscoveryStore replica, final @NotNull String filePrefix) {
+        final var replicaIndex = replicas.indexOf(replica);
+        // the listing is completed on the thread of the replica, the iterator of a store may page lazily
+        final var blobs = new ArrayList<BlobItem>();
+        replica.getBlobs(filePrefix).forEachRemaining(blob -> {
+            final var properties = blob.getProperties();
+            if (properties != null && properties.getETag() != null) {
+                properties.setETag(replicaIndex + ":" + properties.getETag());
+            }
+            blobs.add(blob);
+        });
+        return blobs;
+    }
+
+    private static @NotNull RuntimeException toRuntimeException(final @NotNull Throwable throwable) {
+        if (throwable instanceof RuntimeException) {
+            return (RuntimeException) throwable;
+        }
+        return new RuntimeException(throwable.getMessage(), throwable);
+    }
+
+    /**
+     * The content of a listed Blob.
+     */
+    public static class ListedBlobContent {
+
+        private final byte @NotNull [] content;
+        private final boolean fromListingReplica;
+
+        private ListedBlobContent(final byte @NotNull [] content, final boolean fromListingReplica) {
+            this.content = content;
+            this.fromListingReplica = fromListingReplica;
+        }
+
+        public byte @NotNull [] getContent() {
+            return content;
+        }
+
+        /**
+         * @return {@code true} if the content is the version of the listed ETag, so it can be cached for it
+         */
+        public boolean isFromListingReplica() {
+            return fromListingReplica;
+        }
+    }
+
+    private static class ReplicaResult<T> {
+
+        private final int replica;
+        private final T value;
+
+        private ReplicaResult(final int replica, final T value) {
+            this.replica = replica;
+            this.value = value;
+        }
+    }
+
+    /**
+     * A version of a Blob as listed by one replica.
+     */
+    private static class ListedVersion {
+
+        private final int replica;
+        private final @NotNull BlobItem blob;
+        private long creationTimeInMillis = Long.MIN_VALUE;
+        private byte @Nullable [] content;
+
+        private ListedVersion(final int replica, final @NotNull BlobItem blob) {
+            this.replica = replica;
+            this.blob = blob;
+        }
+
+        private @NotNull String getName() {
+            return blob.getName();
+        }
+
+        /**
+         * @return the Blob name together with the ETag prefixed with the replica, {@code null} if no ETag was listed
+         */
+        private @Nullable String getVersionKey() {
+            final var properties = blob.getProperties();
+            if (properties == null || properties.getETag() == null) {
+                return null;
+            }
+            return blob.getName() + " " + properties.getETag();
+        }
+    }
+
+    /**
+     * The result of downloading a listed version, only applied to it by the merging thread.
+     */
+    private class DownloadedVersion {
+
+        private final @NotNull ListedVersion version;
+        private final @Nullable Long creationTimeInMillis;
+        private final byte @Nullable [] content;
+
+        private DownloadedVersion(
+                final @NotNull ListedVersion version,
+                final @Nullable Long creationTimeInMillis,
+                final byte @Nullable [] content) {
+            this.version = version;
+            this.creationTimeInMillis = creationTimeInMillis;
+            this.content = content;
+        }
+
+        private void apply() {
+            if (creationTimeInMillis == null) {
+                return;
+            }
+            version.creationTimeInMillis = creationTimeInMillis;
+            version.content = content;
+            final var versionKey = version.getVersionKey();
+            if (versionKey != null) {
+                creationTimes.put(versionKey, creationTimeInMillis);
+            }
+        }
+    }
+}
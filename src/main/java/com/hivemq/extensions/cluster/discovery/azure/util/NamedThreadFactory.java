@@ -0,0 +1,42 @@
+/*
+ * Copyright 2021-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.cluster.discovery.azure.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates daemon threads named {@code <prefix>-<number>}, so the extension never blocks the shutdown of HiveMQ.
+ */
+public class NamedThreadFactory implements ThreadFactory {
+
+    private final @NotNull AtomicInteger threadNumber = new AtomicInteger(1);
+    private final @NotNull String namePrefix;
+
+    public NamedThreadFactory(final @NotNull String namePrefix) {
+        this.namePrefix = namePrefix;
+    }
+
+    @Override
+    public @NotNull Thread newThread(final @NotNull Runnable runnable) {
+        final var thread = new Thread(runnable, namePrefix + "-" + threadNumber.getAndIncrement());
+        thread.setDaemon(true);
+        return thread;
+    }
+}
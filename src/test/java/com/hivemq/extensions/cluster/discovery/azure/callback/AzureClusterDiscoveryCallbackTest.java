@@ -21,30 +21,54 @@ import com.hivemq.extension.sdk.api.parameter.ExtensionInformation;
 import com.hivemq.extension.sdk.api.services.cluster.parameter.ClusterDiscoveryInput;
 import com.hivemq.extension.sdk.api.services.cluster.parameter.ClusterDiscoveryOutput;
 import com.hivemq.extension.sdk.api.services.cluster.parameter.ClusterNodeAddress;
+import com.hivemq.extensions.cluster.discovery.azure.client.AzureStorageAsyncClient;
 import com.hivemq.extensions.cluster.discovery.azure.client.AzureStorageClient;
+import com.hivemq.extensions.cluster.discovery.azure.client.BlobLease;
+import com.hivemq.extensions.cluster.discovery.azure.client.ContainerNotFoundException;
+import com.hivemq.extensions.cluster.discovery.azure.client.VersionedBlobContent;
 import com.hivemq.extensions.cluster.discovery.azure.config.AzureDiscoveryConfig;
+import com.hivemq.extensions.cluster.discovery.azure.config.ClusterNodeFile;
 import com.hivemq.extensions.cluster.discovery.azure.config.ClusterNodeFileTest;
 import com.hivemq.extensions.cluster.discovery.azure.config.ConfigReader;
+import com.hivemq.extensions.cluster.discovery.azure.config.NodeFileLayout;
+import com.hivemq.extensions.cluster.discovery.azure.metrics.DiscoveryMetrics;
+import com.hivemq.extensions.cluster.discovery.azure.store.InMemoryDiscoveryStore;
 import org.jetbrains.annotations.NotNull;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.OffsetDateTime;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyBoolean;
+import static org.mockito.Mockito.anyInt;
 import static org.mockito.Mockito.anyList;
+import static org.mockito.Mockito.anyMap;
+import static org.mockito.Mockito.argThat;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.intThat;
+import static org.mockito.Mockito.isNull;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -55,6 +79,7 @@ class AzureClusterDiscoveryCallbackTest {
     private final @NotNull AzureStorageClient azStorageClient = mock();
     private final @NotNull ClusterDiscoveryInput clusterDiscoveryInput = mock();
     private final @NotNull ClusterDiscoveryOutput clusterDiscoveryOutput = mock();
+    private final @NotNull BlobLease janitorLease = mock();
 
     private @NotNull AzureClusterDiscoveryCallback azureClusterDiscoveryCallback;
     private @NotNull ConfigReader configurationReader;
@@ -91,13 +116,17 @@ class AzureClusterDiscoveryCallbackTest {
         final AzureDiscoveryConfig azAzureDiscoveryConfig = configurationReader.readConfiguration();
         when(azStorageClient.getStorageConfig()).thenReturn(azAzureDiscoveryConfig);
         when(azStorageClient.existsContainer()).thenReturn(true);
+        when(azStorageClient.getBlobs(any())).thenReturn(Collections.emptyIterator());
+        when(azStorageClient.getBlobLease("hivemq-clusterjanitor")).thenReturn(janitorLease);
+        when(janitorLease.acquireOrRenew(anyInt())).thenReturn(true);
     }
 
     @Test
     void test_init_success() {
         when(azStorageClient.getBlobs(any())).thenReturn(createBlobItemIterator());
         when(azStorageClient.getBlobContent(any()))
-                .thenReturn(ClusterNodeFileTest.createClusterNodeFileString("3", "3", "3", "3", "3"));
+                .thenReturn(ClusterNodeFileTest.createClusterNodeFileString("3", "3", "3", "3", "3")
+                        .getBytes(UTF_8));
 
         azureClusterDiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
 
@@ -171,7 +200,8 @@ class AzureClusterDiscoveryCallbackTest {
 
         when(azStorageClient.getBlobs(any())).thenReturn(createBlobItemIterator());
         when(azStorageClient.getBlobContent(any()))
-                .thenReturn(ClusterNodeFileTest.createClusterNodeFileString("3", "3", "3", "3", "3"));
+                .thenReturn(ClusterNodeFileTest.createClusterNodeFileString("3", "3", "3", "3", "3")
+                        .getBytes(UTF_8));
 
         // wait for files to expire
         TimeUnit.SECONDS.sleep(2);
@@ -200,7 +230,7 @@ class AzureClusterDiscoveryCallbackTest {
     @Test
     void test_init_provide_current_nodes_blob_content_blank() {
         when(azStorageClient.getBlobs(any())).thenReturn(createBlobItemIterator());
-        when(azStorageClient.getBlobContent(any())).thenReturn(" ");
+        when(azStorageClient.getBlobContent(any())).thenReturn(" ".getBytes(UTF_8));
 
         azureClusterDiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
 
@@ -214,7 +244,8 @@ class AzureClusterDiscoveryCallbackTest {
     void test_init_provide_current_nodes_parse_failed() {
         when(azStorageClient.getBlobs(any())).thenReturn(createBlobItemIterator());
         when(azStorageClient.getBlobContent(any()))
-                .thenReturn(ClusterNodeFileTest.createClusterNodeFileString("3", "3", "3", "3", "3"));
+                .thenReturn(ClusterNodeFileTest.createClusterNodeFileString("3", "3", "3", "3", "3")
+                        .getBytes(UTF_8));
 
         azureClusterDiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
 
@@ -224,6 +255,158 @@ class AzureClusterDiscoveryCallbackTest {
         verify(clusterDiscoveryOutput).provideCurrentNodes(new ArrayList<>());
     }
 
+    @Test
+    void test_init_provide_current_nodes_parallel_download() {
+        when(azStorageClient.getBlobs(any())).thenReturn(createBlobItemIterator("NODE1", "NODE2", "NODE3", "NODE4"));
+        when(azStorageClient.getBlobContent(any()))
+                .thenAnswer(invocation -> createNodeFileContent(invocation.getArgument(0)));
+
+        azureClusterDiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        verify(azStorageClient, times(4)).getBlobContent(any());
+        verify(clusterDiscoveryOutput).provideCurrentNodes(argThat(nodes -> nodes.size() == 4));
+    }
+
+    @Test
+    void test_init_provide_current_nodes_parallel_download_one_failed() {
+        when(azStorageClient.getBlobs(any())).thenReturn(createBlobItemIterator("NODE1", "NODE2", "NODE3"));
+        when(azStorageClient.getBlobContent(any())).thenAnswer(invocation -> {
+            final String blobName = invocation.getArgument(0);
+            if (blobName.equals("NODE2")) {
+                throw new RuntimeException("download failed");
+            }
+            return createNodeFileContent(blobName);
+        });
+
+        azureClusterDiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        verify(clusterDiscoveryOutput).provideCurrentNodes(argThat(nodes -> nodes.size() == 2));
+    }
+
+    @Test
+    void test_init_provide_current_nodes_sequential_download() throws Exception {
+        Files.writeString(configPath, """
+                connection-string:https://my-connection-string
+                container-name:hivemq-blob-container
+                file-prefix:hivemq-cluster
+                file-expiration:360
+                update-interval:180
+                download-parallelism:1
+                """);
+        final var azureDiscoveryConfig = new ConfigReader(extensionInformation).readConfiguration();
+        when(azStorageClient.getStorageConfig()).thenReturn(azureDiscoveryConfig);
+        when(azStorageClient.getBlobs(any())).thenReturn(createBlobItemIterator("NODE1", "NODE2", "NODE3"));
+        when(azStorageClient.getBlobContent(any()))
+                .thenAnswer(invocation -> createNodeFileContent(invocation.getArgument(0)));
+
+        azureClusterDiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        verify(clusterDiscoveryOutput).provideCurrentNodes(argThat(nodes -> nodes.size() == 3));
+    }
+
+    @Test
+    void test_init_provide_current_nodes_from_metadata() {
+        final var blobItem = new BlobItem();
+        blobItem.setName("NODE1");
+        blobItem.setMetadata(new ClusterNodeFile("NODE1", new ClusterNodeAddress("127.0.0.1", 7801)).toMetadata());
+        when(azStorageClient.getBlobs(any())).thenReturn(List.of(blobItem).iterator());
+
+        azureClusterDiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        verify(azStorageClient, never()).getBlobContent(any());
+        verify(clusterDiscoveryOutput).provideCurrentNodes(argThat(nodes -> nodes.size() == 1 &&
+                nodes.get(0).getPort() == 7801));
+    }
+
+    @Test
+    void test_init_provide_current_nodes_invalid_metadata_downloaded() {
+        final var blobItem = new BlobItem();
+        blobItem.setName("NODE1");
+        blobItem.setMetadata(Map.of("other", "value"));
+        when(azStorageClient.getBlobs(any())).thenReturn(List.of(blobItem).iterator());
+        when(azStorageClient.getBlobContent(any())).thenReturn(createNodeFileContent("NODE1"));
+
+        azureClusterDiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        verify(azStorageClient).getBlobContent("NODE1");
+        verify(clusterDiscoveryOutput).provideCurrentNodes(argThat(nodes -> nodes.size() == 1));
+    }
+
+    @Test
+    void test_init_save_own_file_with_metadata() throws Exception {
+        Files.writeString(configPath, """
+                connection-string:https://my-connection-string
+                container-name:hivemq-blob-container
+                file-prefix:hivemq-cluster
+                blob-metadata-enabled:true
+                """);
+        final var azureDiscoveryConfig = new ConfigReader(extensionInformation).readConfiguration();
+        when(azStorageClient.getStorageConfig()).thenReturn(azureDiscoveryConfig);
+
+        azureClusterDiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        verify(azStorageClient).saveBlob(eq("hivemq-clusterABCD12"), any(), anyMap());
+        verify(azStorageClient, never()).saveBlob(any(), any());
+    }
+
+    @Test
+    void test_init_save_own_file_text_content_version() {
+        azureClusterDiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        verify(azStorageClient).saveBlob(eq("hivemq-clusterABCD12"),
+                argThat(content -> content[0] != 5 && ClusterNodeFile.parseClusterNodeFile(content) != null));
+    }
+
+    @Test
+    void test_init_save_own_file_binary_content_version() throws Exception {
+        Files.writeString(configPath, """
+                connection-string:https://my-connection-string
+                container-name:hivemq-blob-container
+                file-prefix:hivemq-cluster
+                content-version:5
+                """);
+        final var azureDiscoveryConfig = new ConfigReader(extensionInformation).readConfiguration();
+        when(azStorageClient.getStorageConfig()).thenReturn(azureDiscoveryConfig);
+        // nodes that still write the text record are read as well
+        when(azStorageClient.getBlobs(any())).thenReturn(createBlobItemIterator("NODE1"));
+        when(azStorageClient.getBlobContent(any())).thenReturn(createNodeFileContent("NODE1"));
+
+        azureClusterDiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        verify(azStorageClient).saveBlob(eq("hivemq-clusterABCD12"),
+                argThat(content -> content[0] == 5 && ClusterNodeFile.parseClusterNodeFile(content) != null));
+        verify(clusterDiscoveryOutput).provideCurrentNodes(argThat(nodes -> nodes.size() == 1));
+    }
+
+    @Test
+    void test_init_provide_current_nodes_binary_content_version() {
+        when(azStorageClient.getBlobs(any())).thenReturn(createBlobItemIterator("NODE1", "NODE2"));
+        when(azStorageClient.getBlobContent("NODE1")).thenReturn(createNodeFileContent("NODE1"));
+        when(azStorageClient.getBlobContent("NODE2")).thenReturn(new ClusterNodeFile("NODE2",
+                new ClusterNodeAddress("127.0.0.1", 7801)).toBinary());
+
+        azureClusterDiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        verify(clusterDiscoveryOutput).provideCurrentNodes(List.of(new ClusterNodeAddress("127.0.0.1", 7800),
+                new ClusterNodeAddress("127.0.0.1", 7801)));
+    }
+
+    @Test
+    void test_init_provide_current_nodes_from_cache() {
+        when(azStorageClient.getBlobs(any())).thenReturn(createBlobItemIterator("NODE1", "NODE2"));
+        when(azStorageClient.getCachedNodeFile(argThat(blob -> blob.getName().equals("NODE1")))).thenReturn(
+                new ClusterNodeFile("NODE1", new ClusterNodeAddress("127.0.0.1", 7801)));
+        when(azStorageClient.getBlobContent(any())).thenReturn(createNodeFileContent("NODE2"));
+
+        azureClusterDiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        verify(azStorageClient, never()).getBlobContent("NODE1");
+        verify(azStorageClient).getBlobContent("NODE2");
+        verify(azStorageClient).cacheNodeFile(argThat(blob -> blob.getName().equals("NODE2")), any());
+        verify(azStorageClient).retainCachedNodeFiles(Set.of("NODE1", "NODE2"));
+        verify(clusterDiscoveryOutput).provideCurrentNodes(argThat(nodes -> nodes.size() == 2));
+    }
+
     @Test
     void test_init_save_own_file_failed() {
         doThrow(RuntimeException.class).when(azStorageClient).saveBlob(any(), any());
@@ -367,6 +550,122 @@ class AzureClusterDiscoveryCallbackTest {
         verify(clusterDiscoveryOutput, never()).provideCurrentNodes(anyList());
     }
 
+    @Test
+    void test_init_expired_files_deleted_in_batch_after_nodes_provided() {
+        when(azStorageClient.getBlobs(any())).thenReturn(createBlobItemIterator("NODE1", "NODE2", "NODE3"));
+        when(azStorageClient.getBlobContent("NODE1")).thenReturn(createExpiredNodeFileContent("NODE1"));
+        when(azStorageClient.getBlobContent("NODE2")).thenReturn(createNodeFileContent("NODE2"));
+        when(azStorageClient.getBlobContent("NODE3")).thenReturn(createExpiredNodeFileContent("NODE3"));
+
+        azureClusterDiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        final var inOrder = inOrder(clusterDiscoveryOutput, azStorageClient);
+        inOrder.verify(clusterDiscoveryOutput).provideCurrentNodes(argThat(nodes -> nodes.size() == 1));
+        inOrder.verify(azStorageClient)
+                .deleteBlobs(argThat(blobNames -> Set.copyOf(blobNames)
+                        .equals(Set.of("NODE1", "NODE3"))));
+        verify(azStorageClient, never()).deleteBlob(any());
+    }
+
+    @Test
+    void test_reload_expired_files_delete_failed() {
+        when(azStorageClient.getBlobs(any())).thenReturn(createBlobItemIterator("NODE1"));
+        when(azStorageClient.getBlobContent(any())).thenReturn(createExpiredNodeFileContent("NODE1"));
+        when(azStorageClient.deleteBlobs(any())).thenReturn(Map.of("NODE1", "failed"))
+                .thenThrow(new RuntimeException("failed"));
+
+        azureClusterDiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+        when(azStorageClient.getBlobs(any())).thenReturn(createBlobItemIterator("NODE1"));
+        azureClusterDiscoveryCallback.reload(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        verify(azStorageClient, times(2)).deleteBlobs(List.of("NODE1"));
+        verify(clusterDiscoveryOutput, times(2)).provideCurrentNodes(List.of());
+    }
+
+    @Test
+    void test_reload_no_expired_files_nothing_deleted() {
+        when(azStorageClient.getBlobs(any())).thenReturn(createBlobItemIterator("NODE1"));
+        when(azStorageClient.getBlobContent(any())).thenReturn(createNodeFileContent("NODE1"));
+
+        azureClusterDiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        verify(azStorageClient, never()).deleteBlobs(any());
+    }
+
+    @Test
+    void test_reload_not_janitor_expired_files_not_deleted() throws Exception {
+        useJanitor();
+        when(janitorLease.acquireOrRenew(anyInt())).thenReturn(false);
+        when(azStorageClient.getBlobs(any())).thenReturn(createBlobItemIterator("NODE1"));
+        when(azStorageClient.getBlobContent(any())).thenReturn(createExpiredNodeFileContent("NODE1"));
+
+        azureClusterDiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        verify(janitorLease).acquireOrRenew(BlobLease.MAX_DURATION_IN_SECONDS);
+        verify(azStorageClient, never()).deleteBlobs(any());
+        verify(clusterDiscoveryOutput).provideCurrentNodes(List.of());
+    }
+
+    @Test
+    void test_reload_janitor_lease_not_acquired_without_expired_files() throws Exception {
+        useJanitor();
+        when(azStorageClient.getBlobs(any())).thenReturn(createBlobItemIterator("NODE1"));
+        when(azStorageClient.getBlobContent(any())).thenReturn(createNodeFileContent("NODE1"));
+
+        azureClusterDiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        verify(janitorLease, never()).acquireOrRenew(anyInt());
+        verify(azStorageClient, never()).deleteBlobs(any());
+    }
+
+    @Test
+    void test_reload_janitor_lease_renewed_without_expired_files() throws Exception {
+        useJanitor();
+        when(janitorLease.isHeld()).thenReturn(true);
+
+        azureClusterDiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+        azureClusterDiscoveryCallback.reload(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        verify(janitorLease, times(2)).acquireOrRenew(BlobLease.MAX_DURATION_IN_SECONDS);
+        azureClusterDiscoveryCallback.destroy(clusterDiscoveryInput);
+        verify(azStorageClient, never()).deleteBlobs(any());
+    }
+
+    @Test
+    void test_reload_janitor_lease_failed_expired_files_not_deleted() throws Exception {
+        useJanitor();
+        when(janitorLease.acquireOrRenew(anyInt())).thenThrow(new RuntimeException("failed"));
+        when(azStorageClient.getBlobs(any())).thenReturn(createBlobItemIterator("NODE1"));
+        when(azStorageClient.getBlobContent(any())).thenReturn(createExpiredNodeFileContent("NODE1"));
+
+        azureClusterDiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        verify(azStorageClient, never()).deleteBlobs(any());
+        verify(clusterDiscoveryOutput).provideCurrentNodes(List.of());
+    }
+
+    @Test
+    void test_reload_janitor_disabled_by_default_expired_files_deleted() {
+        when(azStorageClient.getBlobs(any())).thenReturn(createBlobItemIterator("NODE1"));
+        when(azStorageClient.getBlobContent(any())).thenReturn(createExpiredNodeFileContent("NODE1"));
+
+        azureClusterDiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        verify(azStorageClient, never()).getBlobLease(any());
+        verify(azStorageClient).deleteBlobs(List.of("NODE1"));
+    }
+
+    @Test
+    void test_init_janitor_blob_not_downloaded() {
+        when(azStorageClient.getBlobs(any())).thenReturn(createBlobItemIterator("hivemq-clusterjanitor", "NODE1"));
+        when(azStorageClient.getBlobContent(any())).thenReturn(createNodeFileContent("NODE1"));
+
+        azureClusterDiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        verify(azStorageClient, never()).getBlobContent("hivemq-clusterjanitor");
+        verify(clusterDiscoveryOutput).provideCurrentNodes(argThat(nodes -> nodes.size() == 1));
+    }
+
     @Test
     void test_reload_file_expired() throws Exception {
         Files.writeString(configPath, """
@@ -415,37 +714,982 @@ class AzureClusterDiscoveryCallbackTest {
     }
 
     @Test
-    void test_destroy_success() {
+    void test_reload_container_existence_checked_once() {
         azureClusterDiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
         azureClusterDiscoveryCallback.reload(clusterDiscoveryInput, clusterDiscoveryOutput);
-        azureClusterDiscoveryCallback.destroy(clusterDiscoveryInput);
+        azureClusterDiscoveryCallback.reload(clusterDiscoveryInput, clusterDiscoveryOutput);
 
-        verify(azStorageClient, times(1)).deleteBlob(any());
+        verify(azStorageClient).existsContainer();
+        verify(clusterDiscoveryOutput, times(3)).provideCurrentNodes(anyList());
     }
 
     @Test
-    void test_destroy_no_own_file() {
-        azureClusterDiscoveryCallback.destroy(clusterDiscoveryInput);
-        verify(azStorageClient, never()).deleteBlob(any());
+    void test_reload_new_container_client_existence_checked_again() {
+        azureClusterDiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+        when(azStorageClient.getContainerClient()).thenReturn(mock());
+        azureClusterDiscoveryCallback.reload(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        verify(azStorageClient, times(2)).existsContainer();
     }
 
     @Test
-    void test_destroy_delete_own_file_failed() {
+    void test_reload_container_deleted_is_recreated() {
+        azureClusterDiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        when(azStorageClient.existsContainer()).thenReturn(false);
+        when(azStorageClient.getBlobs(any())).thenThrow(new ContainerNotFoundException("not found"))
+                .thenReturn(createBlobItemIterator("NODE1"));
+        when(azStorageClient.getBlobContent(any())).thenReturn(createNodeFileContent("NODE1"));
+        azureClusterDiscoveryCallback.reload(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        verify(azStorageClient, times(2)).existsContainer();
+        verify(azStorageClient).createContainer();
+        // the own file is saved again after the container was recreated
+        verify(azStorageClient, times(2)).saveBlob(any(), any());
+        verify(clusterDiscoveryOutput).provideCurrentNodes(argThat(nodes -> nodes.size() == 1));
+    }
+
+    @Test
+    void test_reload_container_deleted_retried_once() {
+        azureClusterDiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        when(azStorageClient.getBlobs(any())).thenThrow(new ContainerNotFoundException("not found"));
+        azureClusterDiscoveryCallback.reload(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        verify(azStorageClient, times(2)).existsContainer();
+        verify(azStorageClient, times(3)).getBlobs(any());
+        verify(clusterDiscoveryOutput, times(1)).provideCurrentNodes(anyList());
+    }
+
+    @Test
+    void test_init_async_engine_success() throws Exception {
+        final var azStorageAsyncClient = useAsyncEngine();
+        when(azStorageAsyncClient.getBlobs(any(), anyBoolean())).thenReturn(Flux.just(createBlobItem("NODE1"),
+                createBlobItem("NODE2")));
+        when(azStorageAsyncClient.getBlobContent(any()))
+                .thenAnswer(invocation -> Mono.just(createNodeFileContent(invocation.getArgument(0))));
+
+        azureClusterDiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        verify(azStorageAsyncClient).saveBlob(eq("hivemq-clusterABCD12"), any(), isNull());
+        verify(azStorageClient, never()).existsContainer();
+        verify(azStorageClient, never()).saveBlob(any(), any());
+        verify(clusterDiscoveryOutput).provideCurrentNodes(argThat(nodes -> nodes.size() == 2));
+    }
+
+    @Test
+    void test_init_async_engine_container_created() throws Exception {
+        final var azStorageAsyncClient = useAsyncEngine();
+        when(azStorageAsyncClient.existsContainer()).thenReturn(Mono.just(false));
+
+        azureClusterDiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        verify(azStorageAsyncClient).createContainer();
+        verify(clusterDiscoveryOutput).provideCurrentNodes(new ArrayList<>());
+    }
+
+    @Test
+    void test_init_async_engine_download_failed() throws Exception {
+        final var azStorageAsyncClient = useAsyncEngine();
+        when(azStorageAsyncClient.getBlobs(any(), anyBoolean())).thenReturn(Flux.just(createBlobItem("NODE1"),
+                createBlobItem("NODE2")));
+        when(azStorageAsyncClient.getBlobContent("NODE1")).thenReturn(Mono.error(new RuntimeException("failed")));
+        when(azStorageAsyncClient.getBlobContent("NODE2")).thenReturn(Mono.just(createNodeFileContent("NODE2")));
+
+        azureClusterDiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        verify(clusterDiscoveryOutput).provideCurrentNodes(argThat(nodes -> nodes.size() == 1));
+    }
+
+    @Test
+    void test_init_async_engine_listing_failed() throws Exception {
+        final var azStorageAsyncClient = useAsyncEngine();
+        when(azStorageAsyncClient.getBlobs(any(), anyBoolean())).thenReturn(Flux.error(new RuntimeException("failed")));
+
+        azureClusterDiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        verify(clusterDiscoveryOutput).provideCurrentNodes(new ArrayList<>());
+    }
+
+    @Test
+    void test_init_async_engine_save_own_file_failed() throws Exception {
+        final var azStorageAsyncClient = useAsyncEngine();
+        when(azStorageAsyncClient.saveBlob(any(), any(), any())).thenReturn(Mono.error(new RuntimeException("failed")));
+
+        azureClusterDiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        verify(azStorageAsyncClient, never()).getBlobs(any(), anyBoolean());
+        verify(clusterDiscoveryOutput, never()).provideCurrentNodes(anyList());
+    }
+
+    @Test
+    void test_reload_async_engine_expired_file_deleted() throws Exception {
+        final var azStorageAsyncClient = useAsyncEngine();
+        when(azStorageAsyncClient.getBlobs(any(), anyBoolean())).thenReturn(Flux.just(createBlobItem("NODE1")));
+        when(azStorageAsyncClient.getBlobContent(any())).thenReturn(Mono.just(ClusterNodeFileTest
+                .createClusterNodeFileString("4", "1", "NODE1", "127.0.0.1", "7800")
+                .getBytes(UTF_8)));
+
+        azureClusterDiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+        azureClusterDiscoveryCallback.reload(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        // the own file is still valid and only saved once
+        verify(azStorageAsyncClient).saveBlob(any(), any(), any());
+        verify(azStorageClient, times(2)).deleteBlobs(List.of("NODE1"));
+        verify(azStorageAsyncClient, never()).deleteBlob(any());
+        verify(clusterDiscoveryOutput, times(2)).provideCurrentNodes(new ArrayList<>());
+    }
+
+    @Test
+    void test_reload_async_engine_container_existence_checked_once() throws Exception {
+        final var azStorageAsyncClient = useAsyncEngine();
+
+        azureClusterDiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+        azureClusterDiscoveryCallback.reload(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        verify(azStorageAsyncClient).existsContainer();
+        verify(clusterDiscoveryOutput, times(2)).provideCurrentNodes(new ArrayList<>());
+    }
+
+    @Test
+    void test_reload_async_engine_container_deleted_is_recreated() throws Exception {
+        final var azStorageAsyncClient = useAsyncEngine();
         azureClusterDiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        when(azStorageAsyncClient.existsContainer()).thenReturn(Mono.just(false));
+        when(azStorageAsyncClient.getBlobs(any(), anyBoolean())).thenReturn(Flux.error(new ContainerNotFoundException(
+                "not found"))).thenReturn(Flux.just(createBlobItem("NODE1")));
+        when(azStorageAsyncClient.getBlobContent(any())).thenReturn(Mono.just(createNodeFileContent("NODE1")));
         azureClusterDiscoveryCallback.reload(clusterDiscoveryInput, clusterDiscoveryOutput);
 
+        verify(azStorageAsyncClient, times(2)).existsContainer();
+        verify(azStorageAsyncClient).createContainer();
+        verify(azStorageAsyncClient, times(2)).saveBlob(any(), any(), any());
+        verify(clusterDiscoveryOutput).provideCurrentNodes(argThat(nodes -> nodes.size() == 1));
+    }
+
+    @Test
+    void test_init_manifest_leader_writes_manifest() throws Exception {
+        final var manifestLease = useManifest();
+        when(manifestLease.acquireOrRenew(anyInt())).thenReturn(true);
+        when(azStorageClient.getBlobs(any())).thenReturn(createBlobItemIterator("NODE1", "NODE2"));
         when(azStorageClient.getBlobContent(any()))
-                .thenReturn(ClusterNodeFileTest.createClusterNodeFileString("3", "3", "3", "3", "3"));
+                .thenAnswer(invocation -> createNodeFileContent(invocation.getArgument(0)));
 
-        doThrow(RuntimeException.class).when(azStorageClient).deleteBlob(any());
-        azureClusterDiscoveryCallback.destroy(clusterDiscoveryInput);
+        azureClusterDiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
 
-        verify(azStorageClient, times(1)).deleteBlob(any());
+        verify(azStorageClient).saveLeasedBlob(eq("hivemq-clustermanifest"),
+                argThat(manifest -> ClusterNodeFile.parseManifest(manifest).size() == 2),
+                eq(manifestLease));
+        verify(azStorageClient, never()).getBlobContentIfChanged(any(), any());
+        verify(clusterDiscoveryOutput).provideCurrentNodes(argThat(nodes -> nodes.size() == 2));
     }
 
-    private @NotNull Iterator<BlobItem> createBlobItemIterator() {
-        final var blobItem = new BlobItem();
-        blobItem.setName("ABCD12");
-        return List.of(blobItem).iterator();
+    @Test
+    void test_reload_manifest_leader_unchanged_manifest_not_written_again() throws Exception {
+        final var manifestLease = useManifest();
+        when(manifestLease.acquireOrRenew(anyInt())).thenReturn(true);
+        when(azStorageClient.getBlobs(any())).thenAnswer(invocation -> createBlobItemIterator("NODE1", "NODE2"))
+                .thenAnswer(invocation -> createBlobItemIterator("NODE1", "NODE2"))
+                .thenAnswer(invocation -> createBlobItemIterator("NODE1"));
+        when(azStorageClient.getBlobContent(any()))
+                .thenAnswer(invocation -> createNodeFileContent(invocation.getArgument(0)));
+
+        azureClusterDiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+        azureClusterDiscoveryCallback.reload(clusterDiscoveryInput, clusterDiscoveryOutput);
+        verify(azStorageClient, times(1)).saveLeasedBlob(any(), any(), any());
+
+        azureClusterDiscoveryCallback.reload(clusterDiscoveryInput, clusterDiscoveryOutput);
+        verify(azStorageClient).saveLeasedBlob(eq("hivemq-clustermanifest"),
+                argThat(manifest -> ClusterNodeFile.parseManifest(manifest).size() == 1),
+                eq(manifestLease));
+        verify(manifestLease, times(3)).acquireOrRenew(BlobLease.MAX_DURATION_IN_SECONDS);
+    }
+
+    @Test
+    void test_reload_manifest_leader_read_failed_manifest_not_written() throws Exception {
+        final var manifestLease = useManifest();
+        when(manifestLease.acquireOrRenew(anyInt())).thenReturn(true);
+        when(azStorageClient.getBlobs(any())).thenAnswer(invocation -> createBlobItemIterator("NODE1", "NODE2"));
+        when(azStorageClient.getBlobContent(any()))
+                .thenAnswer(invocation -> createNodeFileContent(invocation.getArgument(0)));
+        azureClusterDiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+        verify(azStorageClient).saveLeasedBlob(any(), any(), any());
+
+        when(azStorageClient.getBlobs(any())).thenAnswer(invocation -> createBlobItemIterator("NODE1", "NODE3"));
+        when(azStorageClient.getBlobContent("NODE3")).thenThrow(new RuntimeException("failed"));
+        azureClusterDiscoveryCallback.reload(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        // the manifest with NODE2 is kept, a partial manifest would remove the unread nodes from all followers
+        verify(azStorageClient, times(1)).saveLeasedBlob(any(), any(), any());
+        verify(clusterDiscoveryOutput, times(2)).provideCurrentNodes(argThat(nodes -> nodes.size() == 2));
+    }
+
+    @Test
+    void test_reload_manifest_follower_reads_manifest_only_if_changed() throws Exception {
+        useManifest();
+        final var manifest = ClusterNodeFile.toManifest(List.of(new ClusterNodeFile("NODE1",
+                new ClusterNodeAddress("127.0.0.2", 7800)), new ClusterNodeFile("NODE2",
+                new ClusterNodeAddress("127.0.0.3", 7800))), System.currentTimeMillis());
+        when(azStorageClient.getBlobContentIfChanged(any(), any())).thenReturn(new VersionedBlobContent(manifest,
+                "etag-1",
+                OffsetDateTime.now())).thenReturn(null);
+
+        azureClusterDiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+        azureClusterDiscoveryCallback.reload(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        verify(azStorageClient).getBlobContentIfChanged("hivemq-clustermanifest", null);
+        verify(azStorageClient).getBlobContentIfChanged("hivemq-clustermanifest", "etag-1");
+        verify(azStorageClient, never()).getBlobs(any());
+        verify(azStorageClient, never()).saveLeasedBlob(any(), any(), any());
+        // the own node is added to the nodes of the manifest
+        verify(clusterDiscoveryOutput, times(2)).provideCurrentNodes(argThat(nodes -> nodes.size() == 3 &&
+                nodes.contains(new ClusterNodeAddress("127.0.0.1", 7800))));
+    }
+
+    @Test
+    void test_init_manifest_follower_no_manifest_lists_node_files() throws Exception {
+        useManifest();
+        when(azStorageClient.getBlobContentIfChanged(any(), any())).thenThrow(new RuntimeException("not found"));
+        when(azStorageClient.getBlobs(any())).thenReturn(createBlobItemIterator("NODE1"));
+        when(azStorageClient.getBlobContent(any())).thenReturn(createNodeFileContent("NODE1"));
+
+        azureClusterDiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        verify(azStorageClient).getBlobs(any());
+        verify(clusterDiscoveryOutput).provideCurrentNodes(argThat(nodes -> nodes.size() == 1));
+    }
+
+    @Test
+    void test_init_manifest_follower_stale_manifest_lists_node_files() throws Exception {
+        useManifest();
+        // the merge time in the manifest counts, not the last modification of the Blob
+        final var manifest = ClusterNodeFile.toManifest(List.of(new ClusterNodeFile("NODE1",
+                new ClusterNodeAddress("127.0.0.2", 7800))), System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1));
+        when(azStorageClient.getBlobContentIfChanged(any(), any())).thenReturn(new VersionedBlobContent(manifest,
+                "etag-1",
+                OffsetDateTime.now()));
+        when(azStorageClient.getBlobs(any())).thenReturn(Collections.emptyIterator());
+
+        azureClusterDiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        verify(azStorageClient).getBlobs(any());
+        verify(clusterDiscoveryOutput).provideCurrentNodes(new ArrayList<>());
+    }
+
+    @Test
+    void test_init_manifest_blob_not_read_as_node_file() {
+        when(azStorageClient.getBlobs(any())).thenReturn(createBlobItemIterator("hivemq-clustermanifest", "NODE1"));
+        when(azStorageClient.getBlobContent(any())).thenReturn(createNodeFileContent("NODE1"));
+
+        azureClusterDiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        verify(azStorageClient, never()).getBlobContent("hivemq-clustermanifest");
+        verify(clusterDiscoveryOutput).provideCurrentNodes(argThat(nodes -> nodes.size() == 1));
+    }
+
+    @Test
+    void test_destroy_manifest_lease_released() {
+        azureClusterDiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+        azureClusterDiscoveryCallback.destroy(clusterDiscoveryInput);
+
+        verify(azStorageClient).releaseBlobLeases();
+    }
+
+    @Test
+    void test_init_reload_interval_is_read_interval() throws Exception {
+        useIntervals(5, 120);
+
+        azureClusterDiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+        azureClusterDiscoveryCallback.destroy(clusterDiscoveryInput);
+
+        verify(clusterDiscoveryOutput).setReloadInterval(5);
+    }
+
+    @Test
+    void test_init_separate_heartbeat_saves_own_file() throws Exception {
+        useIntervals(60, 1);
+
+        azureClusterDiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        verify(azStorageClient, timeout(5_000).atLeast(2)).saveBlob(eq("hivemq-clusterABCD12"), any());
+        verify(azStorageClient, times(1)).getBlobs(any());
+        azureClusterDiscoveryCallback.destroy(clusterDiscoveryInput);
+        verify(azStorageClient).deleteBlob("hivemq-clusterABCD12");
+    }
+
+    @Test
+    void test_destroy_separate_heartbeat_stopped() throws Exception {
+        useIntervals(60, 1);
+
+        azureClusterDiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+        azureClusterDiscoveryCallback.destroy(clusterDiscoveryInput);
+        TimeUnit.MILLISECONDS.sleep(1_500);
+
+        verify(azStorageClient, times(1)).saveBlob(eq("hivemq-clusterABCD12"), any());
+    }
+
+    @Test
+    void test_init_same_read_and_heartbeat_interval_no_separate_heartbeat() throws Exception {
+        useIntervals(1, 1);
+
+        azureClusterDiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+        TimeUnit.MILLISECONDS.sleep(1_500);
+
+        verify(azStorageClient, times(1)).saveBlob(eq("hivemq-clusterABCD12"), any());
+        azureClusterDiscoveryCallback.reload(clusterDiscoveryInput, clusterDiscoveryOutput);
+        verify(azStorageClient, times(2)).saveBlob(eq("hivemq-clusterABCD12"), any());
+    }
+
+    @Test
+    void test_reload_fast_join_interval_doubled_up_to_read_interval() throws Exception {
+        useFastJoin(100);
+
+        azureClusterDiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+        for (var i = 0; i < 9; i++) {
+            azureClusterDiscoveryCallback.reload(clusterDiscoveryInput, clusterDiscoveryOutput);
+        }
+
+        final var inOrder = inOrder(clusterDiscoveryOutput);
+        for (final var reloadInterval : List.of(1, 2, 4, 8, 16, 32, 64, 128)) {
+            inOrder.verify(clusterDiscoveryOutput).setReloadInterval(reloadInterval);
+        }
+        inOrder.verify(clusterDiscoveryOutput, times(2)).setReloadInterval(180);
+    }
+
+    @Test
+    void test_reload_fast_join_ends_when_nodes_stay_the_same() throws Exception {
+        useFastJoin(2);
+        when(azStorageClient.getBlobs(any())).thenReturn(Collections.emptyIterator(),
+                createBlobItemIterator("NODE1"),
+                createBlobItemIterator("NODE1"),
+                createBlobItemIterator("NODE1"));
+        when(azStorageClient.getBlobContent(any()))
+                .thenAnswer(invocation -> createNodeFileContent(invocation.getArgument(0)));
+
+        azureClusterDiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+        for (var i = 0; i < 3; i++) {
+            azureClusterDiscoveryCallback.reload(clusterDiscoveryInput, clusterDiscoveryOutput);
+        }
+
+        final var inOrder = inOrder(clusterDiscoveryOutput);
+        for (final var reloadInterval : List.of(1, 2, 4, 180)) {
+            inOrder.verify(clusterDiscoveryOutput).setReloadInterval(reloadInterval);
+        }
+    }
+
+    @Test
+    void test_reload_fast_join_failed_cycle_retried_with_same_interval() throws Exception {
+        useFastJoin(100);
+
+        azureClusterDiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+        when(azStorageClient.existsContainer()).thenThrow(new RuntimeException("failed")).thenReturn(true);
+        when(azStorageClient.getContainerClient()).thenReturn(mock());
+        azureClusterDiscoveryCallback.reload(clusterDiscoveryInput, clusterDiscoveryOutput);
+        azureClusterDiscoveryCallback.reload(clusterDiscoveryInput, clusterDiscoveryOutput);
+        azureClusterDiscoveryCallback.reload(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        final var inOrder = inOrder(clusterDiscoveryOutput);
+        inOrder.verify(clusterDiscoveryOutput).setReloadInterval(1);
+        inOrder.verify(clusterDiscoveryOutput, times(2)).setReloadInterval(2);
+        inOrder.verify(clusterDiscoveryOutput).setReloadInterval(4);
+    }
+
+    @Test
+    void test_reload_fast_join_disabled_read_interval() {
+        azureClusterDiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+        azureClusterDiscoveryCallback.reload(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        verify(clusterDiscoveryOutput, times(2)).setReloadInterval(180);
+    }
+
+    @Test
+    void test_init_metrics_updated() {
+        final var discoveryMetrics = new DiscoveryMetrics();
+        azureClusterDiscoveryCallback = new AzureClusterDiscoveryCallback(azStorageClient, discoveryMetrics);
+        when(azStorageClient.getBlobs(any())).thenReturn(createBlobItemIterator("NODE1", "NODE2", "NODE3"));
+        when(azStorageClient.getBlobContent("NODE1")).thenReturn(createNodeFileContent("NODE1"));
+        when(azStorageClient.getBlobContent("NODE2")).thenReturn(createNodeFileContent("NODE2"));
+        when(azStorageClient.getBlobContent("NODE3")).thenReturn(createExpiredNodeFileContent("NODE3"));
+
+        azureClusterDiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        final var gauges = discoveryMetrics.getMetricRegistry().getGauges();
+        assertThat(gauges.get(DiscoveryMetrics.METRIC_PREFIX + ".discovered-nodes").getValue()).isEqualTo(2);
+        assertThat(gauges.get(DiscoveryMetrics.METRIC_PREFIX + ".expired-nodes").getValue()).isEqualTo(1);
+        assertThat((Long) gauges.get(DiscoveryMetrics.METRIC_PREFIX + ".last-reload-duration-millis")
+                .getValue()).isNotNegative();
+    }
+
+    @Test
+    void test_reload_listing_failed_last_complete_nodes_provided() {
+        final var node1 = new ClusterNodeAddress("127.0.0.1", 7801);
+        final var node2 = new ClusterNodeAddress("127.0.0.1", 7802);
+        when(azStorageClient.getBlobs(any())).thenReturn(createBlobItemIterator("NODE1", "NODE2"))
+                .thenThrow(new RuntimeException("failed"));
+        when(azStorageClient.getBlobContent("NODE1")).thenReturn(createNodeFileContent("NODE1", node1));
+        when(azStorageClient.getBlobContent("NODE2")).thenReturn(createNodeFileContent("NODE2", node2));
+
+        azureClusterDiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+        azureClusterDiscoveryCallback.reload(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        verify(clusterDiscoveryOutput, times(2)).provideCurrentNodes(List.of(node1, node2));
+        final var inOrder = inOrder(clusterDiscoveryOutput);
+        inOrder.verify(clusterDiscoveryOutput).setReloadInterval(180);
+        inOrder.verify(clusterDiscoveryOutput).setReloadInterval(10);
+    }
+
+    @Test
+    void test_reload_download_failed_merged_with_last_complete_nodes() {
+        final var node1 = new ClusterNodeAddress("127.0.0.1", 7801);
+        final var node2 = new ClusterNodeAddress("127.0.0.1", 7802);
+        final var node3 = new ClusterNodeAddress("127.0.0.1", 7803);
+        when(azStorageClient.getBlobs(any())).thenReturn(createBlobItemIterator("NODE1", "NODE2"),
+                createBlobItemIterator("NODE2", "NODE3"));
+        when(azStorageClient.getBlobContent("NODE1")).thenReturn(createNodeFileContent("NODE1", node1));
+        when(azStorageClient.getBlobContent("NODE2")).thenReturn(createNodeFileContent("NODE2", node2))
+                .thenThrow(new RuntimeException("failed"));
+        when(azStorageClient.getBlobContent("NODE3")).thenReturn(createNodeFileContent("NODE3", node3));
+
+        azureClusterDiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+        azureClusterDiscoveryCallback.reload(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        final var inOrder = inOrder(clusterDiscoveryOutput);
+        inOrder.verify(clusterDiscoveryOutput).provideCurrentNodes(List.of(node1, node2));
+        inOrder.verify(clusterDiscoveryOutput).provideCurrentNodes(List.of(node1, node2, node3));
+    }
+
+    @Test
+    void test_reload_listing_failed_last_complete_nodes_too_old() throws Exception {
+        Files.writeString(configPath, """
+                connection-string:https://my-connection-string
+                container-name:hivemq-blob-container
+                file-prefix:hivemq-cluster
+                max-staleness:1
+                """);
+        final var azureDiscoveryConfig = new ConfigReader(extensionInformation).readConfiguration();
+        when(azStorageClient.getStorageConfig()).thenReturn(azureDiscoveryConfig);
+        final var node1 = new ClusterNodeAddress("127.0.0.1", 7801);
+        when(azStorageClient.getBlobs(any())).thenReturn(createBlobItemIterator("NODE1"))
+                .thenThrow(new RuntimeException("failed"));
+        when(azStorageClient.getBlobContent("NODE1")).thenReturn(createNodeFileContent("NODE1", node1));
+
+        azureClusterDiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+        TimeUnit.MILLISECONDS.sleep(1_100);
+        azureClusterDiscoveryCallback.reload(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        final var inOrder = inOrder(clusterDiscoveryOutput);
+        inOrder.verify(clusterDiscoveryOutput).provideCurrentNodes(List.of(node1));
+        inOrder.verify(clusterDiscoveryOutput).provideCurrentNodes(List.of());
+        verify(clusterDiscoveryOutput, times(2)).setReloadInterval(180);
+    }
+
+    @Test
+    void test_reload_deadline_exceeded_merged_with_last_complete_nodes() throws Exception {
+        useReloadDeadline(1);
+        final var node1 = new ClusterNodeAddress("127.0.0.1", 7801);
+        final var node2 = new ClusterNodeAddress("127.0.0.1", 7802);
+        when(azStorageClient.getBlobs(any())).thenReturn(createBlobItemIterator("NODE1", "NODE2"),
+                createBlobItemIterator("NODE1", "NODE2"));
+        when(azStorageClient.getBlobContent("NODE1")).thenReturn(createNodeFileContent("NODE1", node1));
+        when(azStorageClient.getBlobContent("NODE2")).thenReturn(createNodeFileContent("NODE2", node2))
+                .thenAnswer(invocation -> {
+                    TimeUnit.SECONDS.sleep(10);
+                    return createNodeFileContent("NODE2", node2);
+                });
+
+        azureClusterDiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+        final var startNanos = System.nanoTime();
+        azureClusterDiscoveryCallback.reload(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        assertThat(System.nanoTime() - startNanos).isLessThan(TimeUnit.SECONDS.toNanos(5));
+        verify(clusterDiscoveryOutput, times(2)).provideCurrentNodes(List.of(node1, node2));
+    }
+
+    @Test
+    void test_init_async_engine_deadline_exceeded_read_node_files_provided() throws Exception {
+        final var azStorageAsyncClient = useAsyncEngine();
+        useReloadDeadline(1);
+        final var node1 = new ClusterNodeAddress("127.0.0.1", 7801);
+        when(azStorageAsyncClient.getBlobs(any(), anyBoolean())).thenReturn(Flux.just(createBlobItem("NODE1"),
+                createBlobItem("NODE2")));
+        when(azStorageAsyncClient.getBlobContent("NODE1")).thenReturn(Mono.just(createNodeFileContent("NODE1",
+                node1)));
+        when(azStorageAsyncClient.getBlobContent("NODE2")).thenReturn(Mono.never());
+
+        final var startNanos = System.nanoTime();
+        azureClusterDiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        assertThat(System.nanoTime() - startNanos).isLessThan(TimeUnit.SECONDS.toNanos(5));
+        verify(clusterDiscoveryOutput).provideCurrentNodes(List.of(node1));
+    }
+
+    @Test
+    void test_reload_async_engine_never_completing_listing_last_complete_nodes_provided() throws Exception {
+        final var azStorageAsyncClient = useAsyncEngine();
+        useReloadDeadline(1);
+        final var node1 = new ClusterNodeAddress("127.0.0.1", 7801);
+        final var node2 = new ClusterNodeAddress("127.0.0.1", 7802);
+        when(azStorageAsyncClient.getBlobs(any(), anyBoolean())).thenReturn(Flux.just(createBlobItem("NODE1"),
+                createBlobItem("NODE2"))).thenReturn(Flux.never());
+        when(azStorageAsyncClient.getBlobContent("NODE1")).thenReturn(Mono.just(createNodeFileContent("NODE1",
+                node1)));
+        when(azStorageAsyncClient.getBlobContent("NODE2")).thenReturn(Mono.just(createNodeFileContent("NODE2",
+                node2)));
+        azureClusterDiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        final var startNanos = System.nanoTime();
+        azureClusterDiscoveryCallback.reload(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        // the cycle counts as a failed read, so the last complete node view is provided instead of no nodes
+        assertThat(System.nanoTime() - startNanos).isLessThan(TimeUnit.SECONDS.toNanos(10));
+        verify(clusterDiscoveryOutput, times(2)).provideCurrentNodes(List.of(node1, node2));
+        verify(clusterDiscoveryOutput, times(2)).setReloadInterval(anyInt());
+    }
+
+    @Test
+    void test_reload_membership_changes_counted() {
+        final var discoveryMetrics = new DiscoveryMetrics();
+        azureClusterDiscoveryCallback = new AzureClusterDiscoveryCallback(azStorageClient, discoveryMetrics);
+        final var node1 = new ClusterNodeAddress("127.0.0.1", 7801);
+        final var node2 = new ClusterNodeAddress("127.0.0.1", 7802);
+        final var node3 = new ClusterNodeAddress("127.0.0.1", 7803);
+        when(azStorageClient.getBlobs(any())).thenReturn(createBlobItemIterator("NODE1", "NODE2"),
+                createBlobItemIterator("NODE2", "NODE3"));
+        when(azStorageClient.getBlobContent("NODE1")).thenReturn(createNodeFileContent("NODE1", node1));
+        when(azStorageClient.getBlobContent("NODE2")).thenReturn(createNodeFileContent("NODE2", node2));
+        when(azStorageClient.getBlobContent("NODE3")).thenReturn(createNodeFileContent("NODE3", node3));
+
+        azureClusterDiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+        azureClusterDiscoveryCallback.reload(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        final var inOrder = inOrder(clusterDiscoveryOutput);
+        inOrder.verify(clusterDiscoveryOutput).provideCurrentNodes(List.of(node1, node2));
+        inOrder.verify(clusterDiscoveryOutput).provideCurrentNodes(List.of(node2, node3));
+        // the nodes provided by the init are not counted as joined
+        final var counters = discoveryMetrics.getMetricRegistry().getCounters();
+        assertThat(counters.get(DiscoveryMetrics.METRIC_PREFIX + ".membership.joined-nodes").getCount()).isOne();
+        assertThat(counters.get(DiscoveryMetrics.METRIC_PREFIX + ".membership.left-nodes").getCount()).isOne();
+        assertThat(counters.get(DiscoveryMetrics.METRIC_PREFIX + ".membership.skipped-publishes").getCount())
+                .isZero();
+    }
+
+    @Test
+    void test_reload_changed_address_counted_as_left_and_joined() {
+        final var discoveryMetrics = new DiscoveryMetrics();
+        azureClusterDiscoveryCallback = new AzureClusterDiscoveryCallback(azStorageClient, discoveryMetrics);
+        when(azStorageClient.getBlobs(any())).thenAnswer(invocation -> createBlobItemIterator("NODE1"));
+        when(azStorageClient.getBlobContent("NODE1")).thenReturn(createNodeFileContent("NODE1",
+                new ClusterNodeAddress("127.0.0.1", 7801)), createNodeFileContent("NODE1",
+                new ClusterNodeAddress("127.0.0.2", 7801)));
+
+        azureClusterDiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+        azureClusterDiscoveryCallback.reload(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        verify(clusterDiscoveryOutput).provideCurrentNodes(List.of(new ClusterNodeAddress("127.0.0.2", 7801)));
+        final var counters = discoveryMetrics.getMetricRegistry().getCounters();
+        assertThat(counters.get(DiscoveryMetrics.METRIC_PREFIX + ".membership.joined-nodes").getCount()).isOne();
+        assertThat(counters.get(DiscoveryMetrics.METRIC_PREFIX + ".membership.left-nodes").getCount()).isOne();
+    }
+
+    @Test
+    void test_reload_unchanged_nodes_provided_again() {
+        when(azStorageClient.getBlobs(any())).thenAnswer(invocation -> createBlobItemIterator("NODE1", "NODE2"));
+        when(azStorageClient.getBlobContent(any()))
+                .thenAnswer(invocation -> createNodeFileContent(invocation.getArgument(0)));
+
+        azureClusterDiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+        azureClusterDiscoveryCallback.reload(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        verify(clusterDiscoveryOutput, times(2)).provideCurrentNodes(argThat(nodes -> nodes.size() == 2));
+    }
+
+    @Test
+    void test_reload_publish_changes_only_unchanged_nodes_skipped() throws Exception {
+        usePublishChangesOnly();
+        final var discoveryMetrics = new DiscoveryMetrics();
+        azureClusterDiscoveryCallback = new AzureClusterDiscoveryCallback(azStorageClient, discoveryMetrics);
+        when(azStorageClient.getBlobs(any())).thenReturn(createBlobItemIterator("NODE1", "NODE2"),
+                createBlobItemIterator("NODE1", "NODE2"),
+                createBlobItemIterator("NODE1"));
+        when(azStorageClient.getBlobContent(any()))
+                .thenAnswer(invocation -> createNodeFileContent(invocation.getArgument(0)));
+
+        azureClusterDiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+        azureClusterDiscoveryCallback.reload(clusterDiscoveryInput, clusterDiscoveryOutput);
+        azureClusterDiscoveryCallback.reload(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        final var inOrder = inOrder(clusterDiscoveryOutput);
+        inOrder.verify(clusterDiscoveryOutput).provideCurrentNodes(argThat(nodes -> nodes.size() == 2));
+        inOrder.verify(clusterDiscoveryOutput).provideCurrentNodes(argThat(nodes -> nodes.size() == 1));
+        verify(clusterDiscoveryOutput, times(2)).provideCurrentNodes(anyList());
+        // the reload interval is set in every discovery cycle, also if the nodes were not provided again
+        verify(clusterDiscoveryOutput, times(3)).setReloadInterval(180);
+        final var counters = discoveryMetrics.getMetricRegistry().getCounters();
+        assertThat(counters.get(DiscoveryMetrics.METRIC_PREFIX + ".membership.skipped-publishes").getCount())
+                .isOne();
+        assertThat(counters.get(DiscoveryMetrics.METRIC_PREFIX + ".membership.left-nodes").getCount()).isOne();
+    }
+
+    @Test
+    void test_init_publish_changes_only_nodes_provided_after_restart() throws Exception {
+        usePublishChangesOnly();
+        when(azStorageClient.getBlobs(any())).thenAnswer(invocation -> createBlobItemIterator("NODE1"));
+        when(azStorageClient.getBlobContent(any())).thenReturn(createNodeFileContent("NODE1"));
+
+        azureClusterDiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+        azureClusterDiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        verify(clusterDiscoveryOutput, times(2)).provideCurrentNodes(argThat(nodes -> nodes.size() == 1));
+    }
+
+    @Test
+    void test_init_sharded_layout_shards_listed() throws Exception {
+        useShards(4);
+
+        azureClusterDiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        verify(azStorageClient).saveBlob(eq(new NodeFileLayout("hivemq-cluster", 4).getBlobName("ABCD12")), any());
+        verify(azStorageClient).getBlobs("hivemq-cluster/00/");
+        verify(azStorageClient).getBlobs("hivemq-cluster/01/");
+        verify(azStorageClient).getBlobs("hivemq-cluster/02/");
+        verify(azStorageClient).getBlobs("hivemq-cluster/03/");
+        verify(azStorageClient, never()).getBlobs("hivemq-cluster");
+    }
+
+    @Test
+    void test_reload_shard_count_changed_previous_layout_listed_and_expired_files_deleted() throws Exception {
+        useShards(4);
+        final var previousBlobName = "hivemq-cluster/03/NODE1";
+        when(azStorageClient.getBlobs("hivemq-cluster/03/")).thenAnswer(invocation -> createBlobItemIterator(
+                previousBlobName));
+        when(azStorageClient.getBlobContent(previousBlobName)).thenReturn(createNodeFileContent("NODE1"));
+        azureClusterDiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        useShards(2);
+        when(azStorageClient.getBlobContent(previousBlobName)).thenReturn(createExpiredNodeFileContent("NODE1"));
+        azureClusterDiscoveryCallback.reload(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        // the node file of the previous layout is still listed and deleted by its listed name, not by its name in the
+        // current layout
+        verify(azStorageClient, times(2)).getBlobs("hivemq-cluster/03/");
+        verify(azStorageClient).deleteBlobs(List.of(previousBlobName));
+        assertThat(previousBlobName).isNotEqualTo(new NodeFileLayout("hivemq-cluster", 2).getBlobName("NODE1"));
+    }
+
+    @Test
+    void test_init_sharded_layout_failed_shard_other_shards_provided() throws Exception {
+        useShards(2);
+        when(azStorageClient.getBlobs("hivemq-cluster/00/")).thenReturn(createBlobItemIterator("NODE1"));
+        when(azStorageClient.getBlobs("hivemq-cluster/01/")).thenThrow(new RuntimeException("failed"));
+        when(azStorageClient.getBlobContent("NODE1")).thenReturn(createNodeFileContent("NODE1"));
+
+        azureClusterDiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        verify(clusterDiscoveryOutput).provideCurrentNodes(List.of(new ClusterNodeAddress("127.0.0.1", 7800)));
+        // the cached node files of the failed shard are kept
+        verify(azStorageClient, never()).retainCachedNodeFiles(any());
+    }
+
+    @Test
+    void test_init_sharded_layout_container_deleted_is_recreated() throws Exception {
+        useShards(2);
+        when(azStorageClient.existsContainer()).thenReturn(true, false);
+        when(azStorageClient.getBlobs("hivemq-cluster/01/")).thenThrow(new ContainerNotFoundException("not found"))
+                .thenReturn(Collections.emptyIterator());
+
+        azureClusterDiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        verify(azStorageClient).createContainer();
+        verify(azStorageClient, times(2)).saveBlob(any(), any());
+        verify(clusterDiscoveryOutput).provideCurrentNodes(List.of());
+    }
+
+    @Test
+    void test_reload_circuit_open_cycle_skipped_last_complete_nodes_provided() {
+        azureClusterDiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+        when(azStorageClient.isCircuitOpen()).thenReturn(true);
+
+        azureClusterDiscoveryCallback.reload(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        verify(azStorageClient, times(1)).getBlobs(any());
+        verify(azStorageClient, times(1)).saveBlob(any(), any());
+        verify(clusterDiscoveryOutput, times(2)).provideCurrentNodes(anyList());
+        verify(clusterDiscoveryOutput).setReloadInterval(10);
+    }
+
+    @Test
+    void test_reload_jitter_applied_to_reload_interval() throws Exception {
+        Files.writeString(configPath, Files.readString(configPath) + "reload-jitter:20\n");
+        final var azureDiscoveryConfig = new ConfigReader(extensionInformation).readConfiguration();
+        when(azStorageClient.getStorageConfig()).thenReturn(azureDiscoveryConfig);
+
+        azureClusterDiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+        for (int i = 0; i < 20; i++) {
+            azureClusterDiscoveryCallback.reload(clusterDiscoveryInput, clusterDiscoveryOutput);
+        }
+
+        verify(clusterDiscoveryOutput, times(21)).setReloadInterval(intThat(interval -> interval >= 144 &&
+                interval <= 216));
+    }
+
+    @Test
+    void test_reload_phase_offset_applied_once() throws Exception {
+        Files.writeString(configPath, Files.readString(configPath) + "phase-offset-enabled:true\n");
+        final var azureDiscoveryConfig = new ConfigReader(extensionInformation).readConfiguration();
+        when(azStorageClient.getStorageConfig()).thenReturn(azureDiscoveryConfig);
+
+        azureClusterDiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+        azureClusterDiscoveryCallback.reload(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        final var inOrder = inOrder(clusterDiscoveryOutput);
+        inOrder.verify(clusterDiscoveryOutput).setReloadInterval(Math.floorMod("ABCD12".hashCode(), 180));
+        inOrder.verify(clusterDiscoveryOutput).setReloadInterval(180);
+    }
+
+    @Test
+    void test_reload_phase_offset_applied_after_fast_join() throws Exception {
+        useFastJoin(1);
+        Files.writeString(configPath, Files.readString(configPath) + "phase-offset-enabled:true\n");
+        final var azureDiscoveryConfig = new ConfigReader(extensionInformation).readConfiguration();
+        when(azStorageClient.getStorageConfig()).thenReturn(azureDiscoveryConfig);
+
+        azureClusterDiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+        azureClusterDiscoveryCallback.reload(clusterDiscoveryInput, clusterDiscoveryOutput);
+        azureClusterDiscoveryCallback.reload(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        final var inOrder = inOrder(clusterDiscoveryOutput);
+        inOrder.verify(clusterDiscoveryOutput).setReloadInterval(1);
+        inOrder.verify(clusterDiscoveryOutput).setReloadInterval(Math.floorMod("ABCD12".hashCode(), 180));
+        inOrder.verify(clusterDiscoveryOutput).setReloadInterval(180);
+    }
+
+    @Test
+    void test_destroy_success() {
+        azureClusterDiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+        azureClusterDiscoveryCallback.reload(clusterDiscoveryInput, clusterDiscoveryOutput);
+        azureClusterDiscoveryCallback.destroy(clusterDiscoveryInput);
+
+        verify(azStorageClient, times(1)).deleteBlob(any());
+    }
+
+    @Test
+    void test_destroy_no_own_file() {
+        azureClusterDiscoveryCallback.destroy(clusterDiscoveryInput);
+        verify(azStorageClient, never()).deleteBlob(any());
+    }
+
+    @Test
+    void test_destroy_delete_own_file_failed() {
+        azureClusterDiscoveryCallback.init(clusterDiscoveryInput, clusterDiscoveryOutput);
+        azureClusterDiscoveryCallback.reload(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        when(azStorageClient.getBlobContent(any()))
+                .thenReturn(ClusterNodeFileTest.createClusterNodeFileString("3", "3", "3", "3", "3")
+                        .getBytes(UTF_8));
+
+        doThrow(RuntimeException.class).when(azStorageClient).deleteBlob(any());
+        azureClusterDiscoveryCallback.destroy(clusterDiscoveryInput);
+
+        verify(azStorageClient, times(1)).deleteBlob(any());
+    }
+
+    @Test
+    void in_memory_store_nodes_discover_each_other() {
+        final var store = new InMemoryDiscoveryStore();
+        final var callbacks = new ArrayList<AzureClusterDiscoveryCallback>();
+        final var inputs = new ArrayList<ClusterDiscoveryInput>();
+        for (var i = 0; i < 3; i++) {
+            callbacks.add(new AzureClusterDiscoveryCallback(configurationReader, store, new DiscoveryMetrics()));
+            inputs.add(createClusterDiscoveryInput("NODE" + i, new ClusterNodeAddress("10.0.0." + i, 7800)));
+            callbacks.get(i).init(inputs.get(i), mock());
+        }
+
+        callbacks.get(0).reload(inputs.get(0), clusterDiscoveryOutput);
+        callbacks.get(2).destroy(inputs.get(2));
+        final var reloadOutput = mock(ClusterDiscoveryOutput.class);
+        callbacks.get(0).reload(inputs.get(0), reloadOutput);
+
+        verify(clusterDiscoveryOutput).provideCurrentNodes(argThat(nodeAddresses -> nodeAddresses.size() == 3));
+        verify(reloadOutput).provideCurrentNodes(List.of(new ClusterNodeAddress("10.0.0.0", 7800),
+                new ClusterNodeAddress("10.0.0.1", 7800)));
+        callbacks.get(0).destroy(inputs.get(0));
+        callbacks.get(1).destroy(inputs.get(1));
+        assertThat(store.getBlobCount()).isZero();
+        verify(azStorageClient, never()).getBlobs(any());
+    }
+
+    @Test
+    void in_memory_store_container_deleted_recreated() {
+        final var store = new InMemoryDiscoveryStore();
+        final var callback = new AzureClusterDiscoveryCallback(configurationReader, store, new DiscoveryMetrics());
+        callback.init(clusterDiscoveryInput, mock());
+
+        store.deleteContainer();
+        callback.reload(clusterDiscoveryInput, clusterDiscoveryOutput);
+
+        verify(clusterDiscoveryOutput).provideCurrentNodes(List.of(new ClusterNodeAddress("127.0.0.1", 7800)));
+        assertThat(store.existsContainer()).isTrue();
+        assertThat(store.getBlobCount()).isOne();
+        callback.destroy(clusterDiscoveryInput);
+    }
+
+    @Test
+    void in_memory_store_sharded_nodes_discover_each_other() throws Exception {
+        useShards(4);
+        final var store = new InMemoryDiscoveryStore();
+        final var callbacks = new ArrayList<AzureClusterDiscoveryCallback>();
+        final var inputs = new ArrayList<ClusterDiscoveryInput>();
+        for (var i = 0; i < 3; i++) {
+            callbacks.add(new AzureClusterDiscoveryCallback(new ConfigReader(extensionInformation),
+                    store,
+                    new DiscoveryMetrics()));
+            inputs.add(createClusterDiscoveryInput("NODE" + i, new ClusterNodeAddress("10.0.0." + i, 7800)));
+            callbacks.get(i).init(inputs.get(i), mock());
+        }
+
+        callbacks.get(0).reload(inputs.get(0), clusterDiscoveryOutput);
+
+        verify(clusterDiscoveryOutput).provideCurrentNodes(argThat(nodeAddresses -> nodeAddresses.size() == 3));
+        final var blobNames = new ArrayList<String>();
+        store.getBlobs("hivemq-cluster").forEachRemaining(blob -> blobNames.add(blob.getName()));
+        assertThat(blobNames).containsExactlyInAnyOrder(new NodeFileLayout("hivemq-cluster", 4).getBlobName("NODE0"),
+                new NodeFileLayout("hivemq-cluster", 4).getBlobName("NODE1"),
+                new NodeFileLayout("hivemq-cluster", 4).getBlobName("NODE2"));
+        for (var i = 0; i < 3; i++) {
+            callbacks.get(i).destroy(inputs.get(i));
+        }
+        assertThat(store.getBlobCount()).isZero();
+    }
+
+    private @NotNull Iterator<BlobItem> createBlobItemIterator() {
+        final var blobItem = new BlobItem();
+        blobItem.setName("ABCD12");
+        return List.of(blobItem).iterator();
+    }
+
+    private @NotNull Iterator<BlobItem> createBlobItemIterator(final @NotNull String... blobNames) {
+        final var blobItems = new ArrayList<BlobItem>();
+        for (final var blobName : blobNames) {
+            final var blobItem = new BlobItem();
+            blobItem.setName(blobName);
+            blobItems.add(blobItem);
+        }
+        return blobItems.iterator();
+    }
+
+    private @NotNull AzureStorageAsyncClient useAsyncEngine() throws IOException {
+        Files.writeString(configPath, """
+                connection-string:https://my-connection-string
+                container-name:hivemq-blob-container
+                file-prefix:hivemq-cluster
+                discovery-engine:async
+                """);
+        final var azureDiscoveryConfig = new ConfigReader(extensionInformation).readConfiguration();
+        when(azStorageClient.getStorageConfig()).thenReturn(azureDiscoveryConfig);
+
+        final var azStorageAsyncClient = mock(AzureStorageAsyncClient.class);
+        when(azStorageClient.getAsyncClient()).thenReturn(azStorageAsyncClient);
+        when(azStorageAsyncClient.existsContainer()).thenReturn(Mono.just(true));
+        when(azStorageAsyncClient.createContainer()).thenReturn(Mono.empty());
+        when(azStorageAsyncClient.saveBlob(any(), any(), any())).thenReturn(Mono.empty());
+        when(azStorageAsyncClient.deleteBlob(any())).thenReturn(Mono.empty());
+        when(azStorageAsyncClient.getBlobs(any(), anyBoolean())).thenReturn(Flux.empty());
+        return azStorageAsyncClient;
+    }
+
+    private void useIntervals(final int readIntervalInSeconds, final int heartbeatIntervalInSeconds)
+            throws IOException {
+        Files.writeString(configPath, """
+                connection-string:https://my-connection-string
+                container-name:hivemq-blob-container
+                file-prefix:hivemq-cluster
+                read-interval:%d
+                heartbeat-interval:%d
+                """.formatted(readIntervalInSeconds, heartbeatIntervalInSeconds));
+        final var azureDiscoveryConfig = new ConfigReader(extensionInformation).readConfiguration();
+        when(azStorageClient.getStorageConfig()).thenReturn(azureDiscoveryConfig);
+    }
+
+    private void useFastJoin(final int stableCycles) throws IOException {
+        Files.writeString(configPath, """
+                connection-string:https://my-connection-string
+                container-name:hivemq-blob-container
+                file-prefix:hivemq-cluster
+                fast-join-enabled:true
+                fast-join-stable-cycles:%d
+                """.formatted(stableCycles));
+        final var azureDiscoveryConfig = new ConfigReader(extensionInformation).readConfiguration();
+        when(azStorageClient.getStorageConfig()).thenReturn(azureDiscoveryConfig);
+    }
+
+    private void useReloadDeadline(final int reloadDeadlineInSeconds) throws IOException {
+        Files.writeString(configPath,
+                Files.readString(configPath) + "reload-deadline:" + reloadDeadlineInSeconds + "\n");
+        final var azureDiscoveryConfig = new ConfigReader(extensionInformation).readConfiguration();
+        when(azStorageClient.getStorageConfig()).thenReturn(azureDiscoveryConfig);
+    }
+
+    private void useShards(final int shardCount) throws IOException {
+        Files.writeString(configPath, Files.readString(configPath) + "shard-count:" + shardCount + "\n");
+        final var azureDiscoveryConfig = new ConfigReader(extensionInformation).readConfiguration();
+        when(azStorageClient.getStorageConfig()).thenReturn(azureDiscoveryConfig);
+    }
+
+    private void useJanitor() throws IOException {
+        Files.writeString(configPath, Files.readString(configPath) + "janitor-enabled:true\n");
+        final var azureDiscoveryConfig = new ConfigReader(extensionInformation).readConfiguration();
+        when(azStorageClient.getStorageConfig()).thenReturn(azureDiscoveryConfig);
+    }
+
+    private void usePublishChangesOnly() throws IOException {
+        Files.writeString(configPath, Files.readString(configPath) + "publish-changes-only:true\n");
+        final var azureDiscoveryConfig = new ConfigReader(extensionInformation).readConfiguration();
+        when(azStorageClient.getStorageConfig()).thenReturn(azureDiscoveryConfig);
+    }
+
+    private @NotNull BlobLease useManifest() throws IOException {
+        Files.writeString(configPath, """
+                connection-string:https://my-connection-string
+                container-name:hivemq-blob-container
+                file-prefix:hivemq-cluster
+                manifest-enabled:true
+                """);
+        final var azureDiscoveryConfig = new ConfigReader(extensionInformation).readConfiguration();
+        when(azStorageClient.getStorageConfig()).thenReturn(azureDiscoveryConfig);
+
+        final var manifestLease = mock(BlobLease.class);
+        when(azStorageClient.getBlobLease(any())).thenReturn(manifestLease);
+        return manifestLease;
+    }
+
+    private static @NotNull ClusterDiscoveryInput createClusterDiscoveryInput(
+            final @NotNull String clusterId,
+            final @NotNull ClusterNodeAddress nodeAddress) {
+        final var input = mock(ClusterDiscoveryInput.class);
+        when(input.getOwnClusterId()).thenReturn(clusterId);
+        when(input.getOwnAddress()).thenReturn(nodeAddress);
+        return input;
+    }
+
+    private static @NotNull BlobItem createBlobItem(final @NotNull String blobName) {
+        final var blobItem = new BlobItem();
+        blobItem.setName(blobName);
+        return blobItem;
+    }
+
+    private static byte @NotNull [] createNodeFileContent(final @NotNull String clusterId) {
+        return new ClusterNodeFile(clusterId, new ClusterNodeAddress("127.0.0.1", 7800)).toString().getBytes(UTF_8);
+    }
+
+    private static byte @NotNull [] createNodeFileContent(
+            final @NotNull String clusterId,
+            final @NotNull ClusterNodeAddress nodeAddress) {
+        return new ClusterNodeFile(clusterId, nodeAddress).toString().getBytes(UTF_8);
+    }
+
+    private static byte @NotNull [] createExpiredNodeFileContent(final @NotNull String clusterId) {
+        return ClusterNodeFileTest.createClusterNodeFileString("4", "1", clusterId, "127.0.0.1", "7800")
+                .getBytes(UTF_8);
     }
 }
@@ -0,0 +1,445 @@
+/*
+ * Copyright 2021-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.cluster.discovery.azure.callback;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Timer;
+import com.hivemq.extension.sdk.api.parameter.ExtensionInformation;
+import com.hivemq.extension.sdk.api.services.cluster.parameter.ClusterDiscoveryInput;
+import com.hivemq.extension.sdk.api.services.cluster.parameter.ClusterDiscoveryOutput;
+import com.hivemq.extension.sdk.api.services.cluster.parameter.ClusterNodeAddress;
+import com.hivemq.extensions.cluster.discovery.azure.client.AzureStorageClient;
+import com.hivemq.extensions.cluster.discovery.azure.config.AzureDiscoveryConfig;
+import com.hivemq.extensions.cluster.discovery.azure.config.ConfigReader;
+import com.hivemq.extensions.cluster.discovery.azure.metrics.DiscoveryMetrics;
+import com.hivemq.extensions.cluster.discovery.azure.store.DiscoveryStore;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import static org.mockito.Mockito.anyInt;
+import static org.mockito.Mockito.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Runs the discovery of a whole cluster in one JVM. Every node is an {@link AzureClusterDiscoveryCallback} with its
+ * own cluster ID and address, all nodes share one {@link DiscoveryStore}, e.g. an in-memory store or an
+ * {@link AzureStorageClient} for an Azurite container.
+ * <p>
+ * The nodes run on a virtual clock: {@code init}, {@code reload} and {@code destroy} are called one after the other in
+ * the order of their virtual time, and every reload is scheduled after the reload interval the node set on its output,
+ * as HiveMQ does. Store requests take no virtual time. As the heartbeat and the downloads of a node run on their own
+ * threads, the simulated configuration should neither separate the heartbeat nor download in parallel.
+ * <p>
+ * The {@link Report} compares the views of the nodes with the nodes that are actually running: how long the cluster
+ * took to converge after the last membership change, how stale the view of every node was, and how many requests and
+ * bytes the store had to serve.
+ */
+class ClusterSimulation {
+
+    // the reload interval of HiveMQ until the callback sets its own
+    private static final int DEFAULT_RELOAD_INTERVAL_IN_SECONDS = 60;
+
+    private final @NotNull DiscoveryStore store;
+    private final @NotNull DiscoveryMetrics storeMetrics;
+    private final @NotNull ConfigReader configReader;
+    private final @NotNull AzureDiscoveryConfig config;
+    private final @NotNull VirtualClock clock = new VirtualClock();
+    private final @NotNull PriorityQueue<Event> events = new PriorityQueue<>();
+    private final @NotNull List<Node> nodes = new ArrayList<>();
+    private final @NotNull Set<ClusterNodeAddress> runningNodeAddresses = new HashSet<>();
+    private long eventSequence;
+    private long lastChangeMillis;
+    private int convergedNodes;
+    private long startRequests;
+    private long startBytes;
+    private long startMillis;
+
+    /**
+     * @param extensionHome    the extension home folder the configuration is written to
+     * @param configProperties the content of the {@code config.properties} file of all nodes
+     * @param store            the store that all nodes share
+     * @param storeMetrics     the metrics that the store reports its requests to
+     */
+    ClusterSimulation(
+            final @NotNull Path extensionHome,
+            final @NotNull String configProperties,
+            final @NotNull DiscoveryStore store,
+            final @NotNull DiscoveryMetrics storeMetrics) throws IOException {
+        this.store = store;
+        this.storeMetrics = storeMetrics;
+        final var configPath = extensionHome.resolve(ConfigReader.CONFIG_PATH);
+        Files.createDirectories(configPath.getParent());
+        Files.writeString(configPath, configProperties);
+        final var extensionInformation = mock(ExtensionInformation.class);
+        when(extensionInformation.getExtensionHomeFolder()).thenReturn(extensionHome.toFile());
+        configReader = new ConfigReader(extensionInformation);
+        config = Objects.requireNonNull(configReader.readConfiguration(), "The configuration is not valid.");
+        lastChangeMillis = clock.millis();
+        resetReport();
+    }
+
+    /**
+     * Starts the given number of nodes, spread evenly over the given time from now on.
+     */
+    void startNodes(final int count, final @NotNull Duration spread) {
+        for (var i = 0; i < count; i++) {
+            final var index = nodes.size();
+            final var address = new ClusterNodeAddress("10.0." + index / 256 + "." + index % 256, 7800);
+            final var node = new Node("NODE" + index, address);
+            nodes.add(node);
+            schedule(node, EventType.INIT, clock.millis() + spread.toMillis() * i / count);
+        }
+    }
+
+    /**
+     * Stops the node gracefully, its node file is deleted.
+     */
+    void stopNode(final int index) {
+        schedule(nodes.get(index), EventType.DESTROY, clock.millis());
+    }
+
+    /**
+     * Stops the node without calling {@code destroy}, its node file is left to expire.
+     */
+    void crashNode(final int index) {
+        schedule(nodes.get(index), EventType.CRASH, clock.millis());
+    }
+
+    /**
+     * Runs all events until the given virtual time passed.
+     */
+    void run(final @NotNull Duration duration) {
+        final var endMillis = clock.millis() + duration.toMillis();
+        while (!events.isEmpty() && events.peek().timeMillis <= endMillis) {
+            final var event = events.poll();
+            clock.setMillis(event.timeMillis);
+            process(event);
+        }
+        clock.setMillis(endMillis);
+    }
+
+    /**
+     * Destroys all running nodes, so their threads are stopped.
+     */
+    void shutdown() {
+        for (final var node : nodes) {
+            if (node.running) {
+                node.callback.destroy(node.input);
+                node.running = false;
+            }
+        }
+        events.clear();
+    }
+
+    /**
+     * Starts a new measurement of the requests and bytes, e.g. after the cluster started.
+     */
+    void resetReport() {
+        startRequests = getRequests();
+        startBytes = getBytes();
+        startMillis = clock.millis();
+    }
+
+    @NotNull Report report() {
+        final var nowMillis = clock.millis();
+        final var stalenessMillis = new ArrayList<Long>();
+        for (final var node : nodes) {
+            if (node.running) {
+                stalenessMillis.add(node.converged ? node.stalenessMillis : nowMillis - lastChangeMillis);
+            }
+        }
+        final var maxStaleness = Duration.ofMillis(stalenessMillis.stream().mapToLong(Long::longValue).max().orElse(0));
+        final var meanStaleness =
+                Duration.ofMillis((long) stalenessMillis.stream().mapToLong(Long::longValue).average().orElse(0));
+        final var intervals = (double) (nowMillis - startMillis) / (getReadIntervalInSeconds() * 1_000L);
+        final var runningNodes = runningNodeAddresses.size();
+        return new Report(runningNodes,
+                // the cluster converged once the last node had the complete view
+                convergedNodes == runningNodes ? maxStaleness : null,
+                maxStaleness,
+                meanStaleness,
+                runningNodes > 0 && intervals > 0 ?
+                        (double) (getRequests() - startRequests) / runningNodes / intervals :
+                        0,
+                getBytes() - startBytes);
+    }
+
+    private void process(final @NotNull Event event) {
+        final var node = event.node;
+        switch (event.type) {
+            case INIT:
+                node.running = true;
+                changeMembership(() -> runningNodeAddresses.add(node.address));
+                node.callback.init(node.input, node.output);
+                schedule(node, EventType.RELOAD, clock.millis() + node.reloadIntervalInSeconds * 1_000L);
+                break;
+            case RELOAD:
+                if (node.running) {
+                    node.callback.reload(node.input, node.output);
+                    schedule(node, EventType.RELOAD, clock.millis() + node.reloadIntervalInSeconds * 1_000L);
+                }
+                break;
+            case DESTROY:
+            case CRASH:
+                if (node.running) {
+                    // a crashed node leaves its node file in the store until it expires
+                    if (event.type == EventType.DESTROY) {
+                        node.callback.destroy(node.input);
+                    }
+                    node.running = false;
+                    changeMembership(() -> runningNodeAddresses.remove(node.address));
+                }
+                break;
+        }
+    }
+
+    private void changeMembership(final @NotNull Runnable change) {
+        change.run();
+        lastChangeMillis = clock.millis();
+        convergedNodes = 0;
+        for (final var node : nodes) {
+            node.converged = false;
+            updateConvergence(node);
+        }
+    }
+
+    private void provideCurrentNodes(final @NotNull Node node, final @NotNull List<ClusterNodeAddress> view) {
+        node.view = new HashSet<>(view);
+        updateConvergence(node);
+    }
+
+    private void updateConvergence(final @NotNull Node node) {
+        final var converged = node.running && runningNodeAddresses.equals(node.view);
+        if (converged && !node.converged) {
+            node.stalenessMillis = clock.millis() - lastChangeMillis;
+            convergedNodes++;
+        } else if (!converged && node.converged) {
+            convergedNodes--;
+        }
+        node.converged = converged;
+    }
+
+    private void schedule(final @NotNull Node node, final @NotNull EventType type, final long timeMillis) {
+        events.add(new Event(timeMillis, eventSequence++, node, type));
+    }
+
+    private int getReadIntervalInSeconds() {
+        final var readIntervalInSeconds = config.getReadIntervalInSeconds();
+        return readIntervalInSeconds != null ? readIntervalInSeconds : config.getFileUpdateIntervalInSeconds();
+    }
+
+    private long getRequests() {
+        return storeMetrics.getMetricRegistry()
+                .getTimers((name, metric) -> name.startsWith(DiscoveryMetrics.METRIC_PREFIX + ".storage."))
+                .values()
+                .stream()
+                .mapToLong(Timer::getCount)
+                .sum();
+    }
+
+    private long getBytes() {
+        return storeMetrics.getMetricRegistry()
+                .getCounters((name, metric) -> name.endsWith(".bytes-uploaded") || name.endsWith(".bytes-downloaded"))
+                .values()
+                .stream()
+                .mapToLong(Counter::getCount)
+                .sum();
+    }
+
+    private final class Node {
+
+        private final @NotNull ClusterNodeAddress address;
+        private final @NotNull ClusterDiscoveryInput input;
+        private final @NotNull ClusterDiscoveryOutput output;
+        private final @NotNull AzureClusterDiscoveryCallback callback;
+        private int reloadIntervalInSeconds = DEFAULT_RELOAD_INTERVAL_IN_SECONDS;
+        private @NotNull Set<ClusterNodeAddress> view = Set.of();
+        private boolean running;
+        private boolean converged;
+        private long stalenessMillis;
+
+        private Node(final @NotNull String clusterId, final @NotNull ClusterNodeAddress address) {
+            this.address = address;
+            // the mocks don't record their invocations, as the nodes are called very often
+            input = mock(ClusterDiscoveryInput.class, withSettings().stubOnly());
+            when(input.getOwnClusterId()).thenReturn(clusterId);
+            when(input.getOwnAddress()).thenReturn(address);
+            output = mock(ClusterDiscoveryOutput.class, withSettings().stubOnly());
+            doAnswer(invocation -> {
+                provideCurrentNodes(this, invocation.getArgument(0));
+                return null;
+            }).when(output).provideCurrentNodes(anyList());
+            doAnswer(invocation -> {
+                reloadIntervalInSeconds = invocation.getArgument(0);
+                return null;
+            }).when(output).setReloadInterval(anyInt());
+            final var nodeMetrics = new DiscoveryMetrics();
+            callback = new AzureClusterDiscoveryCallback(new AzureStorageClient(configReader, nodeMetrics),
+                    store,
+                    nodeMetrics,
+                    clock,
+                    clock::nanos);
+        }
+    }
+
+    private enum EventType {
+        INIT,
+        RELOAD,
+        DESTROY,
+        CRASH
+    }
+
+    private static final class Event implements Comparable<Event> {
+
+        private final long timeMillis;
+        private final long sequence;
+        private final @NotNull Node node;
+        private final @NotNull EventType type;
+
+        private Event(
+                final long timeMillis,
+                final long sequence,
+                final @NotNull Node node,
+                final @NotNull EventType type) {
+            this.timeMillis = timeMillis;
+            this.sequence = sequence;
+            this.node = node;
+            this.type = type;
+        }
+
+        @Override
+        public int compareTo(final @NotNull Event other) {
+            final var result = Long.compare(timeMillis, other.timeMillis);
+            return result != 0 ? result : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    /**
+     * A clock that only moves when the simulation advances it.
+     */
+    static final class VirtualClock extends Clock {
+
+        // a fixed wall clock start, so the node files of a simulation don't depend on the real time
+        private static final long START_MILLIS = Instant.parse("2025-01-01T00:00:00Z").toEpochMilli();
+
+        // the clock whose time is shared by all zoned views, this clock itself for the UTC clock
+        private final @NotNull VirtualClock source;
+        private final @NotNull ZoneId zone;
+        private volatile long elapsedMillis;
+
+        VirtualClock() {
+            source = this;
+            zone = ZoneOffset.UTC;
+        }
+
+        private VirtualClock(final @NotNull VirtualClock source, final @NotNull ZoneId zone) {
+            this.source = source;
+            this.zone = zone;
+        }
+
+        @Override
+        public @NotNull ZoneId getZone() {
+            return zone;
+        }
+
+        @Override
+        public @NotNull Clock withZone(final @NotNull ZoneId zone) {
+            if (zone.equals(this.zone)) {
+                return this;
+            }
+            return new VirtualClock(source, zone);
+        }
+
+        @Override
+        public @NotNull Instant instant() {
+            return Instant.ofEpochMilli(millis());
+        }
+
+        @Override
+        public long millis() {
+            return START_MILLIS + source.elapsedMillis;
+        }
+
+        long nanos() {
+            return source.elapsedMillis * 1_000_000;
+        }
+
+        private void setMillis(final long millis) {
+            source.elapsedMillis = millis - START_MILLIS;
+        }
+    }
+
+    /**
+     * The result of a simulation.
+     */
+    static final class Report {
+
+        final int runningNodes;
+        // null if not all running nodes have the complete view yet
+        final @Nullable Duration convergenceTime;
+        final @NotNull Duration maxStaleness;
+        final @NotNull Duration meanStaleness;
+        final double requestsPerNodePerInterval;
+        final long bytesTransferred;
+
+        private Report(
+                final int runningNodes,
+                final @Nullable Duration convergenceTime,
+                final @NotNull Duration maxStaleness,
+                final @NotNull Duration meanStaleness,
+                final double requestsPerNodePerInterval,
+                final long bytesTransferred) {
+            this.runningNodes = runningNodes;
+            this.convergenceTime = convergenceTime;
+            this.maxStaleness = maxStaleness;
+            this.meanStaleness = meanStaleness;
+            this.requestsPerNodePerInterval = requestsPerNodePerInterval;
+            this.bytesTransferred = bytesTransferred;
+        }
+
+        @Override
+        public @NotNull String toString() {
+            return String.format(
+                    "%d nodes, convergence time: %s, staleness max: %s mean: %s, requests per node and interval: " +
+                            "%.1f, bytes transferred: %d",
+                    runningNodes,
+                    convergenceTime,
+                    maxStaleness,
+                    meanStaleness,
+                    requestsPerNodePerInterval,
+                    bytesTransferred);
+        }
+    }
+}
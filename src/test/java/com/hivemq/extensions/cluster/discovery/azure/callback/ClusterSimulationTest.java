@@ -0,0 +1,173 @@
+/*
+ * Copyright 2021-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.cluster.discovery.azure.callback;
+
+import com.hivemq.extensions.cluster.discovery.azure.metrics.DiscoveryMetrics;
+import com.hivemq.extensions.cluster.discovery.azure.store.DiscoveryStore;
+import com.hivemq.extensions.cluster.discovery.azure.store.InMemoryDiscoveryStore;
+import com.hivemq.extensions.cluster.discovery.azure.store.ReplicatedDiscoveryStore;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ClusterSimulationTest {
+
+    private static final @NotNull String CONFIG = """
+            connection-string:UseDevelopmentStorage=true
+            file-prefix:hivemq-node-
+            update-interval:30
+            file-expiration:90
+            download-parallelism:1
+            """;
+
+    @TempDir
+    private @NotNull Path tempDir;
+
+    private final @NotNull DiscoveryMetrics storeMetrics = new DiscoveryMetrics();
+    private final @NotNull InMemoryDiscoveryStore store = new InMemoryDiscoveryStore(storeMetrics, new Random(42));
+    private final @NotNull List<ClusterSimulation> simulations = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        simulations.forEach(ClusterSimulation::shutdown);
+    }
+
+    @Test
+    void nodes_started_converged_within_read_interval() throws IOException {
+        final var simulation = createSimulation(CONFIG, store, storeMetrics);
+
+        simulation.startNodes(200, Duration.ofSeconds(10));
+        simulation.run(Duration.ofMinutes(2));
+
+        final var report = simulation.report();
+        assertThat(report.runningNodes).isEqualTo(200);
+        assertThat(report.convergenceTime).as(report.toString()).isNotNull();
+        assertThat(report.convergenceTime).as(report.toString()).isLessThanOrEqualTo(Duration.ofSeconds(30));
+        assertThat(report.bytesTransferred).isPositive();
+    }
+
+    @Test
+    void blob_metadata_enabled_fewer_requests_per_node() throws IOException {
+        final var downloadReport = simulateSteadyState(CONFIG, store, storeMetrics);
+
+        final var metadataStoreMetrics = new DiscoveryMetrics();
+        final var metadataReport = simulateSteadyState(CONFIG + "blob-metadata-enabled:true\n",
+                new InMemoryDiscoveryStore(metadataStoreMetrics, new Random(42)),
+                metadataStoreMetrics);
+
+        assertThat(metadataReport.convergenceTime).as(metadataReport.toString()).isNotNull();
+        assertThat(metadataReport.requestsPerNodePerInterval).as(metadataReport + " vs. " + downloadReport)
+                .isLessThan(downloadReport.requestsPerNodePerInterval / 10);
+        assertThat(metadataReport.bytesTransferred).isLessThan(downloadReport.bytesTransferred);
+    }
+
+    @Test
+    void node_stopped_converged_within_read_interval() throws IOException {
+        final var simulation = createSimulation(CONFIG, store, storeMetrics);
+        simulation.startNodes(20, Duration.ofSeconds(10));
+        simulation.run(Duration.ofMinutes(1));
+
+        simulation.stopNode(0);
+        simulation.run(Duration.ofMinutes(1));
+
+        final var report = simulation.report();
+        assertThat(report.runningNodes).isEqualTo(19);
+        assertThat(report.convergenceTime).as(report.toString()).isNotNull();
+        assertThat(report.convergenceTime).as(report.toString()).isLessThanOrEqualTo(Duration.ofSeconds(30));
+        assertThat(store.getBlobCount()).isEqualTo(19);
+    }
+
+    @Test
+    void node_crashed_converged_after_file_expiration() throws IOException {
+        final var simulation = createSimulation(CONFIG, store, storeMetrics);
+        simulation.startNodes(20, Duration.ofSeconds(10));
+        simulation.run(Duration.ofMinutes(1));
+
+        simulation.crashNode(0);
+        simulation.run(Duration.ofSeconds(30));
+        assertThat(simulation.report().convergenceTime).isNull();
+        simulation.run(Duration.ofMinutes(2));
+
+        final var report = simulation.report();
+        assertThat(report.convergenceTime).as(report.toString()).isNotNull();
+        // the node file expires at the latest one file expiration after the crash, the nodes read it within one
+        // read interval afterward
+        assertThat(report.convergenceTime).as(report.toString()).isLessThanOrEqualTo(Duration.ofSeconds(90 + 30));
+        assertThat(store.getBlobCount()).isEqualTo(19);
+    }
+
+    @Test
+    void replicated_unchanged_node_files_not_downloaded_again() throws IOException {
+        final var replicatedStoreMetrics = new DiscoveryMetrics();
+        final var replicatedStore = new ReplicatedDiscoveryStore(List.of(
+                new InMemoryDiscoveryStore(replicatedStoreMetrics, new Random(42)),
+                new InMemoryDiscoveryStore(replicatedStoreMetrics, new Random(43))), replicatedStoreMetrics);
+        replicatedStore.configure(false, 200, 1);
+        // the heartbeat is only due after the simulation, so the node files don't change after the start
+        final var simulation = createSimulation("""
+                connection-string:UseDevelopmentStorage=true
+                file-prefix:hivemq-node-
+                update-interval:600
+                read-interval:30
+                file-expiration:1800
+                download-parallelism:1
+                """, replicatedStore, replicatedStoreMetrics);
+        simulation.startNodes(20, Duration.ofSeconds(10));
+        simulation.run(Duration.ofMinutes(1));
+
+        simulation.resetReport();
+        simulation.run(Duration.ofMinutes(2));
+
+        final var report = simulation.report();
+        assertThat(report.convergenceTime).as(report.toString()).isNotNull();
+        // the listed ETags are those of the same replica in every cycle, so the cached node files stay valid
+        assertThat(report.bytesTransferred).as(report.toString()).isZero();
+    }
+
+    private @NotNull ClusterSimulation.Report simulateSteadyState(
+            final @NotNull String config,
+            final @NotNull InMemoryDiscoveryStore store,
+            final @NotNull DiscoveryMetrics storeMetrics) throws IOException {
+        final var simulation = createSimulation(config, store, storeMetrics);
+        simulation.startNodes(100, Duration.ofSeconds(10));
+        simulation.run(Duration.ofMinutes(1));
+        simulation.resetReport();
+        simulation.run(Duration.ofMinutes(5));
+        return simulation.report();
+    }
+
+    private @NotNull ClusterSimulation createSimulation(
+            final @NotNull String config,
+            final @NotNull DiscoveryStore store,
+            final @NotNull DiscoveryMetrics storeMetrics) throws IOException {
+        final var simulation =
+                new ClusterSimulation(Files.createTempDirectory(tempDir, "simulation"), config, store, storeMetrics);
+        simulations.add(simulation);
+        return simulation;
+    }
+}
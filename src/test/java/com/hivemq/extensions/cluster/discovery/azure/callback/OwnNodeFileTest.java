@@ -0,0 +1,94 @@
+/*
+ * Copyright 2021-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.hivemq.extensions.cluster.discovery.azure.callback;
+
+import com.azure.storage.blob.BlobContainerClient;
+import com.hivemq.extension.sdk.api.services.cluster.parameter.ClusterNodeAddress;
+import com.hivemq.extensions.cluster.discovery.azure.config.ClusterNodeFile;
+import com.hivemq.extensions.cluster.discovery.azure.store.DiscoveryStore;
+import com.hivemq.extensions.cluster.discovery.azure.store.InMemoryDiscoveryStore;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OwnNodeFileTest {
+
+    private final @NotNull OwnNodeFile ownNodeFile = new OwnNodeFile();
+
+    @Test
+    void test_ensure_container_checked_once_per_container_client() {
+        final var store = mock(DiscoveryStore.class);
+        final var containerClient = mock(BlobContainerClient.class);
+        when(store.existsContainer()).thenReturn(false);
+
+        ownNodeFile.ensureContainer(store, containerClient, "container");
+        ownNodeFile.ensureContainer(store, containerClient, "container");
+
+        verify(store).existsContainer();
+        verify(store).createContainer();
+        assertThat(ownNodeFile.isContainerChecked(store, containerClient)).isTrue();
+        // a rebuilt Azure Storage Client has a new container client
+        assertThat(ownNodeFile.isContainerChecked(store, mock(BlobContainerClient.class))).isFalse();
+    }
+
+    @Test
+    void test_ensure_container_checked_once_per_store() {
+        final var store = mock(DiscoveryStore.class);
+        when(store.existsContainer()).thenReturn(true);
+
+        ownNodeFile.ensureContainer(store, null, "container");
+        ownNodeFile.ensureContainer(store, null, "container");
+
+        verify(store).existsContainer();
+        verify(store, never()).createContainer();
+        assertThat(ownNodeFile.isContainerChecked(mock(DiscoveryStore.class), null)).isFalse();
+    }
+
+    @Test
+    void test_save_and_delete() {
+        final var store = new InMemoryDiscoveryStore();
+        final var nodeFile = new ClusterNodeFile("ABCD12", new ClusterNodeAddress("127.0.0.1", 7800));
+        store.createContainer();
+
+        ownNodeFile.save(store, "hivemq-node-ABCD12", nodeFile, nodeFile.toString().getBytes(UTF_8), null);
+        assertThat(ownNodeFile.getSavedNodeFile()).isSameAs(nodeFile);
+        assertThat(store.getBlobContent("hivemq-node-ABCD12")).isEqualTo(nodeFile.toString().getBytes(UTF_8));
+
+        ownNodeFile.delete(store, "hivemq-node-ABCD12");
+        assertThat(ownNodeFile.getSavedNodeFile()).isNull();
+    }
+
+    @Test
+    void test_container_lost_forgets_container_and_saved_node_file() {
+        final var store = new InMemoryDiscoveryStore();
+        final var nodeFile = new ClusterNodeFile("ABCD12", new ClusterNodeAddress("127.0.0.1", 7800));
+        ownNodeFile.ensureContainer(store, null, "container");
+        ownNodeFile.setSaved(nodeFile);
+
+        ownNodeFile.containerLost();
+
+        assertThat(ownNodeFile.isContainerChecked(store, null)).isFalse();
+        assertThat(ownNodeFile.getSavedNodeFile()).isNull();
+    }
+}
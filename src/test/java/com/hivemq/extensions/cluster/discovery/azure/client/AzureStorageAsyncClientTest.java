@@ -0,0 +1,116 @@
+/*
+ * Copyright 2021-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.cluster.discovery.azure.client;
+
+import com.azure.core.util.BinaryData;
+import com.azure.storage.blob.BlobAsyncClient;
+import com.azure.storage.blob.BlobContainerAsyncClient;
+import com.azure.storage.blob.models.BlobErrorCode;
+import com.azure.storage.blob.models.BlobStorageException;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyString;
+import static org.mockito.Mockito.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AzureStorageAsyncClientTest {
+
+    private final @NotNull BlobContainerAsyncClient containerClient = mock();
+    private final @NotNull BlobAsyncClient blobClient = mock();
+
+    private @NotNull AzureStorageAsyncClient azStorageAsyncClient;
+
+    @BeforeEach
+    void setUp() {
+        when(containerClient.getBlobAsyncClient(anyString())).thenReturn(blobClient);
+        azStorageAsyncClient = new AzureStorageAsyncClient(containerClient);
+    }
+
+    @Test
+    void test_container_exists() {
+        when(containerClient.exists()).thenReturn(Mono.just(true));
+        assertThat(azStorageAsyncClient.existsContainer().block()).isTrue();
+    }
+
+    @Test
+    void test_createContainer_already_exists() {
+        final var error = mock(BlobStorageException.class);
+        when(error.getErrorCode()).thenReturn(BlobErrorCode.CONTAINER_ALREADY_EXISTS);
+        when(containerClient.create()).thenReturn(Mono.error(error));
+
+        azStorageAsyncClient.createContainer().block();
+    }
+
+    @Test
+    void test_createContainer_failed() {
+        final var error = mock(BlobStorageException.class);
+        when(error.getErrorCode()).thenReturn(BlobErrorCode.AUTHORIZATION_FAILURE);
+        when(error.getStatusCode()).thenReturn(403);
+        when(containerClient.create()).thenReturn(Mono.error(error));
+
+        assertThatThrownBy(() -> azStorageAsyncClient.createContainer().block()).isInstanceOf(RuntimeException.class)
+                .hasMessageContaining("403");
+    }
+
+    @Test
+    void test_saveBlob_with_metadata() {
+        when(blobClient.uploadWithResponse(any())).thenReturn(Mono.empty());
+
+        azStorageAsyncClient.saveBlob("abcd", "test".getBytes(UTF_8), Map.of("hivemq_version", "4")).block();
+
+        verify(blobClient).uploadWithResponse(argThat(options -> "4".equals(options.getMetadata()
+                .get("hivemq_version"))));
+    }
+
+    @Test
+    void test_getBlobContent_success() {
+        when(blobClient.downloadContent()).thenReturn(Mono.just(BinaryData.fromString("test")));
+        assertThat(azStorageAsyncClient.getBlobContent("abcd").block()).isEqualTo("test".getBytes(UTF_8));
+    }
+
+    @Test
+    void test_getBlobContent_failed() {
+        final var error = mock(BlobStorageException.class);
+        when(error.getStatusCode()).thenReturn(404);
+        when(blobClient.downloadContent()).thenReturn(Mono.error(error));
+
+        assertThatThrownBy(() -> azStorageAsyncClient.getBlobContent("abcd").block())
+                .isInstanceOf(RuntimeException.class)
+                .hasMessageContaining("download failed with status code 404");
+    }
+
+    @Test
+    void test_getBlobContent_container_not_found() {
+        final var error = mock(BlobStorageException.class);
+        when(error.getErrorCode()).thenReturn(BlobErrorCode.CONTAINER_NOT_FOUND);
+        when(blobClient.downloadContent()).thenReturn(Mono.error(error));
+
+        assertThatThrownBy(() -> azStorageAsyncClient.getBlobContent("abcd").block())
+                .isInstanceOf(ContainerNotFoundException.class);
+    }
+}
@@ -16,11 +16,25 @@
 
 package com.hivemq.extensions.cluster.discovery.azure.client;
 
+import com.azure.core.http.rest.PagedIterable;
+import com.azure.core.http.rest.Response;
+import com.azure.core.util.BinaryData;
 import com.azure.storage.blob.BlobClient;
 import com.azure.storage.blob.BlobContainerClient;
+import com.azure.storage.blob.batch.BlobBatch;
+import com.azure.storage.blob.batch.BlobBatchClient;
+import com.azure.storage.blob.models.BlobDownloadContentResponse;
+import com.azure.storage.blob.models.BlobDownloadHeaders;
+import com.azure.storage.blob.models.BlobErrorCode;
+import com.azure.storage.blob.models.BlobItem;
+import com.azure.storage.blob.models.BlobItemProperties;
+import com.azure.storage.blob.models.BlobStorageException;
 import com.hivemq.extension.sdk.api.parameter.ExtensionInformation;
+import com.hivemq.extension.sdk.api.services.cluster.parameter.ClusterNodeAddress;
+import com.hivemq.extensions.cluster.discovery.azure.config.ClusterNodeFile;
 import com.hivemq.extensions.cluster.discovery.azure.config.ClusterNodeFileTest;
 import com.hivemq.extensions.cluster.discovery.azure.config.ConfigReader;
+import com.hivemq.extensions.cluster.discovery.azure.metrics.DiscoveryMetrics;
 import org.jetbrains.annotations.NotNull;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -31,16 +45,30 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
-
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.anyBoolean;
 import static org.mockito.Mockito.anyLong;
 import static org.mockito.Mockito.anyString;
+import static org.mockito.Mockito.argThat;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.isNull;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 class AzureStorageClientTest {
@@ -80,6 +108,72 @@ class AzureStorageClientTest {
         assertThat(azStorageClient.getContainerClient()).isNotNull();
     }
 
+    @Test
+    void test_createOrUpdate_same_config_reuses_client() {
+        azStorageClient.createOrUpdate();
+        final var containerClient = azStorageClient.getContainerClient();
+
+        azStorageClient.createOrUpdate();
+        azStorageClient.createOrUpdate();
+
+        assertThat(azStorageClient.getContainerClient()).isSameAs(containerClient);
+    }
+
+    @Test
+    void test_createOrUpdate_changed_container_name_rebuilds_client() throws IOException {
+        azStorageClient.createOrUpdate();
+        final var containerClient = azStorageClient.getContainerClient();
+
+        Files.writeString(configPath,
+                Files.readString(configPath).replace("hivemq-blob-container", "hivemq-other-container"));
+        azStorageClient.createOrUpdate();
+
+        assertThat(azStorageClient.getContainerClient()).isNotSameAs(containerClient);
+        assertThat(azStorageClient.getContainerClient().getBlobContainerName()).isEqualTo("hivemq-other-container");
+    }
+
+    @Test
+    void test_createOrUpdate_changed_interval_reuses_client() throws IOException {
+        azStorageClient.createOrUpdate();
+        final var containerClient = azStorageClient.getContainerClient();
+
+        Files.writeString(configPath,
+                Files.readString(configPath).replace("update-interval:180", "update-interval:60"));
+        azStorageClient.createOrUpdate();
+
+        assertThat(azStorageClient.getStorageConfig().getFileUpdateIntervalInSeconds()).isEqualTo(60);
+        assertThat(azStorageClient.getContainerClient()).isSameAs(containerClient);
+    }
+
+    @Test
+    void test_createOrUpdate_changed_request_options_rebuilds_client() throws IOException {
+        azStorageClient.createOrUpdate();
+        final var containerClient = azStorageClient.getContainerClient();
+
+        Files.writeString(configPath, Files.readString(configPath) + "request-timeout:5\n");
+        azStorageClient.createOrUpdate();
+
+        assertThat(azStorageClient.getContainerClient()).isNotSameAs(containerClient);
+    }
+
+    @Test
+    void test_createOrUpdate_replica_with_read_config_does_not_read_config() throws IOException {
+        Files.writeString(configPath,
+                Files.readString(configPath) +
+                        "replica-connection-strings:DefaultEndpointsProtocol=http;AccountName=devstoreaccount2;" +
+                        "AccountKey=a2V5;BlobEndpoint=http://127.0.0.1:10000/devstoreaccount2;\n");
+        azStorageClient.createOrUpdate();
+        final var configReader = mock(ConfigReader.class);
+        final var replicaClient = new AzureStorageClient(configReader, new DiscoveryMetrics(), 1);
+
+        replicaClient.createOrUpdate(azStorageClient.getStorageConfig());
+
+        assertThat(replicaClient.getStorageConfig()).isSameAs(azStorageClient.getStorageConfig());
+        assertThat(replicaClient.getContainerClient()).isNotNull();
+        assertThat(replicaClient.getContainerClient().getAccountName()).isEqualTo("devstoreaccount2");
+        verify(configReader, never()).readConfiguration();
+    }
+
     @Test
     void test_container_exists() {
         azStorageClient.createOrUpdate();
@@ -132,7 +226,56 @@ class AzureStorageClientTest {
         when(containerClient.getBlobClient(any())).thenReturn(blobClient);
         doNothing().when(blobClient).upload(any(), anyLong(), anyBoolean());
 
-        azStorageClient.saveBlob("abcd", "test");
+        azStorageClient.saveBlob("abcd", "test".getBytes(UTF_8));
+    }
+
+    @Test
+    void test_saveBlob_with_metadata_success() {
+        final var blobClient = mock(BlobClient.class);
+        azStorageClient.createOrUpdate();
+
+        final var containerClient = Mockito.mock(BlobContainerClient.class);
+        azStorageClient.setContainerClient(containerClient);
+        when(containerClient.getBlobClient(any())).thenReturn(blobClient);
+
+        azStorageClient.saveBlob("abcd", "test".getBytes(UTF_8), Map.of("hivemq_version", "4"));
+
+        verify(blobClient).uploadWithResponse(argThat(options -> "4".equals(options.getMetadata()
+                .get("hivemq_version"))), any(), any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void test_getBlobs_with_metadata() throws IOException {
+        Files.writeString(configPath, Files.readString(configPath) + "blob-metadata-enabled:true\n");
+        azStorageClient.createOrUpdate();
+
+        final var containerClient = Mockito.mock(BlobContainerClient.class);
+        azStorageClient.setContainerClient(containerClient);
+        final PagedIterable<BlobItem> blobItems = mock(PagedIterable.class);
+        when(blobItems.iterator()).thenReturn(Collections.emptyIterator());
+        when(containerClient.listBlobs(any(), any())).thenReturn(blobItems);
+
+        azStorageClient.getBlobs("hivemq-cluster");
+
+        verify(containerClient).listBlobs(argThat(options -> options.getDetails().getRetrieveMetadata()), any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void test_getBlobs_without_metadata() {
+        azStorageClient.createOrUpdate();
+
+        final var containerClient = Mockito.mock(BlobContainerClient.class);
+        azStorageClient.setContainerClient(containerClient);
+        final PagedIterable<BlobItem> blobItems = mock(PagedIterable.class);
+        when(blobItems.iterator()).thenReturn(Collections.emptyIterator());
+        when(containerClient.listBlobs(any(), any())).thenReturn(blobItems);
+
+        azStorageClient.getBlobs("hivemq-cluster");
+
+        verify(containerClient).listBlobs(argThat(options -> !options.getDetails().getRetrieveMetadata()),
+                any());
     }
 
     @Test
@@ -154,6 +297,48 @@ class AzureStorageClientTest {
         assertThat(blobContent).isNotEmpty();
     }
 
+    @Test
+    void test_nodeFileCache_hit_same_etag() {
+        final var nodeFile = new ClusterNodeFile("ABCD12", new ClusterNodeAddress("127.0.0.1", 7800));
+        azStorageClient.cacheNodeFile(createBlobItem("blob", "etag-1"), nodeFile);
+
+        assertThat(azStorageClient.getCachedNodeFile(createBlobItem("blob", "etag-1"))).isSameAs(nodeFile);
+        assertThat(azStorageClient.getNodeFileCacheHits()).isEqualTo(1);
+        assertThat(azStorageClient.getNodeFileCacheMisses()).isZero();
+    }
+
+    @Test
+    void test_nodeFileCache_miss_changed_etag() {
+        final var nodeFile = new ClusterNodeFile("ABCD12", new ClusterNodeAddress("127.0.0.1", 7800));
+        azStorageClient.cacheNodeFile(createBlobItem("blob", "etag-1"), nodeFile);
+
+        assertThat(azStorageClient.getCachedNodeFile(createBlobItem("blob", "etag-2"))).isNull();
+        assertThat(azStorageClient.getNodeFileCacheHits()).isZero();
+        assertThat(azStorageClient.getNodeFileCacheMisses()).isEqualTo(1);
+    }
+
+    @Test
+    void test_nodeFileCache_miss_no_properties() {
+        final var nodeFile = new ClusterNodeFile("ABCD12", new ClusterNodeAddress("127.0.0.1", 7800));
+        final var blobItem = new BlobItem().setName("blob");
+        azStorageClient.cacheNodeFile(blobItem, nodeFile);
+
+        assertThat(azStorageClient.getCachedNodeFile(blobItem)).isNull();
+        assertThat(azStorageClient.getNodeFileCacheMisses()).isEqualTo(1);
+    }
+
+    @Test
+    void test_nodeFileCache_evicted_when_not_listed() {
+        final var nodeFile = new ClusterNodeFile("ABCD12", new ClusterNodeAddress("127.0.0.1", 7800));
+        azStorageClient.cacheNodeFile(createBlobItem("blob1", "etag-1"), nodeFile);
+        azStorageClient.cacheNodeFile(createBlobItem("blob2", "etag-1"), nodeFile);
+
+        azStorageClient.retainCachedNodeFiles(Set.of("blob2"));
+
+        assertThat(azStorageClient.getCachedNodeFile(createBlobItem("blob1", "etag-1"))).isNull();
+        assertThat(azStorageClient.getCachedNodeFile(createBlobItem("blob2", "etag-1"))).isSameAs(nodeFile);
+    }
+
     @Test
     void test_deleteObject_success() {
         final var blobClient = mock(BlobClient.class);
@@ -167,4 +352,347 @@ class AzureStorageClientTest {
 
         azStorageClient.deleteBlob("abcd");
     }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void test_getBlobs_container_not_found() {
+        azStorageClient.createOrUpdate();
+
+        final var containerClient = Mockito.mock(BlobContainerClient.class);
+        azStorageClient.setContainerClient(containerClient);
+        final var error = mock(BlobStorageException.class);
+        when(error.getErrorCode()).thenReturn(BlobErrorCode.CONTAINER_NOT_FOUND);
+        final PagedIterable<BlobItem> blobItems = mock(PagedIterable.class);
+        // the listing fails lazily while it is iterated
+        when(blobItems.iterator()).thenThrow(error);
+        when(containerClient.listBlobs(any(), any())).thenReturn(blobItems);
+
+        assertThatThrownBy(() -> azStorageClient.getBlobs("hivemq-cluster"))
+                .isInstanceOf(ContainerNotFoundException.class);
+    }
+
+    @Test
+    void test_saveBlob_container_not_found() {
+        final var blobClient = mock(BlobClient.class);
+        azStorageClient.createOrUpdate();
+
+        final var containerClient = Mockito.mock(BlobContainerClient.class);
+        azStorageClient.setContainerClient(containerClient);
+        when(containerClient.getBlobClient(anyString())).thenReturn(blobClient);
+        final var error = mock(BlobStorageException.class);
+        when(error.getErrorCode()).thenReturn(BlobErrorCode.CONTAINER_NOT_FOUND);
+        when(blobClient.uploadWithResponse(any(), any(), any())).thenThrow(error);
+
+        assertThatThrownBy(() -> azStorageClient.saveBlob("abcd", "content".getBytes(UTF_8), Map.of()))
+                .isInstanceOf(ContainerNotFoundException.class);
+    }
+
+    @Test
+    void test_deleteBlob_other_error() {
+        final var blobClient = mock(BlobClient.class);
+        azStorageClient.createOrUpdate();
+
+        final var containerClient = Mockito.mock(BlobContainerClient.class);
+        azStorageClient.setContainerClient(containerClient);
+        when(containerClient.getBlobClient(anyString())).thenReturn(blobClient);
+        final var error = mock(BlobStorageException.class);
+        when(error.getErrorCode()).thenReturn(BlobErrorCode.BLOB_NOT_FOUND);
+        doThrow(error).when(blobClient).delete();
+
+        assertThatThrownBy(() -> azStorageClient.deleteBlob("abcd")).isInstanceOf(RuntimeException.class)
+                .isNotInstanceOf(ContainerNotFoundException.class);
+    }
+
+    @Test
+    void test_deleteBlob_blob_not_found() {
+        final var blobClient = mock(BlobClient.class);
+        azStorageClient.createOrUpdate();
+
+        final var containerClient = Mockito.mock(BlobContainerClient.class);
+        azStorageClient.setContainerClient(containerClient);
+        when(containerClient.getBlobClient(anyString())).thenReturn(blobClient);
+        final var error = mock(BlobStorageException.class);
+        when(error.getStatusCode()).thenReturn(404);
+        when(error.getErrorCode()).thenReturn(BlobErrorCode.BLOB_NOT_FOUND);
+        doThrow(error).when(blobClient).delete();
+
+        assertThatThrownBy(() -> azStorageClient.deleteBlob("abcd")).isInstanceOf(BlobNotFoundException.class);
+    }
+
+    @Test
+    void test_saveBlob_metrics_recorded() {
+        final var blobClient = mock(BlobClient.class);
+        azStorageClient.createOrUpdate();
+
+        final var containerClient = Mockito.mock(BlobContainerClient.class);
+        azStorageClient.setContainerClient(containerClient);
+        when(containerClient.getBlobClient(any())).thenReturn(blobClient);
+
+        azStorageClient.saveBlob("abcd", "test".getBytes(UTF_8));
+
+        final var metricRegistry = azStorageClient.getMetrics().getMetricRegistry();
+        assertThat(metricRegistry.getTimers()
+                .get(DiscoveryMetrics.METRIC_PREFIX + ".storage.save-blob.time")
+                .getCount()).isEqualTo(1);
+        assertThat(metricRegistry.getCounters()
+                .get(DiscoveryMetrics.METRIC_PREFIX + ".storage.save-blob.errors")
+                .getCount()).isZero();
+        assertThat(metricRegistry.getCounters()
+                .get(DiscoveryMetrics.METRIC_PREFIX + ".storage.bytes-uploaded")
+                .getCount()).isEqualTo(4);
+    }
+
+    @Test
+    void test_deleteBlob_error_counted() {
+        final var blobClient = mock(BlobClient.class);
+        azStorageClient.createOrUpdate();
+
+        final var containerClient = Mockito.mock(BlobContainerClient.class);
+        azStorageClient.setContainerClient(containerClient);
+        when(containerClient.getBlobClient(anyString())).thenReturn(blobClient);
+        final var error = mock(BlobStorageException.class);
+        when(error.getErrorCode()).thenReturn(BlobErrorCode.CONTAINER_NOT_FOUND);
+        doThrow(error).when(blobClient).delete();
+
+        assertThatThrownBy(() -> azStorageClient.deleteBlob("abcd")).isInstanceOf(ContainerNotFoundException.class);
+        final var metricRegistry = azStorageClient.getMetrics().getMetricRegistry();
+        assertThat(metricRegistry.getTimers()
+                .get(DiscoveryMetrics.METRIC_PREFIX + ".storage.delete-blob.time")
+                .getCount()).isEqualTo(1);
+        assertThat(metricRegistry.getCounters()
+                .get(DiscoveryMetrics.METRIC_PREFIX + ".storage.delete-blob.errors")
+                .getCount()).isEqualTo(1);
+    }
+
+    @Test
+    void test_server_busy_circuit_opened_requests_rejected() throws IOException {
+        Files.writeString(configPath, Files.readString(configPath) + "circuit-breaker-enabled:true\n");
+        final var blobClient = mock(BlobClient.class);
+        azStorageClient.createOrUpdate();
+
+        final var containerClient = Mockito.mock(BlobContainerClient.class);
+        azStorageClient.setContainerClient(containerClient);
+        when(containerClient.getBlobClient(anyString())).thenReturn(blobClient);
+        final var error = mock(BlobStorageException.class);
+        when(error.getStatusCode()).thenReturn(503);
+        when(error.getErrorCode()).thenReturn(BlobErrorCode.SERVER_BUSY);
+        doThrow(error).when(blobClient).downloadStream(any());
+
+        for (int i = 0; i < CircuitBreaker.MINIMUM_CALLS; i++) {
+            assertThatThrownBy(() -> azStorageClient.getBlobContent("abcd")).isNotInstanceOf(
+                    CircuitOpenException.class);
+        }
+
+        assertThat(azStorageClient.isCircuitOpen()).isTrue();
+        assertThatThrownBy(() -> azStorageClient.getBlobContent("abcd")).isInstanceOf(CircuitOpenException.class);
+        verify(blobClient, times(CircuitBreaker.MINIMUM_CALLS)).downloadStream(any());
+    }
+
+    @Test
+    void test_circuit_breaker_disabled_requests_not_rejected() throws IOException {
+        Files.writeString(configPath, Files.readString(configPath) + "circuit-breaker-enabled:false\n");
+        final var blobClient = mock(BlobClient.class);
+        azStorageClient.createOrUpdate();
+
+        final var containerClient = Mockito.mock(BlobContainerClient.class);
+        azStorageClient.setContainerClient(containerClient);
+        when(containerClient.getBlobClient(anyString())).thenReturn(blobClient);
+        final var error = mock(BlobStorageException.class);
+        when(error.getStatusCode()).thenReturn(503);
+        when(error.getErrorCode()).thenReturn(BlobErrorCode.SERVER_BUSY);
+        doThrow(error).when(blobClient).downloadStream(any());
+
+        for (int i = 0; i <= CircuitBreaker.MINIMUM_CALLS; i++) {
+            assertThatThrownBy(() -> azStorageClient.getBlobContent("abcd")).isNotInstanceOf(
+                    CircuitOpenException.class);
+        }
+
+        assertThat(azStorageClient.isCircuitOpen()).isFalse();
+        verify(blobClient, times(CircuitBreaker.MINIMUM_CALLS + 1)).downloadStream(any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void test_deleteBlobs_batches_of_256() {
+        final var batchClient = useBatchClient();
+        final var batch = batchClient.getBlobBatch();
+        when(batch.deleteBlob(anyString())).thenReturn(mock(Response.class));
+
+        final var blobNames = IntStream.range(0, 300).mapToObj(i -> "blob" + i).collect(Collectors.toList());
+        assertThat(azStorageClient.deleteBlobs(blobNames)).isEmpty();
+
+        verify(batch, times(300)).deleteBlob(anyString());
+        verify(batchClient, times(2)).submitBatchWithResponse(eq(batch), eq(false), isNull(), any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void test_deleteBlobs_failures_reported() {
+        final var batchClient = useBatchClient();
+        final var batch = batchClient.getBlobBatch();
+        final Response<Void> deleted = mock(Response.class);
+        final Response<Void> notFound = mock(Response.class);
+        final var notFoundError = mock(BlobStorageException.class);
+        when(notFoundError.getErrorCode()).thenReturn(BlobErrorCode.BLOB_NOT_FOUND);
+        when(notFound.getStatusCode()).thenThrow(notFoundError);
+        final Response<Void> forbidden = mock(Response.class);
+        final var forbiddenError = mock(BlobStorageException.class);
+        when(forbiddenError.getStatusCode()).thenReturn(403);
+        when(forbiddenError.getErrorCode()).thenReturn(BlobErrorCode.AUTHORIZATION_FAILURE);
+        when(forbidden.getStatusCode()).thenThrow(forbiddenError);
+        when(batch.deleteBlob(anyString())).thenReturn(deleted, notFound, forbidden);
+
+        final var failures = azStorageClient.deleteBlobs(List.of("deleted", "notFound", "forbidden"));
+
+        assertThat(failures).containsOnlyKeys("forbidden");
+        assertThat(failures.get("forbidden")).contains("403");
+    }
+
+    @Test
+    void test_deleteBlobs_batch_unsupported_deleted_one_by_one() {
+        final var batchClient = useBatchClient();
+        final var error = mock(BlobStorageException.class);
+        when(error.getStatusCode()).thenReturn(400);
+        when(error.getErrorCode()).thenReturn(BlobErrorCode.INVALID_INPUT);
+        when(batchClient.submitBatchWithResponse(any(), anyBoolean(), any(), any())).thenThrow(error);
+        final var blobClient = azStorageClient.getContainerClient().getBlobClient("blob");
+
+        assertThat(azStorageClient.deleteBlobs(List.of("blob1", "blob2"))).isEmpty();
+
+        verify(blobClient, times(2)).delete();
+    }
+
+    @Test
+    void test_deleteBlobs_batch_unsupported_blob_not_found_deleted() {
+        final var batchClient = useBatchClient();
+        final var error = mock(BlobStorageException.class);
+        when(error.getStatusCode()).thenReturn(400);
+        when(error.getErrorCode()).thenReturn(BlobErrorCode.INVALID_INPUT);
+        when(batchClient.submitBatchWithResponse(any(), anyBoolean(), any(), any())).thenThrow(error);
+        final var blobClient = azStorageClient.getContainerClient().getBlobClient("blob");
+        final var notFoundError = mock(BlobStorageException.class);
+        when(notFoundError.getStatusCode()).thenReturn(404);
+        when(notFoundError.getErrorCode()).thenReturn(BlobErrorCode.BLOB_NOT_FOUND);
+        doThrow(notFoundError).when(blobClient).delete();
+
+        assertThat(azStorageClient.deleteBlobs(List.of("blob1", "blob2"))).isEmpty();
+    }
+
+    @Test
+    void test_deleteBlobs_batch_throttled_failures_reported() {
+        final var batchClient = useBatchClient();
+        final var error = mock(BlobStorageException.class);
+        when(error.getStatusCode()).thenReturn(503);
+        when(error.getErrorCode()).thenReturn(BlobErrorCode.SERVER_BUSY);
+        when(batchClient.submitBatchWithResponse(any(), anyBoolean(), any(), any())).thenThrow(error);
+        final var blobClient = azStorageClient.getContainerClient().getBlobClient("blob");
+
+        final var failures = azStorageClient.deleteBlobs(List.of("blob1", "blob2"));
+
+        assertThat(failures).containsOnlyKeys("blob1", "blob2");
+        assertThat(failures.get("blob1")).contains("503");
+        // the throttled account doesn't get the single deletes on top, the Blobs are deleted by a later cycle
+        verify(blobClient, never()).delete();
+    }
+
+    @Test
+    void test_deleteBlobs_container_not_found() {
+        final var batchClient = useBatchClient();
+        final var error = mock(BlobStorageException.class);
+        when(error.getErrorCode()).thenReturn(BlobErrorCode.CONTAINER_NOT_FOUND);
+        when(batchClient.submitBatchWithResponse(any(), anyBoolean(), any(), any())).thenThrow(error);
+
+        assertThatThrownBy(() -> azStorageClient.deleteBlobs(List.of("blob1"))).isInstanceOf(
+                ContainerNotFoundException.class);
+    }
+
+    @Test
+    void test_getBlobContentIfChanged_not_modified() {
+        final var blobClient = mock(BlobClient.class);
+        azStorageClient.createOrUpdate();
+
+        final var containerClient = Mockito.mock(BlobContainerClient.class);
+        azStorageClient.setContainerClient(containerClient);
+        when(containerClient.getBlobClient(anyString())).thenReturn(blobClient);
+        final var error = mock(BlobStorageException.class);
+        when(error.getStatusCode()).thenReturn(304);
+        when(blobClient.downloadContentWithResponse(any(), any(), any(), any())).thenThrow(error);
+
+        assertThat(azStorageClient.getBlobContentIfChanged("manifest", "etag-1")).isNull();
+        verify(blobClient).downloadContentWithResponse(any(),
+                argThat(conditions -> "etag-1".equals(conditions.getIfNoneMatch())),
+                any(),
+                any());
+    }
+
+    @Test
+    void test_getBlobContentIfChanged_changed() {
+        final var blobClient = mock(BlobClient.class);
+        azStorageClient.createOrUpdate();
+
+        final var containerClient = Mockito.mock(BlobContainerClient.class);
+        azStorageClient.setContainerClient(containerClient);
+        when(containerClient.getBlobClient(anyString())).thenReturn(blobClient);
+        final var response = mock(BlobDownloadContentResponse.class);
+        when(response.getValue()).thenReturn(BinaryData.fromString("manifest-content"));
+        when(response.getDeserializedHeaders()).thenReturn(new BlobDownloadHeaders().setETag("etag-2"));
+        when(blobClient.downloadContentWithResponse(any(), any(), any(), any())).thenReturn(response);
+
+        final var content = azStorageClient.getBlobContentIfChanged("manifest", "etag-1");
+        assertThat(content).isNotNull();
+        assertThat(content.getContent()).isEqualTo("manifest-content");
+        assertThat(content.getETag()).isEqualTo("etag-2");
+    }
+
+    @Test
+    void test_saveLeasedBlob_metrics_recorded() {
+        final var blobClient = mock(BlobClient.class);
+        azStorageClient.createOrUpdate();
+
+        final var containerClient = Mockito.mock(BlobContainerClient.class);
+        azStorageClient.setContainerClient(containerClient);
+        when(containerClient.getBlobClient(anyString())).thenReturn(blobClient);
+        final var blobLease = mock(BlobLease.class);
+        when(blobLease.getLeaseId()).thenReturn("lease-id");
+
+        azStorageClient.saveLeasedBlob("manifest", "test", blobLease);
+
+        final var metricRegistry = azStorageClient.getMetrics().getMetricRegistry();
+        assertThat(metricRegistry.getTimers()
+                .get(DiscoveryMetrics.METRIC_PREFIX + ".storage.save-blob.time")
+                .getCount()).isEqualTo(1);
+        assertThat(metricRegistry.getCounters()
+                .get(DiscoveryMetrics.METRIC_PREFIX + ".storage.bytes-uploaded")
+                .getCount()).isEqualTo(4);
+    }
+
+    @Test
+    void test_getBlobLease_reused_until_rebuild() throws IOException {
+        azStorageClient.createOrUpdate();
+
+        final var blobLease = azStorageClient.getBlobLease("manifest");
+        assertThat(azStorageClient.getBlobLease("manifest")).isSameAs(blobLease);
+
+        Files.writeString(configPath, Files.readString(configPath).replace("hivemq-blob-container", "other-container"));
+        azStorageClient.createOrUpdate();
+        assertThat(azStorageClient.getBlobLease("manifest")).isNotSameAs(blobLease);
+    }
+
+    private static @NotNull BlobItem createBlobItem(final @NotNull String name, final @NotNull String eTag) {
+        return new BlobItem().setName(name).setProperties(new BlobItemProperties().setETag(eTag));
+    }
+
+    private @NotNull BlobBatchClient useBatchClient() {
+        azStorageClient.createOrUpdate();
+        final var containerClient = Mockito.mock(BlobContainerClient.class);
+        azStorageClient.setContainerClient(containerClient);
+        final var blobClient = mock(BlobClient.class);
+        when(containerClient.getBlobClient(anyString())).thenReturn(blobClient);
+        when(blobClient.getBlobUrl()).thenReturn("http://127.0.0.1:10000/devstoreaccount1/hivemq-blob-container/blob");
+        final var batchClient = mock(BlobBatchClient.class);
+        final var batch = mock(BlobBatch.class);
+        when(batchClient.getBlobBatch()).thenReturn(batch);
+        azStorageClient.setBatchClient(batchClient);
+        return batchClient;
+    }
 }
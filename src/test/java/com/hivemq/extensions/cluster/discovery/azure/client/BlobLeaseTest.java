@@ -0,0 +1,233 @@
+/*
+ * Copyright 2021-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.cluster.discovery.azure.client;
+
+import com.azure.storage.blob.BlobClient;
+import com.azure.storage.blob.models.BlobErrorCode;
+import com.azure.storage.blob.models.BlobStorageException;
+import com.azure.storage.blob.specialized.BlobLeaseClient;
+import com.hivemq.extensions.cluster.discovery.azure.metrics.DiscoveryMetrics;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BlobLeaseTest {
+
+    private final @NotNull BlobClient blobClient = mock();
+    private final @NotNull BlobLeaseClient leaseClient = mock();
+    private final @NotNull DiscoveryMetrics metrics = new DiscoveryMetrics();
+    private final @NotNull CircuitBreaker circuitBreaker = new CircuitBreaker(metrics);
+
+    private @NotNull BlobLease blobLease;
+
+    @BeforeEach
+    void setUp() {
+        when(blobClient.getBlobName()).thenReturn("hivemq-node-manifest");
+        blobLease = new BlobLease(blobClient, leaseClient, metrics, circuitBreaker);
+    }
+
+    @Test
+    void test_acquire_success() {
+        assertThat(blobLease.acquireOrRenew(30)).isTrue();
+        assertThat(blobLease.isHeld()).isTrue();
+        verify(leaseClient).acquireLease(30);
+    }
+
+    @Test
+    void test_acquire_metrics_recorded() {
+        blobLease.acquireOrRenew(30);
+        blobLease.acquireOrRenew(30);
+
+        assertThat(getLeaseTimerCount()).isEqualTo(2);
+        assertThat(getLeaseErrorCount()).isZero();
+    }
+
+    @Test
+    void test_acquire_duration_clamped() {
+        blobLease.acquireOrRenew(180);
+        verify(leaseClient).acquireLease(BlobLease.MAX_DURATION_IN_SECONDS);
+    }
+
+    @Test
+    void test_acquire_held_by_other_node() {
+        final var error = createError(BlobErrorCode.LEASE_ALREADY_PRESENT);
+        when(leaseClient.acquireLease(anyInt())).thenThrow(error);
+
+        assertThat(blobLease.acquireOrRenew(30)).isFalse();
+        assertThat(blobLease.isHeld()).isFalse();
+        // the lease of another node is an answer of a healthy account
+        assertThat(getLeaseTimerCount()).isEqualTo(1);
+        assertThat(getLeaseErrorCount()).isZero();
+    }
+
+    @Test
+    void test_acquire_blob_not_found_blob_created() {
+        final var error = createError(BlobErrorCode.BLOB_NOT_FOUND);
+        when(leaseClient.acquireLease(anyInt())).thenThrow(error).thenReturn("lease-id");
+
+        assertThat(blobLease.acquireOrRenew(30)).isTrue();
+        verify(blobClient).uploadWithResponse(any(), any(), any());
+        verify(leaseClient, times(2)).acquireLease(30);
+    }
+
+    @Test
+    void test_acquire_failed() {
+        final var error = createError(BlobErrorCode.AUTHORIZATION_FAILURE);
+        when(leaseClient.acquireLease(anyInt())).thenThrow(error);
+
+        assertThatThrownBy(() -> blobLease.acquireOrRenew(30)).isInstanceOf(RuntimeException.class)
+                .isNotInstanceOf(ContainerNotFoundException.class);
+    }
+
+    @Test
+    void test_acquire_container_not_found() {
+        final var error = createError(BlobErrorCode.CONTAINER_NOT_FOUND);
+        when(leaseClient.acquireLease(anyInt())).thenThrow(error);
+
+        assertThatThrownBy(() -> blobLease.acquireOrRenew(30)).isInstanceOf(ContainerNotFoundException.class);
+    }
+
+    @Test
+    void test_renew_held_lease() {
+        blobLease.acquireOrRenew(30);
+        assertThat(blobLease.acquireOrRenew(30)).isTrue();
+
+        verify(leaseClient).acquireLease(30);
+        verify(leaseClient).renewLease();
+    }
+
+    @Test
+    void test_renew_lost_lease_acquired_by_other_node() {
+        blobLease.acquireOrRenew(30);
+        final var renewError = createError(BlobErrorCode.LEASE_ID_MISMATCH_WITH_LEASE_OPERATION);
+        when(leaseClient.renewLease()).thenThrow(renewError);
+        final var acquireError = createError(BlobErrorCode.LEASE_ALREADY_PRESENT);
+        when(leaseClient.acquireLease(anyInt())).thenThrow(acquireError);
+
+        assertThat(blobLease.acquireOrRenew(30)).isFalse();
+        assertThat(blobLease.isHeld()).isFalse();
+    }
+
+    @Test
+    void test_renew_not_held_lease() {
+        assertThat(blobLease.renew()).isFalse();
+
+        verify(leaseClient, never()).renewLease();
+    }
+
+    @Test
+    void test_renew_lost_lease() {
+        blobLease.acquireOrRenew(30);
+        final var renewError = createError(BlobErrorCode.LEASE_ID_MISMATCH_WITH_LEASE_OPERATION);
+        when(leaseClient.renewLease()).thenThrow(renewError);
+
+        assertThat(blobLease.renew()).isFalse();
+        assertThat(blobLease.isHeld()).isFalse();
+        verify(leaseClient).acquireLease(30);
+    }
+
+    @Test
+    void test_renew_failed_temporarily_lease_kept() {
+        blobLease.acquireOrRenew(30);
+        final var renewError = createError(BlobErrorCode.SERVER_BUSY);
+        when(leaseClient.renewLease()).thenThrow(renewError);
+
+        assertThatThrownBy(() -> blobLease.renew()).isInstanceOf(RuntimeException.class);
+        assertThatThrownBy(() -> blobLease.acquireOrRenew(30)).isInstanceOf(RuntimeException.class);
+        assertThat(blobLease.isHeld()).isTrue();
+        // the lease is not acquired again while it is still active
+        verify(leaseClient).acquireLease(30);
+    }
+
+    @Test
+    void test_renew_server_busy_circuit_opened_renewals_rejected() {
+        blobLease.acquireOrRenew(30);
+        final var renewError = createError(BlobErrorCode.SERVER_BUSY);
+        when(renewError.getStatusCode()).thenReturn(503);
+        when(leaseClient.renewLease()).thenThrow(renewError);
+
+        for (int i = 0; i < CircuitBreaker.MINIMUM_CALLS; i++) {
+            assertThatThrownBy(() -> blobLease.renew()).isNotInstanceOf(CircuitOpenException.class);
+        }
+
+        assertThatThrownBy(() -> blobLease.renew()).isInstanceOf(CircuitOpenException.class);
+        assertThat(blobLease.isHeld()).isTrue();
+        verify(leaseClient, times(CircuitBreaker.MINIMUM_CALLS)).renewLease();
+        assertThat(getLeaseErrorCount()).isEqualTo(CircuitBreaker.MINIMUM_CALLS + 1);
+    }
+
+    @Test
+    void test_release_circuit_open_lease_not_held() {
+        blobLease.acquireOrRenew(30);
+        final var renewError = createError(BlobErrorCode.SERVER_BUSY);
+        when(renewError.getStatusCode()).thenReturn(503);
+        when(leaseClient.renewLease()).thenThrow(renewError);
+        for (int i = 0; i < CircuitBreaker.MINIMUM_CALLS; i++) {
+            assertThatThrownBy(() -> blobLease.renew()).isInstanceOf(RuntimeException.class);
+        }
+
+        blobLease.release();
+
+        assertThat(blobLease.isHeld()).isFalse();
+        verify(leaseClient, never()).releaseLease();
+    }
+
+    @Test
+    void test_release_held_lease() {
+        blobLease.acquireOrRenew(30);
+        blobLease.release();
+
+        verify(leaseClient).releaseLease();
+        assertThat(blobLease.isHeld()).isFalse();
+    }
+
+    @Test
+    void test_release_not_held_lease() {
+        blobLease.release();
+        verify(leaseClient, never()).releaseLease();
+    }
+
+    private long getLeaseTimerCount() {
+        return metrics.getMetricRegistry()
+                .getTimers()
+                .get(DiscoveryMetrics.METRIC_PREFIX + ".storage.lease-blob.time")
+                .getCount();
+    }
+
+    private long getLeaseErrorCount() {
+        return metrics.getMetricRegistry()
+                .getCounters()
+                .get(DiscoveryMetrics.METRIC_PREFIX + ".storage.lease-blob.errors")
+                .getCount();
+    }
+
+    private static @NotNull BlobStorageException createError(final @NotNull BlobErrorCode errorCode) {
+        final var error = mock(BlobStorageException.class);
+        when(error.getErrorCode()).thenReturn(errorCode);
+        return error;
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2021-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.cluster.discovery.azure.client;
+
+import com.azure.storage.blob.models.BlobStorageException;
+import com.hivemq.extensions.cluster.discovery.azure.metrics.DiscoveryMetrics;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class CircuitBreakerTest {
+
+    private final @NotNull DiscoveryMetrics metrics = new DiscoveryMetrics();
+    private final @NotNull AtomicLong nanos = new AtomicLong();
+    private final @NotNull CircuitBreaker circuitBreaker = new CircuitBreaker(metrics, nanos::get);
+
+    @Test
+    void test_failure_rate_reached_opened() {
+        fail(CircuitBreaker.MINIMUM_CALLS, 503);
+
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(circuitBreaker.isOpen()).isTrue();
+        assertThat(getStateGauge()).isEqualTo(1);
+    }
+
+    @Test
+    void test_less_than_minimum_calls_stays_closed() {
+        fail(CircuitBreaker.MINIMUM_CALLS - 1, 503);
+
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void test_failure_rate_below_threshold_stays_closed() {
+        for (int i = 0; i < CircuitBreaker.WINDOW_SIZE; i++) {
+            circuitBreaker.call(() -> "ok");
+        }
+        fail(CircuitBreaker.WINDOW_SIZE / 2 - 1, 503);
+
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void test_client_errors_not_counted() {
+        fail(CircuitBreaker.WINDOW_SIZE, 404);
+
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void test_throttling_and_errors_without_response_counted() {
+        fail(CircuitBreaker.MINIMUM_CALLS / 2, 429);
+        for (int i = 0; i < CircuitBreaker.MINIMUM_CALLS / 2; i++) {
+            assertThatThrownBy(() -> circuitBreaker.call(() -> {
+                throw new RuntimeException("timeout");
+            })).hasMessage("timeout");
+        }
+
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    void test_open_calls_rejected() {
+        fail(CircuitBreaker.MINIMUM_CALLS, 503);
+
+        assertThatThrownBy(() -> circuitBreaker.call(() -> "ok")).isInstanceOf(CircuitOpenException.class);
+        assertThat(metrics.getMetricRegistry()
+                .getCounters()
+                .get(DiscoveryMetrics.METRIC_PREFIX + ".circuit-breaker.rejected-calls")
+                .getCount()).isEqualTo(1);
+    }
+
+    @Test
+    void test_half_open_single_probe() {
+        fail(CircuitBreaker.MINIMUM_CALLS, 503);
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(30));
+
+        assertThat(circuitBreaker.isOpen()).isFalse();
+        final var probe = circuitBreaker.callAsync(Mono.never()).subscribe();
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        assertThatThrownBy(() -> circuitBreaker.call(() -> "ok")).isInstanceOf(CircuitOpenException.class);
+
+        // a cancelled probe lets the next request through as the probe
+        probe.dispose();
+        assertThat(circuitBreaker.call(() -> "ok")).isEqualTo("ok");
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(getStateGauge()).isZero();
+    }
+
+    @Test
+    void test_half_open_probe_failed_opened_again() {
+        fail(CircuitBreaker.MINIMUM_CALLS, 503);
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(30));
+
+        fail(1, 503);
+
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(circuitBreaker.isOpen()).isTrue();
+    }
+
+    @Test
+    void test_disabled_never_opened() {
+        circuitBreaker.configure(false, 50, 30);
+
+        fail(CircuitBreaker.WINDOW_SIZE, 503);
+
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(circuitBreaker.call(() -> "ok")).isEqualTo("ok");
+    }
+
+    @Test
+    void test_disabled_while_open_closed() {
+        fail(CircuitBreaker.MINIMUM_CALLS, 503);
+
+        circuitBreaker.configure(false, 50, 30);
+
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(circuitBreaker.isOpen()).isFalse();
+    }
+
+    private void fail(final int calls, final int statusCode) {
+        final var error = mock(BlobStorageException.class);
+        when(error.getStatusCode()).thenReturn(statusCode);
+        for (int i = 0; i < calls; i++) {
+            assertThatThrownBy(() -> circuitBreaker.run(() -> {
+                throw error;
+            })).isSameAs(error);
+        }
+    }
+
+    private int getStateGauge() {
+        return (Integer) metrics.getMetricRegistry()
+                .getGauges()
+                .get(DiscoveryMetrics.METRIC_PREFIX + ".circuit-breaker.state")
+                .getValue();
+    }
+}
@@ -18,12 +18,20 @@ package com.hivemq.extensions.cluster.discovery.azure.config;
 
 import com.hivemq.extension.sdk.api.services.cluster.parameter.ClusterNodeAddress;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.junit.jupiter.api.Test;
 
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
@@ -82,6 +90,13 @@ public class ClusterNodeFileTest {
         assertThat(clusterNodeFile.isExpired(1)).isFalse();
     }
 
+    @Test
+    void expired_at_given_time() {
+        final var clusterNodeFile = new ClusterNodeFile(nodeId, clusterNodeAddress, 10_000);
+        assertThat(clusterNodeFile.isExpired(5, 15_000)).isFalse();
+        assertThat(clusterNodeFile.isExpired(5, 15_001)).isTrue();
+    }
+
     @Test
     void not_expired_sleep() throws Exception {
         final var clusterNodeFile = new ClusterNodeFile(nodeId, clusterNodeAddress);
@@ -211,6 +226,206 @@ public class ClusterNodeFileTest {
                 .isInstanceOf(IllegalArgumentException.class);
     }
 
+    @Test
+    void parseClusterNodeFile_sameResultsAsPatternSplit() {
+        final var separator = ClusterNodeFile.CONTENT_SEPARATOR;
+        final var contents = List.of("4||||1700000000000||||ABCD12||||127.0.0.1||||7800",
+                "4||||1700000000000||||ABCD12||||127.0.0.1||||7800||||",
+                "4||||1700000000000||||ABCD12||||127.0.0.1||||7800||||||||",
+                "4||||1700000000000||||ABCD12||||127.0.0.1||||7800||||||",
+                "4||||1700000000000||||ABCD12||||127.0.0.1||||7800||||x",
+                "4||||1700000000000||||ABCD12||||127.0.0.1|||||7800",
+                "4|||||1700000000000||||ABCD12||||127.0.0.1||||7800",
+                "||||4||||1700000000000||||ABCD12||||127.0.0.1||||7800",
+                "4||||1700000000000||||ABCD12||||127.0.0.1||||",
+                "4||||1700000000000||||ABCD12||||||||7800",
+                "4||||+1700000000000||||ABCD12||||127.0.0.1||||+7800",
+                "4||||-1700000000000||||ABCD12||||127.0.0.1||||7800",
+                "4||||0||||ABCD12||||127.0.0.1||||7800",
+                "4||||١٧٠٠٠٠٠٠٠٠٠٠٠||||ABCD12||||" +
+                        "127.0.0.1||||٧٨٠٠",
+                "4||||1000000000000000000||||ABCD12||||127.0.0.1||||7800",
+                "4||||99999999999999999999||||ABCD12||||127.0.0.1||||7800",
+                "4||||1700000000000||||ABCD12||||127.0.0.1||||2147483648",
+                "4||||1700000000000||||ABCD12||||127.0.0.1||||0007800",
+                "4||||1700000000000|||| ||||127.0.0.1||||7800",
+                "4||||1700000000000||||höst||||höst||||7800",
+                "4||||",
+                "4",
+                "44||||1700000000000||||ABCD12||||127.0.0.1||||7800");
+        for (final var content : contents) {
+            final var fileContent = encodeClusterNodeFileString(content);
+            assertThat(describeParseResult(() -> ClusterNodeFile.parseClusterNodeFile(fileContent)))
+                    .as(content)
+                    .isEqualTo(describeParseResult(() -> parseWithPatternSplit(fileContent, separator)));
+        }
+        // malformed UTF-8 in front of a separator must not hide the separator
+        final var malformedContent = Base64.getEncoder()
+                .encodeToString(new byte[]{'4', '|', '|', '|', '|', '1', '|', '|', '|', '|', (byte) 0xE2, '|', '|',
+                        '|', '|', 'h', '|', '|', '|', '|', '1'});
+        assertThat(describeParseResult(() -> ClusterNodeFile.parseClusterNodeFile(malformedContent)))
+                .isEqualTo(describeParseResult(() -> parseWithPatternSplit(malformedContent, separator)));
+    }
+
+    @Test
+    void parseClusterNodeFile_binary_success() {
+        final var clusterNodeFile = new ClusterNodeFile(nodeId, clusterNodeAddress);
+        final var parsed = ClusterNodeFile.parseClusterNodeFile(clusterNodeFile.toBinary());
+        assertThat(parsed).isNotNull();
+        assertThat(parsed.getClusterId()).isEqualTo(nodeId);
+        assertThat(parsed.getClusterNodeAddress()).isEqualTo(clusterNodeAddress);
+        // same creation time
+        assertThat(parsed.toString()).isEqualTo(clusterNodeFile.toString());
+    }
+
+    @Test
+    void parseClusterNodeFile_binary_nonAscii() {
+        final var clusterNodeFile = new ClusterNodeFile("NÖDE", new ClusterNodeAddress("höst.example", 65535));
+        final var parsed = ClusterNodeFile.parseClusterNodeFile(clusterNodeFile.toBinary());
+        assertThat(parsed).isNotNull();
+        assertThat(parsed.toString()).isEqualTo(clusterNodeFile.toString());
+    }
+
+    @Test
+    void parseClusterNodeFile_binary_smallerThanText() {
+        final var clusterNodeFile = new ClusterNodeFile(nodeId, clusterNodeAddress);
+        assertThat(clusterNodeFile.toBinary()).hasSizeLessThan(clusterNodeFile.toString().length() / 2);
+    }
+
+    @Test
+    void parseClusterNodeFile_binary_base64_notParsedAsText() {
+        // binary records are only read from the Blob content, the text parser behaves like the split parser
+        final var clusterNodeFile = new ClusterNodeFile(nodeId, clusterNodeAddress);
+        assertThat(ClusterNodeFile.parseClusterNodeFile(Base64.getEncoder()
+                .encodeToString(clusterNodeFile.toBinary()))).isNull();
+    }
+
+    @Test
+    void parseClusterNodeFile_binary_truncated() {
+        final var content = new ClusterNodeFile(nodeId, clusterNodeAddress).toBinary();
+        for (var length = 1; length < content.length; length++) {
+            assertThat(ClusterNodeFile.parseClusterNodeFile(Arrays.copyOf(content, length))).as("length " + length)
+                    .isNull();
+        }
+    }
+
+    @Test
+    void parseClusterNodeFile_binary_trailingBytes() {
+        final var content = new ClusterNodeFile(nodeId, clusterNodeAddress).toBinary();
+        assertThat(ClusterNodeFile.parseClusterNodeFile(Arrays.copyOf(content, content.length + 1))).isNull();
+    }
+
+    @Test
+    void parseClusterNodeFile_binary_malformed() {
+        // creation time 0
+        assertThat(ClusterNodeFile.parseClusterNodeFile(new byte[]{5, 0, 1, 'A', 1, 'h', 1})).isNull();
+        // blank cluster id
+        assertThat(ClusterNodeFile.parseClusterNodeFile(new byte[]{5, 1, 1, ' ', 1, 'h', 1})).isNull();
+        // empty host
+        assertThat(ClusterNodeFile.parseClusterNodeFile(new byte[]{5, 1, 1, 'A', 0, 1})).isNull();
+        // host length beyond the content
+        assertThat(ClusterNodeFile.parseClusterNodeFile(new byte[]{5, 1, 1, 'A', 127, 'h', 1})).isNull();
+        // varint longer than 64 bits
+        final var tooLong = new byte[]{5, -1, -1, -1, -1, -1, -1, -1, -1, -1, 1, 1, 'A', 1, 'h', 1};
+        assertThat(ClusterNodeFile.parseClusterNodeFile(tooLong)).isNull();
+        assertThat(ClusterNodeFile.parseClusterNodeFile(new byte[]{5, 1, 1, 'A', 1, 'h', 1})).isNotNull();
+    }
+
+    @Test
+    void parseClusterNodeFile_bytes_text() {
+        final var clusterNodeFile = new ClusterNodeFile(nodeId, clusterNodeAddress);
+        final var parsed = ClusterNodeFile.parseClusterNodeFile(clusterNodeFile.toString().getBytes(UTF_8));
+        assertThat(parsed).isNotNull();
+        assertThat(parsed.toString()).isEqualTo(clusterNodeFile.toString());
+    }
+
+    @Test
+    void parseClusterNodeFile_bytes_empty() {
+        assertThat(ClusterNodeFile.parseClusterNodeFile(new byte[0])).isNull();
+        assertThat(ClusterNodeFile.parseClusterNodeFile(" ".getBytes(UTF_8))).isNull();
+    }
+
+    @Test
+    void parseClusterNodeFile_metadata_success() {
+        final var clusterNodeFile1 = new ClusterNodeFile(nodeId, clusterNodeAddress);
+        final var metadata = clusterNodeFile1.toMetadata();
+        assertThat(metadata).isNotNull();
+
+        final var clusterNodeFile2 = ClusterNodeFile.parseClusterNodeFile(metadata);
+        assertThat(clusterNodeFile2).isNotNull();
+        assertThat(clusterNodeFile2.toString()).isEqualTo(clusterNodeFile1.toString());
+    }
+
+    @Test
+    void parseClusterNodeFile_metadata_empty() {
+        assertThat(ClusterNodeFile.parseClusterNodeFile(Map.of())).isNull();
+    }
+
+    @Test
+    void parseClusterNodeFile_metadata_wrongVersion() {
+        final var metadata = new HashMap<>(new ClusterNodeFile(nodeId, clusterNodeAddress).toMetadata());
+        metadata.put(ClusterNodeFile.METADATA_VERSION, "3");
+        assertThat(ClusterNodeFile.parseClusterNodeFile(metadata)).isNull();
+    }
+
+    @Test
+    void parseClusterNodeFile_metadata_missingHost() {
+        final var metadata = new HashMap<>(new ClusterNodeFile(nodeId, clusterNodeAddress).toMetadata());
+        metadata.remove(ClusterNodeFile.METADATA_HOST);
+        assertThat(ClusterNodeFile.parseClusterNodeFile(metadata)).isNull();
+    }
+
+    @Test
+    void parseClusterNodeFile_metadata_portIsNotANumber() {
+        final var metadata = new HashMap<>(new ClusterNodeFile(nodeId, clusterNodeAddress).toMetadata());
+        metadata.put(ClusterNodeFile.METADATA_PORT, "abcd");
+        assertThat(ClusterNodeFile.parseClusterNodeFile(metadata)).isNull();
+    }
+
+    @Test
+    void toMetadata_nonAsciiHost() {
+        final var clusterNodeFile = new ClusterNodeFile(nodeId, new ClusterNodeAddress("h\u00f6st", 7800));
+        assertThat(clusterNodeFile.toMetadata()).isNull();
+    }
+
+    @Test
+    void parseManifest_success() {
+        final var nodeFile1 = new ClusterNodeFile("NODE1", new ClusterNodeAddress("127.0.0.1", 7801));
+        final var nodeFile2 = new ClusterNodeFile("NODE2", new ClusterNodeAddress("127.0.0.2", 7802));
+
+        final var manifest = ClusterNodeFile.toManifest(List.of(nodeFile1, nodeFile2), 1234);
+        final var nodeFiles = ClusterNodeFile.parseManifest(manifest);
+
+        assertThat(ClusterNodeFile.parseManifestMergeTime(manifest)).isEqualTo(1234);
+        assertThat(nodeFiles).extracting(ClusterNodeFile::getClusterId).containsExactly("NODE1", "NODE2");
+        assertThat(nodeFiles).extracting(ClusterNodeFile::getClusterNodeAddress)
+                .containsExactly(nodeFile1.getClusterNodeAddress(), nodeFile2.getClusterNodeAddress());
+    }
+
+    @Test
+    void parseManifest_invalidEntrySkipped() {
+        final var manifest = ClusterNodeFile.toManifest(List.of(new ClusterNodeFile(nodeId, clusterNodeAddress)), 1) +
+                ClusterNodeFile.MANIFEST_SEPARATOR + createClusterNodeFileString("3", "1", "NODE2", "host", "7800");
+
+        assertThat(ClusterNodeFile.parseManifest(manifest)).extracting(ClusterNodeFile::getClusterId)
+                .containsExactly(nodeId);
+    }
+
+    @Test
+    void parseManifest_empty() {
+        assertThat(ClusterNodeFile.parseManifest("")).isEmpty();
+        assertThat(ClusterNodeFile.parseManifest(ClusterNodeFile.toManifest(List.of(), 1))).isEmpty();
+    }
+
+    @Test
+    void parseManifestMergeTime_missing_or_invalid() {
+        final var nodeFile = new ClusterNodeFile(nodeId, clusterNodeAddress);
+
+        assertThat(ClusterNodeFile.parseManifestMergeTime(nodeFile.toString())).isNull();
+        assertThat(ClusterNodeFile.parseManifestMergeTime("merged:abc\n" + nodeFile)).isNull();
+        assertThat(ClusterNodeFile.parseManifestMergeTime("")).isNull();
+    }
+
     public static @NotNull String createClusterNodeFileString(
             final @NotNull String version,
             final @NotNull String timeInMillis,
@@ -223,6 +438,46 @@ public class ClusterNodeFileTest {
         return encodeClusterNodeFileString(content);
     }
 
+    /**
+     * The parser before the node files were parsed without a regex, the new parser must behave exactly the same.
+     */
+    private static @Nullable String parseWithPatternSplit(
+            final @NotNull String fileContent,
+            final @NotNull String separator) {
+        final var content = new String(Base64.getDecoder().decode(fileContent), StandardCharsets.UTF_8);
+        final var splitContent = Pattern.compile(Pattern.quote(separator)).split(content);
+        if (splitContent.length != 5 || !splitContent[0].contentEquals(ClusterNodeFile.CONTENT_VERSION)) {
+            return null;
+        }
+        final long creationTimeInMillis;
+        final int port;
+        try {
+            creationTimeInMillis = Long.parseLong(splitContent[1]);
+            if (splitContent[2].isEmpty() || splitContent[3].isEmpty()) {
+                return null;
+            }
+            port = Integer.parseInt(splitContent[4]);
+        } catch (final NumberFormatException ignored) {
+            return null;
+        }
+        if (splitContent[2].isBlank() || creationTimeInMillis <= 0) {
+            throw new IllegalArgumentException();
+        }
+        final var clusterNodeAddress = new ClusterNodeAddress(splitContent[3], port);
+        return encodeClusterNodeFileString(ClusterNodeFile.CONTENT_VERSION + ClusterNodeFile.CONTENT_SEPARATOR +
+                creationTimeInMillis + ClusterNodeFile.CONTENT_SEPARATOR + splitContent[2] +
+                ClusterNodeFile.CONTENT_SEPARATOR + clusterNodeAddress.getHost() + ClusterNodeFile.CONTENT_SEPARATOR +
+                clusterNodeAddress.getPort());
+    }
+
+    private static @NotNull String describeParseResult(final @NotNull Supplier<@Nullable Object> parser) {
+        try {
+            return String.valueOf(parser.get());
+        } catch (final RuntimeException e) {
+            return e.getClass().getName();
+        }
+    }
+
     private static @NotNull String encodeClusterNodeFileString(final @NotNull String content) {
         return new String(Base64.getEncoder().encode(content.getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8);
     }
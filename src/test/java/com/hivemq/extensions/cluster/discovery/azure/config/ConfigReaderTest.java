@@ -17,6 +17,7 @@
 package com.hivemq.extensions.cluster.discovery.azure.config;
 
 import com.hivemq.extension.sdk.api.parameter.ExtensionInformation;
+import com.hivemq.extensions.cluster.discovery.azure.client.AzureStorageClient;
 import org.jetbrains.annotations.NotNull;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -25,6 +26,7 @@ import org.junit.jupiter.api.io.TempDir;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
@@ -190,6 +192,596 @@ class ConfigReaderTest {
         assertThat(configurationReader.readConfiguration()).isNull();
     }
 
+    @Test
+    void test_readConfiguration_download_parallelism_default() throws Exception {
+        Files.writeString(configPath, """
+                connection-string:https://my-connection-string
+                container-name:hivemq-blob-container
+                """);
+
+        final var configurationReader = new ConfigReader(extensionInformation);
+        final var azureDiscoveryConfig = configurationReader.readConfiguration();
+        assertThat(azureDiscoveryConfig).isNotNull();
+        assertThat(azureDiscoveryConfig.getDownloadParallelism()).isEqualTo(8);
+    }
+
+    @Test
+    void test_readConfiguration_download_parallelism_zero() throws Exception {
+        Files.writeString(configPath, """
+                connection-string:https://my-connection-string
+                container-name:hivemq-blob-container
+                download-parallelism:0
+                """);
+
+        final var configurationReader = new ConfigReader(extensionInformation);
+        assertThat(configurationReader.readConfiguration()).isNull();
+    }
+
+    @Test
+    void test_readConfiguration_download_parallelism_not_a_number() throws Exception {
+        Files.writeString(configPath, """
+                connection-string:https://my-connection-string
+                container-name:hivemq-blob-container
+                download-parallelism:abc
+                """);
+
+        final var configurationReader = new ConfigReader(extensionInformation);
+        assertThat(configurationReader.readConfiguration()).isNull();
+    }
+
+    @Test
+    void test_readConfiguration_async_discovery_engine() throws Exception {
+        Files.writeString(configPath, """
+                connection-string:https://my-connection-string
+                container-name:hivemq-blob-container
+                discovery-engine:async
+                """);
+
+        final var configurationReader = new ConfigReader(extensionInformation);
+        final var azureDiscoveryConfig = configurationReader.readConfiguration();
+        assertThat(azureDiscoveryConfig).isNotNull();
+        assertThat(azureDiscoveryConfig.getDiscoveryEngine()).isEqualTo(AzureDiscoveryConfig.DISCOVERY_ENGINE_ASYNC);
+    }
+
+    @Test
+    void test_readConfiguration_unknown_discovery_engine() throws Exception {
+        Files.writeString(configPath, """
+                connection-string:https://my-connection-string
+                container-name:hivemq-blob-container
+                discovery-engine:reactive
+                """);
+
+        final var configurationReader = new ConfigReader(extensionInformation);
+        assertThat(configurationReader.readConfiguration()).isNull();
+    }
+
+    @Test
+    void test_readConfiguration_content_version() throws Exception {
+        Files.writeString(configPath, """
+                connection-string:https://my-connection-string
+                container-name:hivemq-blob-container
+                content-version:5
+                """);
+
+        final var configurationReader = new ConfigReader(extensionInformation);
+        final var azureDiscoveryConfig = configurationReader.readConfiguration();
+        assertThat(azureDiscoveryConfig).isNotNull();
+        assertThat(azureDiscoveryConfig.getContentVersion()).isEqualTo(AzureDiscoveryConfig.CONTENT_VERSION_BINARY);
+    }
+
+    @Test
+    void test_readConfiguration_unknown_content_version() throws Exception {
+        Files.writeString(configPath, """
+                connection-string:https://my-connection-string
+                container-name:hivemq-blob-container
+                content-version:3
+                """);
+
+        final var configurationReader = new ConfigReader(extensionInformation);
+        assertThat(configurationReader.readConfiguration()).isNull();
+    }
+
+    @Test
+    void test_readConfiguration_read_and_heartbeat_interval_default() throws Exception {
+        Files.writeString(configPath, """
+                connection-string:https://my-connection-string
+                container-name:hivemq-blob-container
+                """);
+
+        final var configurationReader = new ConfigReader(extensionInformation);
+        final var azureDiscoveryConfig = configurationReader.readConfiguration();
+        assertThat(azureDiscoveryConfig).isNotNull();
+        assertThat(azureDiscoveryConfig.getReadIntervalInSeconds()).isNull();
+        assertThat(azureDiscoveryConfig.getHeartbeatIntervalInSeconds()).isNull();
+    }
+
+    @Test
+    void test_readConfiguration_read_and_heartbeat_interval() throws Exception {
+        Files.writeString(configPath, """
+                connection-string:https://my-connection-string
+                container-name:hivemq-blob-container
+                read-interval:5
+                heartbeat-interval:120
+                """);
+
+        final var configurationReader = new ConfigReader(extensionInformation);
+        final var azureDiscoveryConfig = configurationReader.readConfiguration();
+        assertThat(azureDiscoveryConfig).isNotNull();
+        assertThat(azureDiscoveryConfig.getReadIntervalInSeconds()).isEqualTo(5);
+        assertThat(azureDiscoveryConfig.getHeartbeatIntervalInSeconds()).isEqualTo(120);
+    }
+
+    @Test
+    void test_readConfiguration_read_interval_zero() throws Exception {
+        Files.writeString(configPath, """
+                connection-string:https://my-connection-string
+                container-name:hivemq-blob-container
+                read-interval:0
+                """);
+
+        final var configurationReader = new ConfigReader(extensionInformation);
+        assertThat(configurationReader.readConfiguration()).isNull();
+    }
+
+    @Test
+    void test_readConfiguration_heartbeat_interval_not_less_than_expiration() throws Exception {
+        Files.writeString(configPath, """
+                connection-string:https://my-connection-string
+                container-name:hivemq-blob-container
+                file-expiration:360
+                heartbeat-interval:360
+                """);
+
+        final var configurationReader = new ConfigReader(extensionInformation);
+        assertThat(configurationReader.readConfiguration()).isNull();
+    }
+
+    @Test
+    void test_readConfiguration_fast_join() throws Exception {
+        Files.writeString(configPath, """
+                connection-string:https://my-connection-string
+                container-name:hivemq-blob-container
+                fast-join-enabled:true
+                fast-join-stable-cycles:5
+                """);
+
+        final var configurationReader = new ConfigReader(extensionInformation);
+        final var azureDiscoveryConfig = configurationReader.readConfiguration();
+        assertThat(azureDiscoveryConfig).isNotNull();
+        assertThat(azureDiscoveryConfig.isFastJoinEnabled()).isTrue();
+        assertThat(azureDiscoveryConfig.getFastJoinStableCycles()).isEqualTo(5);
+    }
+
+    @Test
+    void test_readConfiguration_fast_join_stable_cycles_zero() throws Exception {
+        Files.writeString(configPath, """
+                connection-string:https://my-connection-string
+                container-name:hivemq-blob-container
+                fast-join-stable-cycles:0
+                """);
+
+        final var configurationReader = new ConfigReader(extensionInformation);
+        assertThat(configurationReader.readConfiguration()).isNull();
+    }
+
+    @Test
+    void test_readConfiguration_max_staleness() throws Exception {
+        Files.writeString(configPath, """
+                connection-string:https://my-connection-string
+                container-name:hivemq-blob-container
+                max-staleness:0
+                """);
+
+        final var configurationReader = new ConfigReader(extensionInformation);
+        final var azureDiscoveryConfig = configurationReader.readConfiguration();
+        assertThat(azureDiscoveryConfig).isNotNull();
+        assertThat(azureDiscoveryConfig.getMaxStalenessInSeconds()).isZero();
+    }
+
+    @Test
+    void test_readConfiguration_max_staleness_negative() throws Exception {
+        Files.writeString(configPath, """
+                connection-string:https://my-connection-string
+                container-name:hivemq-blob-container
+                max-staleness:-1
+                """);
+
+        final var configurationReader = new ConfigReader(extensionInformation);
+        assertThat(configurationReader.readConfiguration()).isNull();
+    }
+
+    @Test
+    void test_readConfiguration_request_options_default() throws Exception {
+        Files.writeString(configPath, """
+                connection-string:https://my-connection-string
+                container-name:hivemq-blob-container
+                """);
+
+        final var configurationReader = new ConfigReader(extensionInformation);
+        final var azureDiscoveryConfig = configurationReader.readConfiguration();
+        assertThat(azureDiscoveryConfig).isNotNull();
+        assertThat(azureDiscoveryConfig.getRequestTimeoutInSeconds()).isEqualTo(10);
+        assertThat(azureDiscoveryConfig.getRequestMaxTries()).isEqualTo(3);
+        assertThat(azureDiscoveryConfig.getRequestRetryDelayInMillis()).isEqualTo(500);
+        assertThat(azureDiscoveryConfig.getRequestMaxRetryDelayInMillis()).isEqualTo(5000);
+        assertThat(azureDiscoveryConfig.getReloadDeadlineInSeconds()).isEqualTo(60);
+    }
+
+    @Test
+    void test_readConfiguration_request_options() throws Exception {
+        Files.writeString(configPath, """
+                connection-string:https://my-connection-string
+                container-name:hivemq-blob-container
+                request-timeout:5
+                request-max-tries:1
+                request-retry-delay:100
+                request-max-retry-delay:100
+                reload-deadline:20
+                """);
+
+        final var configurationReader = new ConfigReader(extensionInformation);
+        final var azureDiscoveryConfig = configurationReader.readConfiguration();
+        assertThat(azureDiscoveryConfig).isNotNull();
+        assertThat(azureDiscoveryConfig.getRequestTimeoutInSeconds()).isEqualTo(5);
+        assertThat(azureDiscoveryConfig.getRequestMaxTries()).isEqualTo(1);
+        assertThat(azureDiscoveryConfig.getRequestRetryDelayInMillis()).isEqualTo(100);
+        assertThat(azureDiscoveryConfig.getRequestMaxRetryDelayInMillis()).isEqualTo(100);
+        assertThat(azureDiscoveryConfig.getReloadDeadlineInSeconds()).isEqualTo(20);
+    }
+
+    @Test
+    void test_readConfiguration_request_max_tries_zero() throws Exception {
+        Files.writeString(configPath, """
+                connection-string:https://my-connection-string
+                container-name:hivemq-blob-container
+                request-max-tries:0
+                """);
+
+        final var configurationReader = new ConfigReader(extensionInformation);
+        assertThat(configurationReader.readConfiguration()).isNull();
+    }
+
+    @Test
+    void test_readConfiguration_request_max_retry_delay_less_than_retry_delay() throws Exception {
+        Files.writeString(configPath, """
+                connection-string:https://my-connection-string
+                container-name:hivemq-blob-container
+                request-retry-delay:1000
+                request-max-retry-delay:500
+                """);
+
+        final var configurationReader = new ConfigReader(extensionInformation);
+        assertThat(configurationReader.readConfiguration()).isNull();
+    }
+
+    @Test
+    void test_readConfiguration_reload_deadline_zero() throws Exception {
+        Files.writeString(configPath, """
+                connection-string:https://my-connection-string
+                container-name:hivemq-blob-container
+                reload-deadline:0
+                """);
+
+        final var configurationReader = new ConfigReader(extensionInformation);
+        assertThat(configurationReader.readConfiguration()).isNull();
+    }
+
+    @Test
+    void test_readConfiguration_circuit_breaker_default() throws Exception {
+        Files.writeString(configPath, """
+                connection-string:https://my-connection-string
+                container-name:hivemq-blob-container
+                """);
+
+        final var configurationReader = new ConfigReader(extensionInformation);
+        final var azureDiscoveryConfig = configurationReader.readConfiguration();
+        assertThat(azureDiscoveryConfig).isNotNull();
+        assertThat(azureDiscoveryConfig.isCircuitBreakerEnabled()).isFalse();
+        assertThat(azureDiscoveryConfig.getCircuitBreakerFailureRate()).isEqualTo(50);
+        assertThat(azureDiscoveryConfig.getCircuitBreakerOpenDurationInSeconds()).isEqualTo(30);
+    }
+
+    @Test
+    void test_readConfiguration_circuit_breaker_failure_rate_above_100() throws Exception {
+        Files.writeString(configPath, """
+                connection-string:https://my-connection-string
+                container-name:hivemq-blob-container
+                circuit-breaker-failure-rate:101
+                """);
+
+        final var configurationReader = new ConfigReader(extensionInformation);
+        assertThat(configurationReader.readConfiguration()).isNull();
+    }
+
+    @Test
+    void test_readConfiguration_circuit_breaker_open_duration_zero() throws Exception {
+        Files.writeString(configPath, """
+                connection-string:https://my-connection-string
+                container-name:hivemq-blob-container
+                circuit-breaker-open-duration:0
+                """);
+
+        final var configurationReader = new ConfigReader(extensionInformation);
+        assertThat(configurationReader.readConfiguration()).isNull();
+    }
+
+    @Test
+    void test_readConfiguration_reload_jitter_and_phase_offset() throws Exception {
+        Files.writeString(configPath, """
+                connection-string:https://my-connection-string
+                container-name:hivemq-blob-container
+                reload-jitter:10
+                phase-offset-enabled:true
+                """);
+
+        final var configurationReader = new ConfigReader(extensionInformation);
+        final var azureDiscoveryConfig = configurationReader.readConfiguration();
+        assertThat(azureDiscoveryConfig).isNotNull();
+        assertThat(azureDiscoveryConfig.getReloadJitter()).isEqualTo(10);
+        assertThat(azureDiscoveryConfig.isPhaseOffsetEnabled()).isTrue();
+    }
+
+    @Test
+    void test_readConfiguration_reload_jitter_above_100() throws Exception {
+        Files.writeString(configPath, """
+                connection-string:https://my-connection-string
+                container-name:hivemq-blob-container
+                reload-jitter:101
+                """);
+
+        final var configurationReader = new ConfigReader(extensionInformation);
+        assertThat(configurationReader.readConfiguration()).isNull();
+    }
+
+    @Test
+    void test_readConfiguration_publish_changes_only() throws Exception {
+        Files.writeString(configPath, """
+                connection-string:https://my-connection-string
+                container-name:hivemq-blob-container
+                """);
+
+        final var configurationReader = new ConfigReader(extensionInformation);
+        final var azureDiscoveryConfig = configurationReader.readConfiguration();
+        assertThat(azureDiscoveryConfig).isNotNull();
+        assertThat(azureDiscoveryConfig.isPublishChangesOnly()).isFalse();
+
+        Files.writeString(configPath, """
+                connection-string:https://my-connection-string
+                container-name:hivemq-blob-container
+                publish-changes-only:true
+                """);
+
+        final var changedAzureDiscoveryConfig = new ConfigReader(extensionInformation).readConfiguration();
+        assertThat(changedAzureDiscoveryConfig).isNotNull();
+        assertThat(changedAzureDiscoveryConfig.isPublishChangesOnly()).isTrue();
+    }
+
+    @Test
+    void test_readConfiguration_shard_count() throws Exception {
+        Files.writeString(configPath, """
+                connection-string:https://my-connection-string
+                container-name:hivemq-blob-container
+                """);
+
+        final var azureDiscoveryConfig = new ConfigReader(extensionInformation).readConfiguration();
+        assertThat(azureDiscoveryConfig).isNotNull();
+        assertThat(azureDiscoveryConfig.getShardCount()).isZero();
+
+        Files.writeString(configPath, """
+                connection-string:https://my-connection-string
+                container-name:hivemq-blob-container
+                shard-count:16
+                """);
+
+        final var shardedAzureDiscoveryConfig = new ConfigReader(extensionInformation).readConfiguration();
+        assertThat(shardedAzureDiscoveryConfig).isNotNull();
+        assertThat(shardedAzureDiscoveryConfig.getShardCount()).isEqualTo(16);
+    }
+
+    @Test
+    void test_readConfiguration_shard_count_above_max() throws Exception {
+        Files.writeString(configPath, """
+                connection-string:https://my-connection-string
+                container-name:hivemq-blob-container
+                shard-count:101
+                """);
+
+        final var configurationReader = new ConfigReader(extensionInformation);
+        assertThat(configurationReader.readConfiguration()).isNull();
+    }
+
+    @Test
+    void test_readConfiguration_replicas() throws Exception {
+        Files.writeString(configPath, """
+                connection-string:https://my-connection-string
+                container-name:hivemq-blob-container
+                """);
+
+        final var azureDiscoveryConfig = new ConfigReader(extensionInformation).readConfiguration();
+        assertThat(azureDiscoveryConfig).isNotNull();
+        assertThat(AzureStorageClient.getReplicaConnectionStrings(azureDiscoveryConfig)).isEmpty();
+        assertThat(azureDiscoveryConfig.getReplicaReadMode()).isEqualTo(AzureDiscoveryConfig.REPLICA_READ_MODE_FASTEST);
+        assertThat(azureDiscoveryConfig.getReplicaHedgeDelayInMillis()).isEqualTo(200);
+
+        Files.writeString(configPath, """
+                connection-string:https://my-connection-string
+                container-name:hivemq-blob-container
+                replica-connection-strings:https://my-replica-1, ,https://my-replica-2
+                replica-read-mode:merge
+                replica-hedge-delay:50
+                """);
+
+        final var replicatedAzureDiscoveryConfig = new ConfigReader(extensionInformation).readConfiguration();
+        assertThat(replicatedAzureDiscoveryConfig).isNotNull();
+        assertThat(AzureStorageClient.getReplicaConnectionStrings(replicatedAzureDiscoveryConfig)).containsExactly(
+                "https://my-replica-1",
+                "https://my-replica-2");
+        assertThat(replicatedAzureDiscoveryConfig.getReplicaReadMode()).isEqualTo(
+                AzureDiscoveryConfig.REPLICA_READ_MODE_MERGE);
+        assertThat(replicatedAzureDiscoveryConfig.getReplicaHedgeDelayInMillis()).isEqualTo(50);
+    }
+
+    @Test
+    void test_readConfiguration_replicas_with_async_discovery_engine_valid() throws Exception {
+        Files.writeString(configPath, """
+                connection-string:https://my-connection-string
+                container-name:hivemq-blob-container
+                replica-connection-strings:https://my-replica-1
+                discovery-engine:async
+                """);
+
+        // only a warning, the replicas run on the blocking discovery engine
+        final var azureDiscoveryConfig = new ConfigReader(extensionInformation).readConfiguration();
+        assertThat(azureDiscoveryConfig).isNotNull();
+        assertThat(azureDiscoveryConfig.getDiscoveryEngine()).isEqualTo(AzureDiscoveryConfig.DISCOVERY_ENGINE_ASYNC);
+    }
+
+    @Test
+    void test_readConfiguration_unknown_replica_read_mode() throws Exception {
+        Files.writeString(configPath, """
+                connection-string:https://my-connection-string
+                container-name:hivemq-blob-container
+                replica-read-mode:slowest
+                """);
+
+        final var configurationReader = new ConfigReader(extensionInformation);
+        assertThat(configurationReader.readConfiguration()).isNull();
+    }
+
+    @Test
+    void test_readConfiguration_negative_replica_hedge_delay() throws Exception {
+        Files.writeString(configPath, """
+                connection-string:https://my-connection-string
+                container-name:hivemq-blob-container
+                replica-hedge-delay:-1
+                """);
+
+        final var configurationReader = new ConfigReader(extensionInformation);
+        assertThat(configurationReader.readConfiguration()).isNull();
+    }
+
+    @Test
+    void test_readConfiguration_unchanged_file_cached() throws Exception {
+        Files.writeString(configPath, """
+                connection-string:https://my-connection-string
+                container-name:hivemq-blob-container
+                """);
+
+        final var configurationReader = new ConfigReader(extensionInformation);
+        final var azureDiscoveryConfig = configurationReader.readConfiguration();
+        assertThat(azureDiscoveryConfig).isNotNull();
+        assertThat(configurationReader.readConfiguration()).isSameAs(azureDiscoveryConfig);
+    }
+
+    @Test
+    void test_readConfiguration_changed_content_same_size_and_time_reread() throws Exception {
+        Files.writeString(configPath, """
+                connection-string:https://my-connection-string
+                container-name:hivemq-blob-container
+                """);
+        final var lastModifiedTime = Files.getLastModifiedTime(configPath);
+
+        final var configurationReader = new ConfigReader(extensionInformation);
+        final var azureDiscoveryConfig = configurationReader.readConfiguration();
+        assertThat(azureDiscoveryConfig).isNotNull();
+
+        Files.writeString(configPath, """
+                connection-string:https://my-connection-string
+                container-name:hivemq-blob-containex
+                """);
+        Files.setLastModifiedTime(configPath, lastModifiedTime);
+
+        final var changedAzureDiscoveryConfig = configurationReader.readConfiguration();
+        assertThat(changedAzureDiscoveryConfig).isNotNull().isNotSameAs(azureDiscoveryConfig);
+        assertThat(changedAzureDiscoveryConfig.getContainerName()).isEqualTo("hivemq-blob-containex");
+    }
+
+    @Test
+    void test_readConfiguration_changed_file_reread() throws Exception {
+        Files.writeString(configPath, """
+                connection-string:https://my-connection-string
+                container-name:hivemq-blob-container
+                """);
+
+        final var configurationReader = new ConfigReader(extensionInformation);
+        final var azureDiscoveryConfig = configurationReader.readConfiguration();
+
+        Files.writeString(configPath, """
+                connection-string:https://my-connection-string
+                container-name:hivemq-other-container
+                update-interval:60
+                """);
+
+        final var changedAzureDiscoveryConfig = configurationReader.readConfiguration();
+        assertThat(changedAzureDiscoveryConfig).isNotNull().isNotSameAs(azureDiscoveryConfig);
+        assertThat(changedAzureDiscoveryConfig.getContainerName()).isEqualTo("hivemq-other-container");
+    }
+
+    @Test
+    void test_readConfiguration_deleted_file_not_cached() throws Exception {
+        Files.writeString(configPath, """
+                connection-string:https://my-connection-string
+                container-name:hivemq-blob-container
+                """);
+
+        final var configurationReader = new ConfigReader(extensionInformation);
+        assertThat(configurationReader.readConfiguration()).isNotNull();
+
+        Files.delete(configPath);
+        assertThat(configurationReader.readConfiguration()).isNull();
+    }
+
+    @Test
+    void test_readConfiguration_watch_unchanged_file_cached() throws Exception {
+        Files.writeString(configPath, """
+                connection-string:https://my-connection-string
+                container-name:hivemq-blob-container
+                config-watch-enabled:true
+                """);
+
+        final var configurationReader = new ConfigReader(extensionInformation);
+        try {
+            final var azureDiscoveryConfig = configurationReader.readConfiguration();
+            assertThat(azureDiscoveryConfig).isNotNull();
+            assertThat(configurationReader.readConfiguration()).isSameAs(azureDiscoveryConfig);
+        } finally {
+            configurationReader.close();
+        }
+    }
+
+    @Test
+    void test_readConfiguration_watch_changed_file_reread() throws Exception {
+        Files.writeString(configPath, """
+                connection-string:https://my-connection-string
+                container-name:hivemq-blob-container
+                config-watch-enabled:true
+                """);
+
+        final var configurationReader = new ConfigReader(extensionInformation);
+        try {
+            final var azureDiscoveryConfig = configurationReader.readConfiguration();
+            assertThat(azureDiscoveryConfig).isNotNull();
+
+            Files.writeString(configPath, """
+                    connection-string:https://my-connection-string
+                    container-name:hivemq-other-container
+                    config-watch-enabled:true
+                    """);
+
+            // the file system may report the change with a delay
+            final var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+            var changedAzureDiscoveryConfig = configurationReader.readConfiguration();
+            while (changedAzureDiscoveryConfig == azureDiscoveryConfig && System.nanoTime() < deadline) {
+                Thread.sleep(100);
+                changedAzureDiscoveryConfig = configurationReader.readConfiguration();
+            }
+            assertThat(changedAzureDiscoveryConfig).isNotNull().isNotSameAs(azureDiscoveryConfig);
+            assertThat(changedAzureDiscoveryConfig.getContainerName()).isEqualTo("hivemq-other-container");
+        } finally {
+            configurationReader.close();
+        }
+    }
+
     @Test
     void test_readConfiguration_legacyLocation_successful() throws Exception {
         // remove config from conf/ folder
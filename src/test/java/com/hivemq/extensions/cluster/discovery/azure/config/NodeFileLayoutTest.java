@@ -0,0 +1,96 @@
+/*
+ * Copyright 2021-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.cluster.discovery.azure.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NodeFileLayoutTest {
+
+    @Test
+    void test_flat_layout() {
+        final var layout = new NodeFileLayout("hivemq-node-", 0);
+
+        assertThat(layout.isSharded()).isFalse();
+        assertThat(layout.getBlobName("ABCD12")).isEqualTo("hivemq-node-ABCD12");
+        assertThat(layout.getListingPrefixes()).containsExactly("hivemq-node-");
+    }
+
+    @Test
+    void test_sharded_layout() {
+        final var layout = new NodeFileLayout("hivemq-node-", 16);
+
+        assertThat(layout.isSharded()).isTrue();
+        assertThat(layout.getListingPrefixes()).hasSize(16)
+                .startsWith("hivemq-node-/00/", "hivemq-node-/01/")
+                .endsWith("hivemq-node-/15/");
+        assertThat(layout.getBlobName("ABCD12")).isEqualTo(String.format("hivemq-node-/%02d/ABCD12",
+                NodeFileLayout.getShard("ABCD12", 16)));
+    }
+
+    @Test
+    void test_sharded_layout_blob_names_in_listing_prefixes() {
+        final var layout = new NodeFileLayout("hivemq-node-", 8);
+        final var shards = new HashSet<String>();
+
+        for (var i = 0; i < 1000; i++) {
+            final var blobName = layout.getBlobName("NODE" + i);
+            final var listingPrefix = blobName.substring(0, blobName.lastIndexOf('/') + 1);
+            assertThat(layout.getListingPrefixes()).contains(listingPrefix);
+            shards.add(listingPrefix);
+        }
+        // the cluster IDs are spread across all shards
+        assertThat(shards).hasSize(8);
+    }
+
+    @Test
+    void test_listing_prefixes_with_previous_layout_shard_count_changed() {
+        final var layout = new NodeFileLayout("hivemq-node-", 2);
+        final var previousLayout = new NodeFileLayout("hivemq-node-", 4);
+
+        assertThat(layout.getListingPrefixes(previousLayout)).containsExactly("hivemq-node-/00/",
+                "hivemq-node-/01/",
+                "hivemq-node-/02/",
+                "hivemq-node-/03/");
+    }
+
+    @Test
+    void test_listing_prefixes_with_previous_layout_covered_prefixes_left_out() {
+        final var layout = new NodeFileLayout("hivemq-node-", 4);
+        final var previousLayout = new NodeFileLayout("hivemq-node-", 0);
+
+        // the flat prefix already lists the Blobs of all shards
+        assertThat(layout.getListingPrefixes(previousLayout)).containsExactly("hivemq-node-");
+        assertThat(previousLayout.getListingPrefixes(layout)).containsExactly("hivemq-node-");
+    }
+
+    @Test
+    void test_layouts_equal_by_file_prefix_and_shard_count() {
+        assertThat(new NodeFileLayout("hivemq-node-", 4)).isEqualTo(new NodeFileLayout("hivemq-node-", 4))
+                .isNotEqualTo(new NodeFileLayout("hivemq-node-", 8))
+                .isNotEqualTo(new NodeFileLayout("other-node-", 4));
+    }
+
+    @Test
+    void test_shard_of_negative_hash() {
+        // the hash code of "polygenelubricants" is Integer.MIN_VALUE
+        assertThat(NodeFileLayout.getShard("polygenelubricants", 7)).isBetween(0, 6);
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2021-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.cluster.discovery.azure.metrics;
+
+import com.codahale.metrics.MetricRegistry;
+import com.hivemq.extensions.cluster.discovery.azure.metrics.DiscoveryMetrics.Operation;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DiscoveryMetricsTest {
+
+    private final @NotNull DiscoveryMetrics discoveryMetrics = new DiscoveryMetrics();
+
+    @Test
+    void test_time_success() {
+        final var result = discoveryMetrics.time(Operation.GET_BLOB_CONTENT, () -> "content");
+
+        assertThat(result).isEqualTo("content");
+        assertThat(getTimerCount("get-blob-content")).isEqualTo(1);
+        assertThat(getErrorCount("get-blob-content")).isZero();
+    }
+
+    @Test
+    void test_time_error_counted() {
+        assertThatThrownBy(() -> discoveryMetrics.time(Operation.SAVE_BLOB, () -> {
+            throw new RuntimeException("failed");
+        })).hasMessage("failed");
+
+        assertThat(getTimerCount("save-blob")).isEqualTo(1);
+        assertThat(getErrorCount("save-blob")).isEqualTo(1);
+    }
+
+    @Test
+    void test_timeAsync_timed_per_subscription() {
+        final var exists = discoveryMetrics.timeAsync(Operation.EXISTS_CONTAINER, Mono.just(true));
+
+        assertThat(getTimerCount("exists-container")).isZero();
+        exists.block();
+        exists.block();
+        assertThat(getTimerCount("exists-container")).isEqualTo(2);
+    }
+
+    @Test
+    void test_timeAsync_error_counted() {
+        final var blobs = discoveryMetrics.timeAsync(Operation.GET_BLOBS,
+                Flux.concat(Flux.just("blob"), Flux.error(new RuntimeException("failed"))));
+
+        assertThatThrownBy(blobs::blockLast).hasMessage("failed");
+        assertThat(getTimerCount("get-blobs")).isEqualTo(1);
+        assertThat(getErrorCount("get-blobs")).isEqualTo(1);
+    }
+
+    @Test
+    void test_gauges() {
+        discoveryMetrics.setDiscoveredNodes(3);
+        discoveryMetrics.setExpiredNodes(2);
+        discoveryMetrics.setLastReloadDuration(TimeUnit.MILLISECONDS.toNanos(42));
+        discoveryMetrics.addBytesUploaded(10);
+        discoveryMetrics.addBytesDownloaded(20);
+        discoveryMetrics.addBytesDownloaded(30);
+
+        final var metricRegistry = discoveryMetrics.getMetricRegistry();
+        assertThat(metricRegistry.getGauges().get(DiscoveryMetrics.METRIC_PREFIX + ".discovered-nodes").getValue())
+                .isEqualTo(3);
+        assertThat(metricRegistry.getGauges().get(DiscoveryMetrics.METRIC_PREFIX + ".expired-nodes").getValue())
+                .isEqualTo(2);
+        assertThat(metricRegistry.getGauges()
+                .get(DiscoveryMetrics.METRIC_PREFIX + ".last-reload-duration-millis")
+                .getValue()).isEqualTo(42L);
+        assertThat(metricRegistry.getCounters()
+                .get(DiscoveryMetrics.METRIC_PREFIX + ".storage.bytes-uploaded")
+                .getCount()).isEqualTo(10);
+        assertThat(metricRegistry.getCounters()
+                .get(DiscoveryMetrics.METRIC_PREFIX + ".storage.bytes-downloaded")
+                .getCount()).isEqualTo(50);
+    }
+
+    @Test
+    void test_node_file_cache_counters() {
+        discoveryMetrics.addNodeFileCacheHit();
+        discoveryMetrics.addNodeFileCacheHit();
+        discoveryMetrics.addNodeFileCacheMiss();
+
+        final var metricRegistry = discoveryMetrics.getMetricRegistry();
+        assertThat(metricRegistry.getCounters()
+                .get(DiscoveryMetrics.METRIC_PREFIX + ".node-file-cache.hits")
+                .getCount()).isEqualTo(2);
+        assertThat(metricRegistry.getCounters()
+                .get(DiscoveryMetrics.METRIC_PREFIX + ".node-file-cache.misses")
+                .getCount()).isEqualTo(1);
+        assertThat(discoveryMetrics.getNodeFileCacheHits()).isEqualTo(2);
+        assertThat(discoveryMetrics.getNodeFileCacheMisses()).isEqualTo(1);
+    }
+
+    @Test
+    void test_circuit_breaker_state_per_replica() {
+        discoveryMetrics.setCircuitBreakerState(0, 2);
+        discoveryMetrics.setCircuitBreakerState(1, 1);
+        discoveryMetrics.setCircuitBreakerState(2, 0);
+
+        final var gauges = discoveryMetrics.getMetricRegistry().getGauges();
+        assertThat(gauges.get(DiscoveryMetrics.METRIC_PREFIX + ".circuit-breaker.state").getValue()).isEqualTo(2);
+        assertThat(gauges.get(DiscoveryMetrics.METRIC_PREFIX + ".replica.1.circuit-breaker.state").getValue())
+                .isEqualTo(1);
+        assertThat(gauges.get(DiscoveryMetrics.METRIC_PREFIX + ".replica.2.circuit-breaker.state").getValue())
+                .isEqualTo(0);
+    }
+
+    @Test
+    void test_registerIn_forwards_existing_and_later_metrics() {
+        discoveryMetrics.setDiscoveredNodes(3);
+        final var targetRegistry = new MetricRegistry();
+
+        discoveryMetrics.registerIn(targetRegistry);
+        discoveryMetrics.getReplicaTimer(1).update(5, TimeUnit.MILLISECONDS);
+        discoveryMetrics.addReplicaError(1);
+
+        assertThat(targetRegistry.getGauges()).containsKey(DiscoveryMetrics.METRIC_PREFIX + ".discovered-nodes");
+        assertThat(targetRegistry.getTimers()
+                .get(DiscoveryMetrics.METRIC_PREFIX + ".replica.1.time")
+                .getCount()).isEqualTo(1);
+        assertThat(targetRegistry.getCounters()
+                .get(DiscoveryMetrics.METRIC_PREFIX + ".replica.1.errors")
+                .getCount()).isEqualTo(1);
+    }
+
+    private long getTimerCount(final @NotNull String operation) {
+        return discoveryMetrics.getMetricRegistry()
+                .getTimers()
+                .get(DiscoveryMetrics.METRIC_PREFIX + ".storage." + operation + ".time")
+                .getCount();
+    }
+
+    private long getErrorCount(final @NotNull String operation) {
+        return discoveryMetrics.getMetricRegistry()
+                .getCounters()
+                .get(DiscoveryMetrics.METRIC_PREFIX + ".storage." + operation + ".errors")
+                .getCount();
+    }
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright 2021-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.cluster.discovery.azure.store;
+
+import com.azure.storage.blob.models.BlobItem;
+import com.azure.storage.blob.models.BlobItemProperties;
+import com.hivemq.extensions.cluster.discovery.azure.client.BlobNotFoundException;
+import com.hivemq.extensions.cluster.discovery.azure.client.ContainerNotFoundException;
+import com.hivemq.extensions.cluster.discovery.azure.metrics.DiscoveryMetrics;
+import com.hivemq.extensions.cluster.discovery.azure.metrics.DiscoveryMetrics.Operation;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link DiscoveryStore} that keeps every Blob as a file in a directory, e.g. on a volume that is shared by the nodes
+ * of a test cluster. The directory is the container. Like the virtual directories of an Azure Storage Container, every
+ * {@code /} in a Blob name separates a subdirectory.
+ * <p>
+ * A Blob is written to a temporary file first, which is then atomically moved over the Blob file, so readers never see
+ * a partially written Blob. Blob metadata is not supported, so node files are always downloaded.
+ */
+public class FileSystemDiscoveryStore implements DiscoveryStore {
+
+    // the temporary files start with a dot, so they are never listed
+    private static final @NotNull String TEMP_FILE_PREFIX = ".";
+    private static final @NotNull String TEMP_FILE_SUFFIX = ".tmp";
+
+    private final @NotNull Path directory;
+    private final @NotNull DiscoveryMetrics metrics;
+
+    public FileSystemDiscoveryStore(final @NotNull Path directory) {
+        this(directory, new DiscoveryMetrics());
+    }
+
+    public FileSystemDiscoveryStore(final @NotNull Path directory, final @NotNull DiscoveryMetrics metrics) {
+        this.directory = directory.toAbsolutePath().normalize();
+        this.metrics = metrics;
+    }
+
+    @Override
+    public boolean existsContainer() {
+        return metrics.time(Operation.EXISTS_CONTAINER, () -> Files.isDirectory(directory));
+    }
+
+    @Override
+    public void createContainer() throws RuntimeException {
+        metrics.time(Operation.CREATE_CONTAINER, () -> {
+            try {
+                Files.createDirectories(directory);
+            } catch (final IOException e) {
+                throw new RuntimeException("Directory " + directory + " could not be created. " + e.getMessage());
+            }
+        });
+    }
+
+    @Override
+    public void saveBlob(final @NotNull String blobName, final byte @NotNull [] content) throws RuntimeException {
+        final var blobFile = resolve(blobName);
+        metrics.time(Operation.SAVE_BLOB, () -> {
+            Path tempFile = null;
+            try {
+                final var blobDirectory = blobFile.getParent();
+                if (!blobDirectory.equals(directory)) {
+                    // the subdirectories are created on demand, but never the container itself
+                    if (!Files.isDirectory(directory)) {
+                        throw new ContainerNotFoundException("Directory " + directory + " does not exist.");
+                    }
+                    Files.createDirectories(blobDirectory);
+                }
+                tempFile = Files.createTempFile(blobDirectory, TEMP_FILE_PREFIX, TEMP_FILE_SUFFIX);
+                Files.write(tempFile, content);
+                Files.move(tempFile, blobFile, StandardCopyOption.ATOMIC_MOVE);
+            } catch (final IOException e) {
+                deleteTempFile(tempFile);
+                checkContainerNotFound(e);
+                throw new RuntimeException("Blob " + blobName + " could not be saved. " + e.getMessage());
+            }
+        });
+        metrics.addBytesUploaded(content.length);
+    }
+
+    @Override
+    public void saveBlob(
+            final @NotNull String blobName,
+            final byte @NotNull [] content,
+            final @NotNull Map<String, String> metadata) throws RuntimeException {
+        saveBlob(blobName, content);
+    }
+
+    @Override
+    public void deleteBlob(final @NotNull String blobName) throws RuntimeException {
+        final var blobFile = resolve(blobName);
+        metrics.time(Operation.DELETE_BLOB, () -> {
+            try {
+                Files.delete(blobFile);
+            } catch (final IOException e) {
+                checkContainerNotFound(e);
+                if (e instanceof NoSuchFileException) {
+                    throw new BlobNotFoundException("Blob " + blobName + " does not exist.");
+                }
+                throw new RuntimeException("Blob " + blobName + " could not be deleted. " + e.getMessage());
+            }
+        });
+    }
+
+    @Override
+    public byte @NotNull [] getBlobContent(final @NotNull String blobName) throws RuntimeException {
+        final var blobFile = resolve(blobName);
+        final var content = metrics.time(Operation.GET_BLOB_CONTENT, () -> {
+            try {
+                return Files.readAllBytes(blobFile);
+            } catch (final IOException e) {
+                checkContainerNotFound(e);
+                throw new RuntimeException("Blob " + blobName + " could not be read. " + e.getMessage());
+            }
+        });
+        metrics.addBytesDownloaded(content.length);
+        return content;
+    }
+
+    @Override
+    public @NotNull Iterator<BlobItem> getBlobs(final @NotNull String filePrefix) throws RuntimeException {
+        return metrics.time(Operation.GET_BLOBS, () -> {
+            final var blobs = new ArrayList<BlobItem>();
+            try {
+                listBlobs(directory, "", filePrefix, blobs);
+            } catch (final IOException e) {
+                checkContainerNotFound(e);
+                throw new RuntimeException("Directory " + directory + " could not be listed. " + e.getMessage());
+            }
+            blobs.sort(Comparator.comparing(BlobItem::getName));
+            return blobs.iterator();
+        });
+    }
+
+    private static void listBlobs(
+            final @NotNull Path blobDirectory,
+            final @NotNull String namePrefix,
+            final @NotNull String filePrefix,
+            final @NotNull List<BlobItem> blobs) throws IOException {
+        try (final var files = Files.newDirectoryStream(blobDirectory)) {
+            for (final var file : files) {
+                final var fileName = file.getFileName().toString();
+                if (fileName.startsWith(TEMP_FILE_PREFIX)) {
+                    continue;
+                }
+                final var blobName = namePrefix + fileName;
+                final BasicFileAttributes attributes;
+                try {
+                    attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                } catch (final NoSuchFileException e) {
+                    // deleted since it was listed
+                    continue;
+                }
+                if (attributes.isDirectory()) {
+                    final var subdirectoryPrefix = blobName + "/";
+                    // only subdirectories that can contain Blobs with the prefix are listed
+                    if (!subdirectoryPrefix.startsWith(filePrefix) && !filePrefix.startsWith(subdirectoryPrefix)) {
+                        continue;
+                    }
+                    try {
+                        listBlobs(file, subdirectoryPrefix, filePrefix, blobs);
+                    } catch (final NoSuchFileException e) {
+                        // deleted since it was listed
+                    }
+                } else if (attributes.isRegularFile() && blobName.startsWith(filePrefix)) {
+                    blobs.add(toBlobItem(blobName, attributes));
+                }
+            }
+        }
+    }
+
+    private static @NotNull BlobItem toBlobItem(
+            final @NotNull String blobName,
+            final @NotNull BasicFileAttributes attributes) {
+        final var lastModified = attributes.lastModifiedTime();
+        // every save moves a new file over the Blob file, so the file key changes even if the modification time
+        // doesn't because of the resolution of the file system
+        final var eTag = "\"" + attributes.fileKey() + "-" + lastModified.to(TimeUnit.NANOSECONDS) + "-" +
+                attributes.size() + "\"";
+        return new BlobItem().setName(blobName)
+                .setProperties(new BlobItemProperties().setETag(eTag)
+                        .setLastModified(lastModified.toInstant().atOffset(ZoneOffset.UTC))
+                        .setContentLength(attributes.size()));
+    }
+
+    private @NotNull Path resolve(final @NotNull String blobName) {
+        final var blobFile = directory.resolve(blobName).normalize();
+        if (!blobFile.startsWith(directory) ||
+                blobFile.equals(directory) ||
+                blobFile.getFileName().toString().startsWith(TEMP_FILE_PREFIX)) {
+            throw new IllegalArgumentException("Blob name " + blobName + " is not a file name in the directory.");
+        }
+        return blobFile;
+    }
+
+    private void checkContainerNotFound(final @NotNull IOException e) throws ContainerNotFoundException {
+        if (e instanceof NoSuchFileException && !Files.isDirectory(directory)) {
+            throw new ContainerNotFoundException("Directory " + directory + " does not exist.");
+        }
+    }
+
+    private static void deleteTempFile(final @Nullable Path tempFile) {
+        if (tempFile == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(tempFile);
+        } catch (final IOException ignored) {
+            // an orphaned temporary file is never listed
+        }
+    }
+}
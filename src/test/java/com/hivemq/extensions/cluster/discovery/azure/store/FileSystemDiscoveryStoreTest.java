@@ -0,0 +1,166 @@
+/*
+ * Copyright 2021-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.cluster.discovery.azure.store;
+
+import com.azure.storage.blob.models.BlobItem;
+import com.hivemq.extensions.cluster.discovery.azure.client.ContainerNotFoundException;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class FileSystemDiscoveryStoreTest {
+
+    @TempDir
+    private @NotNull Path tempDir;
+
+    private @NotNull Path directory;
+    private @NotNull FileSystemDiscoveryStore store;
+
+    @BeforeEach
+    void setUp() {
+        directory = tempDir.resolve("container");
+        store = new FileSystemDiscoveryStore(directory);
+    }
+
+    @Test
+    void test_container_created_as_directory() {
+        assertThat(store.existsContainer()).isFalse();
+
+        store.createContainer();
+        store.createContainer();
+
+        assertThat(store.existsContainer()).isTrue();
+        assertThat(directory).isDirectory();
+    }
+
+    @Test
+    void test_container_not_created_operations_fail() {
+        assertThatThrownBy(() -> store.saveBlob("node-1", bytes("1"))).isInstanceOf(ContainerNotFoundException.class);
+        assertThatThrownBy(() -> store.getBlobContent("node-1")).isInstanceOf(ContainerNotFoundException.class);
+        assertThatThrownBy(() -> store.getBlobs("node-")).isInstanceOf(ContainerNotFoundException.class);
+    }
+
+    @Test
+    void test_saved_blobs_listed_by_prefix_and_read() {
+        store.createContainer();
+        store.saveBlob("node-2", bytes("2"));
+        store.saveBlob("node-1", bytes("1"), Map.of("key", "value"));
+        store.saveBlob("other", bytes("3"));
+
+        final var blobs = list("node-");
+
+        assertThat(blobs).extracting(BlobItem::getName).containsExactly("node-1", "node-2");
+        // metadata is not supported
+        assertThat(blobs.get(0).getMetadata()).isNull();
+        assertThat(blobs.get(0).getProperties().getContentLength()).isEqualTo(1);
+        assertThat(store.getBlobContent("node-2")).isEqualTo(bytes("2"));
+    }
+
+    @Test
+    void test_overwritten_blob_replaced_and_etag_changed() throws IOException {
+        store.createContainer();
+        store.saveBlob("node-1", bytes("1"));
+        final var eTag = list("node-").get(0).getProperties().getETag();
+
+        store.saveBlob("node-1", bytes("11"));
+
+        assertThat(list("node-").get(0).getProperties().getETag()).isNotEqualTo(eTag);
+        assertThat(store.getBlobContent("node-1")).isEqualTo(bytes("11"));
+        // no temporary files are left behind
+        try (final var files = Files.list(directory)) {
+            assertThat(files).containsExactly(directory.resolve("node-1"));
+        }
+    }
+
+    @Test
+    void test_temporary_files_not_listed() throws IOException {
+        store.createContainer();
+        Files.write(directory.resolve(".node-1.tmp"), bytes("1"));
+
+        assertThat(list("")).isEmpty();
+    }
+
+    @Test
+    void test_deleted_blob_not_listed() {
+        store.createContainer();
+        store.saveBlob("node-1", bytes("1"));
+
+        store.deleteBlob("node-1");
+
+        assertThat(list("node-")).isEmpty();
+        assertThatThrownBy(() -> store.deleteBlob("node-1")).isInstanceOf(RuntimeException.class)
+                .isNotInstanceOf(ContainerNotFoundException.class);
+    }
+
+    @Test
+    void test_blob_name_outside_directory_rejected() {
+        store.createContainer();
+
+        assertThatThrownBy(() -> store.saveBlob("../node-1", bytes("1"))).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> store.getBlobContent("sub/../../node-1")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> store.saveBlob("sub/.node-1", bytes("1"))).isInstanceOf(
+                IllegalArgumentException.class);
+    }
+
+    @Test
+    void test_blobs_in_virtual_directories_listed_by_prefix() {
+        store.createContainer();
+        store.saveBlob("node-/01/b", bytes("1"));
+        store.saveBlob("node-/00/a", bytes("2"));
+        store.saveBlob("node-/01/c", bytes("3"));
+        store.saveBlob("node-janitor", bytes("4"));
+
+        assertThat(list("node-/01/")).extracting(BlobItem::getName).containsExactly("node-/01/b", "node-/01/c");
+        assertThat(list("node-")).extracting(BlobItem::getName)
+                .containsExactly("node-/00/a", "node-/01/b", "node-/01/c", "node-janitor");
+        assertThat(store.getBlobContent("node-/00/a")).isEqualTo(bytes("2"));
+        assertThat(directory.resolve("node-").resolve("00").resolve("a")).isRegularFile();
+
+        store.deleteBlob("node-/00/a");
+
+        assertThat(list("node-/00/")).isEmpty();
+    }
+
+    @Test
+    void test_container_not_created_blob_in_virtual_directory_not_saved() {
+        assertThatThrownBy(() -> store.saveBlob("node-/00/a", bytes("1"))).isInstanceOf(
+                ContainerNotFoundException.class);
+        assertThat(directory).doesNotExist();
+    }
+
+    private @NotNull List<BlobItem> list(final @NotNull String filePrefix) {
+        final var blobs = new ArrayList<BlobItem>();
+        store.getBlobs(filePrefix).forEachRemaining(blobs::add);
+        return blobs;
+    }
+
+    private static byte @NotNull [] bytes(final @NotNull String content) {
+        return content.getBytes(UTF_8);
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright 2021-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.cluster.discovery.azure.store;
+
+import com.azure.storage.blob.models.BlobItem;
+import com.azure.storage.blob.models.BlobItemProperties;
+import com.hivemq.extensions.cluster.discovery.azure.client.BlobNotFoundException;
+import com.hivemq.extensions.cluster.discovery.azure.client.ContainerNotFoundException;
+import com.hivemq.extensions.cluster.discovery.azure.metrics.DiscoveryMetrics;
+import com.hivemq.extensions.cluster.discovery.azure.metrics.DiscoveryMetrics.Operation;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link DiscoveryStore} that keeps the Blobs of one container in memory. All nodes of a simulated cluster share
+ * one instance.
+ * <p>
+ * Every operation can be delayed by a latency and failed with a probability or with a given exception, so slow or
+ * failing Azure Storage Accounts can be simulated. Failed operations don't change the stored Blobs.
+ */
+public class InMemoryDiscoveryStore implements DiscoveryStore {
+
+    private static final @NotNull String CONTAINER_NAME = "in-memory";
+
+    private final @NotNull DiscoveryMetrics metrics;
+    private final @NotNull Random random;
+    // sorted by name like the listing of an Azure Storage Container
+    private final @NotNull TreeMap<String, StoredBlob> blobs = new TreeMap<>();
+    private final @NotNull AtomicLong eTagSequence = new AtomicLong();
+    private final @NotNull Map<Operation, RuntimeException> failures = new EnumMap<>(Operation.class);
+    private boolean containerExists;
+    private volatile @NotNull Duration latency = Duration.ZERO;
+    private volatile double failureProbability;
+
+    public InMemoryDiscoveryStore() {
+        this(new DiscoveryMetrics(), new Random());
+    }
+
+    public InMemoryDiscoveryStore(final @NotNull DiscoveryMetrics metrics, final @NotNull Random random) {
+        this.metrics = metrics;
+        this.random = random;
+    }
+
+    /**
+     * Delays every following operation by the given latency.
+     */
+    public void setLatency(final @NotNull Duration latency) {
+        this.latency = latency;
+    }
+
+    /**
+     * Fails every following operation with the given probability between 0 and 1.
+     */
+    public void setFailureProbability(final double failureProbability) {
+        if (failureProbability < 0 || failureProbability > 1) {
+            throw new IllegalArgumentException("The failure probability must be between 0 and 1.");
+        }
+        this.failureProbability = failureProbability;
+    }
+
+    /**
+     * Fails every following call of the given operation with the given exception.
+     *
+     * @param failure the exception to throw or {@code null} to let the operation succeed again
+     */
+    public synchronized void setFailure(final @NotNull Operation operation, final @Nullable RuntimeException failure) {
+        if (failure == null) {
+            failures.remove(operation);
+        } else {
+            failures.put(operation, failure);
+        }
+    }
+
+    /**
+     * Deletes the container together with all its Blobs.
+     */
+    public synchronized void deleteContainer() {
+        containerExists = false;
+        blobs.clear();
+    }
+
+    @Override
+    public boolean existsContainer() {
+        return metrics.time(Operation.EXISTS_CONTAINER, () -> {
+            simulate(Operation.EXISTS_CONTAINER);
+            synchronized (this) {
+                return containerExists;
+            }
+        });
+    }
+
+    @Override
+    public void createContainer() {
+        metrics.time(Operation.CREATE_CONTAINER, () -> {
+            simulate(Operation.CREATE_CONTAINER);
+            synchronized (this) {
+                containerExists = true;
+            }
+        });
+    }
+
+    @Override
+    public void saveBlob(final @NotNull String blobName, final byte @NotNull [] content) {
+        storeBlob(blobName, content, null);
+    }
+
+    @Override
+    public void saveBlob(
+            final @NotNull String blobName,
+            final byte @NotNull [] content,
+            final @NotNull Map<String, String> metadata) {
+        storeBlob(blobName, content, Map.copyOf(metadata));
+    }
+
+    private void storeBlob(
+            final @NotNull String blobName,
+            final byte @NotNull [] content,
+            final @Nullable Map<String, String> metadata) {
+        metrics.time(Operation.SAVE_BLOB, () -> {
+            simulate(Operation.SAVE_BLOB);
+            final var eTag = "\"0x" + Long.toHexString(eTagSequence.incrementAndGet()) + "\"";
+            synchronized (this) {
+                checkContainerExists();
+                blobs.put(blobName, new StoredBlob(content.clone(), metadata, eTag, OffsetDateTime.now()));
+            }
+        });
+        metrics.addBytesUploaded(content.length);
+    }
+
+    @Override
+    public void deleteBlob(final @NotNull String blobName) {
+        metrics.time(Operation.DELETE_BLOB, () -> {
+            simulate(Operation.DELETE_BLOB);
+            synchronized (this) {
+                checkContainerExists();
+                if (blobs.remove(blobName) == null) {
+                    throw new BlobNotFoundException("Blob " + blobName + " does not exist.");
+                }
+            }
+        });
+    }
+
+    @Override
+    public byte @NotNull [] getBlobContent(final @NotNull String blobName) {
+        final var content = metrics.time(Operation.GET_BLOB_CONTENT, () -> {
+            simulate(Operation.GET_BLOB_CONTENT);
+            synchronized (this) {
+                checkContainerExists();
+                final var blob = blobs.get(blobName);
+                if (blob == null) {
+                    throw new RuntimeException("Blob " + blobName + " does not exist.");
+                }
+                return blob.content.clone();
+            }
+        });
+        metrics.addBytesDownloaded(content.length);
+        return content;
+    }
+
+    @Override
+    public @NotNull Iterator<BlobItem> getBlobs(final @NotNull String filePrefix) {
+        return metrics.time(Operation.GET_BLOBS, () -> {
+            simulate(Operation.GET_BLOBS);
+            synchronized (this) {
+                checkContainerExists();
+                final var blobItems = new ArrayList<BlobItem>();
+                for (final var entry : blobs.tailMap(filePrefix).entrySet()) {
+                    if (!entry.getKey().startsWith(filePrefix)) {
+                        break;
+                    }
+                    final var blob = entry.getValue();
+                    blobItems.add(new BlobItem().setName(entry.getKey())
+                            .setMetadata(blob.metadata)
+                            .setProperties(new BlobItemProperties().setETag(blob.eTag)
+                                    .setLastModified(blob.lastModified)
+                                    .setContentLength((long) blob.content.length)));
+                }
+                return blobItems.iterator();
+            }
+        });
+    }
+
+    /**
+     * @return the number of Blobs in the container
+     */
+    public synchronized int getBlobCount() {
+        return blobs.size();
+    }
+
+    private void simulate(final @NotNull Operation operation) {
+        final var currentLatency = latency;
+        if (!currentLatency.isZero()) {
+            try {
+                Thread.sleep(currentLatency.toMillis(), currentLatency.toNanosPart() % 1_000_000);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Simulated " + operation + " operation was interrupted.");
+            }
+        }
+        final RuntimeException failure;
+        synchronized (this) {
+            failure = failures.get(operation);
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        final var currentFailureProbability = failureProbability;
+        if (currentFailureProbability > 0 && nextDouble() < currentFailureProbability) {
+            throw new RuntimeException("Simulated " + operation + " operation failed.");
+        }
+    }
+
+    private synchronized double nextDouble() {
+        return random.nextDouble();
+    }
+
+    private void checkContainerExists() throws ContainerNotFoundException {
+        if (!containerExists) {
+            throw new ContainerNotFoundException("Container " + CONTAINER_NAME + " does not exist.");
+        }
+    }
+
+    private static class StoredBlob {
+
+        private final byte @NotNull [] content;
+        private final @Nullable Map<String, String> metadata;
+        private final @NotNull String eTag;
+        private final @NotNull OffsetDateTime lastModified;
+
+        private StoredBlob(
+                final byte @NotNull [] content,
+                final @Nullable Map<String, String> metadata,
+                final @NotNull String eTag,
+                final @NotNull OffsetDateTime lastModified) {
+            this.content = content;
+            this.metadata = metadata;
+            this.eTag = eTag;
+            this.lastModified = lastModified;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2021-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.cluster.discovery.azure.store;
+
+import com.azure.storage.blob.models.BlobItem;
+import com.hivemq.extensions.cluster.discovery.azure.client.ContainerNotFoundException;
+import com.hivemq.extensions.cluster.discovery.azure.metrics.DiscoveryMetrics;
+import com.hivemq.extensions.cluster.discovery.azure.metrics.DiscoveryMetrics.Operation;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class InMemoryDiscoveryStoreTest {
+
+    private final @NotNull DiscoveryMetrics metrics = new DiscoveryMetrics();
+    private final @NotNull InMemoryDiscoveryStore store = new InMemoryDiscoveryStore(metrics, new Random(42));
+
+    @Test
+    void test_container_not_created_operations_fail() {
+        assertThat(store.existsContainer()).isFalse();
+        assertThatThrownBy(() -> store.saveBlob("node-1", bytes("1"))).isInstanceOf(ContainerNotFoundException.class);
+        assertThatThrownBy(() -> store.getBlobs("node-")).isInstanceOf(ContainerNotFoundException.class);
+    }
+
+    @Test
+    void test_saved_blobs_listed_by_prefix_and_read() {
+        store.createContainer();
+        store.saveBlob("node-2", bytes("2"));
+        store.saveBlob("node-1", bytes("1"), Map.of("key", "value"));
+        store.saveBlob("other", bytes("3"));
+
+        final var blobs = list("node-");
+
+        assertThat(blobs).extracting(BlobItem::getName).containsExactly("node-1", "node-2");
+        assertThat(blobs.get(0).getMetadata()).containsExactly(Map.entry("key", "value"));
+        assertThat(blobs.get(1).getMetadata()).isNull();
+        assertThat(store.getBlobContent("node-2")).isEqualTo(bytes("2"));
+        assertThat(metrics.getMetricRegistry()
+                .getCounters()
+                .get(DiscoveryMetrics.METRIC_PREFIX + ".storage.bytes-uploaded")
+                .getCount()).isEqualTo(3);
+    }
+
+    @Test
+    void test_overwritten_blob_etag_changed() {
+        store.createContainer();
+        store.saveBlob("node-1", bytes("1"));
+        final var eTag = list("node-").get(0).getProperties().getETag();
+
+        store.saveBlob("node-1", bytes("1"));
+
+        assertThat(list("node-").get(0).getProperties().getETag()).isNotEqualTo(eTag);
+    }
+
+    @Test
+    void test_deleted_blob_not_listed() {
+        store.createContainer();
+        store.saveBlob("node-1", bytes("1"));
+
+        store.deleteBlob("node-1");
+
+        assertThat(list("node-")).isEmpty();
+        assertThatThrownBy(() -> store.deleteBlob("node-1")).isInstanceOf(RuntimeException.class)
+                .hasMessageContaining("does not exist");
+    }
+
+    @Test
+    void test_deleted_container_blobs_removed() {
+        store.createContainer();
+        store.saveBlob("node-1", bytes("1"));
+
+        store.deleteContainer();
+
+        assertThat(store.existsContainer()).isFalse();
+        assertThatThrownBy(() -> store.getBlobContent("node-1")).isInstanceOf(ContainerNotFoundException.class);
+        store.createContainer();
+        assertThat(store.getBlobCount()).isZero();
+    }
+
+    @Test
+    void test_failure_injected_operation_fails() {
+        store.createContainer();
+        final var failure = new RuntimeException("injected");
+        store.setFailure(Operation.GET_BLOBS, failure);
+
+        assertThatThrownBy(() -> store.getBlobs("node-")).isSameAs(failure);
+        store.saveBlob("node-1", bytes("1"));
+
+        store.setFailure(Operation.GET_BLOBS, null);
+        assertThat(list("node-")).hasSize(1);
+    }
+
+    @Test
+    void test_failure_probability_one_all_operations_fail() {
+        store.createContainer();
+        store.setFailureProbability(1);
+
+        assertThatThrownBy(() -> store.saveBlob("node-1", bytes("1"))).hasMessageContaining("Simulated");
+        store.setFailureProbability(0);
+        assertThat(store.getBlobCount()).isZero();
+    }
+
+    @Test
+    void test_invalid_failure_probability_rejected() {
+        assertThatThrownBy(() -> store.setFailureProbability(1.5)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void test_latency_operations_delayed() {
+        store.createContainer();
+        store.setLatency(Duration.ofMillis(50));
+
+        final var startNanos = System.nanoTime();
+        store.existsContainer();
+
+        assertThat(Duration.ofNanos(System.nanoTime() - startNanos)).isGreaterThanOrEqualTo(Duration.ofMillis(50));
+    }
+
+    private @NotNull List<BlobItem> list(final @NotNull String filePrefix) {
+        final var blobs = new ArrayList<BlobItem>();
+        store.getBlobs(filePrefix).forEachRemaining(blobs::add);
+        return blobs;
+    }
+
+    private static byte @NotNull [] bytes(final @NotNull String content) {
+        return content.getBytes(UTF_8);
+    }
+}
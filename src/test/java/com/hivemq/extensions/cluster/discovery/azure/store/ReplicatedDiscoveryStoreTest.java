@@ -0,0 +1,357 @@
+/*
+ * Copyright 2021-present HiveMQ GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.hivemq.extensions.cluster.discovery.azure.store;
+
+import com.azure.storage.blob.models.BlobItem;
+import com.hivemq.extension.sdk.api.services.cluster.parameter.ClusterNodeAddress;
+import com.hivemq.extensions.cluster.discovery.azure.config.ClusterNodeFile;
+import com.hivemq.extensions.cluster.discovery.azure.metrics.DiscoveryMetrics;
+import com.hivemq.extensions.cluster.discovery.azure.metrics.DiscoveryMetrics.Operation;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ReplicatedDiscoveryStoreTest {
+
+    private final @NotNull DiscoveryMetrics metrics = new DiscoveryMetrics();
+    private final @NotNull InMemoryDiscoveryStore replica0 = new InMemoryDiscoveryStore(metrics, new Random(42));
+    private final @NotNull InMemoryDiscoveryStore replica1 = new InMemoryDiscoveryStore(metrics, new Random(43));
+    private final @NotNull ReplicatedDiscoveryStore store =
+            new ReplicatedDiscoveryStore(List.of(replica0, replica1), metrics);
+
+    @BeforeEach
+    void setUp() {
+        store.configure(false, 50, 1);
+        store.createContainer();
+    }
+
+    @Test
+    void test_no_replicas_rejected() {
+        assertThatThrownBy(() -> new ReplicatedDiscoveryStore(List.of(), metrics)).isInstanceOf(
+                IllegalArgumentException.class);
+    }
+
+    @Test
+    void test_writes_sent_to_all_replicas() {
+        store.saveBlob("node-1", bytes("1"));
+        store.saveBlob("node-2", bytes("2"));
+        store.deleteBlob("node-2");
+
+        assertThat(replica0.getBlobContent("node-1")).isEqualTo(bytes("1"));
+        assertThat(replica1.getBlobContent("node-1")).isEqualTo(bytes("1"));
+        assertThat(replica0.getBlobCount()).isEqualTo(1);
+        assertThat(replica1.getBlobCount()).isEqualTo(1);
+        assertThat(metrics.getReplicaTimer(0).getCount()).isEqualTo(4);
+        assertThat(metrics.getReplicaTimer(1).getCount()).isEqualTo(4);
+    }
+
+    @Test
+    void test_write_succeeds_if_one_replica_failed() {
+        replica0.setFailure(Operation.SAVE_BLOB, new RuntimeException("unavailable"));
+
+        store.saveBlob("node-1", bytes("1"));
+
+        assertThat(replica0.getBlobCount()).isZero();
+        assertThat(replica1.getBlobContent("node-1")).isEqualTo(bytes("1"));
+        assertThat(getReplicaErrorCount(0)).isEqualTo(1);
+        assertThat(getReplicaErrorCount(1)).isZero();
+    }
+
+    @Test
+    void test_write_fails_if_all_replicas_failed() {
+        replica0.setFailure(Operation.SAVE_BLOB, new RuntimeException("unavailable 0"));
+        replica1.setFailure(Operation.SAVE_BLOB, new RuntimeException("unavailable 1"));
+
+        assertThatThrownBy(() -> store.saveBlob("node-1", bytes("1"))).hasMessage("unavailable 0");
+    }
+
+    @Test
+    void test_deleteBlobs_deleted_from_all_replicas() {
+        store.saveBlob("node-1", bytes("1"));
+        store.saveBlob("node-2", bytes("2"));
+        store.saveBlob("node-3", bytes("3"));
+
+        assertThat(store.deleteBlobs(List.of("node-1", "node-2"))).isEmpty();
+
+        assertThat(replica0.getBlobCount()).isEqualTo(1);
+        assertThat(replica1.getBlobCount()).isEqualTo(1);
+    }
+
+    @Test
+    void test_deleteBlobs_failure_of_one_replica_reported() {
+        store.saveBlob("node-1", bytes("1"));
+        replica1.setFailure(Operation.DELETE_BLOB, new RuntimeException("unavailable"));
+
+        final var failures = store.deleteBlobs(List.of("node-1"));
+
+        assertThat(failures).containsOnlyKeys("node-1");
+        assertThat(failures.get("node-1")).isEqualTo("Replica 1: unavailable");
+        assertThat(replica0.getBlobCount()).isZero();
+    }
+
+    @Test
+    void test_deleteBlobs_blob_missing_on_one_replica_deleted() {
+        replica0.saveBlob("node-1", bytes("1"));
+        replica0.saveBlob("node-2", bytes("2"));
+
+        assertThat(store.deleteBlobs(List.of("node-1"))).isEmpty();
+        store.deleteBlob("node-2");
+
+        assertThat(replica0.getBlobCount()).isZero();
+        assertThat(getReplicaErrorCount(1)).isZero();
+    }
+
+    @Test
+    void test_write_not_delayed_by_slow_replica() {
+        replica1.setLatency(Duration.ofSeconds(2));
+
+        final var startNanos = System.nanoTime();
+        store.saveBlob("node-1", bytes("1"));
+
+        assertThat(Duration.ofNanos(System.nanoTime() - startNanos)).isLessThan(Duration.ofSeconds(1));
+        assertThat(replica0.getBlobContent("node-1")).isEqualTo(bytes("1"));
+    }
+
+    @Test
+    void test_deleted_container_of_replica_recreated() {
+        replica1.deleteContainer();
+
+        assertThat(store.existsContainer()).isFalse();
+        store.saveBlob("node-1", bytes("1"));
+
+        assertThat(replica1.existsContainer()).isTrue();
+        assertThat(replica1.getBlobContent("node-1")).isEqualTo(bytes("1"));
+    }
+
+    @Test
+    void test_failed_replica_read_last() {
+        replica0.setFailure(Operation.SAVE_BLOB, new RuntimeException("unavailable"));
+        replica0.setFailure(Operation.GET_BLOBS, new RuntimeException("unavailable"));
+        store.saveBlob("node-1", bytes("1"));
+
+        // the failed replica is read last until it succeeds again
+        assertThat(store.getReadOrder(null)).containsExactly(1, 0);
+        assertThat(store.getReadOrder(0)).containsExactly(1, 0);
+        assertThat(list("node-")).extracting(BlobItem::getName).containsExactly("node-1");
+    }
+
+    @Test
+    void test_fastest_read_hedged_past_slow_replica() {
+        store.saveBlob("node-1", bytes("1"));
+        replica0.setLatency(Duration.ofSeconds(2));
+
+        final var startNanos = System.nanoTime();
+        final var content = store.getBlobContent("node-1");
+
+        assertThat(content).isEqualTo(bytes("1"));
+        assertThat(Duration.ofNanos(System.nanoTime() - startNanos)).isLessThan(Duration.ofSeconds(1));
+    }
+
+    @Test
+    void test_read_fails_if_all_replicas_failed() {
+        replica0.setFailure(Operation.GET_BLOBS, new RuntimeException("unavailable 0"));
+        replica1.setFailure(Operation.GET_BLOBS, new RuntimeException("unavailable 1"));
+
+        assertThatThrownBy(() -> list("node-")).hasMessageStartingWith("unavailable");
+    }
+
+    @Test
+    void test_merge_read_uses_newest_node_file() {
+        store.configure(true, 50, 1);
+        replica0.saveBlob("node-1", bytes("new"), nodeFile("node-1", 2000).toMetadata());
+        replica1.saveBlob("node-1", bytes("old"), nodeFile("node-1", 1000).toMetadata());
+        replica1.saveBlob("node-2", bytes("2"), nodeFile("node-2", 1000).toMetadata());
+
+        final var blobs = list("node-");
+
+        assertThat(blobs).extracting(BlobItem::getName).containsExactly("node-1", "node-2");
+        // the content is downloaded from the replica that listed the newest version
+        assertThat(store.getBlobContent("node-1")).isEqualTo(bytes("new"));
+        assertThat(store.getBlobContent("node-2")).isEqualTo(bytes("2"));
+    }
+
+    @Test
+    void test_merge_read_compares_creation_times_of_downloaded_node_files() {
+        store.configure(true, 50, 1);
+        final var newContent = nodeFile("node-1", 2000).toBinary();
+        replica1.saveBlob("node-1", newContent);
+        // uploaded last, but the node file was created first
+        replica0.saveBlob("node-1", nodeFile("node-1", 1000).toBinary());
+
+        assertThat(list("node-")).extracting(BlobItem::getName).containsExactly("node-1");
+
+        assertThat(store.getListedReplica("node-1")).isEqualTo(1);
+        // the content downloaded for the comparison is used for the following read
+        final var content = store.getListedBlobContent("node-1");
+        assertThat(content.getContent()).isEqualTo(newContent);
+        assertThat(content.isFromListingReplica()).isTrue();
+    }
+
+    @Test
+    void test_merge_read_hedged_past_slow_replica() {
+        store.configure(true, 50, 1);
+        store.saveBlob("node-1", nodeFile("node-1", 1000).toBinary());
+        replica0.setLatency(Duration.ofSeconds(2));
+
+        final var startNanos = System.nanoTime();
+        final var blobs = list("node-");
+
+        assertThat(blobs).extracting(BlobItem::getName).containsExactly("node-1");
+        assertThat(store.getListedReplica("node-1")).isEqualTo(1);
+        assertThat(Duration.ofNanos(System.nanoTime() - startNanos)).isLessThan(Duration.ofSeconds(1));
+    }
+
+    @Test
+    void test_listing_stays_with_replica_of_last_listing() {
+        store.saveBlob("node-1", bytes("1"));
+        final var eTag = list("node-").get(0).getProperties().getETag();
+        final var replica = store.getListedReplica("node-1");
+        assertThat(eTag).startsWith(replica + ":");
+
+        // the other replica is faster now, but its ETags would invalidate the cached node files
+        metrics.getReplicaTimer(replica).update(1, TimeUnit.SECONDS);
+
+        assertThat(list("node-").get(0).getProperties().getETag()).isEqualTo(eTag);
+        assertThat(store.getListedReplica("node-1")).isEqualTo(replica);
+    }
+
+    @Test
+    void test_merge_read_same_version_stays_with_replica() {
+        store.configure(true, 50, 1);
+        replica0.saveBlob("node-1", bytes("1"), nodeFile("node-1", 1000).toMetadata());
+        replica1.saveBlob("node-1", bytes("1"), nodeFile("node-1", 1000).toMetadata());
+        replica0.deleteContainer();
+        list("node-");
+        assertThat(store.getListedReplica("node-1")).isEqualTo(1);
+
+        replica0.createContainer();
+        replica0.saveBlob("node-1", bytes("1"), nodeFile("node-1", 1000).toMetadata());
+
+        assertThat(list("node-").get(0).getProperties().getETag()).startsWith("1:");
+        assertThat(store.getListedReplica("node-1")).isEqualTo(1);
+    }
+
+    @Test
+    void test_sharded_listings_replicas_kept_per_prefix() {
+        store.configure(true, 50, 1);
+        replica1.saveBlob("node-00/node-1", bytes("1"));
+        replica0.saveBlob("node-01/node-2", bytes("2"));
+
+        // the shards are listed one after the other, each listing only replaces the replicas of its own prefix
+        assertThat(list("node-00/")).extracting(BlobItem::getName).containsExactly("node-00/node-1");
+        assertThat(list("node-01/")).extracting(BlobItem::getName).containsExactly("node-01/node-2");
+
+        assertThat(store.getListedReplica("node-00/node-1")).isEqualTo(1);
+        assertThat(store.getListedReplica("node-01/node-2")).isEqualTo(0);
+        assertThat(store.getBlobContent("node-00/node-1")).isEqualTo(bytes("1"));
+        assertThat(store.getBlobContent("node-01/node-2")).isEqualTo(bytes("2"));
+    }
+
+    @Test
+    void test_content_of_other_replica_not_from_listing_replica() {
+        store.saveBlob("node-1", bytes("1"));
+        list("node-");
+        final var replica = store.getListedReplica("node-1");
+        assertThat(store.getListedBlobContent("node-1").isFromListingReplica()).isTrue();
+
+        // the listing replica is slow, the content is served by the other replica
+        (replica == 0 ? replica0 : replica1).setLatency(Duration.ofSeconds(2));
+        final var content = store.getListedBlobContent("node-1");
+
+        assertThat(content.getContent()).isEqualTo(bytes("1"));
+        assertThat(content.isFromListingReplica()).isFalse();
+    }
+
+    @Test
+    void test_blob_not_listed_anymore_replica_forgotten() {
+        store.configure(true, 50, 1);
+        replica1.saveBlob("node-1", bytes("1"));
+
+        list("node-");
+        assertThat(store.getListedReplica("node-1")).isEqualTo(1);
+
+        // deleted by another node, the next listing replaces the replicas of the previous one
+        replica1.deleteBlob("node-1");
+        list("node-");
+        assertThat(store.getListedReplica("node-1")).isNull();
+    }
+
+    @Test
+    void test_reads_beyond_thread_limit_called_by_caller() throws Exception {
+        store.saveBlob("node-1", bytes("1"));
+        replica0.setLatency(Duration.ofMillis(100));
+        replica1.setLatency(Duration.ofMillis(100));
+        final var callers = Executors.newFixedThreadPool(8);
+        try {
+            final var reads = new ArrayList<CompletableFuture<byte[]>>();
+            for (var i = 0; i < 8; i++) {
+                reads.add(CompletableFuture.supplyAsync(() -> store.getBlobContent("node-1"), callers));
+            }
+
+            // only 2 threads for 2 replicas with a download parallelism of 1, the other reads are not rejected
+            for (final var read : reads) {
+                assertThat(read.get()).isEqualTo(bytes("1"));
+            }
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    @Test
+    void test_calls_after_shutdown_run_by_caller() {
+        store.saveBlob("node-1", bytes("1"));
+        store.shutdown();
+
+        store.saveBlob("node-2", bytes("2"));
+
+        assertThat(list("node-")).extracting(BlobItem::getName).containsExactly("node-1", "node-2");
+        assertThat(store.getBlobContent("node-2")).isEqualTo(bytes("2"));
+    }
+
+    private @NotNull List<BlobItem> list(final @NotNull String filePrefix) {
+        final var blobs = new ArrayList<BlobItem>();
+        store.getBlobs(filePrefix).forEachRemaining(blobs::add);
+        return blobs;
+    }
+
+    private long getReplicaErrorCount(final int replica) {
+        final var counter = metrics.getMetricRegistry()
+                .getCounters()
+                .get(DiscoveryMetrics.METRIC_PREFIX + ".replica." + replica + ".errors");
+        return counter == null ? 0 : counter.getCount();
+    }
+
+    private static @NotNull ClusterNodeFile nodeFile(final @NotNull String clusterId, final long creationTimeInMillis) {
+        return new ClusterNodeFile(clusterId, new ClusterNodeAddress("127.0.0.1", 7800), creationTimeInMillis);
+    }
+
+    private static byte @NotNull [] bytes(final @NotNull String content) {
+        return content.getBytes(UTF_8);
+    }
+}